@@ -50,8 +50,19 @@ public enum AppProperty
     BACKUP_LOCATION                                 ( "backup.path" ),
     BACKUP_CONFIG_COUNT                             ( "backup.config.count" ),
     BACKUP_LOCALDB_COUNT                            ( "backup.localdb.count" ),
+    BACKUP_LOCALDB_SNAPSHOT_ENABLE                  ( "backup.localdb.snapshot.enable" ),
+    BACKUP_LOCALDB_SNAPSHOT_INTERVAL_SECONDS        ( "backup.localdb.snapshot.intervalSeconds" ),
     CACHE_ENABLE                                    ( "cache.enable" ),
+    CACHE_LOCALDB_ENABLE                            ( "cache.localdb.enable" ),
+    CACHE_LOCALDB_CLASSES                           ( "cache.localdb.classes" ),
+    CACHE_LOCALDB_MAX_ITEMS                         ( "cache.localdb.maxItems" ),
+    CACHE_LOCALDB_FLUSH_INTERVAL_MS                 ( "cache.localdb.flushIntervalMs" ),
+    CACHE_LOCALDB_CLEANUP_INTERVAL_SECONDS          ( "cache.localdb.cleanupIntervalSeconds" ),
+    CACHE_MEMORY_MAX_BYTES                          ( "cache.memory.maxBytes" ),
+    CACHE_MEMORY_MAX_CLASS_BYTES_PERCENT            ( "cache.memory.maxClassBytesPercent" ),
     CACHE_MEMORY_MAX_ITEMS                          ( "cache.memory.maxItems" ),
+    CACHE_REFRESH_THREADS                           ( "cache.refresh.threads" ),
+    CACHE_REFRESH_QUEUE_SIZE                        ( "cache.refresh.queueSize" ),
     CACHE_PWRULECHECK_LIFETIME_MS                   ( "cache.pwRuleCheckLifetimeMS" ),
     CACHE_FORM_UNIQUE_VALUE_LIFETIME_MS             ( "cache.uniqueFormValueLifetimeMS" ),
     CLIENT_ACTIVITY_MAX_EPS_RATE                    ( "client.ajax.activityMaxEpsRate" ),
@@ -80,9 +91,11 @@ public enum AppProperty
     CONFIG_MANAGER_ZIPDEBUG_MAXLOGBYTES             ( "configManager.zipDebug.maxLogBytes" ),
     CONFIG_MANAGER_ZIPDEBUG_MAXLOGSECONDS           ( "configManager.zipDebug.maxLogSeconds" ),
     CLUSTER_DB_ENABLE                               ( "cluster.db.enable" ),
+    CLUSTER_DB_CACHE_INVALIDATION_POLL_SECONDS      ( "cluster.db.cacheInvalidationPollSeconds" ),
     CLUSTER_DB_HEARTBEAT_SECONDS                    ( "cluster.db.heartbeatSeconds" ),
     CLUSTER_DB_NODE_TIMEOUT_SECONDS                 ( "cluster.db.nodeTimeoutSeconds" ),
     CLUSTER_DB_NODE_PURGE_SECONDS                   ( "cluster.db.nodePurgeSeconds" ),
+    CLUSTER_LDAP_CACHE_INVALIDATION_POLL_SECONDS    ( "cluster.ldap.cacheInvalidationPollSeconds" ),
     CLUSTER_LDAP_HEARTBEAT_SECONDS                  ( "cluster.ldap.heartbeatSeconds" ),
     CLUSTER_LDAP_NODE_TIMEOUT_SECONDS               ( "cluster.ldap.nodeTimeoutSeconds" ),
     CLUSTER_LDAP_NODE_PURGE_SECONDS                 ( "cluster.ldap.nodePurgeSeconds" ),
@@ -170,6 +183,8 @@ public enum AppProperty
     HTTP_SERVLET_ENABLE_POST_REDIRECT_GET           ( "http.servlet.enablePostRedirectGet" ),
     L10N_RTL_REGEX                                  ( "l10n.rtl.regex" ),
     LOCALDB_AGGRESSIVE_COMPACT_ENABLED              ( "localdb.aggressiveCompact.enabled" ),
+    LOCALDB_EXPIRY_PURGE_BATCH_SIZE                 ( "localdb.expiry.purgeBatchSize" ),
+    LOCALDB_EXPIRY_PURGE_INTERVAL_SECONDS           ( "localdb.expiry.purgeIntervalSeconds" ),
     LOCALDB_IMPLEMENTATION                          ( "localdb.implementation" ),
     LOCALDB_INIT_STRING                             ( "localdb.initParameters" ),
     LOCALDB_LOCATION                                ( "localdb.location" ),
@@ -358,6 +373,8 @@ public enum AppProperty
 
     /** Regular expression to be used for matching URLs to be shortened by the URL Shortening Service Class. */
     URL_SHORTNER_URL_REGEX                          ( "urlshortener.url.regex" ),
+    WORDLIST_BLOOM_FILTER_FALSE_POSITIVE_RATE       ( "wordlist.bloomFilter.falsePositiveRate" ),
+    WORDLIST_BLOOM_FILTER_MAX_SIZE_BYTES            ( "wordlist.bloomFilter.maxSizeBytes" ),
     WORDLIST_BUILTIN_PATH                           ( "wordlist.builtin.path" ),
     WORDLIST_CHAR_LENGTH_MAX                        ( "wordlist.maxCharLength" ),
     WORDLIST_CHAR_LENGTH_MIN                        ( "wordlist.minCharLength" ),
@@ -368,6 +385,9 @@ public enum AppProperty
     WORDLIST_IMPORT_MAX_CHARS_TRANSACTIONS          ( "wordlist.import.maxCharsTransactions" ),
     WORDLIST_IMPORT_LINE_COMMENTS                   ( "wordlist.import.lineComments" ),
     WORDLIST_INSPECTOR_FREQUENCY_SECONDS            ( "wordlist.inspector.frequencySeconds" ),
+    WORDLIST_STORAGE_TYPE                           ( "wordlist.storage.type" ),
+    WORDLIST_STORAGE_MAPPED_FILE_PATH               ( "wordlist.storage.mappedFile.path" ),
+    WORDLIST_STORAGE_MAPPED_FILE_SORT_RECORDS       ( "wordlist.storage.mappedFile.sortBufferRecords" ),
     WORDLIST_TEST_MODE                              ( "wordlist.testMode" ),
     WS_REST_CLIENT_PWRULE_HALTONERROR               ( "ws.restClient.pwRule.haltOnError" ),
     WS_REST_SERVER_SIGNING_FORM_TIMEOUT_SECONDS     ( "ws.restServer.signing.form.timeoutSeconds" ),
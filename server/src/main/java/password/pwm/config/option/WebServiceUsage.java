@@ -41,7 +41,8 @@ public enum WebServiceUsage
     Statistics( RestAuthenticationType.PUBLIC, RestAuthenticationType.NAMED_SECRET, RestAuthenticationType.LDAP ),
     Status( RestAuthenticationType.NAMED_SECRET, RestAuthenticationType.LDAP ),
     VerifyOtp( RestAuthenticationType.NAMED_SECRET, RestAuthenticationType.LDAP ),
-    VerifyResponses( RestAuthenticationType.NAMED_SECRET, RestAuthenticationType.LDAP ),;
+    VerifyResponses( RestAuthenticationType.NAMED_SECRET, RestAuthenticationType.LDAP ),
+    WordlistRange( RestAuthenticationType.NAMED_SECRET, RestAuthenticationType.LDAP ),;
 
     private Set<RestAuthenticationType> type;
 
@@ -42,6 +42,7 @@ import password.pwm.http.ProcessStatus;
 import password.pwm.http.PwmRequest;
 import password.pwm.http.PwmRequestAttribute;
 import password.pwm.http.bean.DeleteAccountBean;
+import password.pwm.ldap.LdapOperationsHelper;
 import password.pwm.svc.event.AuditEvent;
 import password.pwm.svc.event.AuditRecord;
 import password.pwm.svc.event.AuditRecordFactory;
@@ -247,6 +248,7 @@ public class DeleteAccountServlet extends ControlledPwmServlet
             try
             {
                 chaiUser.getChaiProvider().deleteEntry( chaiUser.getEntryDN() );
+                LdapOperationsHelper.invalidateCachedUserData( pwmApplication, pwmRequest.getUserInfoIfLoggedIn() );
             }
             catch ( ChaiException e )
             {
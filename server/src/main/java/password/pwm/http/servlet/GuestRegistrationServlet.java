@@ -245,6 +245,7 @@ public class GuestRegistrationServlet extends AbstractPwmServlet
 
             // Update user attributes
             LdapOperationsHelper.writeFormValuesToLdap( theGuest, formValues, pwmSession.getSessionManager().getMacroMachine( pwmApplication ), false );
+            LdapOperationsHelper.invalidateCachedUserData( pwmApplication, guestRegistrationBean.getUpdateUserIdentity() );
 
             // Write expirationDate
             if ( expirationDate != null )
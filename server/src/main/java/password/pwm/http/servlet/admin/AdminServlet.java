@@ -61,9 +61,9 @@ import password.pwm.svc.report.UserCacheRecord;
 import password.pwm.svc.stats.StatisticsManager;
 import password.pwm.util.db.DatabaseException;
 import password.pwm.util.i18n.LocaleHelper;
-import password.pwm.util.java.ClosableIterator;
 import password.pwm.util.java.JavaHelper;
 import password.pwm.util.java.JsonUtil;
+import password.pwm.util.java.ResumableIterator;
 import password.pwm.util.java.StringUtil;
 import password.pwm.util.java.TimeDuration;
 import password.pwm.util.logging.LocalDBLogger;
@@ -409,11 +409,13 @@ public class AdminServlet extends ControlledPwmServlet
             throws PwmUnrecoverableException, IOException
     {
         final int maximum = Math.min( pwmRequest.readParameterAsInt( "maximum", 1000 ), 10 * 1000 );
+        final String resumeToken = pwmRequest.readParameterAsString( "resumeToken" );
 
         final ReportService reportService = pwmRequest.getPwmApplication().getReportService();
         final ArrayList<UserCacheRecord> reportData = new ArrayList<>();
+        String nextResumeToken = null;
 
-        try ( ClosableIterator<UserCacheRecord> cacheBeanIterator = reportService.iterator() )
+        try ( ResumableIterator<UserCacheRecord> cacheBeanIterator = reportService.iterator( resumeToken ) )
         {
             while ( cacheBeanIterator.hasNext() && reportData.size() < maximum )
             {
@@ -423,10 +425,25 @@ public class AdminServlet extends ControlledPwmServlet
                     reportData.add( userCacheRecord );
                 }
             }
+            if ( cacheBeanIterator.hasNext() )
+            {
+                nextResumeToken = cacheBeanIterator.resumeToken();
+            }
+        }
+        catch ( IllegalArgumentException e )
+        {
+            final String errorMsg = "invalid resumeToken parameter: " + e.getMessage();
+            final ErrorInformation errorInformation = new ErrorInformation( PwmError.ERROR_MISSING_PARAMETER, errorMsg );
+            pwmRequest.outputJsonResult( RestResultBean.fromError( errorInformation, pwmRequest ) );
+            return ProcessStatus.Halt;
         }
 
         final HashMap<String, Object> returnData = new HashMap<>();
         returnData.put( "users", reportData );
+        if ( nextResumeToken != null )
+        {
+            returnData.put( "resumeToken", nextResumeToken );
+        }
 
         final RestResultBean restResultBean = RestResultBean.withData( returnData );
         pwmRequest.outputJsonResult( restResultBean );
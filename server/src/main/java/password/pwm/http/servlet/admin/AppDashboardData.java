@@ -44,6 +44,7 @@ import password.pwm.util.java.StringUtil;
 import password.pwm.util.java.TimeDuration;
 import password.pwm.util.localdb.LocalDB;
 import password.pwm.util.localdb.LocalDBException;
+import password.pwm.util.localdb.LocalDBMetrics;
 import password.pwm.util.logging.PwmLogger;
 
 import java.io.Serializable;
@@ -68,6 +69,9 @@ public class AppDashboardData implements Serializable
 
     private static final PwmLogger LOGGER = PwmLogger.forClass( AppDashboardData.class );
 
+    // number of db operations with the highest total time shown on the dashboard
+    private static final int LOCALDB_BUSIEST_OPERATION_COUNT = 5;
+
     @Value
     public static class ServiceData implements Serializable
     {
@@ -394,6 +398,20 @@ public class AppDashboardData implements Serializable
                     display
             ) );
         }
+        if ( pwmApplication.getLocalDB() != null )
+        {
+            final List<LocalDBMetrics.OperationSummary> summaries = pwmApplication.getLocalDB().metrics().summaries();
+            for ( final LocalDBMetrics.OperationSummary summary : summaries.subList( 0, Math.min( LOCALDB_BUSIEST_OPERATION_COUNT, summaries.size() ) ) )
+            {
+                localDbInfo.add( new DisplayElement(
+                        "localDbLatency_" + summary.getDb() + "_" + summary.getOperation(),
+                        DisplayElement.Type.string,
+                        "LocalDB " + summary.getDb() + " " + summary.getOperation() + " Time",
+                        numberFormat.format( summary.getCount() ) + " operations, average " + summary.getAvgMicros()
+                                + "µs, 99% under " + summary.getP99Micros() + "µs"
+                ) );
+            }
+        }
 
         return Collections.unmodifiableList( localDbInfo );
     }
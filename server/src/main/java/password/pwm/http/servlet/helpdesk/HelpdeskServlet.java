@@ -281,6 +281,7 @@ public class HelpdeskServlet extends ControlledPwmServlet
                     .createActionExecutor();
 
             actionExecutor.executeAction( action, pwmRequest.getSessionLabel() );
+            LdapOperationsHelper.invalidateCachedUserData( pwmRequest.getPwmApplication(), userIdentity );
 
             // mark the event log
             {
@@ -358,6 +359,7 @@ public class HelpdeskServlet extends ControlledPwmServlet
         try
         {
             provider.deleteEntry( userIdentity.getUserDN() );
+            LdapOperationsHelper.invalidateCachedUserData( pwmApplication, userIdentity );
         }
         catch ( ChaiOperationException e )
         {
@@ -30,6 +30,7 @@ import org.apache.commons.csv.CSVPrinter;
 import password.pwm.AppProperty;
 import password.pwm.PwmApplication;
 import password.pwm.PwmConstants;
+import password.pwm.bean.SessionLabel;
 import password.pwm.bean.UserIdentity;
 import password.pwm.config.PwmSetting;
 import password.pwm.config.profile.PeopleSearchProfile;
@@ -58,6 +59,7 @@ import password.pwm.ldap.search.UserSearchResults;
 import password.pwm.svc.cache.CacheKey;
 import password.pwm.svc.cache.CacheLoader;
 import password.pwm.svc.cache.CachePolicy;
+import password.pwm.svc.cache.CacheValueType;
 import password.pwm.svc.stats.Statistic;
 import password.pwm.svc.stats.StatisticsManager;
 import password.pwm.util.i18n.LocaleHelper;
@@ -72,6 +74,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -89,6 +92,8 @@ class PeopleSearchDataReader
 {
     private static final PwmLogger LOGGER = PwmLogger.forClass( PeopleSearchDataReader.class );
 
+    private static final int REFRESH_AHEAD_PERCENT = 80;
+
     private final PwmRequest pwmRequest;
     private final PeopleSearchConfiguration peopleSearchConfiguration;
 
@@ -134,7 +139,8 @@ class PeopleSearchDataReader
                 .toBuilder().fromCache( false ).build();
 
         StatisticsManager.incrementStat( pwmRequest, Statistic.PEOPLESEARCH_SEARCHES );
-        storeDataInCache( cacheKey, searchResultBean );
+        // search results are never modified after being built, so the cache can hold them by reference
+        storeDataInCache( cacheKey, searchResultBean, CacheValueType.IMMUTABLE );
         LOGGER.trace( pwmRequest, () -> "returning " + searchResultBean.getSearchResults().size()
                 + " results for search request "
                 + JsonUtil.serialize( searchRequestBean ) );
@@ -226,7 +232,7 @@ class PeopleSearchDataReader
         }
 
         final TimeDuration totalTime = TimeDuration.fromCurrent( startTime );
-        storeDataInCache( cacheKey, orgChartData );
+        storeDataInCache( cacheKey, orgChartData, CacheValueType.JSON );
         {
             final int finalChildCount = childCount;
             LOGGER.trace( pwmRequest, () -> "completed makeOrgChartData of " + userIdentity.toDisplayString()
@@ -284,7 +290,7 @@ class PeopleSearchDataReader
 
         LOGGER.trace( pwmRequest, () -> "finished building userDetail result of " + userIdentity
                 + " in " + TimeDuration.fromCurrent( startTime ).asCompactString() );
-        storeDataInCache( cacheKey, userDetailBean );
+        storeDataInCache( cacheKey, userDetailBean, CacheValueType.JSON );
         return userDetailBean;
     }
 
@@ -374,13 +380,39 @@ class PeopleSearchDataReader
         {
             userIdentity = null;
         }
-        final String keyString = operationIdentifier + "|" + pwmRequest.getPwmApplication().getSecureService().hash( dataIdentifier );
+        final String keyString = makeCacheValueID( pwmRequest.getPwmApplication(), operationIdentifier, dataIdentifier );
         return CacheKey.newKey(
                 this.getClass(),
                 userIdentity,
                 keyString );
     }
 
+    private static String makeCacheValueID(
+            final PwmApplication pwmApplication,
+            final String operationIdentifier,
+            final String dataIdentifier
+    )
+            throws PwmUnrecoverableException
+    {
+        return operationIdentifier + "|" + pwmApplication.getSecureService().hash( dataIdentifier );
+    }
+
+    /**
+     * Cache value ids of the cached data describing the user itself, regardless of which user searched for it.  Search
+     * results and the org charts of other users that include the user are not identified.
+     */
+    static List<String> makeUserCacheValueIDs( final PwmApplication pwmApplication, final UserIdentity userIdentity )
+            throws PwmUnrecoverableException
+    {
+        final String userKey = userIdentity.toDelimitedKey();
+        return Collections.unmodifiableList( Arrays.asList(
+                makeCacheValueID( pwmApplication, UserDetailBean.class.getSimpleName(), userKey ),
+                makeCacheValueID( pwmApplication, OrgChartDataBean.class.getSimpleName(), userKey + "|" + true ),
+                makeCacheValueID( pwmApplication, OrgChartDataBean.class.getSimpleName(), userKey + "|" + false ),
+                makeCacheValueID( pwmApplication, CacheIdentifier.checkIfViewable.name(), userKey )
+        ) );
+    }
+
     private OrgChartReferenceBean makeOrgChartReferenceForIdentity(
             final UserIdentity userIdentity
     )
@@ -449,7 +481,8 @@ class PeopleSearchDataReader
 
     private void storeDataInCache(
             final CacheKey cacheKey,
-            final Serializable data
+            final Serializable data,
+            final CacheValueType cacheValueType
     )
             throws PwmUnrecoverableException
     {
@@ -457,7 +490,7 @@ class PeopleSearchDataReader
         final TimeDuration maxCacheTime = this.peopleSearchConfiguration.getMaxCacheTime();
         if ( !maxCacheTime.isZero() )
         {
-            final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( maxCacheTime );
+            final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( maxCacheTime, cacheValueType );
             pwmApplication.getCacheService().put( cacheKey, cachePolicy, data );
         }
     }
@@ -466,14 +499,17 @@ class PeopleSearchDataReader
             final CacheIdentifier operationIdentifier,
             final String dataIdentifier,
             final Class<T> classOfT,
-            final CacheLoader<T> cacheLoader
+            final CacheLoader<T> cacheLoader,
+            final boolean refreshAhead
     )
             throws PwmUnrecoverableException
     {
         final PwmApplication pwmApplication = pwmRequest.getPwmApplication();
         final CacheKey cacheKey = makeCacheKey( operationIdentifier.name(), dataIdentifier );
         final TimeDuration maxCacheTime = this.peopleSearchConfiguration.getMaxCacheTime();
-        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( maxCacheTime );
+        final CachePolicy cachePolicy = refreshAhead
+                ? CachePolicy.makePolicyWithExpiration( maxCacheTime ).withRefreshAhead( REFRESH_AHEAD_PERCENT )
+                : CachePolicy.makePolicyWithExpiration( maxCacheTime );
         return pwmApplication.getCacheService().get( cacheKey, cachePolicy, classOfT, cacheLoader );
     }
 
@@ -618,7 +654,7 @@ class PeopleSearchDataReader
             return LdapPermissionTester.testQueryMatch( pwmRequest.getPwmApplication(), pwmRequest.getSessionLabel(), userIdentity, filterString );
         };
 
-        final boolean result = storeDataInCache( CacheIdentifier.checkIfViewable, userIdentity.toDelimitedKey(), Boolean.class, cacheLoader );
+        final boolean result = storeDataInCache( CacheIdentifier.checkIfViewable, userIdentity.toDelimitedKey(), Boolean.class, cacheLoader, false );
         try
         {
             if ( !result )
@@ -860,7 +896,7 @@ class PeopleSearchDataReader
 
         return SearchResultBean.builder()
                 .sizeExceeded( sizeExceeded )
-                .searchResults( resultOutput )
+                .searchResults( Collections.unmodifiableList( resultOutput ) )
                 .aboutResultMessage( aboutMessage )
                 .build();
     }
@@ -871,15 +907,21 @@ class PeopleSearchDataReader
     )
             throws PwmUnrecoverableException
     {
+        // proxied reads do not depend on the request, so the loader captures only the application and may be run
+        // in the background by the cache service's refresh-ahead
+        final boolean useProxy = useProxy();
+        final PwmApplication pwmApplication = pwmRequest.getPwmApplication();
+        final SessionLabel sessionLabel = pwmRequest.getSessionLabel();
         final CacheLoader<String> cacheLoader = () ->
         {
             try
             {
-                return getChaiUser( userIdentity ).readStringAttribute( attribute );
+                final ChaiUser chaiUser = useProxy ? pwmApplication.getProxiedChaiUser( userIdentity ) : getChaiUser( userIdentity );
+                return chaiUser.readStringAttribute( attribute );
             }
             catch ( ChaiOperationException e )
             {
-                LOGGER.trace( pwmRequest, () -> "error reading attribute for user '" + userIdentity.toDisplayString() + "', error: " + e.getMessage() );
+                LOGGER.trace( sessionLabel, () -> "error reading attribute for user '" + userIdentity.toDisplayString() + "', error: " + e.getMessage() );
                 return null;
             }
             catch ( ChaiUnavailableException e )
@@ -888,7 +930,8 @@ class PeopleSearchDataReader
             }
         };
 
-        return storeDataInCache( CacheIdentifier.attributeRead, userIdentity.toDelimitedKey() + "|" + attribute, String.class, cacheLoader );
+        final String dataIdentifier = userIdentity.toDelimitedKey() + "|" + attribute;
+        return storeDataInCache( CacheIdentifier.attributeRead, dataIdentifier, String.class, cacheLoader, useProxy );
     }
 
     public List<String> getMailToLink(
@@ -21,10 +21,14 @@
 package password.pwm.http.servlet.peoplesearch;
 
 import password.pwm.PwmApplication;
+import password.pwm.bean.UserIdentity;
 import password.pwm.error.PwmException;
+import password.pwm.error.PwmUnrecoverableException;
 import password.pwm.health.HealthRecord;
 import password.pwm.svc.PwmService;
+import password.pwm.svc.cache.CacheInvalidation;
 import password.pwm.util.PwmScheduler;
+import password.pwm.util.logging.PwmLogger;
 
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -34,6 +38,8 @@ import java.util.concurrent.TimeUnit;
 
 public class PeopleSearchService implements PwmService
 {
+    private static final PwmLogger LOGGER = PwmLogger.forClass( PeopleSearchService.class );
+
     private PwmApplication pwmApplication;
     private ThreadPoolExecutor threadPoolExecutor;
 
@@ -84,4 +90,24 @@ public class PeopleSearchService implements PwmService
     {
         return threadPoolExecutor;
     }
+
+    /**
+     * Invalidate the cached details and org chart of the user for every searching user.  Search results and the org
+     * charts of other users that include the user are not invalidated and remain until the people search cache
+     * lifetime expires.
+     */
+    public void invalidateCachedData( final UserIdentity userIdentity )
+    {
+        try
+        {
+            for ( final String valueID : PeopleSearchDataReader.makeUserCacheValueIDs( pwmApplication, userIdentity ) )
+            {
+                pwmApplication.getCacheService().invalidate( CacheInvalidation.forClassAndValue( PeopleSearchDataReader.class, valueID ) );
+            }
+        }
+        catch ( PwmUnrecoverableException e )
+        {
+            LOGGER.error( "error invalidating cached people search data for " + userIdentity.toDisplayString() + ": " + e.getMessage() );
+        }
+    }
 }
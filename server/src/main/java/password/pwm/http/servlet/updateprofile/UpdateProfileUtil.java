@@ -366,6 +366,7 @@ public class UpdateProfileUtil
         LOGGER.info( () -> "updating profile for " + userInfo.getUserIdentity() );
 
         LdapOperationsHelper.writeFormValuesToLdap( theUser, formMap, macroMachine, false );
+        LdapOperationsHelper.invalidateCachedUserData( pwmApplication, userInfo.getUserIdentity() );
 
         postUpdateActionsAndEmail( pwmApplication, sessionLabel, locale, userInfo.getUserIdentity(), updateProfileProfile );
 
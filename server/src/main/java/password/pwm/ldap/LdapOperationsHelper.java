@@ -52,6 +52,7 @@ import password.pwm.error.PwmUnrecoverableException;
 import password.pwm.http.bean.ImmutableByteArray;
 import password.pwm.ldap.search.SearchConfiguration;
 import password.pwm.ldap.search.UserSearchEngine;
+import password.pwm.svc.cache.CacheInvalidation;
 import password.pwm.svc.cache.CacheKey;
 import password.pwm.svc.cache.CachePolicy;
 import password.pwm.svc.stats.EpsStatistic;
@@ -209,6 +210,16 @@ public class LdapOperationsHelper
 
     private static final String NULL_CACHE_GUID = "NULL_CACHE_GUID";
 
+    /**
+     * Invalidate cached data that may contain a user's ldap values after the user has been modified or deleted.  The
+     * invalidation is applied on this node and published to the other cluster nodes.
+     */
+    public static void invalidateCachedUserData( final PwmApplication pwmApplication, final UserIdentity userIdentity )
+    {
+        pwmApplication.getCacheService().invalidate( CacheInvalidation.forUser( userIdentity ) );
+        pwmApplication.getPeopleSearchService().invalidateCachedData( userIdentity );
+    }
+
     public static String readLdapGuidValue(
             final PwmApplication pwmApplication,
             final SessionLabel sessionLabel,
@@ -33,5 +33,6 @@ class CacheDebugItem implements Serializable
     private final String userIdentity;
     private final String valueID;
     private final String age;
-    private final int chars;
+    private final CacheValueType valueType;
+    private final long bytes;
 }
@@ -0,0 +1,107 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.svc.cache;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import password.pwm.bean.UserIdentity;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Describes a set of cache entries to be removed, matched by the {@link CacheKey} source class, user identity, value id
+ * or a combination of them.
+ * Invalidations are applied to every cache tier and published to other cluster nodes by the node service.
+ */
+@Value
+@AllArgsConstructor( access = AccessLevel.PRIVATE )
+public class CacheInvalidation implements Serializable
+{
+    // source class name, if null any source class matches
+    private final String srcClass;
+
+    // user identity delimited key, if null any user (including no user) matches
+    private final String userIdentity;
+
+    // cache key value id, if null any value id matches
+    private final String valueID;
+
+    public static CacheInvalidation forUser( final UserIdentity userIdentity )
+    {
+        Objects.requireNonNull( userIdentity );
+        return new CacheInvalidation( null, userIdentity.toDelimitedKey(), null );
+    }
+
+    public static CacheInvalidation forClass( final Class<?> srcClass )
+    {
+        Objects.requireNonNull( srcClass );
+        return new CacheInvalidation( srcClass.getName(), null, null );
+    }
+
+    public static CacheInvalidation forClassAndUser( final Class<?> srcClass, final UserIdentity userIdentity )
+    {
+        Objects.requireNonNull( srcClass );
+        Objects.requireNonNull( userIdentity );
+        return new CacheInvalidation( srcClass.getName(), userIdentity.toDelimitedKey(), null );
+    }
+
+    /**
+     * Matches the entries of the source class with the value id, stored for any user.
+     */
+    public static CacheInvalidation forClassAndValue( final Class<?> srcClass, final String valueID )
+    {
+        Objects.requireNonNull( srcClass );
+        Objects.requireNonNull( valueID );
+        return new CacheInvalidation( srcClass.getName(), null, valueID );
+    }
+
+    /**
+     * Matches every entry of the same source class as this invalidation, used when individual invalidations
+     * can no longer be tracked.  Returns null if this invalidation is not limited to a source class.
+     */
+    public CacheInvalidation widenToClass( )
+    {
+        return srcClass == null ? null : new CacheInvalidation( srcClass, null, null );
+    }
+
+    public boolean matches( final CacheKey cacheKey )
+    {
+        final String keyUserIdentity = cacheKey.getUserIdentity() == null ? null : cacheKey.getUserIdentity().toDelimitedKey();
+        return matches( cacheKey.getSrcClass().getName(), keyUserIdentity, cacheKey.getValueID() );
+    }
+
+    boolean matches( final String srcClassName, final String userIdentityKey, final String keyValueID )
+    {
+        if ( srcClass != null && !srcClass.equals( srcClassName ) )
+        {
+            return false;
+        }
+
+        if ( valueID != null && !valueID.equals( keyValueID ) )
+        {
+            return false;
+        }
+
+        return userIdentity == null || userIdentity.equals( userIdentityKey );
+    }
+}
@@ -24,10 +24,14 @@ import password.pwm.util.java.TimeDuration;
 
 import java.io.Serializable;
 import java.time.Instant;
+import java.util.Objects;
 
 public class CachePolicy implements Serializable
 {
     private Instant expiration;
+    private CacheValueType valueType = CacheValueType.JSON;
+    private int refreshAheadPercent;
+    private boolean memoryOnly;
 
     CachePolicy( )
     {
@@ -38,6 +42,71 @@ public class CachePolicy implements Serializable
         return expiration;
     }
 
+    public CacheValueType getValueType( )
+    {
+        return valueType;
+    }
+
+    /**
+     * Percentage of the policy lifetime after which a read of the value through a {@link CacheLoader} triggers
+     * a background reload.  Zero if refresh-ahead is disabled.
+     */
+    public int getRefreshAheadPercent( )
+    {
+        return refreshAheadPercent;
+    }
+
+    /**
+     * True if the value must never be written to a persistent cache tier.
+     */
+    public boolean isMemoryOnly( )
+    {
+        return memoryOnly;
+    }
+
+    /**
+     * Returns a copy of this policy that reloads the value in the background once the given percentage of its
+     * lifetime has passed, so readers of hot values do not block on the loader when the value expires.  Only
+     * enable for loaders that are safe to run outside of the originating request.
+     */
+    public CachePolicy withRefreshAhead( final int refreshAheadPercent )
+    {
+        if ( refreshAheadPercent < 0 || refreshAheadPercent >= 100 )
+        {
+            throw new IllegalArgumentException( "refreshAheadPercent must be between 0 and 99" );
+        }
+
+        final CachePolicy policy = new CachePolicy();
+        policy.expiration = this.expiration;
+        policy.valueType = this.valueType;
+        policy.refreshAheadPercent = refreshAheadPercent;
+        policy.memoryOnly = this.memoryOnly;
+        return policy;
+    }
+
+    /**
+     * Returns a copy of this policy whose values are only held in memory.  Use for values or keys derived from
+     * secrets such as passwords, which must not be written to disk.
+     */
+    public CachePolicy withMemoryOnly( )
+    {
+        final CachePolicy policy = new CachePolicy();
+        policy.expiration = this.expiration;
+        policy.valueType = this.valueType;
+        policy.refreshAheadPercent = this.refreshAheadPercent;
+        policy.memoryOnly = true;
+        return policy;
+    }
+
+    /**
+     * Used when a value is loaded from a lower cache tier, so the upper tier keeps the value's remaining
+     * lifetime instead of restarting it.
+     */
+    void updateExpiration( final Instant expiration )
+    {
+        this.expiration = Objects.requireNonNull( expiration );
+    }
+
     public static CachePolicy makePolicyWithExpirationMS( final long expirationMs )
     {
         final CachePolicy policy = new CachePolicy();
@@ -50,4 +119,18 @@ public class CachePolicy implements Serializable
         return makePolicyWithExpirationMS( timeDuration.asMillis() );
     }
 
+    public static CachePolicy makePolicyWithExpiration( final TimeDuration timeDuration, final CacheValueType valueType )
+    {
+        final CachePolicy policy = makePolicyWithExpiration( timeDuration );
+        policy.valueType = Objects.requireNonNull( valueType );
+        return policy;
+    }
+
+    static CachePolicy makePolicyWithExpiration( final Instant expiration, final CacheValueType valueType )
+    {
+        final CachePolicy policy = new CachePolicy();
+        policy.expiration = Objects.requireNonNull( expiration );
+        policy.valueType = valueType == null ? CacheValueType.JSON : valueType;
+        return policy;
+    }
 }
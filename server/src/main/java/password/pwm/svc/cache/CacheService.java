@@ -20,6 +20,7 @@
 
 package password.pwm.svc.cache;
 
+import com.github.benmanes.caffeine.cache.Scheduler;
 import password.pwm.AppProperty;
 import password.pwm.PwmApplication;
 import password.pwm.PwmApplicationMode;
@@ -27,28 +28,49 @@ import password.pwm.error.PwmException;
 import password.pwm.error.PwmUnrecoverableException;
 import password.pwm.health.HealthRecord;
 import password.pwm.svc.PwmService;
+import password.pwm.svc.node.NodeService;
+import password.pwm.util.PwmScheduler;
 import password.pwm.util.java.ConditionalTaskExecutor;
+import password.pwm.util.java.JavaHelper;
 import password.pwm.util.java.JsonUtil;
+import password.pwm.util.java.StringUtil;
 import password.pwm.util.java.TimeDuration;
 import password.pwm.util.logging.PwmLogger;
 
 import java.io.Serializable;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class CacheService implements PwmService
 {
     private static final PwmLogger LOGGER = PwmLogger.forClass( CacheService.class );
 
+    private PwmApplication pwmApplication;
+
     private MemoryCacheStore memoryCacheStore;
 
+    private LocalDBCacheStore localDBCacheStore;
+
+    private ScheduledExecutorService expirationExecutor;
+
+    private ExecutorService localDBExecutor;
+
+    private ExecutorService refreshExecutor;
+
     private STATUS status = STATUS.NEW;
 
     private ConditionalTaskExecutor traceDebugOutputter;
@@ -86,8 +108,26 @@ public class CacheService implements PwmService
         }
 
         status = STATUS.OPENING;
+        this.pwmApplication = pwmApplication;
         final int maxMemItems = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_MEMORY_MAX_ITEMS ) );
-        memoryCacheStore = new MemoryCacheStore( maxMemItems );
+        final long maxMemBytes = Long.parseLong( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_MEMORY_MAX_BYTES ) );
+        final int maxClassBytesPercent = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_MEMORY_MAX_CLASS_BYTES_PERCENT ) );
+        final long maxClassBytes = maxMemBytes * maxClassBytesPercent / 100;
+        expirationExecutor = PwmScheduler.makeSingleThreadExecutorService( pwmApplication, CacheService.class );
+        refreshExecutor = makeRefreshExecutor( pwmApplication );
+        memoryCacheStore = new MemoryCacheStore(
+                maxMemItems,
+                maxMemBytes,
+                maxClassBytes,
+                Scheduler.forScheduledExecutorService( expirationExecutor ),
+                refreshExecutor );
+
+        final boolean localDBEnabled = Boolean.parseBoolean( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_LOCALDB_ENABLE ) );
+        if ( localDBEnabled )
+        {
+            initLocalDBCacheStore( pwmApplication );
+        }
+
         this.traceDebugOutputter = new ConditionalTaskExecutor(
                 ( ) -> outputTraceInfo(),
                 new ConditionalTaskExecutor.TimeDurationPredicate( 1, TimeDuration.Unit.MINUTES )
@@ -95,10 +135,65 @@ public class CacheService implements PwmService
         status = STATUS.OPEN;
     }
 
+    private static ExecutorService makeRefreshExecutor( final PwmApplication pwmApplication )
+    {
+        final int threads = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_REFRESH_THREADS ) );
+        final int queueSize = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_REFRESH_QUEUE_SIZE ) );
+        final ThreadFactory threadFactory = PwmScheduler.makePwmThreadFactory(
+                PwmScheduler.makeThreadName( pwmApplication, CacheService.class ) + "-refresh-",
+                true );
+
+        // bounded queue, when full the refresh is skipped and the existing value is served until it expires
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                1,
+                TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>( queueSize ),
+                threadFactory
+        );
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+
+    private void initLocalDBCacheStore( final PwmApplication pwmApplication )
+    {
+        final int maxItems = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_LOCALDB_MAX_ITEMS ) );
+        final TimeDuration flushInterval = TimeDuration.of(
+                Long.parseLong( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_LOCALDB_FLUSH_INTERVAL_MS ) ),
+                TimeDuration.Unit.MILLISECONDS );
+        final TimeDuration cleanupInterval = TimeDuration.of(
+                Long.parseLong( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_LOCALDB_CLEANUP_INTERVAL_SECONDS ) ),
+                TimeDuration.Unit.SECONDS );
+
+        localDBExecutor = PwmScheduler.makeBackgroundExecutor( pwmApplication, LocalDBCacheStore.class );
+        final Set<String> persistedClasses = new HashSet<>( StringUtil.splitAndTrim(
+                pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_LOCALDB_CLASSES ), "," ) );
+        persistedClasses.remove( "" );
+        localDBCacheStore = new LocalDBCacheStore( pwmApplication.getLocalDB(), maxItems, persistedClasses, localDBExecutor );
+        pwmApplication.getPwmScheduler().scheduleFixedRateJob( localDBCacheStore::flush, localDBExecutor, flushInterval, flushInterval );
+        pwmApplication.getPwmScheduler().scheduleFixedRateJob( localDBCacheStore::cleanup, localDBExecutor, TimeDuration.MINUTE, cleanupInterval );
+    }
+
     @Override
     public void close( )
     {
         status = STATUS.CLOSED;
+        if ( memoryCacheStore != null )
+        {
+            memoryCacheStore.close();
+        }
+        JavaHelper.closeAndWaitExecutor( expirationExecutor, TimeDuration.SECOND );
+        expirationExecutor = null;
+        JavaHelper.closeAndWaitExecutor( refreshExecutor, TimeDuration.SECOND );
+        refreshExecutor = null;
+
+        if ( localDBCacheStore != null )
+        {
+            JavaHelper.closeAndWaitExecutor( localDBExecutor, TimeDuration.SECONDS_10 );
+            localDBCacheStore.flush();
+            localDBCacheStore = null;
+        }
     }
 
     @Override
@@ -120,6 +215,17 @@ public class CacheService implements PwmService
         debugInfo.put( "byteCount", String.valueOf( memoryCacheStore.byteCount() ) );
         debugInfo.putAll( JsonUtil.deserializeStringMap( JsonUtil.serialize( memoryCacheStore.getCacheStoreInfo() ) ) );
         debugInfo.putAll( JsonUtil.deserializeStringMap( JsonUtil.serializeMap( memoryCacheStore.storedClassHistogram( "histogram." ) ) ) );
+        debugInfo.putAll( JsonUtil.deserializeStringMap( JsonUtil.serializeMap( memoryCacheStore.storedClassByteHistogram( "bytes." ) ) ) );
+        if ( localDBCacheStore != null )
+        {
+            debugInfo.put( "localdb.itemCount", String.valueOf( localDBCacheStore.itemCount() ) );
+            debugInfo.put( "localdb.byteCount", String.valueOf( localDBCacheStore.byteCount() ) );
+            final Map<String, String> localDBInfo = JsonUtil.deserializeStringMap( JsonUtil.serialize( localDBCacheStore.getCacheStoreInfo() ) );
+            for ( final Map.Entry<String, String> entry : localDBInfo.entrySet() )
+            {
+                debugInfo.put( "localdb." + entry.getKey(), entry.getValue() );
+            }
+        }
         return new ServiceInfoBean( Collections.emptyList(), debugInfo );
     }
 
@@ -129,6 +235,11 @@ public class CacheService implements PwmService
         debugInfo.put( "memory-statistics", memoryCacheStore.getCacheStoreInfo() );
         debugInfo.put( "memory-items", new ArrayList<Serializable>( memoryCacheStore.getCacheDebugItems() ) );
         debugInfo.put( "memory-histogram", new HashMap<>( memoryCacheStore.storedClassHistogram( "" ) ) );
+        debugInfo.put( "memory-byte-histogram", new HashMap<>( memoryCacheStore.storedClassByteHistogram( "" ) ) );
+        if ( localDBCacheStore != null )
+        {
+            debugInfo.put( "localdb-statistics", localDBCacheStore.getCacheStoreInfo() );
+        }
         return Collections.unmodifiableMap( debugInfo );
     }
 
@@ -144,8 +255,11 @@ public class CacheService implements PwmService
         Objects.requireNonNull( cachePolicy );
         Objects.requireNonNull( payload );
 
-        final Instant expirationDate = cachePolicy.getExpiration();
-        memoryCacheStore.store( cacheKey, expirationDate, payload );
+        memoryCacheStore.store( cacheKey, cachePolicy, payload );
+        if ( localDBCacheStore != null )
+        {
+            localDBCacheStore.store( cacheKey, cachePolicy, payload );
+        }
 
         traceDebugOutputter.conditionallyExecuteTask();
     }
@@ -166,6 +280,11 @@ public class CacheService implements PwmService
             payload = memoryCacheStore.read( cacheKey, classOfT );
         }
 
+        if ( payload == null && localDBCacheStore != null )
+        {
+            payload = readFromLocalDB( cacheKey, classOfT );
+        }
+
         traceDebugOutputter.conditionallyExecuteTask();
 
         return payload;
@@ -186,8 +305,113 @@ public class CacheService implements PwmService
 
         traceDebugOutputter.conditionallyExecuteTask();
 
-        final Instant expirationDate = cachePolicy.getExpiration();
-        return memoryCacheStore.readAndStore( cacheKey, expirationDate, classOfT, cacheLoader );
+        if ( localDBCacheStore == null || !localDBCacheStore.accepts( cacheKey, cachePolicy ) )
+        {
+            return memoryCacheStore.readAndStore( cacheKey, cachePolicy, classOfT, cacheLoader );
+        }
+
+        // the memory tier coalesces concurrent loads, so the persistent tier and the real loader are consulted at most once per key
+        final CachePolicy memoryPolicy = CachePolicy.makePolicyWithExpiration( cachePolicy.getExpiration(), cachePolicy.getValueType() )
+                .withRefreshAhead( cachePolicy.getRefreshAheadPercent() );
+        final LocalDBCacheStore persistentStore = localDBCacheStore;
+        final CacheLoader<T> tieredLoader = () ->
+        {
+            final LocalDBCacheStore.StoredValue<T> storedValue = persistentStore.readStoredValue( cacheKey, classOfT );
+            if ( storedValue != null )
+            {
+                memoryPolicy.updateExpiration( storedValue.getCachePolicy().getExpiration() );
+                return storedValue.getValue();
+            }
+
+            return loadAndStorePersistent( persistentStore, cacheKey, cachePolicy, cacheLoader );
+        };
+
+        // a refresh-ahead load skips the persistent tier, since its copy of the value is as old as the one being refreshed
+        final CacheLoader<T> refreshLoader = () -> loadAndStorePersistent( persistentStore, cacheKey, cachePolicy, cacheLoader );
+        return memoryCacheStore.readAndStore( cacheKey, memoryPolicy, classOfT, tieredLoader, refreshLoader );
+    }
+
+    private <T extends Serializable> T loadAndStorePersistent(
+            final LocalDBCacheStore persistentStore,
+            final CacheKey cacheKey,
+            final CachePolicy cachePolicy,
+            final CacheLoader<T> cacheLoader
+    )
+            throws PwmUnrecoverableException
+    {
+        // a value loaded across a matching invalidation may be stale, so it is returned but not stored
+        try ( InvalidationTracker.Load load = memoryCacheStore.beginLoad() )
+        {
+            final T loadedValue = cacheLoader.read();
+            if ( loadedValue != null && !load.isInvalidated( cacheKey ) )
+            {
+                persistentStore.store( cacheKey, cachePolicy, loadedValue );
+            }
+            return loadedValue;
+        }
+    }
+
+    /**
+     * Remove matching entries from all cache tiers on this node, and publish the invalidation to the other cluster nodes
+     * if the node service is enabled.  Use after modifying data that may be cached, such as a user's ldap attributes.
+     */
+    public void invalidate( final CacheInvalidation cacheInvalidation )
+    {
+        Objects.requireNonNull( cacheInvalidation );
+
+        if ( status != STATUS.OPEN )
+        {
+            return;
+        }
+
+        invalidateLocal( cacheInvalidation );
+
+        final NodeService nodeService = pwmApplication.getClusterService();
+        if ( nodeService != null )
+        {
+            nodeService.publishCacheInvalidation( cacheInvalidation );
+        }
+    }
+
+    /**
+     * Remove matching entries from all cache tiers on this node only, used for invalidations received from other nodes.
+     */
+    public void invalidateLocal( final CacheInvalidation cacheInvalidation )
+    {
+        Objects.requireNonNull( cacheInvalidation );
+
+        if ( status != STATUS.OPEN )
+        {
+            return;
+        }
+
+        final int removedItems = memoryCacheStore.invalidate( cacheInvalidation );
+        if ( localDBCacheStore != null )
+        {
+            localDBCacheStore.invalidate( cacheInvalidation );
+        }
+        LOGGER.trace( () -> "applied cache invalidation " + JsonUtil.serialize( cacheInvalidation ) + ", removed " + removedItems + " memory items" );
+    }
+
+    private <T extends Serializable> T readFromLocalDB( final CacheKey cacheKey, final Class<T> classOfT )
+    {
+        try
+        {
+            final LocalDBCacheStore.StoredValue<T> storedValue = localDBCacheStore.readStoredValue( cacheKey, classOfT );
+            if ( storedValue == null )
+            {
+                return null;
+            }
+
+            // promote to the memory tier with the remaining lifetime of the stored value
+            memoryCacheStore.store( cacheKey, storedValue.getCachePolicy(), storedValue.getValue() );
+            return storedValue.getValue();
+        }
+        catch ( PwmUnrecoverableException e )
+        {
+            LOGGER.error( "error reading from persistent cache: " + e.getMessage() );
+        }
+        return null;
     }
 
     private void outputTraceInfo( )
@@ -201,6 +425,11 @@ public class CacheService implements PwmService
             traceOutput.append( ", histogram=" );
             traceOutput.append( JsonUtil.serializeMap( memoryCacheStore.storedClassHistogram( "" ) ) );
         }
+        if ( localDBCacheStore != null )
+        {
+            traceOutput.append( ", localDBCache=" );
+            traceOutput.append( JsonUtil.serialize( localDBCacheStore.getCacheStoreInfo() ) );
+        }
         LOGGER.trace( () -> traceOutput );
     }
 }
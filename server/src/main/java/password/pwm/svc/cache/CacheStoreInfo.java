@@ -29,6 +29,14 @@ public class CacheStoreInfo implements Serializable
     private final AtomicLong readCount = new AtomicLong();
     private final AtomicLong hitCount = new AtomicLong();
     private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong waitingCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong invalidatedCount = new AtomicLong();
+    private final AtomicLong refreshSuccessCount = new AtomicLong();
+    private final AtomicLong refreshFailureCount = new AtomicLong();
+    private final AtomicLong refreshRejectedCount = new AtomicLong();
 
     public void incrementStoreCount( )
     {
@@ -50,6 +58,61 @@ public class CacheStoreInfo implements Serializable
         missCount.incrementAndGet();
     }
 
+    public void incrementCoalescedCount( )
+    {
+        coalescedCount.incrementAndGet();
+    }
+
+    public void incrementWaitingCount( )
+    {
+        waitingCount.incrementAndGet();
+    }
+
+    public void decrementWaitingCount( )
+    {
+        waitingCount.decrementAndGet();
+    }
+
+    public void incrementExpiredCount( )
+    {
+        expiredCount.incrementAndGet();
+    }
+
+    public void incrementEvictedCount( )
+    {
+        evictedCount.incrementAndGet();
+    }
+
+    public void addExpiredCount( final long count )
+    {
+        expiredCount.addAndGet( count );
+    }
+
+    public void addEvictedCount( final long count )
+    {
+        evictedCount.addAndGet( count );
+    }
+
+    public void addInvalidatedCount( final long count )
+    {
+        invalidatedCount.addAndGet( count );
+    }
+
+    public void incrementRefreshSuccessCount( )
+    {
+        refreshSuccessCount.incrementAndGet();
+    }
+
+    public void incrementRefreshFailureCount( )
+    {
+        refreshFailureCount.incrementAndGet();
+    }
+
+    public void incrementRefreshRejectedCount( )
+    {
+        refreshRejectedCount.incrementAndGet();
+    }
+
     public long getStoreCount( )
     {
         return storeCount.get();
@@ -69,4 +132,44 @@ public class CacheStoreInfo implements Serializable
     {
         return missCount.get();
     }
+
+    public long getCoalescedCount( )
+    {
+        return coalescedCount.get();
+    }
+
+    public long getWaitingCount( )
+    {
+        return waitingCount.get();
+    }
+
+    public long getExpiredCount( )
+    {
+        return expiredCount.get();
+    }
+
+    public long getEvictedCount( )
+    {
+        return evictedCount.get();
+    }
+
+    public long getInvalidatedCount( )
+    {
+        return invalidatedCount.get();
+    }
+
+    public long getRefreshSuccessCount( )
+    {
+        return refreshSuccessCount.get();
+    }
+
+    public long getRefreshFailureCount( )
+    {
+        return refreshFailureCount.get();
+    }
+
+    public long getRefreshRejectedCount( )
+    {
+        return refreshRejectedCount.get();
+    }
 }
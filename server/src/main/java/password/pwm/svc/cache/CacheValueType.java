@@ -20,6 +20,20 @@
 
 package password.pwm.svc.cache;
 
+/**
+ * Controls how a cached payload is retained in memory and returned to readers.
+ */
 public enum CacheValueType
 {
+    /**
+     * Payload is stored as json and a fresh copy is deserialized for each read, so callers may
+     * safely modify the returned value.
+     */
+    JSON,
+
+    /**
+     * Payload is stored and returned by reference without any copying.  Only safe for values that
+     * are never modified after being stored.
+     */
+    IMMUTABLE,
 }
@@ -0,0 +1,126 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.svc.cache;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Records the invalidations issued while cache loads are in flight, so a completed load can tell whether an
+ * invalidation issued after it started matches its key.  Only such a load skips storing its value, loads of
+ * unrelated keys are unaffected.  Invalidations are only retained while a load that started before them is in flight.
+ */
+class InvalidationTracker
+{
+    private final Object lock = new Object();
+
+    // guarded by lock
+    private long sequence;
+
+    // guarded by lock, invalidations keyed by their sequence number
+    private final NavigableMap<Long, CacheInvalidation> invalidations = new TreeMap<>();
+
+    // guarded by lock, number of in-flight loads keyed by the sequence number at their start
+    private final NavigableMap<Long, Integer> activeLoads = new TreeMap<>();
+
+    void record( final CacheInvalidation cacheInvalidation )
+    {
+        synchronized ( lock )
+        {
+            sequence++;
+            if ( !activeLoads.isEmpty() )
+            {
+                invalidations.put( sequence, cacheInvalidation );
+            }
+        }
+    }
+
+    /**
+     * Begin tracking a load, the returned load must be closed when the load completes.
+     */
+    Load beginLoad( )
+    {
+        synchronized ( lock )
+        {
+            activeLoads.merge( sequence, 1, Integer::sum );
+            return new Load( sequence );
+        }
+    }
+
+    int retainedCount( )
+    {
+        synchronized ( lock )
+        {
+            return invalidations.size();
+        }
+    }
+
+    class Load implements AutoCloseable
+    {
+        private final long startSequence;
+        private boolean closed;
+
+        private Load( final long startSequence )
+        {
+            this.startSequence = startSequence;
+        }
+
+        /**
+         * Test if an invalidation issued since the load started matches the key, in which case the loaded value
+         * may predate the invalidation and should not be stored.
+         */
+        boolean isInvalidated( final CacheKey cacheKey )
+        {
+            synchronized ( lock )
+            {
+                for ( final CacheInvalidation cacheInvalidation : invalidations.tailMap( startSequence, false ).values() )
+                {
+                    if ( cacheInvalidation.matches( cacheKey ) )
+                    {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+
+        @Override
+        public void close( )
+        {
+            synchronized ( lock )
+            {
+                if ( closed )
+                {
+                    return;
+                }
+                closed = true;
+
+                activeLoads.computeIfPresent( startSequence, ( key, count ) -> count > 1 ? count - 1 : null );
+
+                // invalidations at or before the start of the oldest in-flight load can no longer affect any load
+                final Map.Entry<Long, Integer> oldestLoad = activeLoads.firstEntry();
+                final long retainAfter = oldestLoad == null ? sequence : oldestLoad.getKey();
+                invalidations.headMap( retainAfter, true ).clear();
+            }
+        }
+    }
+}
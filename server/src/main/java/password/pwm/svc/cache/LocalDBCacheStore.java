@@ -0,0 +1,663 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.svc.cache;
+
+import lombok.Value;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.java.JsonUtil;
+import password.pwm.util.java.TimeDuration;
+import password.pwm.util.localdb.LocalDB;
+import password.pwm.util.localdb.LocalDBBatch;
+import password.pwm.util.localdb.LocalDBException;
+import password.pwm.util.logging.PwmLogger;
+import password.pwm.util.secure.PwmHashAlgorithm;
+import password.pwm.util.secure.SecureEngine;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent second tier cache store backed by {@link LocalDB.DB#CACHE}.  Values survive an application restart so the
+ * memory tier can be re-populated without going back to the original data source.
+ *
+ * <p>Writes are buffered and written to the LocalDB in a single batch by a background flush (write-behind), reads consult the
+ * pending buffer before the LocalDB.  Records are written with their cache expiration, so expired records are
+ * hidden and purged by the LocalDB itself; the periodic {@link #cleanup()} only needs to enforce the maximum item count.</p>
+ *
+ * <p>Only keys whose {@link CacheKey#getSrcClass()} is in the configured allowlist are stored, and values stored with a
+ * {@link CachePolicy#isMemoryOnly()} policy are never stored.</p>
+ */
+class LocalDBCacheStore implements CacheStore
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( LocalDBCacheStore.class );
+
+    private static final LocalDB.DB CACHE_DB = LocalDB.DB.CACHE;
+
+    // number of pending writes that triggers an immediate flush instead of waiting for the next flush interval
+    private static final int FLUSH_THRESHOLD = 1000;
+
+    // record keys are the hashed source class, user identity and value id segments joined by this separator, so that
+    // invalidations can select records by key prefix and key segments without decoding them
+    private static final String KEY_SEPARATOR = ".";
+
+    // hex characters of the SHA256 hash kept for each key segment
+    private static final int KEY_SEGMENT_LENGTH = 20;
+
+    // key segment of an absent value, such as the user identity of a key without a user
+    private static final String EMPTY_KEY_SEGMENT = "-";
+
+    private final LocalDB localDB;
+    private final int maxItems;
+    private final Set<String> persistedClasses;
+    private final ExecutorService flushExecutor;
+    private final CacheStoreInfo cacheStoreInfo = new CacheStoreInfo();
+
+    private final Map<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    private final Set<String> pendingRemovals = ConcurrentHashMap.newKeySet();
+    private final Lock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final AtomicBoolean purgeQueued = new AtomicBoolean();
+
+    // totals of all flushed records, used to estimate the stored byte count without reading every record
+    private final AtomicLong flushedRecordCount = new AtomicLong();
+    private final AtomicLong flushedRecordBytes = new AtomicLong();
+
+    // invalidations not yet purged from the LocalDB, records stored before the marker are ignored on read
+    private final List<InvalidationMarker> invalidationMarkers = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param persistedClasses names of the {@link CacheKey#getSrcClass()} classes whose values may be stored
+     */
+    LocalDBCacheStore( final LocalDB localDB, final int maxItems, final Set<String> persistedClasses, final ExecutorService flushExecutor )
+    {
+        this.localDB = Objects.requireNonNull( localDB );
+        this.maxItems = maxItems;
+        this.persistedClasses = Collections.unmodifiableSet( new HashSet<>( persistedClasses ) );
+        this.flushExecutor = flushExecutor;
+    }
+
+    /**
+     * True if values for the key and policy may be held by this store.
+     */
+    boolean accepts( final CacheKey cacheKey, final CachePolicy cachePolicy )
+    {
+        return acceptsClass( cacheKey ) && !cachePolicy.isMemoryOnly();
+    }
+
+    private boolean acceptsClass( final CacheKey cacheKey )
+    {
+        return cacheKey.getSrcClass() != null && persistedClasses.contains( cacheKey.getSrcClass().getName() );
+    }
+
+    @Override
+    public void store( final CacheKey cacheKey, final CachePolicy cachePolicy, final Serializable data )
+            throws PwmUnrecoverableException
+    {
+        if ( !accepts( cacheKey, cachePolicy ) )
+        {
+            return;
+        }
+
+        cacheStoreInfo.incrementStoreCount();
+
+        final StoredRecord storedRecord = new StoredRecord(
+                cacheKey.getSrcClass().getName(),
+                cacheKey.getUserIdentity() == null ? null : cacheKey.getUserIdentity().toDelimitedKey(),
+                cacheKey.getValueID(),
+                cachePolicy.getExpiration(),
+                cachePolicy.getValueType(),
+                JsonUtil.serialize( data ),
+                Instant.now()
+        );
+
+        final String jsonRecord = JsonUtil.serialize( storedRecord );
+        if ( jsonRecord.length() > LocalDB.MAX_VALUE_LENGTH )
+        {
+            LOGGER.trace( () -> "skipping persistent cache store of " + cacheKey + ", value length " + jsonRecord.length() + " exceeds LocalDB maximum" );
+            return;
+        }
+
+        final String dbKey = makeDbKey( cacheKey );
+        pendingRemovals.remove( dbKey );
+        pendingWrites.put( dbKey, new PendingWrite( jsonRecord, cachePolicy.getExpiration() ) );
+
+        if ( pendingWrites.size() >= FLUSH_THRESHOLD )
+        {
+            queueFlush();
+        }
+    }
+
+    @Override
+    public <T extends Serializable> T readAndStore( final CacheKey cacheKey, final CachePolicy cachePolicy, final Class<T> classOfT, final CacheLoader<T> cacheLoader )
+            throws PwmUnrecoverableException
+    {
+        final T cachedValue = read( cacheKey, classOfT );
+        if ( cachedValue != null )
+        {
+            return cachedValue;
+        }
+
+        final T data = cacheLoader.read();
+        store( cacheKey, cachePolicy, data );
+        return data;
+    }
+
+    @Override
+    public <T extends Serializable> T read( final CacheKey cacheKey, final Class<T> classOfT )
+            throws PwmUnrecoverableException
+    {
+        final StoredValue<T> storedValue = readStoredValue( cacheKey, classOfT );
+        return storedValue == null ? null : storedValue.getValue();
+    }
+
+    /**
+     * Read a value along with the policy it was originally stored with, so callers promoting the value to another
+     * tier can preserve its remaining lifetime.
+     */
+    <T extends Serializable> StoredValue<T> readStoredValue( final CacheKey cacheKey, final Class<T> classOfT )
+            throws PwmUnrecoverableException
+    {
+        if ( !acceptsClass( cacheKey ) )
+        {
+            return null;
+        }
+
+        cacheStoreInfo.incrementReadCount();
+
+        final String dbKey = makeDbKey( cacheKey );
+        final StoredRecord storedRecord = readRecord( dbKey );
+        if ( storedRecord != null && matchesKey( storedRecord, cacheKey ) )
+        {
+            if ( isInvalidated( storedRecord, invalidationMarkers ) )
+            {
+                remove( dbKey );
+            }
+            else if ( storedRecord.getExpiration().isAfter( Instant.now() ) )
+            {
+                final T value = JsonUtil.deserialize( storedRecord.getPayload(), classOfT );
+                if ( value != null )
+                {
+                    cacheStoreInfo.incrementHitCount();
+                    final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( storedRecord.getExpiration(), storedRecord.getValueType() );
+                    return new StoredValue<>( value, cachePolicy );
+                }
+            }
+            else
+            {
+                cacheStoreInfo.incrementExpiredCount();
+                remove( dbKey );
+            }
+        }
+
+        cacheStoreInfo.incrementMissCount();
+        return null;
+    }
+
+    private StoredRecord readRecord( final String dbKey )
+    {
+        if ( pendingRemovals.contains( dbKey ) )
+        {
+            return null;
+        }
+
+        try
+        {
+            final PendingWrite pendingWrite = pendingWrites.get( dbKey );
+            final String jsonRecord = pendingWrite != null ? pendingWrite.getJsonRecord() : localDB.get( CACHE_DB, dbKey );
+            return jsonRecord == null ? null : JsonUtil.deserialize( jsonRecord, StoredRecord.class );
+        }
+        catch ( LocalDBException e )
+        {
+            LOGGER.error( "error reading persistent cache record: " + e.getMessage() );
+        }
+        catch ( Exception e )
+        {
+            LOGGER.debug( () -> "discarding unreadable persistent cache record: " + e.getMessage() );
+            remove( dbKey );
+        }
+        return null;
+    }
+
+    private void remove( final String dbKey )
+    {
+        pendingWrites.remove( dbKey );
+        pendingRemovals.add( dbKey );
+    }
+
+    private void queueFlush( )
+    {
+        if ( flushExecutor != null && flushQueued.compareAndSet( false, true ) )
+        {
+            try
+            {
+                flushExecutor.submit( this::flush );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                flushQueued.set( false );
+            }
+        }
+    }
+
+    /**
+     * Write all pending writes and removals to the LocalDB in a single batch.
+     */
+    void flush( )
+    {
+        flushQueued.set( false );
+        if ( pendingWrites.isEmpty() && pendingRemovals.isEmpty() )
+        {
+            return;
+        }
+
+        flushLock.lock();
+        try
+        {
+            final Map<String, PendingWrite> writeBatch = new HashMap<>( pendingWrites );
+            final Set<String> removeBatch = new HashSet<>( pendingRemovals );
+
+            final LocalDBBatch localDBBatch = new LocalDBBatch();
+            for ( final Map.Entry<String, PendingWrite> entry : writeBatch.entrySet() )
+            {
+                localDBBatch.put( CACHE_DB, entry.getKey(), entry.getValue().getJsonRecord(), entry.getValue().getExpiration() );
+            }
+            localDB.executeBatch( localDBBatch.removeAll( CACHE_DB, removeBatch ) );
+
+            for ( final Map.Entry<String, PendingWrite> entry : writeBatch.entrySet() )
+            {
+                flushedRecordCount.incrementAndGet();
+                flushedRecordBytes.addAndGet( entry.getKey().length() + entry.getValue().getJsonRecord().length() );
+
+                // only clear the pending entry if it has not been replaced since the batch was created
+                pendingWrites.remove( entry.getKey(), entry.getValue() );
+            }
+            pendingRemovals.removeAll( removeBatch );
+        }
+        catch ( LocalDBException e )
+        {
+            LOGGER.error( "error writing pending records to persistent cache: " + e.getMessage() );
+        }
+        finally
+        {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Mark all records matching the invalidation as invalid, and queue their removal from the LocalDB.  Until the
+     * removal completes, matching records stored before the invalidation are ignored by reads.  Only one purge is
+     * queued at a time, invalidations issued before it runs are purged together.
+     */
+    void invalidate( final CacheInvalidation cacheInvalidation )
+    {
+        invalidationMarkers.add( new InvalidationMarker( cacheInvalidation, Instant.now() ) );
+
+        if ( flushExecutor != null && purgeQueued.compareAndSet( false, true ) )
+        {
+            try
+            {
+                flushExecutor.submit( this::purgeInvalidated );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                purgeQueued.set( false );
+                LOGGER.debug( () -> "unable to queue persistent cache invalidation, will be purged during next cleanup" );
+            }
+        }
+    }
+
+    /**
+     * Remove records matching any outstanding invalidation from the LocalDB in a single pass.  Candidate records are
+     * selected by their key segments, so only records that can match an invalidation are decoded.
+     */
+    void purgeInvalidated( )
+    {
+        purgeQueued.set( false );
+        if ( invalidationMarkers.isEmpty() )
+        {
+            return;
+        }
+
+        flush();
+
+        final Instant startTime = Instant.now();
+        final List<InvalidationMarker> markers = new ArrayList<>( invalidationMarkers );
+        final List<String> invalidatedKeys = new ArrayList<>();
+
+        flushLock.lock();
+        try
+        {
+            final List<KeyPattern> keyPatterns = new ArrayList<>();
+            for ( final InvalidationMarker marker : markers )
+            {
+                keyPatterns.add( KeyPattern.forInvalidation( marker.getCacheInvalidation() ) );
+            }
+
+            for ( final String dbKey : findCandidateKeys( keyPatterns ) )
+            {
+                final StoredRecord storedRecord = readRecord( dbKey );
+                if ( storedRecord != null && isInvalidated( storedRecord, markers ) )
+                {
+                    invalidatedKeys.add( dbKey );
+                }
+            }
+
+            if ( !invalidatedKeys.isEmpty() )
+            {
+                localDB.removeAll( CACHE_DB, invalidatedKeys );
+                cacheStoreInfo.addInvalidatedCount( invalidatedKeys.size() );
+            }
+
+            invalidationMarkers.removeAll( markers );
+
+            LOGGER.trace( () -> "purged " + invalidatedKeys.size() + " invalidated persistent cache records for "
+                    + markers.size() + " invalidations (" + TimeDuration.compactFromCurrent( startTime ) + ")" );
+        }
+        catch ( LocalDBException | PwmUnrecoverableException e )
+        {
+            LOGGER.error( "error purging invalidated persistent cache records: " + e.getMessage() );
+        }
+        finally
+        {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Keys of the records that may match one of the patterns.  Patterns limited to a source class are resolved with a
+     * prefix scan of each distinct class or class and user prefix, if any pattern is not limited to a class all keys are
+     * scanned once instead.
+     */
+    private Set<String> findCandidateKeys( final List<KeyPattern> keyPatterns )
+            throws LocalDBException
+    {
+        final Set<String> candidateKeys = new HashSet<>();
+        final TreeSet<String> prefixes = new TreeSet<>();
+        for ( final KeyPattern keyPattern : keyPatterns )
+        {
+            final String prefix = keyPattern.prefix();
+            if ( prefix == null )
+            {
+                scanKeys( localDB.iterator( CACHE_DB ), keyPatterns, candidateKeys );
+                return candidateKeys;
+            }
+            prefixes.add( prefix );
+        }
+
+        String coveringPrefix = null;
+        for ( final String prefix : prefixes )
+        {
+            // sorted order places a class prefix directly before the class and user prefixes it already covers
+            if ( coveringPrefix == null || !prefix.startsWith( coveringPrefix ) )
+            {
+                coveringPrefix = prefix;
+                scanKeys( localDB.prefixIterator( CACHE_DB, prefix ), keyPatterns, candidateKeys );
+            }
+        }
+        return candidateKeys;
+    }
+
+    private static void scanKeys( final LocalDB.LocalDBIterator<String> iterator, final List<KeyPattern> keyPatterns, final Set<String> candidateKeys )
+    {
+        try ( LocalDB.LocalDBIterator<String> keyIterator = iterator )
+        {
+            while ( keyIterator.hasNext() )
+            {
+                final String dbKey = keyIterator.next();
+                for ( final KeyPattern keyPattern : keyPatterns )
+                {
+                    if ( keyPattern.matches( dbKey ) )
+                    {
+                        candidateKeys.add( dbKey );
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove random records until the store no longer exceeds the configured maximum item count.  Keys are grouped by
+     * source class, so the keys are shuffled rather than evicted in iteration order.  Expired records are purged by the LocalDB and are not read here.
+     */
+    void cleanup( )
+    {
+        purgeInvalidated();
+        flush();
+
+        final Instant startTime = Instant.now();
+
+        flushLock.lock();
+        try
+        {
+            if ( localDB.size( CACHE_DB ) <= maxItems )
+            {
+                return;
+            }
+
+            final List<String> liveKeys = new ArrayList<>();
+            try ( LocalDB.LocalDBIterator<String> iterator = localDB.iterator( CACHE_DB ) )
+            {
+                while ( iterator.hasNext() )
+                {
+                    liveKeys.add( iterator.next() );
+                }
+            }
+
+            Collections.shuffle( liveKeys );
+            final List<String> evictedKeys = liveKeys.size() > maxItems
+                    ? liveKeys.subList( 0, liveKeys.size() - maxItems )
+                    : Collections.emptyList();
+
+            localDB.removeAll( CACHE_DB, evictedKeys );
+            cacheStoreInfo.addEvictedCount( evictedKeys.size() );
+
+            LOGGER.debug( () -> "completed persistent cache cleanup, removed " + evictedKeys.size() + " excess records ("
+                    + TimeDuration.compactFromCurrent( startTime ) + ")" );
+        }
+        catch ( LocalDBException e )
+        {
+            LOGGER.error( "error during persistent cache cleanup: " + e.getMessage() );
+        }
+        finally
+        {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public CacheStoreInfo getCacheStoreInfo( )
+    {
+        return cacheStoreInfo;
+    }
+
+    @Override
+    public int itemCount( )
+    {
+        try
+        {
+            return ( int ) localDB.size( CACHE_DB ) + pendingWrites.size();
+        }
+        catch ( LocalDBException e )
+        {
+            LOGGER.error( "error reading persistent cache size: " + e.getMessage() );
+        }
+        return 0;
+    }
+
+    @Override
+    public List<CacheDebugItem> getCacheDebugItems( )
+    {
+        // persistent records are not enumerated for debug output, the store may be much larger than the memory tier
+        return Collections.emptyList();
+    }
+
+    /**
+     * Approximate size of stored records, estimated from the current item count and the average size of flushed records.
+     */
+    @Override
+    public long byteCount( )
+    {
+        final long recordCount = flushedRecordCount.get();
+        return recordCount == 0
+                ? 0
+                : itemCount() * ( flushedRecordBytes.get() / recordCount );
+    }
+
+    private static boolean matchesKey( final StoredRecord storedRecord, final CacheKey cacheKey )
+    {
+        final String userIdentity = cacheKey.getUserIdentity() == null ? null : cacheKey.getUserIdentity().toDelimitedKey();
+        return Objects.equals( storedRecord.getSrcClass(), cacheKey.getSrcClass().getName() )
+                && Objects.equals( storedRecord.getUserIdentity(), userIdentity )
+                && Objects.equals( storedRecord.getValueID(), cacheKey.getValueID() );
+    }
+
+    private static boolean isInvalidated( final StoredRecord storedRecord, final List<InvalidationMarker> markers )
+    {
+        for ( final InvalidationMarker marker : markers )
+        {
+            if ( marker.getCacheInvalidation().matches( storedRecord.getSrcClass(), storedRecord.getUserIdentity(), storedRecord.getValueID() )
+                    && ( storedRecord.getStored() == null || !storedRecord.getStored().isAfter( marker.getTimestamp() ) ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String makeDbKey( final CacheKey cacheKey )
+            throws PwmUnrecoverableException
+    {
+        final String userIdentity = cacheKey.getUserIdentity() == null ? null : cacheKey.getUserIdentity().toDelimitedKey();
+        return hashSegment( cacheKey.getSrcClass().getName() )
+                + KEY_SEPARATOR + hashSegment( userIdentity )
+                + KEY_SEPARATOR + hashSegment( cacheKey.getValueID() );
+    }
+
+    private static String hashSegment( final String value )
+            throws PwmUnrecoverableException
+    {
+        if ( value == null || value.isEmpty() )
+        {
+            return EMPTY_KEY_SEGMENT;
+        }
+        return SecureEngine.hash( value, PwmHashAlgorithm.SHA256 ).substring( 0, KEY_SEGMENT_LENGTH );
+    }
+
+    /**
+     * The key segments matched by an invalidation, a null segment matches any value.  Segments are hashes, so a
+     * matching key is only a candidate and its record is checked against the invalidation before it is removed.
+     */
+    @Value
+    private static class KeyPattern
+    {
+        private final String classSegment;
+        private final String userSegment;
+        private final String valueSegment;
+
+        static KeyPattern forInvalidation( final CacheInvalidation cacheInvalidation )
+                throws PwmUnrecoverableException
+        {
+            return new KeyPattern(
+                    cacheInvalidation.getSrcClass() == null ? null : hashSegment( cacheInvalidation.getSrcClass() ),
+                    cacheInvalidation.getUserIdentity() == null ? null : hashSegment( cacheInvalidation.getUserIdentity() ),
+                    cacheInvalidation.getValueID() == null ? null : hashSegment( cacheInvalidation.getValueID() ) );
+        }
+
+        /**
+         * Leading key segments shared by all matching keys, or null if the pattern is not limited to a source class.
+         */
+        String prefix( )
+        {
+            if ( classSegment == null )
+            {
+                return null;
+            }
+            return userSegment == null
+                    ? classSegment + KEY_SEPARATOR
+                    : classSegment + KEY_SEPARATOR + userSegment + KEY_SEPARATOR;
+        }
+
+        boolean matches( final String dbKey )
+        {
+            final String[] segments = dbKey.split( Pattern.quote( KEY_SEPARATOR ) );
+            if ( segments.length != 3 )
+            {
+                return false;
+            }
+
+            return ( classSegment == null || classSegment.equals( segments[ 0 ] ) )
+                    && ( userSegment == null || userSegment.equals( segments[ 1 ] ) )
+                    && ( valueSegment == null || valueSegment.equals( segments[ 2 ] ) );
+        }
+    }
+
+    @Value
+    static class StoredValue<T extends Serializable>
+    {
+        private final T value;
+        private final CachePolicy cachePolicy;
+    }
+
+    @Value
+    private static class StoredRecord implements Serializable
+    {
+        private final String srcClass;
+        private final String userIdentity;
+        private final String valueID;
+        private final Instant expiration;
+        private final CacheValueType valueType;
+        private final String payload;
+        private final Instant stored;
+    }
+
+    @Value
+    private static class PendingWrite
+    {
+        private final String jsonRecord;
+        private final Instant expiration;
+    }
+
+    @Value
+    private static class InvalidationMarker
+    {
+        private final CacheInvalidation cacheInvalidation;
+        private final Instant timestamp;
+    }
+}
@@ -22,8 +22,13 @@ package password.pwm.svc.cache;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
 import lombok.Value;
-import password.pwm.bean.UserIdentity;
+import password.pwm.error.ErrorInformation;
+import password.pwm.error.PwmError;
+import password.pwm.error.PwmException;
 import password.pwm.error.PwmUnrecoverableException;
 import password.pwm.util.java.JsonUtil;
 import password.pwm.util.logging.PwmLogger;
@@ -32,10 +37,21 @@ import java.io.Serializable;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 class MemoryCacheStore implements CacheStore
 {
@@ -43,25 +59,370 @@ class MemoryCacheStore implements CacheStore
     private final Cache<CacheKey, CacheValueWrapper> memoryStore;
     private final CacheStoreInfo cacheStoreInfo = new CacheStoreInfo();
 
+    // approximate heap overhead of a java.lang.String (object header, fields and backing char array header)
+    private static final long STRING_OVERHEAD_BYTES = 40;
+
+    // approximate heap overhead of the cache key and value wrapper objects and the cache's own entry
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    // nominal heap size counted for a value held by reference, its actual object graph is not measured
+    private static final long IMMUTABLE_VALUE_BYTES = 64;
+
+    // payload types that are known to be immutable and are always held by reference
+    private static final Set<Class<?>> IMMUTABLE_PAYLOAD_CLASSES = Collections.unmodifiableSet( new HashSet<>( Arrays.asList(
+            Boolean.class,
+            Integer.class,
+            Long.class,
+            Instant.class
+    ) ) );
+
+    // when a class exceeds its byte budget, its entries are evicted down to this fraction of the budget so that
+    // each subsequent store does not immediately trigger another eviction pass
+    private static final float CLASS_BUDGET_EVICTION_TARGET = 0.9f;
+
+    // loads currently in flight, concurrent readers of the same key wait on the pending load instead of calling the loader again
+    private final Map<CacheKey, CompletableFuture<CacheValueWrapper>> pendingLoads = new ConcurrentHashMap<>();
+
+    // invalidations issued during in-flight loads, a load does not store its possibly stale value if one matches its key
+    private final InvalidationTracker invalidationTracker = new InvalidationTracker();
+
+    // keys of the stored entries by source class name and by user identity, so that an invalidation limited to a class
+    // or user only examines the entries it can match instead of every entry in the cache
+    private final Map<String, Map<CacheKey, Boolean>> keysByClass = new ConcurrentHashMap<>();
+    private final Map<String, Map<CacheKey, Boolean>> keysByUser = new ConcurrentHashMap<>();
+
+    // maximum number of the coldest entries examined when a class exceeds its byte budget, bounds the cost of a store
+    private static final int CLASS_BUDGET_SCAN_LIMIT = 1000;
+
+    // approximate retained bytes per CacheKey srcClass
+    private final Map<Class<?>, AtomicLong> classBytes = new ConcurrentHashMap<>();
+
+    private final long maxClassBytes;
+
+    // item limit enforced alongside the byte weight limit, zero if only the byte limit applies
+    private final int maxWeightedItems;
+
+    // cleared by close() so that no refresh is submitted to an executor that is being shut down
+    private volatile ExecutorService refreshExecutor;
+
     MemoryCacheStore( final int maxItems )
     {
-        memoryStore = Caffeine.newBuilder()
-                .maximumSize( maxItems )
-                .build();
+        this( maxItems, 0, 0, Scheduler.disabledScheduler(), null );
+    }
+
+    /**
+     * @param maxItems maximum number of entries held before size based eviction, a value of zero disables the item
+     *                 limit if maxBytes is set
+     * @param maxBytes maximum approximate retained bytes of all entries, if greater than zero entries are evicted
+     *                 by weight, and the item limit is enforced separately after each store
+     * @param maxClassBytes maximum approximate retained bytes of entries sharing a {@link CacheKey#getSrcClass()},
+     *                      a value of zero disables the per class limit
+     * @param scheduler used to proactively purge entries as soon as they reach their policy expiration, otherwise
+     *                  expired entries are only purged during other cache activity
+     * @param refreshExecutor runs refresh-ahead loads for policies with {@link CachePolicy#getRefreshAheadPercent()} set,
+     *                        if null refresh-ahead is disabled
+     */
+    MemoryCacheStore(
+            final int maxItems,
+            final long maxBytes,
+            final long maxClassBytes,
+            final Scheduler scheduler,
+            final ExecutorService refreshExecutor
+    )
+    {
+        this.maxClassBytes = maxClassBytes;
+        this.refreshExecutor = refreshExecutor;
+        this.maxWeightedItems = maxBytes > 0 ? Math.max( 0, maxItems ) : 0;
+
+        final Caffeine<CacheKey, CacheValueWrapper> builder = Caffeine.newBuilder()
+                .expireAfter( new CacheValueExpiry() )
+                .scheduler( scheduler )
+                .executor( Runnable::run )
+                .removalListener( this::onRemoval );
+
+        if ( maxBytes > 0 )
+        {
+            builder.maximumWeight( maxBytes );
+            builder.weigher( ( CacheKey cacheKey, CacheValueWrapper valueWrapper ) -> weigh( valueWrapper ) );
+        }
+        else
+        {
+            builder.maximumSize( maxItems );
+        }
+
+        memoryStore = builder.build();
+    }
+
+    private static int weigh( final CacheValueWrapper valueWrapper )
+    {
+        return ( int ) Math.min( Integer.MAX_VALUE, valueWrapper.getRetainedBytes() );
+    }
+
+    private void putValue( final CacheKey cacheKey, final CacheValueWrapper valueWrapper )
+    {
+        final AtomicLong bytesForClass = classBytes.computeIfAbsent( cacheKey.getSrcClass(), k -> new AtomicLong() );
+        bytesForClass.addAndGet( valueWrapper.getRetainedBytes() );
+        memoryStore.put( cacheKey, valueWrapper );
+        indexKey( cacheKey );
+
+        if ( maxClassBytes > 0 && bytesForClass.get() > maxClassBytes )
+        {
+            enforceClassBudget( cacheKey, valueWrapper, bytesForClass );
+        }
+
+        if ( maxWeightedItems > 0 )
+        {
+            enforceItemLimit();
+        }
+    }
+
+    /**
+     * Evict the coldest entries of a single srcClass until the class is back under its byte budget, so one
+     * feature with large values can not push the values of every other feature out of the cache.  Only a bounded
+     * number of the coldest entries are examined, if the class is still over budget after that the newly stored
+     * entry is removed instead.
+     */
+    private void enforceClassBudget( final CacheKey storedKey, final CacheValueWrapper storedValue, final AtomicLong bytesForClass )
+    {
+        final Class<?> srcClass = storedKey.getSrcClass();
+        final long targetBytes = ( long ) ( maxClassBytes * CLASS_BUDGET_EVICTION_TARGET );
+        memoryStore.policy().eviction().ifPresent( eviction ->
+        {
+            for ( final Map.Entry<CacheKey, CacheValueWrapper> entry : eviction.coldest( CLASS_BUDGET_SCAN_LIMIT ).entrySet() )
+            {
+                if ( bytesForClass.get() <= targetBytes )
+                {
+                    return;
+                }
+
+                if ( Objects.equals( srcClass, entry.getKey().getSrcClass() ) )
+                {
+                    if ( memoryStore.asMap().remove( entry.getKey(), entry.getValue() ) )
+                    {
+                        cacheStoreInfo.incrementEvictedCount();
+                    }
+                }
+            }
+        } );
+
+        if ( bytesForClass.get() > maxClassBytes && memoryStore.asMap().remove( storedKey, storedValue ) )
+        {
+            cacheStoreInfo.incrementEvictedCount();
+        }
+    }
+
+    /**
+     * The cache can only bound entries by either weight or count, so when it is bounded by weight the item
+     * limit is enforced here by evicting the coldest excess entries.
+     */
+    private void enforceItemLimit( )
+    {
+        final long excessItems = memoryStore.estimatedSize() - maxWeightedItems;
+        if ( excessItems <= 0 )
+        {
+            return;
+        }
+
+        memoryStore.policy().eviction().ifPresent( eviction ->
+        {
+            final int evictCount = ( int ) Math.min( excessItems, CLASS_BUDGET_SCAN_LIMIT );
+            for ( final Map.Entry<CacheKey, CacheValueWrapper> entry : eviction.coldest( evictCount ).entrySet() )
+            {
+                if ( memoryStore.asMap().remove( entry.getKey(), entry.getValue() ) )
+                {
+                    cacheStoreInfo.incrementEvictedCount();
+                }
+            }
+        } );
+    }
+
+    /**
+     * Store a loaded value unless an invalidation issued during the load matches its key.  An invalidation recorded
+     * between the check and the store has already removed the matching entries, so the key is checked again after
+     * the store and the value removed if it was invalidated in the meantime.
+     */
+    private void putLoadedValue( final InvalidationTracker.Load load, final CacheKey cacheKey, final CacheValueWrapper valueWrapper )
+    {
+        if ( load.isInvalidated( cacheKey ) )
+        {
+            return;
+        }
+
+        putValue( cacheKey, valueWrapper );
+
+        if ( load.isInvalidated( cacheKey ) )
+        {
+            memoryStore.asMap().remove( cacheKey, valueWrapper );
+        }
+    }
+
+    private void indexKey( final CacheKey cacheKey )
+    {
+        addIndexEntry( keysByClass, cacheKey.getSrcClass().getName(), cacheKey );
+        if ( cacheKey.getUserIdentity() != null )
+        {
+            addIndexEntry( keysByUser, cacheKey.getUserIdentity().toDelimitedKey(), cacheKey );
+        }
+    }
+
+    /**
+     * Remove the key from the indexes if it is no longer stored.  The check and removal are atomic with respect to
+     * {@link #indexKey(CacheKey)}, which is always called after the key is stored, so a concurrently stored key
+     * remains indexed.
+     */
+    private void unindexKey( final CacheKey cacheKey )
+    {
+        removeIndexEntry( keysByClass, cacheKey.getSrcClass().getName(), cacheKey );
+        if ( cacheKey.getUserIdentity() != null )
+        {
+            removeIndexEntry( keysByUser, cacheKey.getUserIdentity().toDelimitedKey(), cacheKey );
+        }
+    }
+
+    private static void addIndexEntry( final Map<String, Map<CacheKey, Boolean>> index, final String indexKey, final CacheKey cacheKey )
+    {
+        index.compute( indexKey, ( key, existingKeys ) ->
+        {
+            final Map<CacheKey, Boolean> keys = existingKeys == null ? new ConcurrentHashMap<>() : existingKeys;
+            keys.put( cacheKey, Boolean.TRUE );
+            return keys;
+        } );
+    }
+
+    private void removeIndexEntry( final Map<String, Map<CacheKey, Boolean>> index, final String indexKey, final CacheKey cacheKey )
+    {
+        index.computeIfPresent( indexKey, ( key, keys ) ->
+        {
+            keys.computeIfPresent( cacheKey, ( storedKey, value ) -> memoryStore.asMap().containsKey( storedKey ) ? value : null );
+            return keys.isEmpty() ? null : keys;
+        } );
+    }
+
+    private void onRemoval( final CacheKey cacheKey, final CacheValueWrapper valueWrapper, final RemovalCause removalCause )
+    {
+        if ( cacheKey != null && valueWrapper != null )
+        {
+            final AtomicLong bytesForClass = classBytes.get( cacheKey.getSrcClass() );
+            if ( bytesForClass != null )
+            {
+                bytesForClass.addAndGet( -valueWrapper.getRetainedBytes() );
+            }
+        }
+
+        if ( cacheKey != null && removalCause != RemovalCause.REPLACED )
+        {
+            unindexKey( cacheKey );
+        }
+
+        if ( removalCause == RemovalCause.EXPIRED )
+        {
+            cacheStoreInfo.incrementExpiredCount();
+        }
+        else if ( removalCause == RemovalCause.SIZE )
+        {
+            cacheStoreInfo.incrementEvictedCount();
+        }
+    }
+
+    void cleanUp( )
+    {
+        memoryStore.cleanUp();
+    }
+
+    /**
+     * Detach from the refresh executor and drop all entries, so that neither refresh-ahead loads nor scheduled
+     * expirations are submitted to executors after the owning service shuts them down.
+     */
+    void close( )
+    {
+        refreshExecutor = null;
+        memoryStore.invalidateAll();
+        memoryStore.cleanUp();
+    }
+
+    /**
+     * Remove all entries matching the invalidation.
+     *
+     * @return the number of removed entries
+     */
+    int invalidate( final CacheInvalidation cacheInvalidation )
+    {
+        // recorded before matching entries are removed, see putLoadedValue()
+        invalidationTracker.record( cacheInvalidation );
+
+        final List<CacheKey> matchingKeys = new ArrayList<>();
+        for ( final CacheKey cacheKey : candidateKeys( cacheInvalidation ) )
+        {
+            if ( cacheInvalidation.matches( cacheKey ) )
+            {
+                matchingKeys.add( cacheKey );
+            }
+        }
+
+        memoryStore.invalidateAll( matchingKeys );
+
+        // keys that were indexed but already removed, such as an entry evicted as it was stored, are dropped from the index
+        matchingKeys.forEach( this::unindexKey );
+
+        cacheStoreInfo.addInvalidatedCount( matchingKeys.size() );
+        return matchingKeys.size();
+    }
+
+    private Collection<CacheKey> candidateKeys( final CacheInvalidation cacheInvalidation )
+    {
+        final Map<CacheKey, Boolean> indexedKeys;
+        if ( cacheInvalidation.getSrcClass() != null )
+        {
+            indexedKeys = keysByClass.get( cacheInvalidation.getSrcClass() );
+        }
+        else if ( cacheInvalidation.getUserIdentity() != null )
+        {
+            indexedKeys = keysByUser.get( cacheInvalidation.getUserIdentity() );
+        }
+        else
+        {
+            return memoryStore.asMap().keySet();
+        }
+
+        return indexedKeys == null ? Collections.emptySet() : indexedKeys.keySet();
+    }
+
+    /**
+     * Begin tracking a load whose value is stored outside of this store, the returned load must be closed when the
+     * load completes.
+     */
+    InvalidationTracker.Load beginLoad( )
+    {
+        return invalidationTracker.beginLoad();
     }
 
     @Override
-    public void store( final CacheKey cacheKey, final Instant expirationDate, final Serializable data )
+    public void store( final CacheKey cacheKey, final CachePolicy cachePolicy, final Serializable data )
             throws PwmUnrecoverableException
     {
         cacheStoreInfo.incrementStoreCount();
 
-        final String jsonData = JsonUtil.serialize( data );
-        memoryStore.put( cacheKey, new CacheValueWrapper( cacheKey, expirationDate, jsonData ) );
+        putValue( cacheKey, wrapValue( cacheKey, cachePolicy, data ) );
     }
 
     @Override
-    public <T extends Serializable> T readAndStore( final CacheKey cacheKey, final Instant expirationDate, final Class<T> classOfT, final CacheLoader<T> cacheLoader )
+    public <T extends Serializable> T readAndStore( final CacheKey cacheKey, final CachePolicy cachePolicy, final Class<T> classOfT, final CacheLoader<T> cacheLoader )
+            throws PwmUnrecoverableException
+    {
+        return readAndStore( cacheKey, cachePolicy, classOfT, cacheLoader, cacheLoader );
+    }
+
+    /**
+     * @param cacheLoader used to load the value on a cache miss
+     * @param refreshLoader used to load a fresh value in the background when a hit is past the policy's refresh-ahead point
+     */
+    <T extends Serializable> T readAndStore(
+            final CacheKey cacheKey,
+            final CachePolicy cachePolicy,
+            final Class<T> classOfT,
+            final CacheLoader<T> cacheLoader,
+            final CacheLoader<T> refreshLoader
+    )
             throws PwmUnrecoverableException
     {
         cacheStoreInfo.incrementReadCount();
@@ -70,15 +431,158 @@ class MemoryCacheStore implements CacheStore
             final T extractedValue = extractValue( classOfT, valueWrapper, cacheKey );
             if ( extractedValue != null )
             {
+                checkRefreshAhead( cacheKey, cachePolicy, valueWrapper, refreshLoader );
                 return extractedValue;
             }
         }
 
-        final T data = cacheLoader.read();
-        final String jsonIfiedData = JsonUtil.serialize( data );
-        cacheStoreInfo.incrementMissCount();
-        memoryStore.put( cacheKey, new CacheValueWrapper( cacheKey, expirationDate, jsonIfiedData ) );
-        return data;
+        final CompletableFuture<CacheValueWrapper> newLoad = new CompletableFuture<>();
+        final CompletableFuture<CacheValueWrapper> existingLoad = pendingLoads.putIfAbsent( cacheKey, newLoad );
+        if ( existingLoad != null )
+        {
+            return waitForPendingLoad( cacheKey, classOfT, existingLoad );
+        }
+
+        try ( InvalidationTracker.Load load = invalidationTracker.beginLoad() )
+        {
+            {
+                // another loader may have completed between the initial read and registration of this load
+                final CacheValueWrapper valueWrapper = memoryStore.getIfPresent( cacheKey );
+                final T extractedValue = extractValue( classOfT, valueWrapper, cacheKey );
+                if ( extractedValue != null )
+                {
+                    newLoad.complete( valueWrapper );
+                    return extractedValue;
+                }
+            }
+
+            final T data = cacheLoader.read();
+            cacheStoreInfo.incrementMissCount();
+            if ( data == null )
+            {
+                // a null value is not cached, the next read calls the loader again
+                newLoad.complete( null );
+                return null;
+            }
+
+            final CacheValueWrapper valueWrapper = wrapValue( cacheKey, cachePolicy, data );
+            putLoadedValue( load, cacheKey, valueWrapper );
+            newLoad.complete( valueWrapper );
+            return data;
+        }
+        catch ( Throwable t )
+        {
+            newLoad.completeExceptionally( t );
+            throw t;
+        }
+        finally
+        {
+            pendingLoads.remove( cacheKey, newLoad );
+        }
+    }
+
+    /**
+     * If the entry has passed its refresh-ahead point, reload it in the background.  Readers continue to receive the
+     * current value until the refreshed value replaces it.  The refresh is registered as a pending load, so only one
+     * refresh per key runs at a time and callers that miss during the refresh wait for it instead of loading again.
+     */
+    private <T extends Serializable> void checkRefreshAhead(
+            final CacheKey cacheKey,
+            final CachePolicy cachePolicy,
+            final CacheValueWrapper currentValue,
+            final CacheLoader<T> refreshLoader
+    )
+    {
+        final ExecutorService executor = refreshExecutor;
+        if ( executor == null || currentValue.getRefreshDate() == null || Instant.now().isBefore( currentValue.getRefreshDate() ) )
+        {
+            return;
+        }
+
+        final CompletableFuture<CacheValueWrapper> refreshLoad = new CompletableFuture<>();
+        if ( pendingLoads.putIfAbsent( cacheKey, refreshLoad ) != null )
+        {
+            return;
+        }
+
+        final Runnable refreshTask = () ->
+        {
+            try ( InvalidationTracker.Load load = invalidationTracker.beginLoad() )
+            {
+                final T data = refreshLoader.read();
+                if ( data == null )
+                {
+                    // the current value remains until it expires, a null value is never cached
+                    refreshLoad.complete( null );
+                    cacheStoreInfo.incrementRefreshSuccessCount();
+                    return;
+                }
+
+                final CacheValueWrapper valueWrapper = wrapValue( cacheKey, cachePolicy, data );
+                putLoadedValue( load, cacheKey, valueWrapper );
+                refreshLoad.complete( valueWrapper );
+                cacheStoreInfo.incrementRefreshSuccessCount();
+            }
+            catch ( Throwable t )
+            {
+                refreshLoad.completeExceptionally( t );
+                cacheStoreInfo.incrementRefreshFailureCount();
+                LOGGER.debug( () -> "error during refresh-ahead load of " + cacheKey + ": " + t.getMessage() );
+            }
+            finally
+            {
+                pendingLoads.remove( cacheKey, refreshLoad );
+            }
+        };
+
+        try
+        {
+            executor.execute( refreshTask );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            // refresh queue is full, the current value remains until it is refreshed by a later read or expires
+            pendingLoads.remove( cacheKey, refreshLoad );
+            refreshLoad.complete( currentValue );
+            cacheStoreInfo.incrementRefreshRejectedCount();
+        }
+    }
+
+    private <T extends Serializable> T waitForPendingLoad(
+            final CacheKey cacheKey,
+            final Class<T> classOfT,
+            final CompletableFuture<CacheValueWrapper> pendingLoad
+    )
+            throws PwmUnrecoverableException
+    {
+        cacheStoreInfo.incrementCoalescedCount();
+        cacheStoreInfo.incrementWaitingCount();
+        try
+        {
+            final CacheValueWrapper valueWrapper = pendingLoad.get();
+            return valueWrapper == null ? null : unwrapValue( valueWrapper, classOfT );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            final String errorMsg = "interrupted while waiting for pending cache load of " + cacheKey + ": " + e.getMessage();
+            throw new PwmUnrecoverableException( new ErrorInformation( PwmError.ERROR_INTERNAL, errorMsg ) );
+        }
+        catch ( ExecutionException e )
+        {
+            // the cause was thrown on the loading thread, so a new exception is thrown to give this thread its own stack
+            final Throwable cause = e.getCause();
+            if ( cause instanceof PwmException )
+            {
+                throw new PwmUnrecoverableException( ( ( PwmException ) cause ).getErrorInformation(), cause );
+            }
+            final String errorMsg = "error during pending cache load of " + cacheKey + ": " + cause.getMessage();
+            throw new PwmUnrecoverableException( new ErrorInformation( PwmError.ERROR_INTERNAL, errorMsg ), cause );
+        }
+        finally
+        {
+            cacheStoreInfo.decrementWaitingCount();
+        }
     }
 
     private <T extends Serializable> T extractValue( final Class<T> classOfT, final CacheValueWrapper valueWrapper, final CacheKey cacheKey )
@@ -89,9 +593,12 @@ class MemoryCacheStore implements CacheStore
             {
                 if ( valueWrapper.getExpirationDate().isAfter( Instant.now() ) )
                 {
-                    cacheStoreInfo.incrementHitCount();
-                    final String jsonValue  = valueWrapper.getPayload();
-                    return JsonUtil.deserialize( jsonValue, classOfT );
+                    final T value = unwrapValue( valueWrapper, classOfT );
+                    if ( value != null )
+                    {
+                        cacheStoreInfo.incrementHitCount();
+                        return value;
+                    }
                 }
             }
         }
@@ -99,6 +606,58 @@ class MemoryCacheStore implements CacheStore
         return null;
     }
 
+    private static <T extends Serializable> T unwrapValue( final CacheValueWrapper valueWrapper, final Class<T> classOfT )
+    {
+        final Serializable payload = valueWrapper.getPayload();
+        if ( valueWrapper.getValueType() == CacheValueType.IMMUTABLE )
+        {
+            return classOfT.isInstance( payload ) ? classOfT.cast( payload ) : null;
+        }
+        return JsonUtil.deserialize( ( String ) payload, classOfT );
+    }
+
+    private static CacheValueWrapper wrapValue( final CacheKey cacheKey, final CachePolicy cachePolicy, final Serializable data )
+    {
+        final Instant expirationDate = cachePolicy.getExpiration();
+        final Instant refreshDate = makeRefreshDate( cachePolicy );
+        final long keyBytes = ENTRY_OVERHEAD_BYTES
+                + stringRetainedBytes( cacheKey.getValueID() )
+                + ( cacheKey.getUserIdentity() == null ? 0 : stringRetainedBytes( cacheKey.getUserIdentity().toDelimitedKey() ) );
+
+        if ( data instanceof String )
+        {
+            return new CacheValueWrapper( cacheKey, expirationDate, refreshDate, CacheValueType.IMMUTABLE, data, keyBytes + stringRetainedBytes( ( String ) data ) );
+        }
+
+        // immutable values are held by reference without serializing them, so their object graph is not weighed and only a
+        // nominal payload size is counted
+        if ( cachePolicy.getValueType() == CacheValueType.IMMUTABLE || IMMUTABLE_PAYLOAD_CLASSES.contains( data.getClass() ) )
+        {
+            return new CacheValueWrapper( cacheKey, expirationDate, refreshDate, CacheValueType.IMMUTABLE, data, keyBytes + IMMUTABLE_VALUE_BYTES );
+        }
+
+        final String jsonData = JsonUtil.serialize( data );
+        return new CacheValueWrapper( cacheKey, expirationDate, refreshDate, CacheValueType.JSON, jsonData, keyBytes + stringRetainedBytes( jsonData ) );
+    }
+
+    private static Instant makeRefreshDate( final CachePolicy cachePolicy )
+    {
+        final int refreshAheadPercent = cachePolicy.getRefreshAheadPercent();
+        if ( refreshAheadPercent <= 0 || refreshAheadPercent >= 100 )
+        {
+            return null;
+        }
+
+        final Instant now = Instant.now();
+        final long lifetimeMs = Duration.between( now, cachePolicy.getExpiration() ).toMillis();
+        return now.plusMillis( lifetimeMs * refreshAheadPercent / 100 );
+    }
+
+    private static long stringRetainedBytes( final String value )
+    {
+        return value == null ? 0 : STRING_OVERHEAD_BYTES + ( 2L * value.length() );
+    }
+
     @Override
     public <T extends Serializable> T read( final CacheKey cacheKey, final Class<T> classOfT )
     {
@@ -137,7 +696,6 @@ class MemoryCacheStore implements CacheStore
             final CacheValueWrapper cacheValueWrapper = entry.getValue();
             final Instant storeDate = cacheValueWrapper.getExpirationDate();
             final String age = Duration.between( storeDate, Instant.now() ).toString();
-            final int chars = cacheValueWrapper.getPayload().length();
             final String keyClass = cacheKey.getSrcClass() == null ? "null" : cacheKey.getSrcClass().getName();
             final String keyUserID = cacheKey.getUserIdentity() == null ? "null" : cacheKey.getUserIdentity().toDisplayString();
             final String keyValue = cacheKey.getValueID() == null ? "null" : cacheKey.getValueID();
@@ -147,7 +705,8 @@ class MemoryCacheStore implements CacheStore
                     .userIdentity( keyUserID )
                     .valueID( keyValue )
                     .age( age )
-                    .chars( chars )
+                    .valueType( cacheValueWrapper.getValueType() )
+                    .bytes( cacheValueWrapper.getRetainedBytes() )
                     .build();
 
             items.add( cacheDebugItem );
@@ -155,15 +714,65 @@ class MemoryCacheStore implements CacheStore
         return Collections.unmodifiableList( items );
     }
 
+    /**
+     * Expires each entry at the expiration date of the {@link CachePolicy} it was stored with.
+     */
+    private static class CacheValueExpiry implements Expiry<CacheKey, CacheValueWrapper>
+    {
+        @Override
+        public long expireAfterCreate( final CacheKey cacheKey, final CacheValueWrapper valueWrapper, final long currentTime )
+        {
+            return nanosUntilExpiration( valueWrapper );
+        }
+
+        @Override
+        public long expireAfterUpdate( final CacheKey cacheKey, final CacheValueWrapper valueWrapper, final long currentTime, final long currentDuration )
+        {
+            return nanosUntilExpiration( valueWrapper );
+        }
+
+        @Override
+        public long expireAfterRead( final CacheKey cacheKey, final CacheValueWrapper valueWrapper, final long currentTime, final long currentDuration )
+        {
+            return currentDuration;
+        }
+
+        private static long nanosUntilExpiration( final CacheValueWrapper valueWrapper )
+        {
+            final Duration remaining = Duration.between( Instant.now(), valueWrapper.getExpirationDate() );
+            if ( remaining.isNegative() )
+            {
+                return 0;
+            }
+
+            try
+            {
+                return remaining.toNanos();
+            }
+            catch ( ArithmeticException e )
+            {
+                return Long.MAX_VALUE;
+            }
+        }
+    }
+
     @Value
     private static class CacheValueWrapper implements Serializable
     {
         private final CacheKey cacheKey;
         private final Instant expirationDate;
 
-        // serialize to json even though stored in memory, this prevents object-reuse because we don't know
-        // if the object is immutable.  Thus an effective clone is made for each store/read.
-        private final String payload;
+        // if set, a read after this date triggers a background refresh of the value
+        private final Instant refreshDate;
+
+        private final CacheValueType valueType;
+
+        // JSON values are serialized even though stored in memory, this prevents object-reuse because we don't know
+        // if the object is immutable.  Thus an effective clone is made for each store/read.  IMMUTABLE values are
+        // held and returned by reference.
+        private final Serializable payload;
+
+        private final long retainedBytes;
     }
 
     Map<String, Integer> storedClassHistogram( final String prefix )
@@ -180,19 +789,28 @@ class MemoryCacheStore implements CacheStore
         return output;
     }
 
+    Map<String, Long> storedClassByteHistogram( final String prefix )
+    {
+        final Map<String, Long> output = new TreeMap<>(  );
+        for ( final Map.Entry<Class<?>, AtomicLong> entry : classBytes.entrySet() )
+        {
+            final long bytes = entry.getValue().get();
+            if ( bytes > 0 )
+            {
+                final String className = entry.getKey() == null ? "n/a" : entry.getKey().getSimpleName();
+                output.merge( prefix + className, bytes, Long::sum );
+            }
+        }
+        return output;
+    }
+
     @Override
     public long byteCount()
     {
         long byteCount = 0;
-        for ( Map.Entry<CacheKey, CacheValueWrapper> entry : memoryStore.asMap().entrySet() )
+        for ( final CacheValueWrapper cacheValueWrapper : memoryStore.asMap().values() )
         {
-            final CacheKey cacheKey = entry.getKey();
-            final UserIdentity userIdentity = cacheKey.getUserIdentity();
-            byteCount += userIdentity == null ? 0 : cacheKey.getUserIdentity().toDelimitedKey().length();
-            final String valueID = cacheKey.getValueID();
-            byteCount += valueID == null ? 0 : cacheKey.getValueID().length();
-            final CacheValueWrapper cacheValueWrapper = entry.getValue();
-            byteCount += cacheValueWrapper.payload.length();
+            byteCount += cacheValueWrapper.getRetainedBytes();
         }
         return byteCount;
     }
@@ -25,24 +25,36 @@ import password.pwm.error.ErrorInformation;
 import password.pwm.error.PwmError;
 import password.pwm.error.PwmException;
 import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.svc.cache.CacheInvalidation;
 import password.pwm.util.PwmScheduler;
 import password.pwm.util.java.JavaHelper;
 import password.pwm.util.java.TimeDuration;
 import password.pwm.util.logging.PwmLogger;
 
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 class NodeMachine
 {
     private static final PwmLogger LOGGER = PwmLogger.forClass( NodeMachine.class );
 
+    // maximum cache invalidation messages retained in this node's stored data
+    private static final int MAX_CACHE_INVALIDATIONS = 100;
+
     private final PwmApplication pwmApplication;
     private final ExecutorService executorService;
     private final NodeDataServiceProvider clusterDataServiceProvider;
@@ -54,6 +66,15 @@ class NodeMachine
     private final NodeServiceSettings settings;
     private final NodeServiceStatistics nodeServiceStatistics = new NodeServiceStatistics();
 
+    private final HeartbeatProcess heartbeatProcess = new HeartbeatProcess();
+    private final AtomicBoolean heartbeatWriteQueued = new AtomicBoolean();
+
+    private final Deque<StoredNodeData.CacheInvalidationMessage> cacheInvalidations = new ArrayDeque<>();
+    private final AtomicLong cacheInvalidationSequence = new AtomicLong();
+
+    // highest applied cache invalidation sequence of each remote node, keyed by node runtime guid
+    private final Map<String, Long> appliedInvalidationSequences = new ConcurrentHashMap<>();
+
     NodeMachine(
             final PwmApplication pwmApplication,
             final NodeDataServiceProvider clusterDataServiceProvider,
@@ -66,7 +87,11 @@ class NodeMachine
 
         this.executorService = PwmScheduler.makeBackgroundExecutor( pwmApplication, NodeMachine.class );
 
-        pwmApplication.getPwmScheduler().scheduleFixedRateJob( new HeartbeatProcess(), executorService, settings.getHeartbeatInterval(), settings.getHeartbeatInterval() );
+        pwmApplication.getPwmScheduler().scheduleFixedRateJob( heartbeatProcess, executorService, settings.getHeartbeatInterval(), settings.getHeartbeatInterval() );
+
+        // node statuses are read more frequently than the heartbeat so cache invalidations from other nodes are applied promptly
+        final TimeDuration pollInterval = settings.getCacheInvalidationPollInterval();
+        pwmApplication.getPwmScheduler().scheduleFixedRateJob( heartbeatProcess::readNodeStatuses, executorService, pollInterval, pollInterval );
     }
 
     public void close( )
@@ -153,6 +178,145 @@ class NodeMachine
         return age.isLongerThan( settings.getNodeTimeout() );
     }
 
+    /**
+     * Add the invalidation to this node's stored data, and write the node data immediately rather than waiting for
+     * the next heartbeat.  Other nodes apply the invalidation when they next read the node data.
+     */
+    void publishCacheInvalidation( final CacheInvalidation cacheInvalidation )
+    {
+        synchronized ( cacheInvalidations )
+        {
+            // a newer identical invalidation supersedes the older one
+            cacheInvalidations.removeIf( message -> message.getCacheInvalidation().equals( cacheInvalidation ) );
+            cacheInvalidations.add( makeInvalidationMessage( cacheInvalidation ) );
+
+            if ( cacheInvalidations.size() > MAX_CACHE_INVALIDATIONS )
+            {
+                collapseCacheInvalidations();
+            }
+        }
+        nodeServiceStatistics.getCacheInvalidationsPublished().incrementAndGet();
+
+        if ( heartbeatWriteQueued.compareAndSet( false, true ) )
+        {
+            try
+            {
+                executorService.submit( () ->
+                {
+                    heartbeatWriteQueued.set( false );
+                    heartbeatProcess.writeNodeStatus();
+                } );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                heartbeatWriteQueued.set( false );
+            }
+        }
+    }
+
+    /**
+     * Too many invalidations to track individually, so those limited to a source class are widened to the whole class.
+     * Invalidations that are not limited to a class are kept, and if there are still too many the oldest are dropped,
+     * in which case other nodes serve the affected entries until they expire.  Must be called while synchronized on
+     * the invalidation list.
+     */
+    private void collapseCacheInvalidations( )
+    {
+        final List<StoredNodeData.CacheInvalidationMessage> retainedMessages = new ArrayList<>();
+        final Set<CacheInvalidation> classInvalidations = new LinkedHashSet<>();
+        for ( final StoredNodeData.CacheInvalidationMessage message : cacheInvalidations )
+        {
+            final CacheInvalidation classInvalidation = message.getCacheInvalidation().widenToClass();
+            if ( classInvalidation == null )
+            {
+                retainedMessages.add( message );
+            }
+            else
+            {
+                classInvalidations.add( classInvalidation );
+            }
+        }
+
+        cacheInvalidations.clear();
+        cacheInvalidations.addAll( retainedMessages );
+        for ( final CacheInvalidation classInvalidation : classInvalidations )
+        {
+            cacheInvalidations.add( makeInvalidationMessage( classInvalidation ) );
+        }
+
+        int droppedCount = 0;
+        while ( cacheInvalidations.size() > MAX_CACHE_INVALIDATIONS )
+        {
+            cacheInvalidations.removeFirst();
+            droppedCount++;
+        }
+
+        if ( droppedCount > 0 )
+        {
+            LOGGER.warn( "more than " + MAX_CACHE_INVALIDATIONS + " pending cache invalidations, dropped the oldest "
+                    + droppedCount + ", other nodes will serve the affected cache entries until they expire" );
+        }
+        LOGGER.debug( () -> "collapsed pending cache invalidations, " + classInvalidations.size() + " widened to their source class" );
+    }
+
+    private StoredNodeData.CacheInvalidationMessage makeInvalidationMessage( final CacheInvalidation cacheInvalidation )
+    {
+        return new StoredNodeData.CacheInvalidationMessage( cacheInvalidationSequence.incrementAndGet(), Instant.now(), cacheInvalidation );
+    }
+
+    /**
+     * Invalidations are retained for the node timeout period, long enough for every online node to have read them.
+     */
+    private List<StoredNodeData.CacheInvalidationMessage> currentCacheInvalidations( )
+    {
+        synchronized ( cacheInvalidations )
+        {
+            while ( !cacheInvalidations.isEmpty()
+                    && TimeDuration.fromCurrent( cacheInvalidations.peekFirst().getTimestamp() ).isLongerThan( settings.getNodeTimeout() ) )
+            {
+                cacheInvalidations.removeFirst();
+            }
+            return new ArrayList<>( cacheInvalidations );
+        }
+    }
+
+    /**
+     * Apply every invalidation of each remote node that has not been applied yet, tracked by the per node sequence
+     * rather than by timestamps, so clock skew between nodes can not cause an invalidation to be skipped.  On the
+     * first read after startup all retained invalidations of each node are applied, including those published while
+     * this node was down, since entries of the persistent cache tier may predate them.
+     */
+    private void applyCacheInvalidations( final Map<String, StoredNodeData> readNodeData )
+    {
+        final String localGuid = pwmApplication.getRuntimeNonce();
+        final Set<String> currentGuids = new HashSet<>();
+
+        for ( final StoredNodeData storedNodeData : readNodeData.values() )
+        {
+            final String guid = storedNodeData.getGuid();
+            currentGuids.add( guid );
+            if ( storedNodeData.getCacheInvalidations() == null || localGuid.equals( guid ) )
+            {
+                continue;
+            }
+
+            final long lastApplied = appliedInvalidationSequences.getOrDefault( guid, 0L );
+            long highestApplied = lastApplied;
+            for ( final StoredNodeData.CacheInvalidationMessage message : storedNodeData.getCacheInvalidations() )
+            {
+                if ( message.getSequence() > lastApplied )
+                {
+                    pwmApplication.getCacheService().invalidateLocal( message.getCacheInvalidation() );
+                    nodeServiceStatistics.getCacheInvalidationsReceived().incrementAndGet();
+                    highestApplied = Math.max( highestApplied, message.getSequence() );
+                }
+            }
+            appliedInvalidationSequences.put( guid, highestApplied );
+        }
+
+        appliedInvalidationSequences.keySet().retainAll( currentGuids );
+    }
+
     public ErrorInformation getLastError( )
     {
         return lastError;
@@ -171,7 +335,7 @@ class NodeMachine
         {
             try
             {
-                final StoredNodeData storedNodeData = StoredNodeData.makeNew( pwmApplication );
+                final StoredNodeData storedNodeData = StoredNodeData.makeNew( pwmApplication, currentCacheInvalidations() );
                 clusterDataServiceProvider.writeNodeStatus( storedNodeData );
                 nodeServiceStatistics.getClusterWrites().incrementAndGet();
             }
@@ -191,6 +355,7 @@ class NodeMachine
                 final Map<String, StoredNodeData> readNodeData = clusterDataServiceProvider.readStoredData();
                 knownNodes.putAll( readNodeData );
                 nodeServiceStatistics.getClusterReads().incrementAndGet();
+                applyCacheInvalidations( readNodeData );
             }
             catch ( PwmException e )
             {
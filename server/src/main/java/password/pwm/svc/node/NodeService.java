@@ -31,6 +31,7 @@ import password.pwm.error.PwmUnrecoverableException;
 import password.pwm.health.HealthMessage;
 import password.pwm.health.HealthRecord;
 import password.pwm.svc.PwmService;
+import password.pwm.svc.cache.CacheInvalidation;
 import password.pwm.util.java.JavaHelper;
 import password.pwm.util.java.JsonUtil;
 import password.pwm.util.logging.PwmLogger;
@@ -186,6 +187,17 @@ public class NodeService implements PwmService
         return Collections.emptyList();
     }
 
+    /**
+     * Publish a cache invalidation to the other cluster nodes.  The invalidation is not applied locally.
+     */
+    public void publishCacheInvalidation( final CacheInvalidation cacheInvalidation )
+    {
+        if ( status == STATUS.OPEN && nodeMachine != null )
+        {
+            nodeMachine.publishCacheInvalidation( cacheInvalidation );
+        }
+    }
+
     private void figureDataStorageMethod( final PwmApplication pwmApplication )
             throws PwmUnrecoverableException
     {
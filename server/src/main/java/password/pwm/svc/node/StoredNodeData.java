@@ -23,11 +23,14 @@ package password.pwm.svc.node;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.Value;
 import password.pwm.PwmApplication;
 import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.svc.cache.CacheInvalidation;
 
 import java.io.Serializable;
 import java.time.Instant;
+import java.util.List;
 
 @Getter
 @AllArgsConstructor( access = AccessLevel.PRIVATE )
@@ -39,7 +42,10 @@ class StoredNodeData implements Serializable
     private String guid;
     private String configHash;
 
-    static StoredNodeData makeNew( final PwmApplication pwmApplication )
+    // recent cache invalidations published by this node, may be null for data written by older versions
+    private List<CacheInvalidationMessage> cacheInvalidations;
+
+    static StoredNodeData makeNew( final PwmApplication pwmApplication, final List<CacheInvalidationMessage> cacheInvalidations )
             throws PwmUnrecoverableException
     {
         return new StoredNodeData(
@@ -47,7 +53,17 @@ class StoredNodeData implements Serializable
                 pwmApplication.getStartupTime(),
                 pwmApplication.getInstanceID(),
                 pwmApplication.getRuntimeNonce(),
-                pwmApplication.getConfig().configurationHash()
+                pwmApplication.getConfig().configurationHash(),
+                cacheInvalidations
         );
     }
+
+    @Value
+    static class CacheInvalidationMessage implements Serializable
+    {
+        // increases with each message published by the node, ordering is only meaningful per runtime (guid)
+        private final long sequence;
+        private final Instant timestamp;
+        private final CacheInvalidation cacheInvalidation;
+    }
 }
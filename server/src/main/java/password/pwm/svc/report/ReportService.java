@@ -44,6 +44,7 @@ import password.pwm.util.java.BlockingThreadPool;
 import password.pwm.util.java.ClosableIterator;
 import password.pwm.util.java.JavaHelper;
 import password.pwm.util.java.JsonUtil;
+import password.pwm.util.java.ResumableIterator;
 import password.pwm.util.java.TimeDuration;
 import password.pwm.util.localdb.LocalDB;
 import password.pwm.util.localdb.LocalDBException;
@@ -269,9 +270,24 @@ public class ReportService implements PwmService
 
     public ClosableIterator<UserCacheRecord> iterator( )
     {
-        return new ClosableIterator<UserCacheRecord>()
+        return iterator( null );
+    }
+
+    /**
+     * Iterate the cached user records, continuing after the position of a previous iterator's resume token so paged
+     * views do not re-read the records of earlier pages.
+     */
+    public ResumableIterator<UserCacheRecord> iterator( final String resumeToken )
+    {
+        return new ResumableIterator<UserCacheRecord>()
         {
-            private UserCacheService.UserStatusCacheBeanIterator<UserCacheService.StorageKey> storageKeyIterator = userCacheService.iterator();
+            private UserCacheService.UserStatusCacheBeanIterator<UserCacheService.StorageKey> storageKeyIterator = userCacheService.iterator( resumeToken );
+
+            @Override
+            public String resumeToken( )
+            {
+                return this.storageKeyIterator.resumeToken();
+            }
 
             @Override
             public boolean hasNext( )
@@ -31,8 +31,8 @@ import password.pwm.health.HealthRecord;
 import password.pwm.ldap.LdapOperationsHelper;
 import password.pwm.ldap.UserInfo;
 import password.pwm.svc.PwmService;
-import password.pwm.util.java.ClosableIterator;
 import password.pwm.util.java.JsonUtil;
+import password.pwm.util.java.ResumableIterator;
 import password.pwm.util.localdb.LocalDB;
 import password.pwm.util.localdb.LocalDBException;
 import password.pwm.util.logging.PwmLogger;
@@ -99,10 +99,18 @@ public class UserCacheService implements PwmService
     }
 
     public UserStatusCacheBeanIterator<StorageKey> iterator( )
+    {
+        return iterator( null );
+    }
+
+    /**
+     * Iterate the stored keys in key order, continuing after the position of a previous iterator's resume token.
+     */
+    public UserStatusCacheBeanIterator<StorageKey> iterator( final String resumeToken )
     {
         try
         {
-            return new UserStatusCacheBeanIterator<>();
+            return new UserStatusCacheBeanIterator<>( resumeToken );
         }
         catch ( LocalDBException e )
         {
@@ -111,14 +119,19 @@ public class UserCacheService implements PwmService
         }
     }
 
-    public class UserStatusCacheBeanIterator<K extends StorageKey> implements ClosableIterator
+    public class UserStatusCacheBeanIterator<K extends StorageKey> implements ResumableIterator
     {
 
-        private LocalDB.LocalDBIterator<String> innerIterator;
+        private LocalDB.LocalDBResumableIterator innerIterator;
+
+        private UserStatusCacheBeanIterator( final String resumeToken ) throws LocalDBException
+        {
+            innerIterator = cacheStore.localDB.resumableIterator( CacheStoreWrapper.DB, resumeToken );
+        }
 
-        private UserStatusCacheBeanIterator( ) throws LocalDBException
+        public String resumeToken( )
         {
-            innerIterator = cacheStore.localDB.iterator( CacheStoreWrapper.DB );
+            return innerIterator.resumeToken();
         }
 
         public boolean hasNext( )
@@ -31,7 +31,9 @@ public enum AvgStatistic
     AVG_AUTHENTICATION_TIME( "AvgAuthenticationTime", null, "ms" ),
     AVG_PASSWORD_STRENGTH( "AvgPasswordStrength", null, "" ),
     AVG_LDAP_SEARCH_TIME( "AvgLdapSearchTime", null, "ms" ),
-    AVG_REQUEST_PROCESS_TIME( "AvgRequestProcessTime", null, "ms" ),;
+    AVG_REQUEST_PROCESS_TIME( "AvgRequestProcessTime", null, "ms" ),
+    AVG_LOCALDB_READ_TIME( "AvgLocalDbReadTime", null, "µs" ),
+    AVG_LOCALDB_WRITE_TIME( "AvgLocalDbWriteTime", null, "µs" ),;
 
     private final String key;
     private final Statistic.StatDetail statDetail;
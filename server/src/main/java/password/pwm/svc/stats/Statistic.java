@@ -107,6 +107,7 @@ public enum Statistic
     REST_STATISTICS( "RestStatistics", null ),
     REST_VERIFYCHALLENGES( "RestVerifyChallenges", null ),
     REST_VERIFYOTP( "RestVerifyOTP", null ),
+    REST_WORDLIST_RANGE( "RestWordlistRange", null ),
     INTRUDER_ATTEMPTS( "IntruderAttempts", null ),
     FOREIGN_SESSIONS_ACCEPTED( "ForeignSessionsAccepted", null ),
     OBSOLETE_URL_REQUESTS( "ObsoleteUrlRequests", null ),
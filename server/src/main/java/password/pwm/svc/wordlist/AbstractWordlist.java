@@ -20,6 +20,7 @@
 
 package password.pwm.svc.wordlist;
 
+import password.pwm.AppProperty;
 import password.pwm.PwmApplication;
 import password.pwm.PwmApplicationMode;
 import password.pwm.PwmConstants;
@@ -34,6 +35,7 @@ import password.pwm.health.HealthStatus;
 import password.pwm.health.HealthTopic;
 import password.pwm.svc.PwmService;
 import password.pwm.util.PwmScheduler;
+import password.pwm.util.java.ClosableIterator;
 import password.pwm.util.java.JavaHelper;
 import password.pwm.util.java.JsonUtil;
 import password.pwm.util.java.TimeDuration;
@@ -42,6 +44,7 @@ import password.pwm.util.logging.PwmLogger;
 import java.io.InputStream;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -49,6 +52,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BooleanSupplier;
 
 abstract class AbstractWordlist implements Wordlist, PwmService
@@ -57,6 +61,7 @@ abstract class AbstractWordlist implements Wordlist, PwmService
     private static final TimeDuration BUCKECT_CHECK_LOG_WARNING_TIMEOUT = TimeDuration.of( 100, TimeDuration.Unit.MILLISECONDS );
 
     private WordlistConfiguration wordlistConfiguration;
+    private WordlistType wordlistType;
     private WordlistBucket wordlistBucket;
     private ExecutorService executorService;
     private Set<WordType> wordTypesCache = null;
@@ -70,6 +75,7 @@ abstract class AbstractWordlist implements Wordlist, PwmService
     private final AtomicBoolean inhibitBackgroundImportFlag = new AtomicBoolean( false );
     private final AtomicBoolean backgroundImportRunning = new AtomicBoolean( false );
     private final WordlistStatistics statistics = new WordlistStatistics();
+    private final AtomicReference<WordlistBloomFilter> bloomFilter = new AtomicReference<>();
 
     private volatile Activity activity = Wordlist.Activity.Idle;
 
@@ -84,6 +90,7 @@ abstract class AbstractWordlist implements Wordlist, PwmService
             throws PwmException
     {
         this.pwmApplication = pwmApplication;
+        this.wordlistType = type;
         this.wordlistConfiguration = WordlistConfiguration.fromConfiguration( pwmApplication.getConfig(), type );
 
         if ( this.wordlistConfiguration.isTestMode() )
@@ -113,11 +120,18 @@ abstract class AbstractWordlist implements Wordlist, PwmService
                 lastError = new ErrorInformation( PwmError.ERROR_SERVICE_NOT_AVAILABLE, errorMsg );
             }
 
-            this.wordlistBucket = new LocalDBWordlistBucket( pwmApplication, wordlistConfiguration, type );
+            this.wordlistBucket = wordlistConfiguration.getStorageType() == WordlistStorageType.MappedFile
+                    ? new MappedFileWordlistBucket( pwmApplication, wordlistConfiguration, type )
+                    : new LocalDBWordlistBucket( pwmApplication, wordlistConfiguration, type );
         }
 
         executorService = PwmScheduler.makeBackgroundExecutor( pwmApplication, this.getClass() );
 
+        if ( wordlistConfiguration.getStorageType() == WordlistStorageType.MappedFile && pwmApplication.getLocalDB() != null )
+        {
+            executorService.execute( this::clearLocalDBWords );
+        }
+
         if ( !pwmApplication.getPwmEnvironment().isInternalRuntimeInstance() )
         {
             pwmApplication.getPwmScheduler().scheduleFixedRateJob( new InspectorJob(), executorService, TimeDuration.SECOND, wordlistConfiguration.getInspectorFrequency() );
@@ -127,8 +141,11 @@ abstract class AbstractWordlist implements Wordlist, PwmService
     }
 
     private void startTestInstance( final WordlistType wordlistType )
+            throws PwmUnrecoverableException
     {
-        this.wordlistBucket = new MemoryWordlistBucket( pwmApplication, wordlistConfiguration, wordlistType );
+        this.wordlistBucket = wordlistConfiguration.getStorageType() == WordlistStorageType.MappedFile
+                ? new MappedFileWordlistBucket( pwmApplication, wordlistConfiguration, wordlistType )
+                : new MemoryWordlistBucket( pwmApplication, wordlistConfiguration, wordlistType );
         final WordlistInspector wordlistInspector = new WordlistInspector( pwmApplication, AbstractWordlist.this, () -> false );
         wordlistInspector.run();
     }
@@ -165,7 +182,7 @@ abstract class AbstractWordlist implements Wordlist, PwmService
             throws PwmUnrecoverableException
     {
         final String hashWord = wordType.convertInputFromUser( pwmApplication, wordlistConfiguration, word );
-        return realBucketCheck( hashWord, wordType );
+        return realBucketCheck( Collections.singleton( hashWord ), wordType );
     }
 
     private boolean checkRawWords( final String word )
@@ -175,26 +192,25 @@ abstract class AbstractWordlist implements Wordlist, PwmService
         final Set<String> testWords = WordlistUtil.chunkWord( normalizedWord, this.wordlistConfiguration.getCheckSize() );
 
         getStatistics().getChunksPerWordCheck().update( testWords.size() );
-        for ( final String t : testWords )
-        {
 
-            // stop checking once found
-            if ( realBucketCheck( t, WordType.RAW ) )
-            {
-                return true;
-            }
-        }
-
-        return false;
+        // all chunks are checked with a single bucket lookup
+        return realBucketCheck( testWords, WordType.RAW );
     }
 
-    private boolean realBucketCheck( final String word, final WordType wordType )
+    private boolean realBucketCheck( final Collection<String> words, final WordType wordType )
             throws PwmUnrecoverableException
     {
+        final Collection<String> candidateWords = filterBloomFilterRejects( words );
+        if ( candidateWords.isEmpty() )
+        {
+            getStatistics().getMisses().incrementAndGet();
+            return false;
+        }
+
         getStatistics().getWordChecks().incrementAndGet();
 
         final Instant startTime = Instant.now();
-        final boolean isContainsWord = wordlistBucket.containsWord( word );
+        final boolean isContainsWord = wordlistBucket.containsAny( candidateWords );
 
         final TimeDuration timeDuration = TimeDuration.fromCurrent( startTime );
         getStatistics().getWordCheckTimeMS().update( timeDuration.asMillis() );
@@ -216,6 +232,131 @@ abstract class AbstractWordlist implements Wordlist, PwmService
         return isContainsWord;
     }
 
+    private Collection<String> filterBloomFilterRejects( final Collection<String> words )
+    {
+        final WordlistBloomFilter currentBloomFilter = bloomFilter.get();
+        if ( currentBloomFilter == null )
+        {
+            return words;
+        }
+
+        final List<String> candidateWords = new ArrayList<>( words.size() );
+        for ( final String word : words )
+        {
+            if ( currentBloomFilter.mightContain( word ) )
+            {
+                candidateWords.add( word );
+            }
+            else
+            {
+                getStatistics().getBloomFilterRejects().incrementAndGet();
+            }
+        }
+        return candidateWords;
+    }
+
+    private boolean bloomFilterEnabled()
+    {
+        final double falsePositiveRate = wordlistConfiguration.getBloomFilterFalsePositiveRate();
+        return wordlistType == WordlistType.WORDLIST
+                && wordlistConfiguration.getStorageType() == WordlistStorageType.LocalDB
+                && falsePositiveRate > 0 && falsePositiveRate < 1;
+    }
+
+    /**
+     * Use the stored bloom filter if it matches the stored words, otherwise build a new one.
+     */
+    void loadBloomFilter( final BooleanSupplier cancelFlag ) throws PwmUnrecoverableException
+    {
+        if ( !bloomFilterEnabled() || bloomFilter.get() != null )
+        {
+            return;
+        }
+
+        final Optional<WordlistBloomFilter> storedFilter = wordlistBucket.readBloomFilter();
+        if ( storedFilter.isPresent()
+                && storedFilter.get().getInsertions() == wordlistBucket.size()
+                && storedFilter.get().getSizeBytes() <= wordlistConfiguration.getBloomFilterMaxSizeBytes() )
+        {
+            bloomFilter.set( storedFilter.get() );
+            getLogger().debug( () -> "loaded stored bloom filter with " + storedFilter.get().getInsertions() + " words" );
+            return;
+        }
+
+        buildBloomFilter( cancelFlag );
+    }
+
+    void buildBloomFilter( final BooleanSupplier cancelFlag ) throws PwmUnrecoverableException
+    {
+        if ( !bloomFilterEnabled() )
+        {
+            return;
+        }
+
+        final Instant startTime = Instant.now();
+        final long wordCount = wordlistBucket.size();
+        final double falsePositiveRate = wordlistConfiguration.getBloomFilterFalsePositiveRate();
+        final long sizeBytes = WordlistBloomFilter.estimateSizeBytes( wordCount, falsePositiveRate );
+        if ( sizeBytes > wordlistConfiguration.getBloomFilterMaxSizeBytes() )
+        {
+            // too large to keep on the heap, lookups go straight to the stored words
+            wordlistBucket.writeBloomFilter( null );
+            getLogger().debug( () -> "skipping bloom filter for " + wordCount + " words, " + sizeBytes + " bytes exceeds "
+                    + AppProperty.WORDLIST_BLOOM_FILTER_MAX_SIZE_BYTES.getKey() );
+            return;
+        }
+
+        final WordlistBloomFilter newFilter = WordlistBloomFilter.create( wordCount, falsePositiveRate );
+        try ( ClosableIterator<String> iterator = wordlistBucket.iterator() )
+        {
+            while ( iterator.hasNext() )
+            {
+                if ( cancelFlag.getAsBoolean() )
+                {
+                    return;
+                }
+                newFilter.put( iterator.next() );
+            }
+        }
+
+        wordlistBucket.writeBloomFilter( newFilter );
+        bloomFilter.set( newFilter );
+        getLogger().debug( () -> "built bloom filter with " + newFilter.getInsertions() + " words, "
+                + newFilter.getSizeBytes() + " bytes (" + TimeDuration.compactFromCurrent( startTime ) + ")" );
+    }
+
+    void clearBloomFilter() throws PwmUnrecoverableException
+    {
+        bloomFilter.set( null );
+        if ( bloomFilterEnabled() )
+        {
+            wordlistBucket.writeBloomFilter( null );
+        }
+    }
+
+    /**
+     * Words imported while the wordlist was stored in LocalDB are not read by a mapped file wordlist, so remove them
+     * along with their status and bloom filter.
+     */
+    private void clearLocalDBWords()
+    {
+        try
+        {
+            final LocalDBWordlistBucket localDBBucket = new LocalDBWordlistBucket( pwmApplication, wordlistConfiguration, wordlistType );
+            final long storedWords = localDBBucket.size();
+            if ( storedWords > 0 )
+            {
+                localDBBucket.clear();
+                localDBBucket.writeWordlistStatus( WordlistStatus.builder().build() );
+                getLogger().debug( () -> "removed " + storedWords + " words stored in LocalDB before switching to mapped file storage" );
+            }
+        }
+        catch ( PwmUnrecoverableException e )
+        {
+            getLogger().error( "error removing words stored in LocalDB: " + e.getMessage() );
+        }
+    }
+
     String randomSeed() throws PwmUnrecoverableException
     {
         return getWordlistBucket().randomSeed();
@@ -333,6 +474,7 @@ abstract class AbstractWordlist implements Wordlist, PwmService
         final Instant startTime = Instant.now();
         getLogger().trace( () -> "clearing stored wordlist" );
         activity = Wordlist.Activity.Clearing;
+        bloomFilter.set( null );
         writeWordlistStatus( WordlistStatus.builder().build() );
         getWordlistBucket().clear();
         getLogger().debug( () -> "cleared stored wordlist (" + TimeDuration.compactFromCurrent( startTime ) + ")" );
@@ -461,7 +603,7 @@ abstract class AbstractWordlist implements Wordlist, PwmService
     {
         if ( status() == STATUS.OPEN )
         {
-            return new ServiceInfoBean( Collections.singletonList( DataStorageMethod.LOCALDB ), getStatistics().asDebugMap() );
+            return new ServiceInfoBean( Collections.singletonList( DataStorageMethod.LOCALDB ), getStatistics().asDebugMap( bloomFilter.get() ) );
         }
         else
         {
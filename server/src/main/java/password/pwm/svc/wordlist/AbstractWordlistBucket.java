@@ -144,6 +144,32 @@ public abstract class AbstractWordlistBucket implements WordlistBucket
         return containsKey( word );
     }
 
+    @Override
+    public boolean containsAny( final Collection<String> words ) throws PwmUnrecoverableException
+    {
+        if ( type == WordlistType.SEEDLIST )
+        {
+            throw new IllegalStateException( "unable to containWord check SEEDLIST wordlist" );
+        }
+
+        for ( final String word : words )
+        {
+            if ( containsKey( word ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Called once all words of an import have been added.  Buckets that store words as they are added have nothing to do.
+     */
+    @Override
+    public void populationComplete() throws PwmUnrecoverableException
+    {
+    }
+
     abstract void putValues( Map<String, String> values )
             throws PwmUnrecoverableException;
 
@@ -23,13 +23,27 @@ package password.pwm.svc.wordlist;
 import password.pwm.PwmApplication;
 import password.pwm.error.PwmError;
 import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.java.ClosableIterator;
 import password.pwm.util.localdb.LocalDB;
 import password.pwm.util.localdb.LocalDBException;
+import password.pwm.util.logging.PwmLogger;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Map;
+import java.util.Optional;
 
 class LocalDBWordlistBucket extends AbstractWordlistBucket implements WordlistBucket
 {
+    // bloom filter is stored as base64 chunks in the meta db, next to the wordlist status
+    private static final LocalDB.DB BLOOM_FILTER_DB = LocalDB.DB.PWM_META;
+    private static final int BLOOM_FILTER_CHUNK_BYTES = LocalDB.MAX_VALUE_LENGTH / 4 * 3;
+
+    private static final PwmLogger LOGGER = PwmLogger.forClass( LocalDBWordlistBucket.class );
+
     private final LocalDB.DB db;
     private final LocalDB localDB;
 
@@ -86,6 +100,23 @@ class LocalDBWordlistBucket extends AbstractWordlistBucket implements WordlistBu
         }
     }
 
+    /**
+     * Checks all words in one LocalDB read.
+     */
+    @Override
+    public boolean containsAny( final Collection<String> words )
+            throws PwmUnrecoverableException
+    {
+        try
+        {
+            return localDB.containsAny( db, words );
+        }
+        catch ( LocalDBException e )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_LOCALDB_UNAVAILABLE, e.getMessage() );
+        }
+    }
+
     @Override
     public long size() throws PwmUnrecoverableException
     {
@@ -111,6 +142,96 @@ class LocalDBWordlistBucket extends AbstractWordlistBucket implements WordlistBu
         {
             throw PwmUnrecoverableException.newException( PwmError.ERROR_LOCALDB_UNAVAILABLE, e.getMessage() );
         }
+        writeBloomFilter( null );
+    }
+
+    @Override
+    public ClosableIterator<String> iterator() throws PwmUnrecoverableException
+    {
+        try
+        {
+            return localDB.iterator( db );
+        }
+        catch ( LocalDBException e )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_LOCALDB_UNAVAILABLE, e.getMessage() );
+        }
+    }
+
+    @Override
+    public ClosableIterator<String> prefixIterator( final String prefix ) throws PwmUnrecoverableException
+    {
+        try
+        {
+            return localDB.prefixIterator( db, prefix );
+        }
+        catch ( LocalDBException e )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_LOCALDB_UNAVAILABLE, e.getMessage() );
+        }
+    }
+
+    @Override
+    public Optional<WordlistBloomFilter> readBloomFilter() throws PwmUnrecoverableException
+    {
+        try
+        {
+            final ByteArrayOutputStream filterBytes = new ByteArrayOutputStream();
+            int chunk = 0;
+            String chunkValue = localDB.get( BLOOM_FILTER_DB, bloomFilterKey( chunk ) );
+            while ( chunkValue != null )
+            {
+                filterBytes.write( Base64.getDecoder().decode( chunkValue ) );
+                chunk++;
+                chunkValue = localDB.get( BLOOM_FILTER_DB, bloomFilterKey( chunk ) );
+            }
+            return chunk == 0
+                    ? Optional.empty()
+                    : Optional.of( WordlistBloomFilter.fromBytes( filterBytes.toByteArray() ) );
+        }
+        catch ( LocalDBException e )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_LOCALDB_UNAVAILABLE, e.getMessage() );
+        }
+        catch ( IOException | IllegalArgumentException e )
+        {
+            LOGGER.debug( () -> "ignoring unreadable stored bloom filter: " + e.getMessage() );
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void writeBloomFilter( final WordlistBloomFilter bloomFilter ) throws PwmUnrecoverableException
+    {
+        try
+        {
+            int chunk = 0;
+            if ( bloomFilter != null )
+            {
+                final byte[] filterBytes = bloomFilter.toBytes();
+                for ( int offset = 0; offset < filterBytes.length; offset += BLOOM_FILTER_CHUNK_BYTES )
+                {
+                    final byte[] chunkBytes = Arrays.copyOfRange( filterBytes, offset, Math.min( filterBytes.length, offset + BLOOM_FILTER_CHUNK_BYTES ) );
+                    localDB.put( BLOOM_FILTER_DB, bloomFilterKey( chunk ), Base64.getEncoder().encodeToString( chunkBytes ) );
+                    chunk++;
+                }
+            }
+
+            // remove chunks left over from a previous, larger filter
+            while ( localDB.remove( BLOOM_FILTER_DB, bloomFilterKey( chunk ) ) )
+            {
+                chunk++;
+            }
+        }
+        catch ( LocalDBException e )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_LOCALDB_UNAVAILABLE, "error while writing wordlist bloom filter: " + e.getMessage() );
+        }
+    }
+
+    private String bloomFilterKey( final int chunk )
+    {
+        return wordlistConfiguration.getMetaDataAppAttribute().getKey() + ".bloomFilter." + chunk;
     }
 
     @Override
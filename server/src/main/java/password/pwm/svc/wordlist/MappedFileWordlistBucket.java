@@ -0,0 +1,903 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.svc.wordlist;
+
+import password.pwm.PwmApplication;
+import password.pwm.error.PwmError;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.java.ClosableIterator;
+import password.pwm.util.java.FileSystemUtility;
+import password.pwm.util.java.JavaHelper;
+import password.pwm.util.java.JsonUtil;
+import password.pwm.util.java.TimeDuration;
+import password.pwm.util.logging.PwmLogger;
+import password.pwm.util.secure.PwmHashAlgorithm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * Stores the wordlist as a sorted file of fixed width SHA1 digests, which is memory-mapped for lookups so the
+ * words do not occupy LocalDB or heap space.  Stored SHA1 hashes are kept as their raw digest, every other key
+ * (raw words and other hash types) is stored as the SHA1 digest of the key.  Each digest is followed by a type byte
+ * so the stored SHA1 hashes can be told apart from the digests of other keys.
+ *
+ * <p>Imports are an external sort: added words are appended to a pending file, which is sorted into a run file each
+ * time it reaches the configured sort buffer size.  When the import completes all runs are merged, with duplicates
+ * removed, into the final file.  Lookups only consult the final file, so words are not found until the import
+ * completes.</p>
+ *
+ * <p>A mapped file cannot be moved or deleted on every platform until the mapping is garbage collected, so each
+ * completed import is written to a new numbered wordlist file and the current one is named by a small pointer file.
+ * Run files are read as streams rather than mapped, and wordlist files that are no longer current are removed when
+ * possible, at the latest on the next start.</p>
+ */
+class MappedFileWordlistBucket extends AbstractWordlistBucket
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( MappedFileWordlistBucket.class );
+
+    private static final PwmHashAlgorithm RECORD_HASH_ALGORITHM = PwmHashAlgorithm.SHA1;
+    private static final int DIGEST_LENGTH = 20;
+    private static final int RECORD_LENGTH = DIGEST_LENGTH + 1;
+    private static final byte KEY_DIGEST_RECORD = 0;
+    private static final byte STORED_HASH_RECORD = 1;
+    private static final int RECORDS_PER_SEGMENT = Integer.MAX_VALUE / RECORD_LENGTH;
+    private static final String STORED_HASH_SUFFIX = ":" + WordType.SHA1.name();
+
+    private static final int MERGE_OUTPUT_BUFFER_SIZE = 1024 * 1024;
+    private static final int MERGE_INPUT_BUFFER_SIZE = 64 * 1024;
+    private static final int INTERPOLATION_MIN_RANGE = 64;
+    private static final int INTERPOLATION_MAX_PROBES = 8;
+
+    private static final String WORDLIST_FILENAME_PREFIX = "wordlist-";
+    private static final String CURRENT_FILENAME = "wordlist.current";
+    private static final String PENDING_FILENAME = "pending.bin";
+    private static final String STATUS_FILENAME = "status.json";
+    private static final String RUN_FILENAME_PREFIX = "run-";
+    private static final String FILENAME_SUFFIX = ".bin";
+    private static final String TEMP_FILENAME_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final int sortBufferRecords;
+    private volatile MappedRecords mappedRecords;
+
+    MappedFileWordlistBucket(
+            final PwmApplication pwmApplication,
+            final WordlistConfiguration wordlistConfiguration,
+            final WordlistType type
+    )
+            throws PwmUnrecoverableException
+    {
+        super( pwmApplication, wordlistConfiguration, type );
+
+        this.directory = FileSystemUtility.figureFilepath( wordlistConfiguration.getMappedFilePath(), pwmApplication.getPwmEnvironment().getApplicationPath() );
+        if ( directory == null || ( !directory.isAbsolute() && pwmApplication.getPwmEnvironment().getApplicationPath() == null ) )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_SERVICE_NOT_AVAILABLE, "unable to determine mapped file wordlist directory" );
+        }
+        if ( !directory.exists() && !directory.mkdirs() )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_SERVICE_NOT_AVAILABLE,
+                    "unable to create mapped file wordlist directory " + directory.getAbsolutePath() );
+        }
+
+        this.sortBufferRecords = Math.min( RECORDS_PER_SEGMENT, Math.max( 1, wordlistConfiguration.getMappedFileSortBufferRecords() ) );
+
+        final File wordlistFile = readCurrentWordlistFile();
+        if ( wordlistFile != null )
+        {
+            try
+            {
+                mappedRecords = MappedRecords.open( wordlistFile );
+            }
+            catch ( IOException e )
+            {
+                throw PwmUnrecoverableException.newException( PwmError.ERROR_SERVICE_NOT_AVAILABLE,
+                        "unable to map wordlist file " + wordlistFile.getAbsolutePath() + ": " + e.getMessage() );
+            }
+        }
+        deleteObsoleteWordlistFiles( wordlistFile );
+    }
+
+    @Override
+    synchronized void putValues( final Map<String, String> values )
+            throws PwmUnrecoverableException
+    {
+        if ( values.isEmpty() )
+        {
+            return;
+        }
+
+        final byte[] records = new byte[ values.size() * RECORD_LENGTH ];
+        int offset = 0;
+        for ( final String key : values.keySet() )
+        {
+            System.arraycopy( keyToRecord( key ), 0, records, offset, RECORD_LENGTH );
+            offset += RECORD_LENGTH;
+        }
+
+        final File pendingFile = new File( directory, PENDING_FILENAME );
+        try
+        {
+            try ( OutputStream outputStream = new FileOutputStream( pendingFile, true ) )
+            {
+                outputStream.write( records, 0, offset );
+            }
+
+            if ( pendingFile.length() / RECORD_LENGTH >= sortBufferRecords )
+            {
+                spillPendingRecords();
+            }
+        }
+        catch ( IOException e )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_WORDLIST_IMPORT_ERROR, "error while writing words to wordlist file: " + e.getMessage() );
+        }
+    }
+
+    @Override
+    boolean containsKey( final String key )
+    {
+        final MappedRecords currentRecords = mappedRecords;
+        return currentRecords != null && currentRecords.contains( keyToRecord( key ) );
+    }
+
+    @Override
+    String getValue( final String key )
+    {
+        throw new IllegalStateException( "mapped file wordlist does not store values" );
+    }
+
+    @Override
+    public long size()
+    {
+        final MappedRecords currentRecords = mappedRecords;
+        if ( currentRecords != null )
+        {
+            return currentRecords.getRecordCount();
+        }
+
+        // import in progress, count includes duplicates not yet removed by the merge
+        long bytes = new File( directory, PENDING_FILENAME ).length();
+        for ( final File runFile : listNumberedFiles( RUN_FILENAME_PREFIX ) )
+        {
+            bytes += runFile.length();
+        }
+        return bytes / RECORD_LENGTH;
+    }
+
+    @Override
+    public synchronized void clear()
+            throws PwmUnrecoverableException
+    {
+        mappedRecords = null;
+
+        final File[] files = directory.listFiles();
+        if ( files != null )
+        {
+            for ( final File file : files )
+            {
+                final String name = file.getName();
+                if ( name.equals( CURRENT_FILENAME )
+                        || name.equals( PENDING_FILENAME )
+                        || name.endsWith( TEMP_FILENAME_SUFFIX )
+                        || isNumberedFile( name, RUN_FILENAME_PREFIX ) )
+                {
+                    if ( !file.delete() )
+                    {
+                        throw PwmUnrecoverableException.newException( PwmError.ERROR_WORDLIST_IMPORT_ERROR,
+                                "unable to delete wordlist file " + file.getAbsolutePath() );
+                    }
+                }
+            }
+        }
+
+        // no longer current once the pointer file is removed, even if still mapped
+        deleteObsoleteWordlistFiles( null );
+    }
+
+    @Override
+    public synchronized void populationComplete()
+            throws PwmUnrecoverableException
+    {
+        final Instant startTime = Instant.now();
+        final File wordlistFile = new File( directory, WORDLIST_FILENAME_PREFIX + nextFileNumber( WORDLIST_FILENAME_PREFIX ) + FILENAME_SUFFIX );
+        final File tempFile = new File( directory, wordlistFile.getName() + TEMP_FILENAME_SUFFIX );
+
+        try
+        {
+            spillPendingRecords();
+
+            final List<File> runFiles = listNumberedFiles( RUN_FILENAME_PREFIX );
+            final List<File> inputFiles = new ArrayList<>( runFiles );
+            final File previousWordlistFile = readCurrentWordlistFile();
+            if ( previousWordlistFile != null )
+            {
+                // words of an earlier completed import, duplicates are removed by the merge
+                inputFiles.add( previousWordlistFile );
+            }
+
+            final long recordCount = mergeRecords( inputFiles, tempFile );
+
+            Files.move( tempFile.toPath(), wordlistFile.toPath(), StandardCopyOption.ATOMIC_MOVE );
+            writeCurrentWordlistFile( wordlistFile );
+            for ( final File runFile : runFiles )
+            {
+                Files.delete( runFile.toPath() );
+            }
+            mappedRecords = MappedRecords.open( wordlistFile );
+            deleteObsoleteWordlistFiles( wordlistFile );
+
+            LOGGER.debug( () -> "merged " + runFiles.size() + " sorted runs into " + recordCount + " wordlist records ("
+                    + TimeDuration.compactFromCurrent( startTime ) + ")" );
+        }
+        catch ( IOException e )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_WORDLIST_IMPORT_ERROR, "error while merging wordlist file: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * The status is kept in the wordlist directory rather than LocalDB so it always describes the files next to it.
+     */
+    @Override
+    public WordlistStatus readWordlistStatus()
+    {
+        final File statusFile = new File( directory, STATUS_FILENAME );
+        if ( statusFile.exists() )
+        {
+            try
+            {
+                final String json = new String( Files.readAllBytes( statusFile.toPath() ), StandardCharsets.UTF_8 );
+                final WordlistStatus storedValue = JsonUtil.deserialize( json, WordlistStatus.class );
+                if ( storedValue != null )
+                {
+                    return storedValue;
+                }
+            }
+            catch ( IOException e )
+            {
+                LOGGER.error( "error reading wordlist status file " + statusFile.getAbsolutePath() + ": " + e.getMessage() );
+            }
+        }
+        return WordlistStatus.builder().build();
+    }
+
+    @Override
+    public void writeWordlistStatus( final WordlistStatus wordlistStatus )
+    {
+        final File statusFile = new File( directory, STATUS_FILENAME );
+        final File tempFile = new File( directory, STATUS_FILENAME + TEMP_FILENAME_SUFFIX );
+        try
+        {
+            Files.write( tempFile.toPath(), JsonUtil.serialize( wordlistStatus ).getBytes( StandardCharsets.UTF_8 ) );
+            Files.move( tempFile.toPath(), statusFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( IOException e )
+        {
+            LOGGER.error( "error writing wordlist status file " + statusFile.getAbsolutePath() + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Iterates the records in sorted order.  Stored SHA1 hashes are formatted as stored SHA1 hash values, the digests
+     * of other keys as their bare hex digest since the keys themselves are not stored.
+     */
+    @Override
+    public ClosableIterator<String> iterator()
+    {
+        return new RecordIterator( mappedRecords, 0, "" );
+    }
+
+    /**
+     * Only the digests are stored, so the prefix is matched against the records in the form returned by
+     * {@link #iterator()}.  The iteration starts at the first record at or after the hex part of the prefix and ends at
+     * the first record whose digest does not match it.
+     */
+    @Override
+    public ClosableIterator<String> prefixIterator( final String prefix )
+    {
+        final MappedRecords currentRecords = mappedRecords;
+        final int hexLength = RECORD_HASH_ALGORITHM.getHexValueLength();
+        final StringBuilder lowerBoundHex = new StringBuilder( prefix.substring( 0, Math.min( prefix.length(), hexLength ) ) );
+        while ( lowerBoundHex.length() < hexLength )
+        {
+            lowerBoundHex.append( '0' );
+        }
+
+        final byte[] lowerBound = decodeHex( lowerBoundHex.toString() );
+        if ( currentRecords == null || lowerBound == null )
+        {
+            return new RecordIterator( null, 0, prefix );
+        }
+        return new RecordIterator( currentRecords, currentRecords.lowerBound( lowerBound ), prefix );
+    }
+
+    /**
+     * Lookups against the mapped file do not need a bloom filter, and the filter could not be built from the
+     * stored digests, so none is stored.
+     */
+    @Override
+    public Optional<WordlistBloomFilter> readBloomFilter()
+    {
+        return Optional.empty();
+    }
+
+    @Override
+    public void writeBloomFilter( final WordlistBloomFilter bloomFilter )
+    {
+    }
+
+    private void spillPendingRecords()
+            throws IOException
+    {
+        final File pendingFile = new File( directory, PENDING_FILENAME );
+        if ( !pendingFile.exists() )
+        {
+            return;
+        }
+
+        // a trailing partial record can only be left by an interrupted write, and is dropped
+        long remainingRecords = pendingFile.length() / RECORD_LENGTH;
+        try ( DataInputStream inputStream = new DataInputStream( new FileInputStream( pendingFile ) ) )
+        {
+            while ( remainingRecords > 0 )
+            {
+                final int recordCount = ( int ) Math.min( sortBufferRecords, remainingRecords );
+                final byte[] records = new byte[ recordCount * RECORD_LENGTH ];
+                inputStream.readFully( records );
+                remainingRecords -= recordCount;
+
+                sortRecords( records );
+
+                final File runFile = new File( directory, RUN_FILENAME_PREFIX + nextFileNumber( RUN_FILENAME_PREFIX ) + FILENAME_SUFFIX );
+                final File tempFile = new File( directory, runFile.getName() + TEMP_FILENAME_SUFFIX );
+                try ( OutputStream outputStream = new FileOutputStream( tempFile ) )
+                {
+                    outputStream.write( records );
+                }
+                Files.move( tempFile.toPath(), runFile.toPath(), StandardCopyOption.ATOMIC_MOVE );
+            }
+        }
+
+        Files.delete( pendingFile.toPath() );
+    }
+
+    private File readCurrentWordlistFile()
+    {
+        final File currentFile = new File( directory, CURRENT_FILENAME );
+        if ( !currentFile.exists() )
+        {
+            return null;
+        }
+
+        try
+        {
+            final String name = new String( Files.readAllBytes( currentFile.toPath() ), StandardCharsets.UTF_8 ).trim();
+            final File wordlistFile = new File( directory, name );
+            if ( isNumberedFile( name, WORDLIST_FILENAME_PREFIX ) && wordlistFile.exists() )
+            {
+                return wordlistFile;
+            }
+            LOGGER.error( "ignoring wordlist pointer file " + currentFile.getAbsolutePath() + ", named wordlist file '" + name + "' does not exist" );
+        }
+        catch ( IOException e )
+        {
+            LOGGER.error( "error reading wordlist pointer file " + currentFile.getAbsolutePath() + ": " + e.getMessage() );
+        }
+        return null;
+    }
+
+    private void writeCurrentWordlistFile( final File wordlistFile )
+            throws IOException
+    {
+        final File currentFile = new File( directory, CURRENT_FILENAME );
+        final File tempFile = new File( directory, CURRENT_FILENAME + TEMP_FILENAME_SUFFIX );
+        Files.write( tempFile.toPath(), wordlistFile.getName().getBytes( StandardCharsets.UTF_8 ) );
+        Files.move( tempFile.toPath(), currentFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /**
+     * Delete the wordlist files other than the current one.  A file that is still mapped by a previous import can not
+     * be deleted on some platforms, it is left for the next attempt.
+     */
+    private void deleteObsoleteWordlistFiles( final File currentWordlistFile )
+    {
+        for ( final File wordlistFile : listNumberedFiles( WORDLIST_FILENAME_PREFIX ) )
+        {
+            if ( !wordlistFile.equals( currentWordlistFile ) && !wordlistFile.delete() )
+            {
+                LOGGER.debug( () -> "unable to delete obsolete wordlist file " + wordlistFile.getAbsolutePath() + ", will retry later" );
+            }
+        }
+    }
+
+    private List<File> listNumberedFiles( final String prefix )
+    {
+        final File[] files = directory.listFiles( ( dir, name ) -> isNumberedFile( name, prefix ) );
+        if ( files == null )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<File> returnList = new ArrayList<>();
+        Collections.addAll( returnList, files );
+        return returnList;
+    }
+
+    private int nextFileNumber( final String prefix )
+    {
+        int highestNumber = 0;
+        for ( final File file : listNumberedFiles( prefix ) )
+        {
+            final String name = file.getName();
+            final String number = name.substring( prefix.length(), name.length() - FILENAME_SUFFIX.length() );
+            highestNumber = Math.max( highestNumber, Integer.parseInt( number ) );
+        }
+        return highestNumber + 1;
+    }
+
+    private static boolean isNumberedFile( final String name, final String prefix )
+    {
+        if ( !name.startsWith( prefix ) || !name.endsWith( FILENAME_SUFFIX ) )
+        {
+            return false;
+        }
+        final String number = name.substring( prefix.length(), name.length() - FILENAME_SUFFIX.length() );
+        return !number.isEmpty() && number.chars().allMatch( Character::isDigit );
+    }
+
+    private static long mergeRecords( final List<File> inputFiles, final File outputFile )
+            throws IOException
+    {
+        final PriorityQueue<MergeCursor> queue = new PriorityQueue<>();
+        final List<MergeCursor> cursors = new ArrayList<>();
+        final byte[] lastRecord = new byte[ RECORD_LENGTH ];
+        long recordCount = 0;
+        try ( OutputStream outputStream = new BufferedOutputStream( new FileOutputStream( outputFile ), MERGE_OUTPUT_BUFFER_SIZE ) )
+        {
+            for ( final File inputFile : inputFiles )
+            {
+                final MergeCursor cursor = new MergeCursor( inputFile );
+                cursors.add( cursor );
+                if ( cursor.advance() )
+                {
+                    queue.add( cursor );
+                }
+            }
+
+            while ( !queue.isEmpty() )
+            {
+                final MergeCursor cursor = queue.poll();
+                if ( recordCount == 0 || compareRecords( cursor.getRecord(), lastRecord ) != 0 )
+                {
+                    outputStream.write( cursor.getRecord() );
+                    System.arraycopy( cursor.getRecord(), 0, lastRecord, 0, RECORD_LENGTH );
+                    recordCount++;
+                }
+                if ( cursor.advance() )
+                {
+                    queue.add( cursor );
+                }
+            }
+        }
+        finally
+        {
+            for ( final MergeCursor cursor : cursors )
+            {
+                cursor.close();
+            }
+        }
+        return recordCount;
+    }
+
+    static byte[] keyToRecord( final String key )
+    {
+        if ( key.length() == RECORD_HASH_ALGORITHM.getHexValueLength() + STORED_HASH_SUFFIX.length() && key.endsWith( STORED_HASH_SUFFIX ) )
+        {
+            final byte[] record = decodeHex( key );
+            if ( record != null )
+            {
+                record[ DIGEST_LENGTH ] = STORED_HASH_RECORD;
+                return record;
+            }
+        }
+
+        try
+        {
+            final MessageDigest messageDigest = MessageDigest.getInstance( RECORD_HASH_ALGORITHM.getAlgName() );
+            final byte[] record = Arrays.copyOf( messageDigest.digest( key.getBytes( StandardCharsets.UTF_8 ) ), RECORD_LENGTH );
+            record[ DIGEST_LENGTH ] = KEY_DIGEST_RECORD;
+            return record;
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "unexpected error creating wordlist record digest: " + e.getMessage() );
+        }
+    }
+
+    private static byte[] decodeHex( final String key )
+    {
+        final byte[] record = new byte[ RECORD_LENGTH ];
+        for ( int i = 0; i < DIGEST_LENGTH; i++ )
+        {
+            final int high = Character.digit( key.charAt( i * 2 ), 16 );
+            final int low = Character.digit( key.charAt( i * 2 + 1 ), 16 );
+            if ( high < 0 || low < 0 )
+            {
+                return null;
+            }
+            record[ i ] = ( byte ) ( ( high << 4 ) | low );
+        }
+        return record;
+    }
+
+    static void sortRecords( final byte[] records )
+    {
+        // in-place heapsort of the fixed width records, avoids allocating an object per record
+        final int count = records.length / RECORD_LENGTH;
+        final byte[] swapBuffer = new byte[ RECORD_LENGTH ];
+        for ( int i = count / 2 - 1; i >= 0; i-- )
+        {
+            siftDown( records, i, count, swapBuffer );
+        }
+        for ( int end = count - 1; end > 0; end-- )
+        {
+            swapRecords( records, 0, end, swapBuffer );
+            siftDown( records, 0, end, swapBuffer );
+        }
+    }
+
+    private static void siftDown( final byte[] records, final int start, final int end, final byte[] swapBuffer )
+    {
+        int root = start;
+        while ( true )
+        {
+            int child = root * 2 + 1;
+            if ( child >= end )
+            {
+                return;
+            }
+            if ( child + 1 < end && compareRecords( records, child, records, child + 1 ) < 0 )
+            {
+                child++;
+            }
+            if ( compareRecords( records, root, records, child ) >= 0 )
+            {
+                return;
+            }
+            swapRecords( records, root, child, swapBuffer );
+            root = child;
+        }
+    }
+
+    private static void swapRecords( final byte[] records, final int index1, final int index2, final byte[] swapBuffer )
+    {
+        System.arraycopy( records, index1 * RECORD_LENGTH, swapBuffer, 0, RECORD_LENGTH );
+        System.arraycopy( records, index2 * RECORD_LENGTH, records, index1 * RECORD_LENGTH, RECORD_LENGTH );
+        System.arraycopy( swapBuffer, 0, records, index2 * RECORD_LENGTH, RECORD_LENGTH );
+    }
+
+    private static int compareRecords( final byte[] record1, final byte[] record2 )
+    {
+        return compareRecords( record1, 0, record2, 0 );
+    }
+
+    private static int compareRecords( final byte[] records1, final int index1, final byte[] records2, final int index2 )
+    {
+        final int offset1 = index1 * RECORD_LENGTH;
+        final int offset2 = index2 * RECORD_LENGTH;
+        for ( int i = 0; i < RECORD_LENGTH; i++ )
+        {
+            final int difference = ( records1[ offset1 + i ] & 0xFF ) - ( records2[ offset2 + i ] & 0xFF );
+            if ( difference != 0 )
+            {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Read-only mapping of a sorted record file.  Files larger than a single mapping are split into segments of
+     * whole records.
+     */
+    private static final class MappedRecords
+    {
+        private final MappedByteBuffer[] segments;
+        private final long recordCount;
+
+        private MappedRecords( final MappedByteBuffer[] segments, final long recordCount )
+        {
+            this.segments = segments;
+            this.recordCount = recordCount;
+        }
+
+        static MappedRecords open( final File file )
+                throws IOException
+        {
+            try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) )
+            {
+                final long recordCount = channel.size() / RECORD_LENGTH;
+                final int segmentCount = ( int ) ( ( recordCount + RECORDS_PER_SEGMENT - 1 ) / RECORDS_PER_SEGMENT );
+                final MappedByteBuffer[] segments = new MappedByteBuffer[ segmentCount ];
+                for ( int i = 0; i < segmentCount; i++ )
+                {
+                    final long firstRecord = ( long ) i * RECORDS_PER_SEGMENT;
+                    final long segmentRecords = Math.min( RECORDS_PER_SEGMENT, recordCount - firstRecord );
+                    segments[ i ] = channel.map( FileChannel.MapMode.READ_ONLY, firstRecord * RECORD_LENGTH, segmentRecords * RECORD_LENGTH );
+                }
+                return new MappedRecords( segments, recordCount );
+            }
+        }
+
+        long getRecordCount()
+        {
+            return recordCount;
+        }
+
+        void readRecord( final long index, final byte[] target )
+        {
+            final MappedByteBuffer segment = segments[ ( int ) ( index / RECORDS_PER_SEGMENT ) ];
+            final int offset = ( int ) ( index % RECORDS_PER_SEGMENT ) * RECORD_LENGTH;
+            for ( int i = 0; i < RECORD_LENGTH; i++ )
+            {
+                target[ i ] = segment.get( offset + i );
+            }
+        }
+
+        /**
+         * Interpolation search on the leading digest bytes, which are uniformly distributed, falling back to
+         * binary search for small ranges or if interpolation has not converged after a few probes.
+         */
+        boolean contains( final byte[] key )
+        {
+            final long keyPrefix = recordPrefix( key );
+            long low = 0;
+            long high = recordCount - 1;
+            int probes = 0;
+            while ( low <= high )
+            {
+                final long middle = high - low > INTERPOLATION_MIN_RANGE && probes < INTERPOLATION_MAX_PROBES
+                        ? interpolate( low, high, keyPrefix )
+                        : ( low + high ) >>> 1;
+                probes++;
+
+                final int comparison = compareAt( middle, key );
+                if ( comparison == 0 )
+                {
+                    return true;
+                }
+                if ( comparison < 0 )
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle - 1;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Index of the first record at or after the key.
+         */
+        long lowerBound( final byte[] key )
+        {
+            long low = 0;
+            long high = recordCount;
+            while ( low < high )
+            {
+                final long middle = ( low + high ) >>> 1;
+                if ( compareAt( middle, key ) < 0 )
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private long interpolate( final long low, final long high, final long keyPrefix )
+        {
+            // compare the top 53 bits so the values are non-negative and exact as doubles
+            final long target = keyPrefix >>> 11;
+            final long lowPrefix = prefixAt( low ) >>> 11;
+            final long highPrefix = prefixAt( high ) >>> 11;
+            if ( target <= lowPrefix )
+            {
+                return low;
+            }
+            if ( target >= highPrefix )
+            {
+                return high;
+            }
+            final double fraction = ( double ) ( target - lowPrefix ) / ( highPrefix - lowPrefix );
+            return low + ( long ) ( fraction * ( high - low ) );
+        }
+
+        private long prefixAt( final long index )
+        {
+            final MappedByteBuffer segment = segments[ ( int ) ( index / RECORDS_PER_SEGMENT ) ];
+            return segment.getLong( ( int ) ( index % RECORDS_PER_SEGMENT ) * RECORD_LENGTH );
+        }
+
+        private int compareAt( final long index, final byte[] key )
+        {
+            final MappedByteBuffer segment = segments[ ( int ) ( index / RECORDS_PER_SEGMENT ) ];
+            final int offset = ( int ) ( index % RECORDS_PER_SEGMENT ) * RECORD_LENGTH;
+            for ( int i = 0; i < RECORD_LENGTH; i++ )
+            {
+                final int difference = ( segment.get( offset + i ) & 0xFF ) - ( key[ i ] & 0xFF );
+                if ( difference != 0 )
+                {
+                    return difference;
+                }
+            }
+            return 0;
+        }
+
+        private static long recordPrefix( final byte[] record )
+        {
+            long prefix = 0;
+            for ( int i = 0; i < Long.BYTES; i++ )
+            {
+                prefix = ( prefix << 8 ) | ( record[ i ] & 0xFF );
+            }
+            return prefix;
+        }
+    }
+
+    private static final class RecordIterator implements ClosableIterator<String>
+    {
+        private final MappedRecords mappedRecords;
+        private final String prefix;
+        private final String hexPrefix;
+        private final byte[] record = new byte[ RECORD_LENGTH ];
+        private long nextIndex;
+        private String nextKey;
+
+        RecordIterator( final MappedRecords mappedRecords, final long startIndex, final String prefix )
+        {
+            this.mappedRecords = mappedRecords;
+            this.prefix = prefix;
+            this.hexPrefix = prefix.substring( 0, Math.min( prefix.length(), RECORD_HASH_ALGORITHM.getHexValueLength() ) );
+            this.nextIndex = startIndex;
+            this.nextKey = readNextKey();
+        }
+
+        private String readNextKey()
+        {
+            while ( mappedRecords != null && nextIndex < mappedRecords.getRecordCount() )
+            {
+                mappedRecords.readRecord( nextIndex++, record );
+                final String hex = JavaHelper.byteArrayToHexString( Arrays.copyOf( record, DIGEST_LENGTH ) ).toLowerCase();
+                if ( !hex.startsWith( hexPrefix ) )
+                {
+                    return null;
+                }
+
+                final String key = record[ DIGEST_LENGTH ] == STORED_HASH_RECORD ? hex + STORED_HASH_SUFFIX : hex;
+                if ( key.startsWith( prefix ) )
+                {
+                    return key;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return nextKey != null;
+        }
+
+        @Override
+        public String next()
+        {
+            if ( nextKey == null )
+            {
+                throw new NoSuchElementException();
+            }
+            final String returnKey = nextKey;
+            nextKey = readNextKey();
+            return returnKey;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    /**
+     * Streams the records of a sorted file; the file is not mapped so it can be deleted as soon as it is closed.
+     */
+    private static final class MergeCursor implements Comparable<MergeCursor>
+    {
+        private final DataInputStream inputStream;
+        private final byte[] record = new byte[ RECORD_LENGTH ];
+        private long remainingRecords;
+
+        MergeCursor( final File file )
+                throws IOException
+        {
+            this.remainingRecords = file.length() / RECORD_LENGTH;
+            this.inputStream = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), MERGE_INPUT_BUFFER_SIZE ) );
+        }
+
+        boolean advance()
+                throws IOException
+        {
+            if ( remainingRecords <= 0 )
+            {
+                return false;
+            }
+            inputStream.readFully( record );
+            remainingRecords--;
+            return true;
+        }
+
+        void close()
+                throws IOException
+        {
+            inputStream.close();
+        }
+
+        byte[] getRecord()
+        {
+            return record;
+        }
+
+        @Override
+        public int compareTo( final MergeCursor other )
+        {
+            return compareRecords( record, other.record );
+        }
+    }
+}
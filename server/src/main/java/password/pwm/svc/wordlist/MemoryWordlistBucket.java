@@ -22,14 +22,18 @@ package password.pwm.svc.wordlist;
 
 import password.pwm.PwmApplication;
 import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.java.ClosableIterator;
 
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class MemoryWordlistBucket extends AbstractWordlistBucket
 {
     private final Map<String, String> map = new ConcurrentHashMap<>(  );
     private WordlistStatus wordlistStatus;
+    private WordlistBloomFilter bloomFilter;
 
     public MemoryWordlistBucket( final PwmApplication pwmApplication, final WordlistConfiguration wordlistConfiguration, final WordlistType type )
     {
@@ -69,6 +73,7 @@ public class MemoryWordlistBucket extends AbstractWordlistBucket
             throws PwmUnrecoverableException
     {
         map.clear();
+        bloomFilter = null;
     }
 
     @Override
@@ -82,4 +87,51 @@ public class MemoryWordlistBucket extends AbstractWordlistBucket
     {
         this.wordlistStatus = wordlistStatus;
     }
+
+    @Override
+    public ClosableIterator<String> iterator()
+    {
+        return makeIterator( map.keySet().iterator() );
+    }
+
+    @Override
+    public ClosableIterator<String> prefixIterator( final String prefix )
+    {
+        return makeIterator( map.keySet().stream().filter( key -> key.startsWith( prefix ) ).sorted().iterator() );
+    }
+
+    private static ClosableIterator<String> makeIterator( final Iterator<String> innerIterator )
+    {
+        return new ClosableIterator<String>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return innerIterator.hasNext();
+            }
+
+            @Override
+            public String next()
+            {
+                return innerIterator.next();
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+    }
+
+    @Override
+    public Optional<WordlistBloomFilter> readBloomFilter()
+    {
+        return Optional.ofNullable( bloomFilter );
+    }
+
+    @Override
+    public void writeBloomFilter( final WordlistBloomFilter bloomFilter )
+    {
+        this.bloomFilter = bloomFilter;
+    }
 }
@@ -34,6 +34,7 @@ import password.pwm.util.PwmScheduler;
 import password.pwm.util.java.JavaHelper;
 import password.pwm.util.java.TimeDuration;
 import password.pwm.util.localdb.LocalDB;
+import password.pwm.util.localdb.LocalDBBatch;
 import password.pwm.util.localdb.LocalDBException;
 import password.pwm.util.logging.PwmLogger;
 import password.pwm.util.secure.PwmRandom;
@@ -41,6 +42,7 @@ import password.pwm.util.secure.PwmRandom;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.TimerTask;
@@ -64,6 +66,9 @@ public class SharedHistoryManager implements PwmService
     private static final LocalDB.DB META_DB = LocalDB.DB.SHAREDHISTORY_META;
     private static final LocalDB.DB WORDS_DB = LocalDB.DB.SHAREDHISTORY_WORDS;
 
+    // number of expired words removed per write transaction during a reduce operation
+    private static final int REDUCE_BATCH_SIZE = 1000;
+
     private volatile PwmService.STATUS status = STATUS.NEW;
 
     private ExecutorService executorService;
@@ -176,8 +181,9 @@ public class SharedHistoryManager implements PwmService
         {
             LOGGER.info( () -> "existing db version does not match current db version db=(" + versionInDB + ")  current=(" + currentVersion + "), clearing db" );
             localDB.truncate( WORDS_DB );
-            localDB.put( META_DB, KEY_VERSION, currentVersion );
-            localDB.remove( META_DB, KEY_OLDEST_ENTRY );
+            localDB.executeBatch( new LocalDBBatch()
+                    .put( META_DB, KEY_VERSION, currentVersion )
+                    .remove( META_DB, KEY_OLDEST_ENTRY ) );
         }
         else
         {
@@ -369,6 +375,7 @@ public class SharedHistoryManager implements PwmService
             LOGGER.debug( () -> "beginning wordDB reduce operation, examining " + initialSize
                     + " words for entries older than " + TimeDuration.asCompactString( settings.maxAgeMs ) );
 
+            final List<String> pendingRemovals = new ArrayList<>();
             LocalDB.LocalDBIterator<String> keyIterator = null;
             try
             {
@@ -382,9 +389,15 @@ public class SharedHistoryManager implements PwmService
 
                     if ( entryAge > settings.maxAgeMs )
                     {
-                        localDB.remove( WORDS_DB, key );
+                        pendingRemovals.add( key );
                         removeCount++;
 
+                        if ( pendingRemovals.size() >= REDUCE_BATCH_SIZE )
+                        {
+                            localDB.removeAll( WORDS_DB, pendingRemovals );
+                            pendingRemovals.clear();
+                        }
+
                         if ( removeCount % 1000 == 0 )
                         {
                             final int finalRemove = removeCount;
@@ -412,12 +425,14 @@ public class SharedHistoryManager implements PwmService
                 }
             }
 
-            //update the oldest entry
+            // remove the final words and update the oldest entry in one transaction
+            final LocalDBBatch finalBatch = new LocalDBBatch().removeAll( WORDS_DB, pendingRemovals );
             if ( status == STATUS.OPEN )
             {
                 oldestEntry = localOldestEntry;
-                localDB.put( META_DB, KEY_OLDEST_ENTRY, Long.toString( oldestEntry ) );
+                finalBatch.put( META_DB, KEY_OLDEST_ENTRY, Long.toString( oldestEntry ) );
             }
+            localDB.executeBatch( finalBatch );
 
             {
                 final int finalRemove = removeCount;
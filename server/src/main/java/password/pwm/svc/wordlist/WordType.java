@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.regex.Pattern;
 
 public enum WordType
@@ -94,6 +95,29 @@ public enum WordType
         return makeHashedStoredValue( hashedValue );
     }
 
+    /**
+     * Read the hex hash value from a stored word of this type.
+     *
+     * @param storedValue a stored wordlist value
+     * @return the lower case hex hash, or empty if the stored value is not a hash of this type
+     */
+    Optional<String> readHashFromStoredValue( final String storedValue )
+    {
+        if ( this == RAW || storedValue == null )
+        {
+            return Optional.empty();
+        }
+
+        final String storedSuffix = DELIMITER + name();
+        final int hexLength = hashAlgorithm.getHexValueLength();
+        if ( storedValue.length() == hexLength + storedSuffix.length() && storedValue.endsWith( storedSuffix ) )
+        {
+            return Optional.of( storedValue.substring( 0, hexLength ) );
+        }
+
+        return Optional.empty();
+    }
+
     private String makeHashedStoredValue( final String hash )
     {
         // stored hash first to improve sorting/storage efficiency
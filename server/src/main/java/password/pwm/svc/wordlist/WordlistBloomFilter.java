@@ -0,0 +1,200 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.svc.wordlist;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Bloom filter over the stored wordlist keys.  A negative answer means the key is definitely not stored, so a wordlist
+ * check can skip the LocalDB read; a positive answer still requires the read.  Keys are hashed once to 64 bits and
+ * the probe positions are derived by double hashing.
+ *
+ * <p>Instances are not safe for concurrent writes; a filter is populated by one thread and then published for reads.</p>
+ */
+class WordlistBloomFilter
+{
+    private static final int SERIAL_VERSION = 1;
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 8;
+    private static final double LN2 = Math.log( 2 );
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private long insertions;
+
+    private WordlistBloomFilter( final long[] bits, final int hashCount, final long insertions )
+    {
+        this.bits = bits;
+        this.bitCount = ( long ) bits.length * Long.SIZE;
+        this.hashCount = hashCount;
+        this.insertions = insertions;
+    }
+
+    static WordlistBloomFilter create( final long expectedInsertions, final double falsePositiveRate )
+    {
+        final long expected = Math.max( 1, expectedInsertions );
+        final long words = optimalWords( expected, falsePositiveRate );
+        if ( words > Integer.MAX_VALUE - 8 )
+        {
+            throw new IllegalArgumentException( "bloom filter for " + expectedInsertions + " insertions is too large" );
+        }
+        final int hashCount = ( int ) Math.max( 1, Math.round( ( double ) ( words * Long.SIZE ) / expected * LN2 ) );
+        return new WordlistBloomFilter( new long[ ( int ) words ], hashCount, 0 );
+    }
+
+    /**
+     * Heap size of a filter created for the given insertions and false positive rate, without allocating it.
+     */
+    static long estimateSizeBytes( final long expectedInsertions, final double falsePositiveRate )
+    {
+        return optimalWords( Math.max( 1, expectedInsertions ), falsePositiveRate ) * Long.BYTES;
+    }
+
+    private static long optimalWords( final long expectedInsertions, final double falsePositiveRate )
+    {
+        if ( falsePositiveRate <= 0 || falsePositiveRate >= 1 )
+        {
+            throw new IllegalArgumentException( "falsePositiveRate must be between 0 and 1" );
+        }
+
+        final long optimalBits = ( long ) Math.ceil( -expectedInsertions * Math.log( falsePositiveRate ) / ( LN2 * LN2 ) );
+        return Math.max( 1, ( optimalBits + Long.SIZE - 1 ) / Long.SIZE );
+    }
+
+    void put( final String key )
+    {
+        final long hash1 = hash( key );
+        final long hash2 = mix( hash1 ^ 0x9E3779B97F4A7C15L );
+        for ( int i = 0; i < hashCount; i++ )
+        {
+            final long index = ( ( hash1 + i * hash2 ) & Long.MAX_VALUE ) % bitCount;
+            bits[ ( int ) ( index >>> 6 ) ] |= 1L << index;
+        }
+        insertions++;
+    }
+
+    boolean mightContain( final String key )
+    {
+        final long hash1 = hash( key );
+        final long hash2 = mix( hash1 ^ 0x9E3779B97F4A7C15L );
+        for ( int i = 0; i < hashCount; i++ )
+        {
+            final long index = ( ( hash1 + i * hash2 ) & Long.MAX_VALUE ) % bitCount;
+            if ( ( bits[ ( int ) ( index >>> 6 ) ] & ( 1L << index ) ) == 0 )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long getInsertions( )
+    {
+        return insertions;
+    }
+
+    long getSizeBytes( )
+    {
+        return ( long ) bits.length * Long.BYTES;
+    }
+
+    /**
+     * False positive rate expected for the current number of insertions.
+     */
+    double expectedFalsePositiveRate( )
+    {
+        return Math.pow( 1 - Math.exp( -( double ) hashCount * insertions / bitCount ), hashCount );
+    }
+
+    byte[] toBytes( )
+    {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream( HEADER_LENGTH + bits.length * Long.BYTES );
+        try ( DataOutputStream dataOutputStream = new DataOutputStream( byteArrayOutputStream ) )
+        {
+            dataOutputStream.writeInt( SERIAL_VERSION );
+            dataOutputStream.writeInt( hashCount );
+            dataOutputStream.writeLong( insertions );
+            dataOutputStream.writeLong( bits.length );
+            for ( final long word : bits )
+            {
+                dataOutputStream.writeLong( word );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( "unexpected error serializing bloom filter: " + e.getMessage() );
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    static WordlistBloomFilter fromBytes( final byte[] input )
+            throws IOException
+    {
+        try ( DataInputStream dataInputStream = new DataInputStream( new ByteArrayInputStream( input ) ) )
+        {
+            final int version = dataInputStream.readInt();
+            if ( version != SERIAL_VERSION )
+            {
+                throw new IOException( "unknown bloom filter version " + version );
+            }
+            final int hashCount = dataInputStream.readInt();
+            final long insertions = dataInputStream.readLong();
+            final long words = dataInputStream.readLong();
+            if ( hashCount < 1 || words < 1 || input.length != HEADER_LENGTH + words * Long.BYTES )
+            {
+                throw new IOException( "bloom filter data is truncated or corrupt" );
+            }
+            final long[] bits = new long[ ( int ) words ];
+            for ( int i = 0; i < bits.length; i++ )
+            {
+                bits[ i ] = dataInputStream.readLong();
+            }
+            return new WordlistBloomFilter( bits, hashCount, insertions );
+        }
+    }
+
+    private static long hash( final String key )
+    {
+        // 64 bit FNV-1a over the chars, finished with the murmur3 avalanche step
+        long hash = 0xCBF29CE484222325L;
+        for ( int i = 0; i < key.length(); i++ )
+        {
+            hash ^= key.charAt( i );
+            hash *= 0x100000001B3L;
+        }
+        return mix( hash );
+    }
+
+    private static long mix( final long input )
+    {
+        long hash = input;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -21,14 +21,22 @@
 package password.pwm.svc.wordlist;
 
 import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.java.ClosableIterator;
 
 import java.util.Collection;
+import java.util.Optional;
 
 public interface WordlistBucket
 {
     boolean containsWord( String hashWord )
             throws PwmUnrecoverableException;
 
+    /**
+     * Test if any of the words are stored, used to check all chunks of a word with one lookup.
+     */
+    boolean containsAny( Collection<String> hashWords )
+            throws PwmUnrecoverableException;
+
     String randomSeed() throws PwmUnrecoverableException;
 
     void addWords( Collection<String> words, AbstractWordlist abstractWordlist )
@@ -38,7 +46,23 @@ public interface WordlistBucket
 
     void clear() throws PwmUnrecoverableException;
 
+    void populationComplete() throws PwmUnrecoverableException;
+
     WordlistStatus readWordlistStatus();
 
     void writeWordlistStatus( WordlistStatus wordlistStatus );
+
+    ClosableIterator<String> iterator() throws PwmUnrecoverableException;
+
+    /**
+     * Iterate the stored words that start with the prefix.
+     */
+    ClosableIterator<String> prefixIterator( String prefix ) throws PwmUnrecoverableException;
+
+    Optional<WordlistBloomFilter> readBloomFilter() throws PwmUnrecoverableException;
+
+    /**
+     * Store the bloom filter of the bucket keys, or remove the stored filter if null.
+     */
+    void writeBloomFilter( WordlistBloomFilter bloomFilter ) throws PwmUnrecoverableException;
 }
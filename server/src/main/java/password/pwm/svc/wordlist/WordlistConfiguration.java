@@ -61,6 +61,13 @@ public class WordlistConfiguration implements Serializable
     private final PwmSetting wordlistFilenameSetting;
     private final boolean testMode;
 
+    // transient so the default LocalDB storage keeps the config hash of earlier versions, see configHash()
+    private final transient WordlistStorageType storageType;
+    private final transient String mappedFilePath;
+
+    // number of records sorted in memory per run when importing to a mapped file, tuning only
+    private final transient int mappedFileSortBufferRecords;
+
     @Builder.Default
     private final Collection<String> commentPrefixes = new ArrayList<>();
 
@@ -72,6 +79,10 @@ public class WordlistConfiguration implements Serializable
 
     private final TimeDuration inspectorFrequency;
 
+    // transient so it is excluded from the config hash, the filter does not change the stored words
+    private final transient double bloomFilterFalsePositiveRate;
+    private final transient long bloomFilterMaxSizeBytes;
+
     static WordlistConfiguration fromConfiguration(
             final Configuration configuration,
             final WordlistType type
@@ -100,6 +111,11 @@ public class WordlistConfiguration implements Serializable
                         .builtInWordlistLocationProperty( AppProperty.WORDLIST_BUILTIN_PATH )
                         .db( LocalDB.DB.WORDLIST_WORDS )
                         .wordlistFilenameSetting( PwmSetting.WORDLIST_FILENAME )
+                        .storageType( JavaHelper.readEnumFromString(
+                                WordlistStorageType.class,
+                                WordlistStorageType.LocalDB,
+                                configuration.readAppProperty( AppProperty.WORDLIST_STORAGE_TYPE ) ) )
+                        .mappedFilePath( configuration.readAppProperty( AppProperty.WORDLIST_STORAGE_MAPPED_FILE_PATH ) )
                         .build();
             }
 
@@ -118,6 +134,8 @@ public class WordlistConfiguration implements Serializable
         return WordlistConfiguration.builder()
                 .commentPrefixes( StringUtil.splitAndTrim( configuration.readAppProperty( AppProperty.WORDLIST_IMPORT_LINE_COMMENTS ), ";;;" ) )
                 .testMode( Boolean.parseBoolean( configuration.readAppProperty( AppProperty.WORDLIST_TEST_MODE ) ) )
+                .storageType( WordlistStorageType.LocalDB )
+                .mappedFileSortBufferRecords( Integer.parseInt( configuration.readAppProperty( AppProperty.WORDLIST_STORAGE_MAPPED_FILE_SORT_RECORDS ) ) )
                 .minWordSize( Integer.parseInt( configuration.readAppProperty( AppProperty.WORDLIST_CHAR_LENGTH_MIN ) ) )
                 .maxWordSize( Integer.parseInt( configuration.readAppProperty( AppProperty.WORDLIST_CHAR_LENGTH_MAX ) ) )
                 .autoImportRecheckDuration( TimeDuration.of(
@@ -132,6 +150,8 @@ public class WordlistConfiguration implements Serializable
                 .inspectorFrequency( TimeDuration.of(
                         Long.parseLong( configuration.readAppProperty( AppProperty.WORDLIST_INSPECTOR_FREQUENCY_SECONDS ) ),
                         TimeDuration.Unit.SECONDS ) )
+                .bloomFilterFalsePositiveRate( Double.parseDouble( configuration.readAppProperty( AppProperty.WORDLIST_BLOOM_FILTER_FALSE_POSITIVE_RATE ) ) )
+                .bloomFilterMaxSizeBytes( Long.parseLong( configuration.readAppProperty( AppProperty.WORDLIST_BLOOM_FILTER_MAX_SIZE_BYTES ) ) )
                 .build();
     }
 
@@ -160,7 +180,13 @@ public class WordlistConfiguration implements Serializable
     {
         try
         {
-            return SecureEngine.hash( JsonUtil.serialize( WordlistConfiguration.this ), PwmHashAlgorithm.SHA1 );
+            String hashInput = JsonUtil.serialize( WordlistConfiguration.this );
+            final WordlistStorageType storageType = WordlistConfiguration.this.getStorageType();
+            if ( storageType != null && storageType != WordlistStorageType.LocalDB )
+            {
+                hashInput += storageType + ":" + WordlistConfiguration.this.getMappedFilePath();
+            }
+            return SecureEngine.hash( hashInput, PwmHashAlgorithm.SHA1 );
         }
         catch ( PwmUnrecoverableException e )
         {
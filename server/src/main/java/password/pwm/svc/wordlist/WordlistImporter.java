@@ -26,6 +26,7 @@ import password.pwm.error.ErrorInformation;
 import password.pwm.error.PwmError;
 import password.pwm.error.PwmUnrecoverableException;
 import password.pwm.util.TransactionSizeCalculator;
+import password.pwm.util.WorkerPipeline;
 import password.pwm.util.java.ConditionalTaskExecutor;
 import password.pwm.util.java.JsonUtil;
 import password.pwm.util.java.MovingAverage;
@@ -37,14 +38,18 @@ import password.pwm.util.logging.PwmLogger;
 
 import java.text.DecimalFormat;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
 import java.util.function.BooleanSupplier;
 
 /**
@@ -52,6 +57,8 @@ import java.util.function.BooleanSupplier;
  */
 class WordlistImporter implements Runnable
 {
+    private static final int LINES_PER_CHUNK = 1000;
+
     private final WordlistZipReader zipFileReader;
     private final WordlistSourceType sourceType;
     private final AbstractWordlist rootWordlist;
@@ -62,6 +69,7 @@ class WordlistImporter implements Runnable
     private final WordlistSourceInfo wordlistSourceInfo;
     private final BooleanSupplier cancelFlag;
     private final ImportStatistics importStatistics = new ImportStatistics();
+    private final int workerThreads = WorkerPipeline.defaultWorkerThreads();
 
     private long charsInBuffer;
     private ErrorInformation exitError;
@@ -69,6 +77,16 @@ class WordlistImporter implements Runnable
     private long bytesSkipped;
     private Map<WordType, Long> seenWordTypes = new HashMap<>();
     private boolean completed;
+    private volatile boolean endOfInput;
+
+    // source bytes covered by the words in the buffer, and by the words already written to the bucket
+    private long bufferedByteCount;
+    private long committedByteCount;
+
+    // reader progress published by the reader thread for the statistics, the zip reader itself is not thread safe
+    private volatile long readByteCount;
+    private volatile long readLineCount;
+    private volatile String readZipName;
 
     private enum DebugKey
     {
@@ -151,6 +169,9 @@ class WordlistImporter implements Runnable
             return;
         }
 
+        // words added by the import are not in the current filter, so it must not be used until rebuilt
+        rootWordlist.clearBloomFilter();
+
         if ( wordlistSourceInfo == null || !wordlistSourceInfo.equals( rootWordlist.readWordlistStatus().getRemoteInfo() ) )
         {
             rootWordlist.writeWordlistStatus( WordlistStatus.builder()
@@ -188,38 +209,36 @@ class WordlistImporter implements Runnable
 
         try
         {
+            publishReaderProgress();
             debugOutputter.conditionallyExecuteTask();
 
             initImportProcess();
 
+            publishReaderProgress();
+            committedByteCount = readByteCount;
+            bufferedByteCount = committedByteCount;
             startTime = Instant.now();
 
-            getLogger().debug( () -> "beginning import: " + JsonUtil.serialize( rootWordlist.readWordlistStatus() ) );
+            getLogger().debug( () -> "beginning import using " + workerThreads + " worker threads: " + JsonUtil.serialize( rootWordlist.readWordlistStatus() ) );
 
-            String line;
-            do
+            final WorkerPipeline<ImportChunk> pipeline = new WorkerPipeline<>( WordlistImporter.class, workerThreads );
+            pipeline.execute( this::readChunks, importChunk ->
             {
-                line = zipFileReader.nextLine();
-                if ( line != null )
-                {
-                    addLine( line );
+                addChunk( importChunk );
 
-                    debugOutputter.conditionallyExecuteTask();
+                debugOutputter.conditionallyExecuteTask();
 
-                    if (
-                            bufferedWords.size() > transactionCalculator.getTransactionSize()
-                                    || charsInBuffer > rootWordlist.getConfiguration().getImportMaxChars()
-                    )
-                    {
-                        flushBuffer();
-                        metaUpdater.conditionallyExecuteTask();
-                    }
+                if (
+                        bufferedWords.size() > transactionCalculator.getTransactionSize()
+                                || charsInBuffer > rootWordlist.getConfiguration().getImportMaxChars()
+                )
+                {
+                    flushBuffer();
+                    metaUpdater.conditionallyExecuteTask();
                 }
-            }
-            while ( !cancelFlag.getAsBoolean() && line != null );
+            }, cancelFlag );
 
-
-            if ( cancelFlag.getAsBoolean() )
+            if ( cancelFlag.getAsBoolean() || !endOfInput )
             {
                 getLogger().warn( "pausing import" );
             }
@@ -228,13 +247,111 @@ class WordlistImporter implements Runnable
                 populationComplete();
             }
         }
+        catch ( ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof PwmUnrecoverableException )
+            {
+                throw ( PwmUnrecoverableException ) cause;
+            }
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_WORDLIST_IMPORT_ERROR, "error processing wordlist lines: " + cause.getMessage() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_WORDLIST_IMPORT_ERROR, "interrupted during wordlist import" );
+        }
         finally
         {
             IOUtils.closeQuietly( zipFileReader );
         }
     }
 
-    private void addLine( final String input )
+    /**
+     * Reader stage, runs on the pipeline producer thread.  Lines are read in chunks and each chunk is queued for
+     * normalization on the worker threads, blocking while the pipeline is full.
+     */
+    private void readChunks( final WorkerPipeline<ImportChunk> pipeline )
+            throws PwmUnrecoverableException, InterruptedException
+    {
+        List<String> lines = new ArrayList<>( LINES_PER_CHUNK );
+        String line = zipFileReader.nextLine();
+        while ( line != null && !cancelFlag.getAsBoolean() )
+        {
+            lines.add( line );
+            if ( lines.size() >= LINES_PER_CHUNK )
+            {
+                submitChunk( pipeline, lines );
+                lines = new ArrayList<>( LINES_PER_CHUNK );
+            }
+            line = zipFileReader.nextLine();
+        }
+
+        if ( line == null )
+        {
+            if ( !lines.isEmpty() )
+            {
+                submitChunk( pipeline, lines );
+            }
+            publishReaderProgress();
+            endOfInput = true;
+        }
+    }
+
+    private void submitChunk( final WorkerPipeline<ImportChunk> pipeline, final List<String> lines )
+            throws InterruptedException
+    {
+        publishReaderProgress();
+        final long byteCount = readByteCount;
+        pipeline.submit( () -> normalizeChunk( lines, byteCount ) );
+    }
+
+    /**
+     * Called only by the thread currently reading the zip file.
+     */
+    private void publishReaderProgress( )
+    {
+        readByteCount = zipFileReader.getByteCount();
+        readLineCount = zipFileReader.getLineCount();
+        readZipName = zipFileReader.currentZipName();
+    }
+
+    /**
+     * Worker stage, normalizes and classifies the lines of one chunk.
+     */
+    private ImportChunk normalizeChunk( final List<String> lines, final long byteCount )
+    {
+        final List<String> words = new ArrayList<>( lines.size() );
+        final Map<WordType, Long> wordTypes = new EnumMap<>( WordType.class );
+        for ( final String line : lines )
+        {
+            addLine( line, words, wordTypes );
+        }
+
+        long chars = 0;
+        for ( final String word : words )
+        {
+            chars += word.length();
+        }
+
+        return new ImportChunk( words, wordTypes, chars, byteCount );
+    }
+
+    /**
+     * Writer stage, runs on the importing thread and receives chunks in the order they were read.
+     */
+    private void addChunk( final ImportChunk importChunk )
+    {
+        for ( final Map.Entry<WordType, Long> entry : importChunk.getWordTypes().entrySet() )
+        {
+            seenWordTypes.merge( entry.getKey(), entry.getValue(), Long::sum );
+        }
+        bufferedWords.addAll( importChunk.getWords() );
+        charsInBuffer += importChunk.getChars();
+        bufferedByteCount = importChunk.getByteCount();
+    }
+
+    private void addLine( final String input, final Collection<String> words, final Map<WordType, Long> wordTypes )
     {
         if ( StringUtil.isEmpty( input ) )
         {
@@ -250,8 +367,7 @@ class WordlistImporter implements Runnable
         }
 
         final WordType wordType = WordType.determineWordType( input );
-        seenWordTypes.computeIfAbsent( wordType, wordType1 -> 0L );
-        seenWordTypes.put( wordType, seenWordTypes.get( wordType ) + 1L );
+        wordTypes.merge( wordType, 1L, Long::sum );
 
         if ( wordType == WordType.RAW )
         {
@@ -259,26 +375,16 @@ class WordlistImporter implements Runnable
             if ( word.isPresent() )
             {
                 final String normalizedWord = wordType.convertInputFromWordlist( this.rootWordlist.getConfiguration(), word.get() );
-                final Set<String> words = WordlistUtil.chunkWord( normalizedWord, rootWordlist.getConfiguration().getCheckSize() );
+                final Set<String> chunkedWords = WordlistUtil.chunkWord( normalizedWord, rootWordlist.getConfiguration().getCheckSize() );
                 importStatistics.getAverageWordLength().update( normalizedWord.length() );
-                importStatistics.getChunksPerWord().update( words.size() );
-                incrementCharBufferCounter( words );
-                bufferedWords.addAll( words );
+                importStatistics.getChunksPerWord().update( chunkedWords.size() );
+                words.addAll( chunkedWords );
             }
         }
         else
         {
             final String normalizedWord = wordType.convertInputFromWordlist( this.rootWordlist.getConfiguration(), input );
-            incrementCharBufferCounter( Collections.singleton( normalizedWord ) );
-            bufferedWords.add( normalizedWord );
-        }
-    }
-
-    private void incrementCharBufferCounter( final Collection<String> words )
-    {
-        for ( final String word : words )
-        {
-            charsInBuffer += word.length();
+            words.add( normalizedWord );
         }
     }
 
@@ -293,6 +399,7 @@ class WordlistImporter implements Runnable
 
         //add the elements
         wordlistBucket.addWords( bufferedWords, rootWordlist );
+        committedByteCount = bufferedByteCount;
 
         if ( cancelFlag.getAsBoolean() )
         {
@@ -315,6 +422,7 @@ class WordlistImporter implements Runnable
             throws PwmUnrecoverableException
     {
         flushBuffer();
+        wordlistBucket.populationComplete();
         getLogger().info( this::makeStatString );
         getLogger().trace( () -> "beginning wordlist size query" );
         final long wordlistSize = wordlistBucket.size();
@@ -325,6 +433,8 @@ class WordlistImporter implements Runnable
         completed = true;
         writeCurrentWordlistStatus();
 
+        rootWordlist.buildBloomFilter( cancelFlag );
+
         getLogger().debug( () -> "final post-population status: " + JsonUtil.serialize( rootWordlist.readWordlistStatus() ) );
     }
 
@@ -377,14 +487,14 @@ class WordlistImporter implements Runnable
         if ( wordlistSourceInfo != null )
         {
             final long totalBytes = wordlistSourceInfo.getBytes();
-            final long remainingBytes = totalBytes - zipFileReader.getByteCount();
+            final long remainingBytes = totalBytes - readByteCount;
             stats.put( DebugKey.BytesRemaining, StringUtil.formatDiskSizeforDebug( remainingBytes ) );
 
             try
             {
-                if ( zipFileReader.getByteCount() > 1000 && TimeDuration.fromCurrent( startTime ).isLongerThan( TimeDuration.MINUTE ) )
+                if ( readByteCount > 1000 && TimeDuration.fromCurrent( startTime ).isLongerThan( TimeDuration.MINUTE ) )
                 {
-                    final long bytesSinceStart = zipFileReader.getByteCount() - bytesSkipped;
+                    final long bytesSinceStart = readByteCount - bytesSkipped;
                     final long elapsedSeconds = TimeDuration.fromCurrent( startTime ).as( TimeDuration.Unit.SECONDS );
 
                     if ( elapsedSeconds > 0 )
@@ -407,12 +517,12 @@ class WordlistImporter implements Runnable
                 /* ignore - it's a long overflow if the estimate is off */
             }
 
-            final Percent percent = new Percent( zipFileReader.getByteCount(), wordlistSourceInfo.getBytes() );
+            final Percent percent = new Percent( readByteCount, wordlistSourceInfo.getBytes() );
             stats.put( DebugKey.PercentComplete, percent.pretty( 2 ) );
         }
 
-        stats.put( DebugKey.LinesRead, PwmNumberFormat.forDefaultLocale().format( zipFileReader.getLineCount() ) );
-        stats.put( DebugKey.BytesRead, StringUtil.formatDiskSizeforDebug( zipFileReader.getByteCount() ) );
+        stats.put( DebugKey.LinesRead, PwmNumberFormat.forDefaultLocale().format( readLineCount ) );
+        stats.put( DebugKey.BytesRead, StringUtil.formatDiskSizeforDebug( readByteCount ) );
 
         stats.put( DebugKey.WordsPerTxn, PwmNumberFormat.forDefaultLocale().format( (long) importStatistics.getWordsPerTransaction().getAverage() ) );
         stats.put( DebugKey.CharsPerTxn, PwmNumberFormat.forDefaultLocale().format( (long) importStatistics.getCharsPerTransaction().getAverage() ) );
@@ -423,7 +533,7 @@ class WordlistImporter implements Runnable
         }
 
         stats.put( DebugKey.ImportTime, TimeDuration.fromCurrent( startTime ).asCompactString() );
-        stats.put( DebugKey.ZipFile, zipFileReader.currentZipName() );
+        stats.put( DebugKey.ZipFile, readZipName );
         stats.put( DebugKey.WordTypes, JsonUtil.serializeMap( seenWordTypes ) );
 
         if ( importStatistics.getChunksPerWord().getAverage() > 1 )
@@ -461,10 +571,19 @@ class WordlistImporter implements Runnable
                 .sourceType( sourceType )
                 .completed( completed )
                 .wordTypes( new HashMap<>( seenWordTypes ) )
-                .bytes( zipFileReader.getByteCount() )
+                .bytes( committedByteCount )
                 .build() );
     }
 
+    @Value
+    private static class ImportChunk
+    {
+        private final List<String> words;
+        private final Map<WordType, Long> wordTypes;
+        private final long chars;
+        private final long byteCount;
+    }
+
     @Value
     private static class ImportStatistics
     {
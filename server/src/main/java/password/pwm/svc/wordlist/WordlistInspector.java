@@ -54,6 +54,11 @@ class WordlistInspector implements Runnable
         try
         {
             checkPopulation();
+
+            if ( !cancelFlag.getAsBoolean() && rootWordlist.readWordlistStatus().isCompleted() )
+            {
+                rootWordlist.loadBloomFilter( cancelFlag );
+            }
         }
         catch ( Exception e )
         {
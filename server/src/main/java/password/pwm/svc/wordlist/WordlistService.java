@@ -21,10 +21,19 @@
 package password.pwm.svc.wordlist;
 
 import password.pwm.PwmApplication;
+import password.pwm.error.ErrorInformation;
+import password.pwm.error.PwmError;
 import password.pwm.error.PwmException;
 import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.java.ClosableIterator;
+import password.pwm.util.java.StringUtil;
 import password.pwm.util.logging.PwmLogger;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
 
 /**
  * @author Jason D. Rivard
@@ -33,6 +42,8 @@ public class WordlistService extends AbstractWordlist implements Wordlist
 {
     private static final PwmLogger LOGGER = PwmLogger.forClass( WordlistService.class );
 
+    static final int HASH_PREFIX_LENGTH = 5;
+
     public WordlistService( )
     {
     }
@@ -52,4 +63,47 @@ public class WordlistService extends AbstractWordlist implements Wordlist
     {
         return super.containsWord( this.getWordTypesCache(), word );
     }
+
+    /**
+     * Returns the suffixes of the SHA1 hashes listed in the wordlist that begin with the supplied five hex character
+     * prefix, so a caller can check a password hash without disclosing it in full.  Only wordlist entries that are SHA1
+     * hashes are included, with either storage type; plain words and other hash types are not, so a wordlist of plain
+     * words returns no suffixes.  Stored hashes are lowercase, the prefix is matched without regard to case and the
+     * suffixes are returned uppercase and sorted.
+     */
+    public List<String> readHashPrefixRange( final String hashPrefix ) throws PwmUnrecoverableException
+    {
+        if ( status() == STATUS.CLOSED )
+        {
+            throw new PwmUnrecoverableException( PwmError.ERROR_SERVICE_NOT_AVAILABLE.toInfo() );
+        }
+
+        if ( StringUtil.isEmpty( hashPrefix ) )
+        {
+            throw new PwmUnrecoverableException( new ErrorInformation(
+                    PwmError.ERROR_FIELD_REQUIRED,
+                    "hash prefix is required",
+                    new String[] {"hash prefix"} ) );
+        }
+
+        if ( !hashPrefix.matches( "[0-9a-fA-F]{" + HASH_PREFIX_LENGTH + "}" ) )
+        {
+            throw new PwmUnrecoverableException( new ErrorInformation(
+                    PwmError.ERROR_FIELD_REGEX_NOMATCH,
+                    "hash prefix must be " + HASH_PREFIX_LENGTH + " hex characters",
+                    new String[] {"hash prefix"} ) );
+        }
+
+        final List<String> suffixes = new ArrayList<>();
+        try ( ClosableIterator<String> iterator = getWordlistBucket().prefixIterator( hashPrefix.toLowerCase() ) )
+        {
+            while ( iterator.hasNext() )
+            {
+                final Optional<String> hash = WordType.SHA1.readHashFromStoredValue( iterator.next() );
+                hash.ifPresent( value -> suffixes.add( value.substring( HASH_PREFIX_LENGTH ).toUpperCase() ) );
+            }
+        }
+        Collections.sort( suffixes );
+        return Collections.unmodifiableList( suffixes );
+    }
 }
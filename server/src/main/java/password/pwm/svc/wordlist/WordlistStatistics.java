@@ -38,6 +38,7 @@ class WordlistStatistics
     private AtomicLoopLongIncrementer wordChecks = new AtomicLoopLongIncrementer( 0, Long.MAX_VALUE );
     private Map<WordType, AtomicLoopLongIncrementer> wordTypeHits = new HashMap<>(  );
     private AtomicLoopLongIncrementer misses = new AtomicLoopLongIncrementer( 0, Long.MAX_VALUE );
+    private AtomicLoopLongIncrementer bloomFilterRejects = new AtomicLoopLongIncrementer( 0, Long.MAX_VALUE );
 
     WordlistStatistics()
     {
@@ -47,7 +48,7 @@ class WordlistStatistics
         }
     }
 
-    Map<String, String> asDebugMap()
+    Map<String, String> asDebugMap( final WordlistBloomFilter bloomFilter )
     {
         final Map<String, String> outputMap = new TreeMap<>(  );
         outputMap.put( "AvgLocalDBWordCheckTimeMS", Double.toString( wordCheckTimeMS.getAverage() ) );
@@ -58,6 +59,13 @@ class WordlistStatistics
         {
             outputMap.put( "Hits-" + entry.getKey().name(), Long.toString( entry.getValue().get() ) );
         }
+        if ( bloomFilter != null )
+        {
+            outputMap.put( "BloomFilterRejects", Long.toString( bloomFilterRejects.get() ) );
+            outputMap.put( "BloomFilterInsertions", Long.toString( bloomFilter.getInsertions() ) );
+            outputMap.put( "BloomFilterSizeBytes", Long.toString( bloomFilter.getSizeBytes() ) );
+            outputMap.put( "BloomFilterFalsePositiveRate", Double.toString( bloomFilter.expectedFalsePositiveRate() ) );
+        }
         return Collections.unmodifiableMap( outputMap );
     }
 }
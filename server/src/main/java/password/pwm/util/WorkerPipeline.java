@@ -0,0 +1,154 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util;
+
+import password.pwm.util.java.JavaHelper;
+import password.pwm.util.java.TimeDuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Three stage pipeline for bulk imports and exports.  A single producer thread reads the source and submits chunks of
+ * work, the chunks are processed in parallel by worker threads, and the results are handed to the consumer on the
+ * calling thread in the same order the chunks were submitted.  The queue between the producer and the consumer is
+ * bounded, so a slow consumer holds back the producer and memory use stays bounded.
+ *
+ * @param <T> result of processing one chunk
+ */
+public class WorkerPipeline<T>
+{
+    private static final TimeDuration SHUTDOWN_WAIT = TimeDuration.of( 10, TimeDuration.Unit.SECONDS );
+
+    private final Future<T> endOfWork = CompletableFuture.completedFuture( null );
+    private final BlockingQueue<Future<T>> resultQueue;
+    private final ExecutorService producerExecutor;
+    private final ExecutorService workerExecutor;
+
+    public interface Producer<T>
+    {
+        void produce( WorkerPipeline<T> pipeline ) throws Exception;
+    }
+
+    public interface Consumer<T>
+    {
+        void consume( T result ) throws Exception;
+    }
+
+    public WorkerPipeline( final Class owner, final int workerThreads )
+    {
+        final String threadName = PwmScheduler.makeThreadName( ( String ) null, owner );
+        final ThreadFactory threadFactory = PwmScheduler.makePwmThreadFactory( threadName + "-", true );
+        this.resultQueue = new ArrayBlockingQueue<>( workerThreads * 2 );
+        this.producerExecutor = Executors.newSingleThreadExecutor( threadFactory );
+        this.workerExecutor = Executors.newFixedThreadPool( workerThreads, threadFactory );
+    }
+
+    public static int defaultWorkerThreads( )
+    {
+        return Math.max( 1, Math.min( 4, Runtime.getRuntime().availableProcessors() - 1 ) );
+    }
+
+    /**
+     * Called by the producer to queue a chunk for processing, blocks while the pipeline is full.
+     */
+    public void submit( final Callable<T> work )
+            throws InterruptedException
+    {
+        resultQueue.put( workerExecutor.submit( work ) );
+    }
+
+    /**
+     * Called by the producer to queue a result which needs no processing, such as a marker between sections.
+     */
+    public void submitResult( final T result )
+            throws InterruptedException
+    {
+        resultQueue.put( CompletableFuture.completedFuture( result ) );
+    }
+
+    public void execute( final Producer<T> producer, final Consumer<T> consumer )
+            throws ExecutionException, InterruptedException
+    {
+        execute( producer, consumer, () -> false );
+    }
+
+    /**
+     * Run the producer on its own thread and feed each result to the consumer on the calling thread.  The first exception
+     * thrown by any stage stops the pipeline and is rethrown as the cause of an {@link ExecutionException}.  If the cancel
+     * flag is set the remaining results are discarded and the producer and workers are interrupted.
+     */
+    public void execute( final Producer<T> producer, final Consumer<T> consumer, final BooleanSupplier cancelFlag )
+            throws ExecutionException, InterruptedException
+    {
+        final Future<?> producerFuture = producerExecutor.submit( ( Callable<Void> ) () ->
+        {
+            try
+            {
+                producer.produce( this );
+            }
+            finally
+            {
+                resultQueue.put( endOfWork );
+            }
+            return null;
+        } );
+
+        try
+        {
+            Future<T> nextResult = resultQueue.take();
+            while ( nextResult != endOfWork && !cancelFlag.getAsBoolean() )
+            {
+                final T result = nextResult.get();
+                try
+                {
+                    consumer.consume( result );
+                }
+                catch ( Exception e )
+                {
+                    throw new ExecutionException( e );
+                }
+                nextResult = resultQueue.take();
+            }
+
+            if ( !cancelFlag.getAsBoolean() )
+            {
+                // rethrows any error from the producer
+                producerFuture.get();
+            }
+        }
+        finally
+        {
+            producerExecutor.shutdownNow();
+            workerExecutor.shutdownNow();
+            JavaHelper.closeAndWaitExecutor( producerExecutor, SHUTDOWN_WAIT );
+            JavaHelper.closeAndWaitExecutor( workerExecutor, SHUTDOWN_WAIT );
+        }
+    }
+}
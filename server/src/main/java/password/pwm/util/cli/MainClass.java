@@ -61,6 +61,7 @@ import password.pwm.util.cli.commands.LocalDBInfoCommand;
 import password.pwm.util.cli.commands.ResetInstanceIDCommand;
 import password.pwm.util.cli.commands.ResponseStatsCommand;
 import password.pwm.util.cli.commands.ShellCommand;
+import password.pwm.util.cli.commands.SnapshotLocalDBCommand;
 import password.pwm.util.cli.commands.TokenInfoCommand;
 import password.pwm.util.cli.commands.UserReportCommand;
 import password.pwm.util.cli.commands.VersionCommand;
@@ -107,6 +108,7 @@ public class MainClass
         commandList.add( new UserReportCommand() );
         commandList.add( new ExportLocalDBCommand() );
         commandList.add( new ImportLocalDBCommand() );
+        commandList.add( new SnapshotLocalDBCommand() );
         commandList.add( new ExportAuditCommand() );
         commandList.add( new ConfigUnlockCommand() );
         commandList.add( new ConfigLockCommand() );
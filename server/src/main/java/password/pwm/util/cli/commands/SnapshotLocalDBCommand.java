@@ -0,0 +1,117 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.cli.commands;
+
+import password.pwm.util.cli.CliParameters;
+import password.pwm.util.java.JsonUtil;
+import password.pwm.util.localdb.LocalDB;
+import password.pwm.util.localdb.LocalDBException;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class SnapshotLocalDBCommand extends AbstractCliCommand
+{
+    static final String OUTPUT_DIRECTORY_OPTIONNAME = "outputDirectory";
+    static final String INCREMENTAL_OPTIONNAME = "incremental";
+
+    @Override
+    void doCommand( )
+            throws Exception
+    {
+        final LocalDB localDB = cliEnvironment.getLocalDB();
+
+        final File outputDirectory = new File( ( String ) cliEnvironment.getOptions().get( OUTPUT_DIRECTORY_OPTIONNAME ) );
+        if ( outputDirectory.exists() && !outputDirectory.isDirectory() )
+        {
+            out( "outputDirectory for SnapshotLocalDB must be a directory" );
+            return;
+        }
+
+        final boolean incremental = Boolean.parseBoolean( ( String ) cliEnvironment.getOptions().get( INCREMENTAL_OPTIONNAME ) );
+
+        try
+        {
+            final LocalDB.SnapshotResult snapshotResult = localDB.snapshot( outputDirectory, incremental );
+            out( "completed LocalDB snapshot to " + outputDirectory.getAbsolutePath() + " " + JsonUtil.serialize( snapshotResult ) );
+        }
+        catch ( LocalDBException e )
+        {
+            out( "error during snapshot: " + e.getMessage() );
+        }
+    }
+
+    @Override
+    public CliParameters getCliParameters( )
+    {
+        final CliParameters.Option outputDirectoryOption = new CliParameters.Option()
+        {
+            @Override
+            public boolean isOptional( )
+            {
+                return false;
+            }
+
+            @Override
+            public Type getType( )
+            {
+                return Type.STRING;
+            }
+
+            @Override
+            public String getName( )
+            {
+                return OUTPUT_DIRECTORY_OPTIONNAME;
+            }
+        };
+
+        final CliParameters.Option incrementalOption = new CliParameters.Option()
+        {
+            @Override
+            public boolean isOptional( )
+            {
+                return true;
+            }
+
+            @Override
+            public Type getType( )
+            {
+                return Type.STRING;
+            }
+
+            @Override
+            public String getName( )
+            {
+                return INCREMENTAL_OPTIONNAME;
+            }
+        };
+
+        final CliParameters cliParameters = new CliParameters();
+        cliParameters.commandName = "SnapshotLocalDB";
+        cliParameters.description = "Copy the LocalDB database files to a directory, incremental=true copies only files changed since the last snapshot";
+        cliParameters.options = Arrays.asList( outputDirectoryOption, incrementalOption );
+
+        cliParameters.needsLocalDB = true;
+        cliParameters.readOnly = true;
+
+        return cliParameters;
+    }
+}
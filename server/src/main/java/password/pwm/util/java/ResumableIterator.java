@@ -0,0 +1,35 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.java;
+
+/**
+ * Iterator which can report its position as an opaque token, so a later iterator can continue where this one stopped.
+ *
+ * @param <K> iterated type
+ */
+public interface ResumableIterator<K> extends ClosableIterator<K>
+{
+    /**
+     * Token for the position after the last returned element, or the starting token if no element has been returned.
+     * A null token represents the beginning of the iteration.
+     */
+    String resumeToken( );
+}
@@ -310,6 +310,25 @@ public abstract class AbstractJDBCLocalDB implements LocalDBProvider
         }
     }
 
+    /**
+     * The range is selected with an {@code ORDER BY} on the key column, so keys are returned in ascending order.
+     */
+    @Override
+    public LocalDB.LocalDBIterator<String> iterator( final LocalDB.DB db, final String fromKey, final String toKey )
+            throws LocalDBException
+    {
+        preCheck( false );
+        if ( dbIterators.size() > ITERATOR_LIMIT )
+        {
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_INTERNAL, "over " + ITERATOR_LIMIT + " iterators are outstanding, maximum limit exceeded" ) );
+        }
+
+        final LocalDB.LocalDBIterator<String> iterator = new DbIterator( db, fromKey, toKey );
+        dbIterators.add( iterator );
+        LOGGER.trace( () -> this.getClass().getSimpleName() + " issued range iterator for " + db.toString() + ", outstanding iterators: " + dbIterators.size() );
+        return iterator;
+    }
+
     public void putAll( final LocalDB.DB db, final Map<String, String> keyValueMap )
             throws LocalDBException
     {
@@ -600,26 +619,61 @@ public abstract class AbstractJDBCLocalDB implements LocalDBProvider
         private String nextItem;
         private String currentItem;
 
+        private PreparedStatement statement;
         private ResultSet resultSet;
         private final LocalDB.DB db;
 
         private DbIterator( final LocalDB.DB db ) throws LocalDBException
+        {
+            this( db, null, null, false );
+        }
+
+        private DbIterator( final LocalDB.DB db, final String fromKey, final String toKey ) throws LocalDBException
+        {
+            this( db, fromKey, toKey, true );
+        }
+
+        private DbIterator( final LocalDB.DB db, final String fromKey, final String toKey, final boolean ordered ) throws LocalDBException
         {
             this.db = db;
-            init();
+            init( fromKey, toKey, ordered );
             fetchNext();
         }
 
-        private void init( ) throws LocalDBException
+        private void init( final String fromKey, final String toKey, final boolean ordered ) throws LocalDBException
         {
-            final String sqlText = "SELECT * FROM " + db.toString();
+            final StringBuilder sqlText = new StringBuilder();
+            sqlText.append( "SELECT * FROM " ).append( db.toString() );
+            if ( fromKey != null )
+            {
+                sqlText.append( " WHERE " + KEY_COLUMN + " >= ?" );
+            }
+            if ( toKey != null )
+            {
+                sqlText.append( fromKey != null ? " AND " : " WHERE " ).append( KEY_COLUMN + " < ?" );
+            }
+            if ( ordered )
+            {
+                sqlText.append( " ORDER BY " + KEY_COLUMN );
+            }
 
-            try ( PreparedStatement statement = dbConnection.prepareStatement( sqlText ) )
+            try
             {
+                statement = dbConnection.prepareStatement( sqlText.toString() );
+                int parameterIndex = 1;
+                if ( fromKey != null )
+                {
+                    statement.setString( parameterIndex++, fromKey );
+                }
+                if ( toKey != null )
+                {
+                    statement.setString( parameterIndex, toKey );
+                }
                 resultSet = statement.executeQuery();
             }
             catch ( final SQLException ex )
             {
+                AbstractJDBCLocalDB.close( statement );
                 throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, ex.getMessage() ) );
             }
         }
@@ -657,6 +711,7 @@ public abstract class AbstractJDBCLocalDB implements LocalDBProvider
         {
             nextItem = null;
             AbstractJDBCLocalDB.close( resultSet );
+            AbstractJDBCLocalDB.close( statement );
             dbIterators.remove( this );
         }
 
@@ -688,7 +743,7 @@ public abstract class AbstractJDBCLocalDB implements LocalDBProvider
         return dbDirectory;
     }
 
-    private void preCheck( final boolean write ) throws LocalDBException
+    protected void preCheck( final boolean write ) throws LocalDBException
     {
         if ( status != LocalDB.Status.OPEN )
         {
@@ -712,6 +767,6 @@ public abstract class AbstractJDBCLocalDB implements LocalDBProvider
     @Override
     public Set<Flag> flags( )
     {
-        return Collections.emptySet();
+        return Collections.singleton( Flag.OrderedRangeIteration );
     }
 }
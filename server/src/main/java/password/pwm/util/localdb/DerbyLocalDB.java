@@ -28,6 +28,9 @@ import password.pwm.util.java.TimeDuration;
 import password.pwm.util.logging.PwmLogger;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.Driver;
@@ -49,6 +52,8 @@ public class DerbyLocalDB extends AbstractJDBCLocalDB
 
     private static final String DERBY_CLASSPATH = "org.apache.derby.jdbc.EmbeddedDriver";
     private static final String DERBY_DEFAULT_SCHEMA = "APP";
+    private static final String DERBY_SUB_PATH = "derby-db";
+    private static final String PREVIOUS_SNAPSHOT_SUFFIX = ".previous";
 
     private Driver driver;
 
@@ -120,7 +125,7 @@ public class DerbyLocalDB extends AbstractJDBCLocalDB
             final Map<String, String> initOptions
     ) throws LocalDBException
     {
-        final String filePath = databaseDirectory.getAbsolutePath() + File.separator + "derby-db";
+        final String filePath = databaseDirectory.getAbsolutePath() + File.separator + DERBY_SUB_PATH;
         final String baseConnectionURL = "jdbc:derby:" + filePath;
         final String connectionURL = baseConnectionURL + ";create=true";
 
@@ -195,6 +200,78 @@ public class DerbyLocalDB extends AbstractJDBCLocalDB
         reclaimSpace( this.dbConnection, db );
     }
 
+    /**
+     * Uses the Derby online backup procedure, which copies the database to {@code targetDirectory/derby-db} while reads
+     * continue.  Derby has no incremental backup, so a full copy is always made.  A previous snapshot is moved aside
+     * during the backup, restored if the backup fails and otherwise removed, so no stale files remain.
+     */
+    @Override
+    public LocalDB.SnapshotResult snapshot( final File targetDirectory, final boolean incremental )
+            throws LocalDBException
+    {
+        preCheck( false );
+
+        final Instant startTime = Instant.now();
+        final Path backupPath = new File( targetDirectory, DERBY_SUB_PATH ).toPath();
+        final Path previousPath = new File( targetDirectory, DERBY_SUB_PATH + PREVIOUS_SNAPSHOT_SUFFIX ).toPath();
+
+        try
+        {
+            LocalDBUtility.deleteSnapshotDirectory( previousPath );
+            if ( Files.exists( backupPath ) )
+            {
+                Files.move( backupPath, previousPath );
+            }
+        }
+        catch ( IOException e )
+        {
+            final String errorMsg = "error moving previous snapshot in '" + targetDirectory.getAbsolutePath() + "', error: " + e.getMessage();
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, errorMsg ) );
+        }
+
+        CallableStatement statement = null;
+        try
+        {
+            lock.readLock().lock();
+            statement = dbConnection.prepareCall( "CALL SYSCS_UTIL.SYSCS_BACKUP_DATABASE(?)" );
+            statement.setString( 1, targetDirectory.getAbsolutePath() );
+            statement.execute();
+        }
+        catch ( SQLException ex )
+        {
+            LocalDBUtility.restorePreviousSnapshot( backupPath, previousPath );
+            final String errorMsg = "error writing snapshot to '" + targetDirectory.getAbsolutePath() + "', error: " + ex.getMessage();
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, errorMsg ) );
+        }
+        finally
+        {
+            close( statement );
+            lock.readLock().unlock();
+        }
+
+        final int removedFileCount = LocalDBUtility.countStaleFiles( backupPath, previousPath );
+        try
+        {
+            LocalDBUtility.deleteSnapshotDirectory( previousPath );
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( "error removing previous snapshot '" + previousPath + "', error: " + e.getMessage() );
+        }
+
+        final File backupDirectory = backupPath.toFile();
+        final int fileCount = FileSystemUtility.readFileInformation( backupDirectory ).size();
+        final long totalBytes = FileSystemUtility.getFileDirectorySize( backupDirectory );
+        return LocalDB.SnapshotResult.builder()
+                .fileCount( fileCount )
+                .copiedFileCount( fileCount )
+                .removedFileCount( removedFileCount )
+                .totalBytes( totalBytes )
+                .copiedBytes( totalBytes )
+                .duration( TimeDuration.fromCurrent( startTime ) )
+                .build();
+    }
+
     private void reclaimSpace( final Connection dbConnection, final LocalDB.DB db )
     {
         if ( readOnly )
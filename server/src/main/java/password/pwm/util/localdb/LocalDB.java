@@ -20,12 +20,18 @@
 
 package password.pwm.util.localdb;
 
+import lombok.Builder;
+import lombok.Value;
 import password.pwm.util.java.ClosableIterator;
+import password.pwm.util.java.ResumableIterator;
+import password.pwm.util.java.TimeDuration;
 
 import java.io.File;
 import java.io.Serializable;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.nio.ByteBuffer;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.Map;
 
@@ -44,6 +50,16 @@ public interface LocalDB
     int MAX_KEY_LENGTH = 256;
     int MAX_VALUE_LENGTH = 1024 * 100;
 
+    /**
+     * Maximum length of a key used with the byte array methods, sized so a base64 encoded key fits within {@link #MAX_KEY_LENGTH}.
+     */
+    int MAX_KEY_BYTES_LENGTH = MAX_KEY_LENGTH / 4 * 3;
+
+    /**
+     * Maximum length of a value used with the byte array methods, sized so a base64 encoded value fits within {@link #MAX_VALUE_LENGTH}.
+     */
+    int MAX_VALUE_BYTES_LENGTH = MAX_VALUE_LENGTH / 4 * 3;
+
     enum Status
     {
         NEW, OPEN, CLOSED
@@ -57,6 +73,19 @@ public interface LocalDB
     boolean contains( DB db, String key )
             throws LocalDBException;
 
+    /**
+     * Test if any of the keys are present.  Providers backed by a transactional store check all keys in a single
+     * read transaction.
+     *
+     * @param db   database to check
+     * @param keys keys to check, an empty collection returns false
+     * @return true if at least one of the keys is present
+     * @throws LocalDBException if there is an error reading the store
+     */
+    @ReadOperation
+    boolean containsAny( DB db, Collection<String> keys )
+            throws LocalDBException;
+
     @ReadOperation
     String get( DB db, String key )
             throws LocalDBException;
@@ -64,6 +93,47 @@ public interface LocalDB
     LocalDBIterator<String> iterator( DB db )
             throws LocalDBException;
 
+    /**
+     * Iterate the keys of a database within a key range.  Providers that store keys in order (the default Xodus
+     * provider) seek directly to the start of the range and return keys in ascending order, other providers may scan
+     * the entire database.
+     *
+     * @param db      database to iterate
+     * @param fromKey lowest key to return (inclusive), or null to start with the first key
+     * @param toKey   key at which to stop (exclusive), or null to continue to the last key
+     * @return iterator of keys within the range, which must be closed by the caller
+     * @throws LocalDBException if there is an error reading the store
+     */
+    LocalDBIterator<String> iterator( DB db, String fromKey, String toKey )
+            throws LocalDBException;
+
+    /**
+     * Iterate the keys of a database in ascending order, continuing after the position of a previous iterator.  Used for
+     * paged views, where each page resumes with a range seek instead of skipping over the keys of the earlier pages.
+     *
+     * @param db          database to iterate
+     * @param resumeToken token from {@link LocalDBResumableIterator#resumeToken()} of a previous iterator, or null to
+     *                    start with the first key
+     * @return iterator of keys after the resume position, which must be closed by the caller
+     * @throws LocalDBException if there is an error reading the store, or the provider does not support ordered range
+     *                          iteration
+     * @throws IllegalArgumentException if the resume token is not valid
+     */
+    LocalDBResumableIterator resumableIterator( DB db, String resumeToken )
+            throws LocalDBException;
+
+    /**
+     * Iterate the keys of a database beginning with a prefix.
+     *
+     * @param db     database to iterate
+     * @param prefix prefix of the keys to return
+     * @return iterator of matching keys, which must be closed by the caller
+     * @throws LocalDBException if there is an error reading the store
+     * @see #iterator(DB, String, String)
+     */
+    LocalDBIterator<String> prefixIterator( DB db, String prefix )
+            throws LocalDBException;
+
     @WriteOperation
     void putAll( DB db, Map<String, String> keyValueMap )
             throws LocalDBException;
@@ -79,14 +149,31 @@ public interface LocalDB
      * @param key   key value
      * @param value string value
      * @return true if the key previously existed
-     * @throws LocalDBException         if there is an error writing to the store
-     * @throws NullPointerException     if the db, key or value is null
-     * @throws IllegalArgumentException if the key is zero length, the key is larger than {@link #MAX_KEY_LENGTH} or the value is larger than {@link #MAX_VALUE_LENGTH}
+     * @throws LocalDBException     if there is an error writing to the store, or the key is zero length, the key is larger
+     *                              than {@link #MAX_KEY_LENGTH} or the value is larger than {@link #MAX_VALUE_LENGTH}
+     * @throws NullPointerException if the db, key or value is null
      */
     @WriteOperation
     boolean put( DB db, String key, String value )
             throws LocalDBException;
 
+    /**
+     * Put a key/value into a database that expires at the specified time.  Once expired, the record is no longer
+     * returned by reads or iterators and is removed from the database by a periodic background purge.  A later
+     * {@link #put(DB, String, String)} of the same key replaces the value and removes the expiration.
+     *
+     * @param db         database to perform the operation on
+     * @param key        key value
+     * @param value      string value
+     * @param expiration time at which the record expires, or null if the record does not expire
+     * @throws LocalDBException     if there is an error writing to the store, or the key is zero length, the value is larger
+     *                              than {@link #MAX_VALUE_LENGTH} or the key is too long to be indexed for expiration
+     * @throws NullPointerException if the db, key or value is null
+     */
+    @WriteOperation
+    void put( DB db, String key, String value, Instant expiration )
+            throws LocalDBException;
+
     @WriteOperation
     boolean putIfAbsent( DB db, String key, String value )
             throws LocalDBException;
@@ -99,6 +186,22 @@ public interface LocalDB
     void removeAll( DB db, Collection<String> key )
             throws LocalDBException;
 
+    /**
+     * Apply all put and remove operations of the batch in a single write transaction.  Providers backed by a
+     * transactional store apply the batch atomically.
+     *
+     * @param batch operations to apply
+     * @throws LocalDBException     if there is an error writing to the store, or any operation's key or value exceeds the
+     *                              permitted lengths
+     * @throws NullPointerException if any operation's db, key or put value is null
+     */
+    @WriteOperation
+    void executeBatch( LocalDBBatch batch )
+            throws LocalDBException;
+
+    /**
+     * Number of records in the database.  Expired records which have not yet been purged are included in the count.
+     */
     @ReadOperation
     long size( DB db )
             throws LocalDBException;
@@ -107,10 +210,100 @@ public interface LocalDB
     void truncate( DB db )
             throws LocalDBException;
 
+    /**
+     * Byte array equivalent of {@link #contains(DB, String)}.
+     *
+     * <p>The byte array methods store keys and values without string encoding, for databases holding binary data such as
+     * hash digests.  Providers that store bytes natively (the default Xodus provider) avoid any conversion, other providers
+     * store the base64 encoding.  A database must be accessed using either the string or the byte array methods, but not
+     * both, and records written with the byte array methods do not support expiration.</p>
+     *
+     * @param db  database to perform the operation on
+     * @param key key value
+     * @return true if the key exists
+     * @throws LocalDBException     if there is an error reading the store, or the key is zero length or longer than {@link #MAX_KEY_BYTES_LENGTH}
+     * @throws NullPointerException if the db or key is null
+     */
+    @ReadOperation
+    boolean containsBytes( DB db, byte[] key )
+            throws LocalDBException;
+
+    /**
+     * Byte array equivalent of {@link #get(DB, String)}.
+     *
+     * @see #containsBytes(DB, byte[])
+     */
+    @ReadOperation
+    byte[] getBytes( DB db, byte[] key )
+            throws LocalDBException;
+
+    /**
+     * Byte array equivalent of {@link #put(DB, String, String)}.
+     *
+     * @param db    database to perform the operation on
+     * @param key   key value
+     * @param value value, which may be zero length
+     * @return true if the key previously existed
+     * @throws LocalDBException     if there is an error writing to the store, or the key or value exceed {@link #MAX_KEY_BYTES_LENGTH}
+     *                              or {@link #MAX_VALUE_BYTES_LENGTH}
+     * @throws NullPointerException if the db, key or value is null
+     * @see #containsBytes(DB, byte[])
+     */
+    @WriteOperation
+    boolean putBytes( DB db, byte[] key, byte[] value )
+            throws LocalDBException;
+
+    /**
+     * Byte array equivalent of {@link #putAll(DB, Map)}.  Keys are wrapped in {@link ByteBuffer} for use as map keys, the
+     * remaining bytes of each buffer are used as the key.
+     *
+     * @see #containsBytes(DB, byte[])
+     */
+    @WriteOperation
+    void putAllBytes( DB db, Map<ByteBuffer, byte[]> keyValueMap )
+            throws LocalDBException;
+
+    /**
+     * Byte array equivalent of {@link #remove(DB, String)}.
+     *
+     * @see #containsBytes(DB, byte[])
+     */
+    @WriteOperation
+    boolean removeBytes( DB db, byte[] key )
+            throws LocalDBException;
+
+    /**
+     * Byte array equivalent of {@link #iterator(DB)}.
+     *
+     * @see #containsBytes(DB, byte[])
+     */
+    LocalDBIterator<byte[]> bytesIterator( DB db )
+            throws LocalDBException;
+
     File getFileLocation( );
 
     Map<String, Serializable> debugInfo( );
 
+    /**
+     * Operation latency and write volume of each database since the LocalDB was opened.
+     */
+    LocalDBMetrics metrics( );
+
+    /**
+     * Write a consistent point in time copy of the database files to a directory while the LocalDB remains available for
+     * reads and writes.  The directory can later be opened as a LocalDB directory.  A previous snapshot in the directory
+     * is replaced by the new snapshot, or restored if the snapshot fails, and files which are not part of the new snapshot
+     * are removed.  A running application takes snapshots through {@link LocalDBService#snapshot()}.
+     *
+     * @param targetDirectory directory to write the snapshot to, created if it does not exist
+     * @param incremental     if true and the directory holds a previous snapshot, only files which changed since the
+     *                        previous snapshot are copied.  Providers without incremental support make a full copy.
+     * @return summary of the files copied
+     * @throws LocalDBException if the provider does not support snapshots or there is an error writing the snapshot
+     */
+    SnapshotResult snapshot( File targetDirectory, boolean incremental )
+            throws LocalDBException;
+
     enum DB
     {
         /**
@@ -138,7 +331,14 @@ public interface LocalDB
         SYSLOG_QUEUE( true ),
         CACHE( false ),
 
-        REPORT_QUEUE( false ),;
+        REPORT_QUEUE( false ),
+
+        /**
+         * Expiration index of records written with an expiration, maintained by the LocalDB.  Like {@link #CACHE},
+         * the only db with expiring records, it is not backed up; records of a backed up db written with an expiration
+         * are restored without one.  Must remain the last value so it is imported after the records it references.
+         */
+        EXPIRY_INDEX( false ),;
 
         private final boolean backup;
 
@@ -167,7 +367,23 @@ public interface LocalDB
     }
 
 
-    interface LocalDBIterator<K> extends ClosableIterator<String>
+    interface LocalDBIterator<K> extends ClosableIterator<K>
+    {
+    }
+
+    interface LocalDBResumableIterator extends LocalDBIterator<String>, ResumableIterator<String>
+    {
+    }
+
+    @Value
+    @Builder
+    class SnapshotResult implements Serializable
     {
+        private final int fileCount;
+        private final int copiedFileCount;
+        private final int removedFileCount;
+        private final long totalBytes;
+        private final long copiedBytes;
+        private final TimeDuration duration;
     }
 }
@@ -23,19 +23,35 @@ package password.pwm.util.localdb;
 import password.pwm.PwmApplication;
 import password.pwm.error.ErrorInformation;
 import password.pwm.error.PwmError;
+import password.pwm.svc.stats.AvgStatistic;
 import password.pwm.svc.stats.EpsStatistic;
+import password.pwm.util.java.TimeDuration;
 
 import java.io.File;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.time.Instant;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class LocalDBAdaptor implements LocalDB
 {
+    private static final TimeDuration STATISTICS_UPDATE_INTERVAL = TimeDuration.MINUTE;
+
     private final LocalDBProvider innerDB;
+    private final LocalDBExpiryIndex expiryIndex;
 
     private final PwmApplication pwmApplication;
 
+    private final LocalDBMetrics metrics = new LocalDBMetrics();
+    private final AtomicLong nextStatisticsUpdate = new AtomicLong( System.nanoTime() );
+    private volatile LocalDBMetrics.Totals lastReadTotals = new LocalDBMetrics.Totals( 0, 0 );
+    private volatile LocalDBMetrics.Totals lastWriteTotals = new LocalDBMetrics.Totals( 0, 0 );
+
     LocalDBAdaptor( final LocalDBProvider innerDB, final PwmApplication pwmApplication )
     {
         this.pwmApplication = pwmApplication;
@@ -45,7 +61,22 @@ public class LocalDBAdaptor implements LocalDB
         }
 
         this.innerDB = innerDB;
+        this.expiryIndex = new LocalDBExpiryIndex( innerDB );
+    }
 
+    void initExpiryIndex( ) throws LocalDBException
+    {
+        expiryIndex.init();
+    }
+
+    void startExpiryPurge( final TimeDuration purgeInterval, final int purgeBatchSize )
+    {
+        expiryIndex.startPurge( pwmApplication == null ? null : pwmApplication.getInstanceID(), purgeInterval, purgeBatchSize );
+    }
+
+    LocalDBExpiryIndex.PurgeResult purgeExpired( final int maxEntries ) throws LocalDBException
+    {
+        return expiryIndex.purgeExpired( maxEntries );
     }
 
     public File getFileLocation( )
@@ -56,28 +87,68 @@ public class LocalDBAdaptor implements LocalDB
     @WriteOperation
     public void close( ) throws LocalDBException
     {
+        expiryIndex.close();
         innerDB.close();
     }
 
     public boolean contains( final DB db, final String key ) throws LocalDBException
     {
+        final long startTime = System.nanoTime();
         ParameterValidator.validateDBValue( db );
         ParameterValidator.validateKeyValue( key );
 
-        final boolean value = innerDB.contains( db, key );
-        markRead();
+        final boolean value = innerDB.contains( db, key ) && !expiryIndex.isExpired( db, key );
+        markRead( db, LocalDBMetrics.Operation.CONTAINS, startTime );
+        return value;
+    }
+
+    public boolean containsAny( final DB db, final Collection<String> keys ) throws LocalDBException
+    {
+        final long startTime = System.nanoTime();
+        ParameterValidator.validateDBValue( db );
+        for ( final String key : keys )
+        {
+            ParameterValidator.validateKeyValue( key );
+        }
+
+        final boolean value;
+        if ( keys.isEmpty() )
+        {
+            value = false;
+        }
+        else if ( expiryIndex.isIndexed( db ) )
+        {
+            // each present key must also be checked for expiration
+            boolean found = false;
+            for ( final String key : keys )
+            {
+                if ( innerDB.contains( db, key ) && !expiryIndex.isExpired( db, key ) )
+                {
+                    found = true;
+                    break;
+                }
+            }
+            value = found;
+        }
+        else
+        {
+            value = innerDB.containsAny( db, keys );
+        }
+
+        markRead( db, LocalDBMetrics.Operation.CONTAINS, startTime );
         return value;
     }
 
 
     public String get( final DB db, final String key ) throws LocalDBException
     {
+        final long startTime = System.nanoTime();
         ParameterValidator.validateDBValue( db );
         ParameterValidator.validateKeyValue( key );
 
         final String value = innerDB.get( db, key );
-        markRead();
-        return value;
+        markRead( db, LocalDBMetrics.Operation.GET, startTime );
+        return value == null || expiryIndex.isExpired( db, key ) ? null : value;
     }
 
     @WriteOperation
@@ -88,18 +159,118 @@ public class LocalDBAdaptor implements LocalDB
 
     public LocalDBIterator<String> iterator( final DB db ) throws LocalDBException
     {
+        final long startTime = System.nanoTime();
+        ParameterValidator.validateDBValue( db );
+        return recordIterator( db, filterExpired( db, innerDB.iterator( db ) ), startTime );
+    }
+
+    public LocalDBIterator<String> iterator( final DB db, final String fromKey, final String toKey ) throws LocalDBException
+    {
+        final long startTime = System.nanoTime();
         ParameterValidator.validateDBValue( db );
-        return innerDB.iterator( db );
+        return recordIterator( db, filterExpired( db, innerDB.iterator( db, fromKey, toKey ) ), startTime );
+    }
+
+    public LocalDBResumableIterator resumableIterator( final DB db, final String resumeToken ) throws LocalDBException
+    {
+        if ( !innerDB.flags().contains( LocalDBProvider.Flag.OrderedRangeIteration ) )
+        {
+            final String msg = "resumable iteration requires ordered range iteration, which is not supported by " + innerDB.getClass().getSimpleName();
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_INTERNAL, msg ) );
+        }
+
+        final String lastKey = LocalDBResumeIterator.decodeResumeToken( resumeToken );
+        return new LocalDBResumeIterator( iterator( db, lastKey, null ), lastKey );
+    }
+
+    public LocalDBIterator<String> prefixIterator( final DB db, final String prefix ) throws LocalDBException
+    {
+        final long startTime = System.nanoTime();
+        ParameterValidator.validateDBValue( db );
+        ParameterValidator.validateKeyValue( prefix );
+
+        final String upperBound = prefixUpperBound( prefix );
+        if ( upperBound == null )
+        {
+            final LocalDBIterator<String> filteredIterator = new LocalDBFilteredIterator( innerDB.iterator( db, prefix, null ), key -> key.startsWith( prefix ) );
+            return recordIterator( db, filterExpired( db, filteredIterator ), startTime );
+        }
+
+        return recordIterator( db, filterExpired( db, innerDB.iterator( db, prefix, upperBound ) ), startTime );
+    }
+
+    private <K> LocalDBIterator<K> recordIterator( final DB db, final LocalDBIterator<K> iterator, final long startTime )
+    {
+        metrics.record( db, LocalDBMetrics.Operation.ITERATOR, startTime );
+        return iterator;
+    }
+
+    private LocalDBIterator<String> filterExpired( final DB db, final LocalDBIterator<String> iterator )
+    {
+        if ( !expiryIndex.isIndexed( db ) )
+        {
+            return iterator;
+        }
+
+        return new LocalDBFilteredIterator( iterator, key ->
+        {
+            try
+            {
+                return !expiryIndex.isExpired( db, key );
+            }
+            catch ( LocalDBException e )
+            {
+                throw new IllegalStateException( e );
+            }
+        } );
+    }
+
+    /**
+     * Returns the lowest string greater than every string beginning with the prefix, or null if there is no such
+     * string (the prefix consists only of {@link Character#MAX_VALUE} characters).
+     */
+    static String prefixUpperBound( final String prefix )
+    {
+        int lastIndex = prefix.length() - 1;
+        while ( lastIndex >= 0 && prefix.charAt( lastIndex ) == Character.MAX_VALUE )
+        {
+            lastIndex--;
+        }
+
+        if ( lastIndex < 0 )
+        {
+            return null;
+        }
+
+        return prefix.substring( 0, lastIndex ) + ( char ) ( prefix.charAt( lastIndex ) + 1 );
     }
 
     public Map<String, Serializable> debugInfo( )
     {
-        return innerDB.debugInfo();
+        final Map<String, Serializable> debugInfo = new LinkedHashMap<>( innerDB.debugInfo() );
+        debugInfo.putAll( metrics.debugInfo() );
+        return Collections.unmodifiableMap( debugInfo );
+    }
+
+    public LocalDBMetrics metrics( )
+    {
+        return metrics;
+    }
+
+    public SnapshotResult snapshot( final File targetDirectory, final boolean incremental ) throws LocalDBException
+    {
+        if ( targetDirectory == null )
+        {
+            throw new NullPointerException( "targetDirectory cannot be null" );
+        }
+
+        return innerDB.snapshot( targetDirectory, incremental );
     }
 
     @WriteOperation
     public void putAll( final DB db, final Map<String, String> keyValueMap ) throws LocalDBException
     {
+        final long startTime = System.nanoTime();
         ParameterValidator.validateDBValue( db );
         for ( final Map.Entry<String, String> entry : keyValueMap.entrySet() )
         {
@@ -120,50 +291,117 @@ public class LocalDBAdaptor implements LocalDB
             }
         }
 
-        innerDB.putAll( db, keyValueMap );
+        expiryIndex.withStableIndexState( () ->
+        {
+            if ( expiryIndex.isIndexed( db ) )
+            {
+                expiryIndex.executeBatch( new LocalDBBatch().putAll( db, keyValueMap ) );
+            }
+            else
+            {
+                innerDB.putAll( db, keyValueMap );
+            }
+            return null;
+        } );
 
-        markWrite( keyValueMap.size() );
+        markWrite( db, LocalDBMetrics.Operation.PUT_ALL, startTime, keyValueMap.size(), stringMapLength( keyValueMap ) );
     }
 
     @WriteOperation
     public boolean put( final DB db, final String key, final String value ) throws LocalDBException
     {
+        final long startTime = System.nanoTime();
         ParameterValidator.validateDBValue( db );
         ParameterValidator.validateKeyValue( key );
         ParameterValidator.validateValueValue( value );
 
-        final boolean preExisting = innerDB.put( db, key, value );
+        final boolean preExisting = expiryIndex.withStableIndexState( () ->
+        {
+            if ( expiryIndex.isIndexed( db ) )
+            {
+                final boolean existing = innerDB.contains( db, key ) && !expiryIndex.isExpired( db, key );
+                expiryIndex.executeBatch( new LocalDBBatch().put( db, key, value ) );
+                return existing;
+            }
+            return innerDB.put( db, key, value );
+        } );
 
-        markWrite( 1 );
+        markWrite( db, LocalDBMetrics.Operation.PUT, startTime, 1, utf8Length( key ) + utf8Length( value ) );
         return preExisting;
     }
 
+    @WriteOperation
+    public void put( final DB db, final String key, final String value, final Instant expiration ) throws LocalDBException
+    {
+        if ( expiration == null )
+        {
+            put( db, key, value );
+            return;
+        }
+
+        final long startTime = System.nanoTime();
+
+        ParameterValidator.validateDBValue( db );
+        ParameterValidator.validateKeyValue( key );
+        ParameterValidator.validateValueValue( value );
+        LocalDBExpiryIndex.validateKey( key );
+
+        expiryIndex.executeBatch( new LocalDBBatch().put( db, key, value, expiration ) );
+        markWrite( db, LocalDBMetrics.Operation.PUT, startTime, 1, utf8Length( key ) + utf8Length( value ) );
+    }
+
     @WriteOperation
     public boolean putIfAbsent( final DB db, final String key, final String value ) throws LocalDBException
     {
+        final long startTime = System.nanoTime();
         ParameterValidator.validateDBValue( db );
         ParameterValidator.validateKeyValue( key );
         ParameterValidator.validateValueValue( value );
 
-        final boolean success = innerDB.putIfAbsent( db, key, value );
-        markWrite( 1 );
+        final boolean success = expiryIndex.withStableIndexState( () ->
+        {
+            if ( expiryIndex.isIndexed( db ) )
+            {
+                // not atomic for dbs with expiring records, an expired record is replaced as if absent
+                if ( innerDB.contains( db, key ) && !expiryIndex.isExpired( db, key ) )
+                {
+                    return false;
+                }
+                expiryIndex.executeBatch( new LocalDBBatch().put( db, key, value ) );
+                return true;
+            }
+            return innerDB.putIfAbsent( db, key, value );
+        } );
+
+        markWrite( db, LocalDBMetrics.Operation.PUT, startTime, 1, utf8Length( key ) + utf8Length( value ) );
         return success;
     }
 
     @WriteOperation
     public boolean remove( final DB db, final String key ) throws LocalDBException
     {
+        final long startTime = System.nanoTime();
         ParameterValidator.validateDBValue( db );
         ParameterValidator.validateKeyValue( key );
 
-        final boolean result = innerDB.remove( db, key );
-        markWrite( 1 );
+        final boolean result = expiryIndex.withStableIndexState( () ->
+        {
+            if ( expiryIndex.isIndexed( db ) )
+            {
+                final boolean existing = innerDB.contains( db, key ) && !expiryIndex.isExpired( db, key );
+                expiryIndex.executeBatch( new LocalDBBatch().remove( db, key ) );
+                return existing;
+            }
+            return innerDB.remove( db, key );
+        } );
+        markWrite( db, LocalDBMetrics.Operation.REMOVE, startTime, 1, utf8Length( key ) );
         return result;
     }
 
     @WriteOperation
     public void removeAll( final DB db, final Collection<String> keys ) throws LocalDBException
     {
+        final long startTime = System.nanoTime();
         ParameterValidator.validateDBValue( db );
         for ( final String loopKey : keys )
         {
@@ -181,19 +419,115 @@ public class LocalDBAdaptor implements LocalDB
             }
         }
 
-        if ( keys.size() > 1 )
+        expiryIndex.withStableIndexState( () ->
         {
-            innerDB.removeAll( db, keys );
+            if ( expiryIndex.isIndexed( db ) )
+            {
+                expiryIndex.executeBatch( new LocalDBBatch().removeAll( db, keys ) );
+            }
+            else if ( keys.size() > 1 )
+            {
+                innerDB.removeAll( db, keys );
+            }
+            else
+            {
+                for ( final String key : keys )
+                {
+                    innerDB.remove( db, key );
+                }
+            }
+            return null;
+        } );
+
+        markWrite( db, LocalDBMetrics.Operation.REMOVE, startTime, keys.size(), stringLength( keys ) );
+    }
+
+    @WriteOperation
+    public void executeBatch( final LocalDBBatch batch ) throws LocalDBException
+    {
+        if ( batch == null )
+        {
+            throw new NullPointerException( "batch cannot be null" );
+        }
+
+        if ( batch.isEmpty() )
+        {
+            return;
+        }
+
+        final long startTime = System.nanoTime();
+
+        for ( final LocalDBBatch.Operation operation : batch.getOperations() )
+        {
+            try
+            {
+                ParameterValidator.validateDBValue( operation.getDb() );
+                ParameterValidator.validateKeyValue( operation.getKey() );
+                if ( operation.getType() == LocalDBBatch.OperationType.PUT )
+                {
+                    ParameterValidator.validateValueValue( operation.getValue() );
+                }
+                if ( operation.getExpiration() != null )
+                {
+                    LocalDBExpiryIndex.validateKey( operation.getKey() );
+                }
+            }
+            catch ( NullPointerException e )
+            {
+                throw new NullPointerException( e.getMessage() + " for batch record: '" + operation.getKey() + "'" );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                throw new IllegalArgumentException( e.getMessage() + " for batch record: '" + operation.getKey() + "'" );
+            }
+        }
+
+        if ( hasExpiration( batch ) )
+        {
+            // takes the index state write lock itself if the batch makes a db expiring
+            expiryIndex.executeBatch( batch );
         }
         else
         {
-            for ( final String key : keys )
+            expiryIndex.withStableIndexState( () ->
             {
-                remove( db, key );
+                if ( requiresExpiryIndex( batch ) )
+                {
+                    expiryIndex.executeBatch( batch );
+                }
+                else
+                {
+                    innerDB.executeBatch( batch );
+                }
+                return null;
+            } );
+        }
+
+        markBatchWrite( batch, startTime );
+    }
+
+    private boolean requiresExpiryIndex( final LocalDBBatch batch )
+    {
+        for ( final LocalDBBatch.Operation operation : batch.getOperations() )
+        {
+            if ( expiryIndex.isIndexed( operation.getDb() ) )
+            {
+                return true;
             }
         }
+        return false;
+    }
 
-        markWrite( keys.size() );
+    private static boolean hasExpiration( final LocalDBBatch batch )
+    {
+        for ( final LocalDBBatch.Operation operation : batch.getOperations() )
+        {
+            if ( operation.getExpiration() != null )
+            {
+                return true;
+            }
+        }
+        return false;
     }
 
     public long size( final DB db ) throws LocalDBException
@@ -206,7 +540,8 @@ public class LocalDBAdaptor implements LocalDB
     public void truncate( final DB db ) throws LocalDBException
     {
         ParameterValidator.validateDBValue( db );
-            innerDB.truncate( db );
+        innerDB.truncate( db );
+        expiryIndex.truncate( db );
     }
 
     public Status status( )
@@ -214,6 +549,85 @@ public class LocalDBAdaptor implements LocalDB
         return innerDB.getStatus();
     }
 
+    public boolean containsBytes( final DB db, final byte[] key ) throws LocalDBException
+    {
+        final long startTime = System.nanoTime();
+        ParameterValidator.validateDBValue( db );
+        ParameterValidator.validateKeyBytes( key );
+
+        final boolean value = innerDB.containsBytes( db, key );
+        markRead( db, LocalDBMetrics.Operation.CONTAINS, startTime );
+        return value;
+    }
+
+    public byte[] getBytes( final DB db, final byte[] key ) throws LocalDBException
+    {
+        final long startTime = System.nanoTime();
+        ParameterValidator.validateDBValue( db );
+        ParameterValidator.validateKeyBytes( key );
+
+        final byte[] value = innerDB.getBytes( db, key );
+        markRead( db, LocalDBMetrics.Operation.GET, startTime );
+        return value;
+    }
+
+    @WriteOperation
+    public boolean putBytes( final DB db, final byte[] key, final byte[] value ) throws LocalDBException
+    {
+        final long startTime = System.nanoTime();
+        ParameterValidator.validateDBValue( db );
+        ParameterValidator.validateKeyBytes( key );
+        ParameterValidator.validateValueBytes( value );
+
+        final boolean preExisting = innerDB.putBytes( db, key, value );
+        markWrite( db, LocalDBMetrics.Operation.PUT, startTime, 1, key.length + value.length );
+        return preExisting;
+    }
+
+    @WriteOperation
+    public void putAllBytes( final DB db, final Map<ByteBuffer, byte[]> keyValueMap ) throws LocalDBException
+    {
+        final long startTime = System.nanoTime();
+        ParameterValidator.validateDBValue( db );
+        for ( final Map.Entry<ByteBuffer, byte[]> entry : keyValueMap.entrySet() )
+        {
+            if ( entry.getKey() == null )
+            {
+                throw new NullPointerException( "key cannot be null" );
+            }
+            ParameterValidator.validateKeyLength( entry.getKey().remaining(), LocalDB.MAX_KEY_BYTES_LENGTH );
+            ParameterValidator.validateValueBytes( entry.getValue() );
+        }
+
+        innerDB.putAllBytes( db, keyValueMap );
+
+        long bytes = 0;
+        for ( final Map.Entry<ByteBuffer, byte[]> entry : keyValueMap.entrySet() )
+        {
+            bytes += entry.getKey().remaining() + entry.getValue().length;
+        }
+        markWrite( db, LocalDBMetrics.Operation.PUT_ALL, startTime, keyValueMap.size(), bytes );
+    }
+
+    @WriteOperation
+    public boolean removeBytes( final DB db, final byte[] key ) throws LocalDBException
+    {
+        final long startTime = System.nanoTime();
+        ParameterValidator.validateDBValue( db );
+        ParameterValidator.validateKeyBytes( key );
+
+        final boolean result = innerDB.removeBytes( db, key );
+        markWrite( db, LocalDBMetrics.Operation.REMOVE, startTime, 1, key.length );
+        return result;
+    }
+
+    public LocalDBIterator<byte[]> bytesIterator( final DB db ) throws LocalDBException
+    {
+        final long startTime = System.nanoTime();
+        ParameterValidator.validateDBValue( db );
+        return recordIterator( db, innerDB.bytesIterator( db ), startTime );
+    }
+
     private static class ParameterValidator
     {
         private static void validateDBValue( final LocalDB.DB db )
@@ -231,14 +645,43 @@ public class LocalDBAdaptor implements LocalDB
                 throw new NullPointerException( "key cannot be null" );
             }
 
-            if ( key.length() <= 0 )
+            validateKeyLength( key.length(), LocalDB.MAX_KEY_LENGTH );
+        }
+
+        private static void validateKeyBytes( final byte[] key ) throws LocalDBException
+        {
+            if ( key == null )
+            {
+                throw new NullPointerException( "key cannot be null" );
+            }
+
+            validateKeyLength( key.length, LocalDB.MAX_KEY_BYTES_LENGTH );
+        }
+
+        private static void validateKeyLength( final int length, final int maxLength ) throws LocalDBException
+        {
+            if ( length <= 0 )
             {
                 throw new LocalDBException( new ErrorInformation( PwmError.ERROR_INTERNAL, "key length cannot be zero length" ) );
             }
 
-            if ( key.length() > LocalDB.MAX_KEY_LENGTH )
+            if ( length > maxLength )
             {
-                throw new LocalDBException( new ErrorInformation( PwmError.ERROR_INTERNAL, "key length " + key.length() + " is greater than max " + LocalDB.MAX_KEY_LENGTH ) );
+                throw new LocalDBException( new ErrorInformation( PwmError.ERROR_INTERNAL, "key length " + length + " is greater than max " + maxLength ) );
+            }
+        }
+
+        private static void validateValueBytes( final byte[] value ) throws LocalDBException
+        {
+            if ( value == null )
+            {
+                throw new NullPointerException( "value cannot be null" );
+            }
+
+            if ( value.length > LocalDB.MAX_VALUE_BYTES_LENGTH )
+            {
+                final String errorMsg = "value length " + value.length + " is greater than max " + LocalDB.MAX_VALUE_BYTES_LENGTH;
+                throw new LocalDBException( new ErrorInformation( PwmError.ERROR_INTERNAL, errorMsg ) );
             }
         }
 
@@ -257,25 +700,138 @@ public class LocalDBAdaptor implements LocalDB
         }
     }
 
-    private void markRead()
+    private void markRead( final DB db, final LocalDBMetrics.Operation operation, final long startTime )
     {
+        metrics.record( db, operation, startTime );
+
         if ( pwmApplication != null )
         {
             if ( pwmApplication.getStatisticsManager() != null )
             {
                 pwmApplication.getStatisticsManager().updateEps( EpsStatistic.PWMDB_READS, 1 );
+                conditionallyUpdateAverageStatistics();
             }
         }
     }
 
-    private void markWrite( final int events )
+    private void markWrite( final DB db, final LocalDBMetrics.Operation operation, final long startTime, final int records, final long bytes )
+    {
+        metrics.record( db, operation, startTime );
+        metrics.recordWrite( db, records, bytes );
+        markWriteEps( records );
+    }
+
+    private void markBatchWrite( final LocalDBBatch batch, final long startTime )
+    {
+        final Map<DB, long[]> dbTotals = new EnumMap<>( DB.class );
+        for ( final LocalDBBatch.Operation operation : batch.getOperations() )
+        {
+            final long[] totals = dbTotals.computeIfAbsent( operation.getDb(), db -> new long[ 2 ] );
+            totals[ 0 ]++;
+            totals[ 1 ] += utf8Length( operation.getKey() ) + ( operation.getValue() == null ? 0 : utf8Length( operation.getValue() ) );
+        }
+
+        for ( final Map.Entry<DB, long[]> entry : dbTotals.entrySet() )
+        {
+            metrics.record( entry.getKey(), LocalDBMetrics.Operation.BATCH, startTime );
+            metrics.recordWrite( entry.getKey(), ( int ) entry.getValue()[ 0 ], entry.getValue()[ 1 ] );
+        }
+        markWriteEps( batch.size() );
+    }
+
+    private void markWriteEps( final int events )
     {
         if ( pwmApplication != null )
         {
             if ( pwmApplication.getStatisticsManager() != null )
             {
                 pwmApplication.getStatisticsManager().updateEps( EpsStatistic.PWMDB_WRITES, events );
+                conditionallyUpdateAverageStatistics();
+            }
+        }
+    }
+
+    /**
+     * Periodically add the average read and write time since the previous update to the statistics manager.  Updating
+     * the statistics for every operation would serialize all LocalDB access on the statistics lock.
+     */
+    private void conditionallyUpdateAverageStatistics( )
+    {
+        final long now = System.nanoTime();
+        final long nextUpdate = nextStatisticsUpdate.get();
+        if ( now - nextUpdate < 0 || !nextStatisticsUpdate.compareAndSet( nextUpdate, now + STATISTICS_UPDATE_INTERVAL.as( TimeDuration.Unit.MILLISECONDS ) * 1_000_000 ) )
+        {
+            return;
+        }
+
+        final LocalDBMetrics.Totals readTotals = metrics.totals( false );
+        final LocalDBMetrics.Totals writeTotals = metrics.totals( true );
+        updateAverageStatistic( AvgStatistic.AVG_LOCALDB_READ_TIME, readTotals, lastReadTotals );
+        updateAverageStatistic( AvgStatistic.AVG_LOCALDB_WRITE_TIME, writeTotals, lastWriteTotals );
+        lastReadTotals = readTotals;
+        lastWriteTotals = writeTotals;
+    }
+
+    private void updateAverageStatistic( final AvgStatistic statistic, final LocalDBMetrics.Totals totals, final LocalDBMetrics.Totals previousTotals )
+    {
+        final long count = totals.getCount() - previousTotals.getCount();
+        if ( count > 0 )
+        {
+            final long avgMicros = ( totals.getNanos() - previousTotals.getNanos() ) / count / 1000;
+            pwmApplication.getStatisticsManager().updateAverageValue( statistic, avgMicros );
+        }
+    }
+
+    private static long stringLength( final Collection<String> values )
+    {
+        long length = 0;
+        for ( final String value : values )
+        {
+            length += utf8Length( value );
+        }
+        return length;
+    }
+
+    /**
+     * Length of the string when encoded as UTF-8, counted without encoding the string.  Unpaired surrogates count as the
+     * single replacement byte written by {@link String#getBytes(java.nio.charset.Charset)}.
+     */
+    static int utf8Length( final String value )
+    {
+        int length = 0;
+        final int charCount = value.length();
+        int index = 0;
+        while ( index < charCount )
+        {
+            final char c = value.charAt( index );
+            index++;
+            if ( c < 0x80 )
+            {
+                length += 1;
+            }
+            else if ( c < 0x800 )
+            {
+                length += 2;
+            }
+            else if ( Character.isHighSurrogate( c ) && index < charCount && Character.isLowSurrogate( value.charAt( index ) ) )
+            {
+                length += 4;
+                index++;
+            }
+            else if ( Character.isSurrogate( c ) )
+            {
+                length += 1;
+            }
+            else
+            {
+                length += 3;
             }
         }
+        return length;
+    }
+
+    private static long stringMapLength( final Map<String, String> keyValueMap )
+    {
+        return stringLength( keyValueMap.keySet() ) + stringLength( keyValueMap.values() );
     }
 }
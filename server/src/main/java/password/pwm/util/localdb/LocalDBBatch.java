@@ -0,0 +1,113 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An ordered set of put and remove operations, which may span several {@link LocalDB.DB}s, to be applied by
+ * {@link LocalDB#executeBatch(LocalDBBatch)} as a single write transaction.  Operations are applied in the order
+ * they were added, so a later operation on the same key wins.
+ */
+public class LocalDBBatch
+{
+    enum OperationType
+    {
+        PUT,
+        REMOVE,
+    }
+
+    @Value
+    static class Operation
+    {
+        private final OperationType type;
+        private final LocalDB.DB db;
+        private final String key;
+        private final String value;
+        private final Instant expiration;
+    }
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    public LocalDBBatch put( final LocalDB.DB db, final String key, final String value )
+    {
+        operations.add( new Operation( OperationType.PUT, db, key, value, null ) );
+        return this;
+    }
+
+    /**
+     * Put a record that expires at the specified time, see {@link LocalDB#put(LocalDB.DB, String, String, Instant)}.
+     */
+    public LocalDBBatch put( final LocalDB.DB db, final String key, final String value, final Instant expiration )
+    {
+        operations.add( new Operation( OperationType.PUT, db, key, value, expiration ) );
+        return this;
+    }
+
+    public LocalDBBatch putAll( final LocalDB.DB db, final Map<String, String> keyValueMap )
+    {
+        Objects.requireNonNull( keyValueMap );
+        for ( final Map.Entry<String, String> entry : keyValueMap.entrySet() )
+        {
+            put( db, entry.getKey(), entry.getValue() );
+        }
+        return this;
+    }
+
+    public LocalDBBatch remove( final LocalDB.DB db, final String key )
+    {
+        operations.add( new Operation( OperationType.REMOVE, db, key, null, null ) );
+        return this;
+    }
+
+    public LocalDBBatch removeAll( final LocalDB.DB db, final Collection<String> keys )
+    {
+        Objects.requireNonNull( keys );
+        for ( final String key : keys )
+        {
+            remove( db, key );
+        }
+        return this;
+    }
+
+    public int size( )
+    {
+        return operations.size();
+    }
+
+    public boolean isEmpty( )
+    {
+        return operations.isEmpty();
+    }
+
+    List<Operation> getOperations( )
+    {
+        return Collections.unmodifiableList( operations );
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import lombok.Value;
+import password.pwm.error.ErrorInformation;
+import password.pwm.error.PwmError;
+import password.pwm.util.PwmScheduler;
+import password.pwm.util.java.JavaHelper;
+import password.pwm.util.java.TimeDuration;
+import password.pwm.util.logging.PwmLogger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tracks the expiration of records written with {@link LocalDB#put(LocalDB.DB, String, String, Instant)}.  Two entries
+ * are kept in {@link LocalDB.DB#EXPIRY_INDEX} for each expiring record:
+ *
+ * <ul>
+ *     <li>a record entry, {@code r|<db>|<key>}, holding the expiration timestamp of the record</li>
+ *     <li>an expiration entry, {@code e|<timestamp>|<db>|<key>}, so that expired records can be found with a key range scan</li>
+ * </ul>
+ *
+ * <p>Overwriting or removing a record only removes the record entry, the orphaned expiration entry is discarded
+ * when it is reached by {@link #purgeExpired(int)}.  A record is only purged if its record entry still has the
+ * timestamp of the expiration entry.</p>
+ */
+class LocalDBExpiryIndex
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( LocalDBExpiryIndex.class );
+
+    private static final LocalDB.DB INDEX_DB = LocalDB.DB.EXPIRY_INDEX;
+
+    private static final String RECORD_PREFIX = "r|";
+    private static final String EXPIRATION_PREFIX = "e|";
+    private static final char SEPARATOR = '|';
+
+    // timestamps are zero padded so that expiration entries sort in time order
+    private static final int TIMESTAMP_LENGTH = 16;
+
+    /**
+     * Maximum key length of an expiring record, shorter than {@link LocalDB#MAX_KEY_LENGTH} to leave room for the index entry prefix.
+     */
+    static final int MAX_KEY_LENGTH = LocalDB.MAX_KEY_LENGTH - ( EXPIRATION_PREFIX.length() + TIMESTAMP_LENGTH + 2 + maxDbNameLength() );
+
+    private final LocalDBProvider localDBProvider;
+    private final Set<LocalDB.DB> expiringDBs = ConcurrentHashMap.newKeySet();
+
+    // writes to expiring dbs share the read lock, a purge batch holds the write lock between checking and removing records
+    private final ReadWriteLock purgeLock = new ReentrantReadWriteLock();
+
+    // writes share the read lock between checking isIndexed() and writing, adding a db to expiringDBs holds the write lock
+    private final ReadWriteLock indexStateLock = new ReentrantReadWriteLock();
+
+    private volatile ScheduledExecutorService purgeExecutor;
+
+    LocalDBExpiryIndex( final LocalDBProvider localDBProvider )
+    {
+        this.localDBProvider = localDBProvider;
+    }
+
+    /**
+     * Find the databases that currently have expiring records.
+     */
+    void init( ) throws LocalDBException
+    {
+        expiringDBs.clear();
+        for ( final LocalDB.DB db : LocalDB.DB.values() )
+        {
+            if ( !readRecordKeys( db, 1 ).isEmpty() )
+            {
+                expiringDBs.add( db );
+            }
+        }
+    }
+
+    void startPurge( final String instanceID, final TimeDuration purgeInterval, final int purgeBatchSize )
+    {
+        purgeExecutor = PwmScheduler.makeSingleThreadExecutorService( instanceID, LocalDBExpiryIndex.class );
+        purgeExecutor.scheduleWithFixedDelay(
+                () -> purgeAllExpired( purgeBatchSize ),
+                purgeInterval.asMillis(),
+                purgeInterval.asMillis(),
+                TimeUnit.MILLISECONDS );
+    }
+
+    void close( )
+    {
+        JavaHelper.closeAndWaitExecutor( purgeExecutor, TimeDuration.SECONDS_10 );
+    }
+
+    /**
+     * Indicates if the db has (or may have) expiring records, and so requires expiration checks on read and index maintenance on write.
+     */
+    boolean isIndexed( final LocalDB.DB db )
+    {
+        return db == INDEX_DB || expiringDBs.contains( db );
+    }
+
+    /**
+     * Perform a write that depends on the result of {@link #isIndexed(LocalDB.DB)}, so that no db becomes indexed between
+     * the check and the write.  Otherwise a direct write could overwrite a record just written with an expiration,
+     * leaving the record entry in place to have the new value purged.
+     */
+    <T> T withStableIndexState( final IndexStateWrite<T> write ) throws LocalDBException
+    {
+        final Lock lock = indexStateLock.readLock();
+        lock.lock();
+        try
+        {
+            return write.execute();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    boolean isExpired( final LocalDB.DB db, final String key ) throws LocalDBException
+    {
+        if ( !expiringDBs.contains( db ) )
+        {
+            return false;
+        }
+
+        final String timestamp = localDBProvider.get( INDEX_DB, recordKey( db, key ) );
+        return timestamp != null && Long.parseLong( timestamp ) <= System.currentTimeMillis();
+    }
+
+    /**
+     * Apply the batch along with the index operations required to track, or stop tracking, the expiration of each record.
+     */
+    void executeBatch( final LocalDBBatch batch ) throws LocalDBException
+    {
+        if ( addsExpiringDB( batch ) )
+        {
+            final Lock lock = indexStateLock.writeLock();
+            lock.lock();
+            try
+            {
+                executeIndexedBatch( batch );
+            }
+            finally
+            {
+                lock.unlock();
+            }
+            return;
+        }
+
+        withStableIndexState( () ->
+        {
+            executeIndexedBatch( batch );
+            return null;
+        } );
+    }
+
+    /**
+     * Callers must not hold the index state lock when the batch has operations with an expiration, the read lock can not be upgraded.
+     */
+    private boolean addsExpiringDB( final LocalDBBatch batch )
+    {
+        for ( final LocalDBBatch.Operation operation : batch.getOperations() )
+        {
+            if ( operation.getExpiration() != null && !expiringDBs.contains( operation.getDb() ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void executeIndexedBatch( final LocalDBBatch batch ) throws LocalDBException
+    {
+        final LocalDBBatch indexedBatch = new LocalDBBatch();
+        for ( final LocalDBBatch.Operation operation : batch.getOperations() )
+        {
+            appendOperation( indexedBatch, operation );
+        }
+
+        final Lock lock = purgeLock.readLock();
+        lock.lock();
+        try
+        {
+            localDBProvider.executeBatch( indexedBatch );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void appendOperation( final LocalDBBatch indexedBatch, final LocalDBBatch.Operation operation )
+    {
+        final LocalDB.DB db = operation.getDb();
+        final String key = operation.getKey();
+
+        if ( db == INDEX_DB )
+        {
+            // direct writes to the index, such as during a LocalDB import
+            if ( operation.getType() == LocalDBBatch.OperationType.PUT )
+            {
+                indexedBatch.put( db, key, operation.getValue() );
+                noteIndexKey( key );
+            }
+            else
+            {
+                indexedBatch.remove( db, key );
+            }
+            return;
+        }
+
+        if ( operation.getType() == LocalDBBatch.OperationType.PUT )
+        {
+            indexedBatch.put( db, key, operation.getValue() );
+            if ( operation.getExpiration() != null )
+            {
+                final String timestamp = formatTimestamp( operation.getExpiration().toEpochMilli() );
+                indexedBatch.put( INDEX_DB, recordKey( db, key ), timestamp );
+                indexedBatch.put( INDEX_DB, expirationKey( timestamp, db, key ), "" );
+                expiringDBs.add( db );
+                return;
+            }
+        }
+        else
+        {
+            indexedBatch.remove( db, key );
+        }
+
+        if ( expiringDBs.contains( db ) )
+        {
+            indexedBatch.remove( INDEX_DB, recordKey( db, key ) );
+        }
+    }
+
+    /**
+     * Remove the record entries of a db after it has been truncated.
+     */
+    void truncate( final LocalDB.DB db ) throws LocalDBException
+    {
+        if ( db == INDEX_DB )
+        {
+            expiringDBs.clear();
+            return;
+        }
+
+        if ( expiringDBs.contains( db ) )
+        {
+            localDBProvider.removeAll( INDEX_DB, readRecordKeys( db, Integer.MAX_VALUE ) );
+            expiringDBs.remove( db );
+        }
+    }
+
+    /**
+     * Remove expired records in batches of {@code batchSize}, each batch in its own transaction, until no expired records remain.
+     */
+    void purgeAllExpired( final int batchSize )
+    {
+        final Instant startTime = Instant.now();
+        int purgedCount = 0;
+        try
+        {
+            int batchCount;
+            do
+            {
+                if ( localDBProvider.getStatus() != LocalDB.Status.OPEN )
+                {
+                    return;
+                }
+                final PurgeResult purgeResult = purgeExpired( batchSize );
+                batchCount = purgeResult.getIndexEntries();
+                purgedCount += purgeResult.getPurgedRecords();
+            }
+            while ( batchCount >= batchSize );
+        }
+        catch ( Exception e )
+        {
+            LOGGER.error( "error purging expired LocalDB records: " + e.getMessage() );
+        }
+
+        if ( purgedCount > 0 )
+        {
+            final int finalPurgedCount = purgedCount;
+            LOGGER.debug( () -> "purged " + finalPurgedCount + " expired LocalDB records (" + TimeDuration.compactFromCurrent( startTime ) + ")" );
+        }
+    }
+
+    /**
+     * Remove up to {@code maxEntries} expired records in a single transaction.
+     */
+    PurgeResult purgeExpired( final int maxEntries ) throws LocalDBException
+    {
+        final String upperBound = EXPIRATION_PREFIX + formatTimestamp( System.currentTimeMillis() + 1 );
+        final List<String> expirationKeys = new ArrayList<>();
+        try ( LocalDB.LocalDBIterator<String> iterator = localDBProvider.iterator( INDEX_DB, EXPIRATION_PREFIX, upperBound ) )
+        {
+            while ( iterator.hasNext() && expirationKeys.size() < maxEntries )
+            {
+                expirationKeys.add( iterator.next() );
+            }
+        }
+
+        if ( expirationKeys.isEmpty() )
+        {
+            return new PurgeResult( 0, 0 );
+        }
+
+        int purgedRecords = 0;
+        final Lock lock = purgeLock.writeLock();
+        lock.lock();
+        try
+        {
+            final LocalDBBatch batch = new LocalDBBatch();
+            for ( final String expirationKey : expirationKeys )
+            {
+                batch.remove( INDEX_DB, expirationKey );
+
+                final ExpirationEntry expirationEntry = parseExpirationKey( expirationKey );
+                if ( expirationEntry != null )
+                {
+                    final String recordKey = recordKey( expirationEntry.getDb(), expirationEntry.getKey() );
+                    if ( expirationEntry.getTimestamp().equals( localDBProvider.get( INDEX_DB, recordKey ) ) )
+                    {
+                        batch.remove( expirationEntry.getDb(), expirationEntry.getKey() );
+                        batch.remove( INDEX_DB, recordKey );
+                        purgedRecords++;
+                    }
+                }
+            }
+            localDBProvider.executeBatch( batch );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        return new PurgeResult( expirationKeys.size(), purgedRecords );
+    }
+
+    private List<String> readRecordKeys( final LocalDB.DB db, final int maxKeys ) throws LocalDBException
+    {
+        final String prefix = RECORD_PREFIX + db.name() + SEPARATOR;
+        final List<String> keys = new ArrayList<>();
+        try ( LocalDB.LocalDBIterator<String> iterator = localDBProvider.iterator( INDEX_DB, prefix, LocalDBAdaptor.prefixUpperBound( prefix ) ) )
+        {
+            while ( iterator.hasNext() && keys.size() < maxKeys )
+            {
+                keys.add( iterator.next() );
+            }
+        }
+        return keys;
+    }
+
+    private void noteIndexKey( final String indexKey )
+    {
+        if ( indexKey.startsWith( RECORD_PREFIX ) )
+        {
+            final int separatorIndex = indexKey.indexOf( SEPARATOR, RECORD_PREFIX.length() );
+            final LocalDB.DB db = separatorIndex > 0
+                    ? JavaHelper.readEnumFromString( LocalDB.DB.class, null, indexKey.substring( RECORD_PREFIX.length(), separatorIndex ) )
+                    : null;
+            if ( db != null )
+            {
+                expiringDBs.add( db );
+            }
+        }
+    }
+
+    static void validateKey( final String key ) throws LocalDBException
+    {
+        if ( key.length() > MAX_KEY_LENGTH )
+        {
+            final String errorMsg = "key length " + key.length() + " is greater than max " + MAX_KEY_LENGTH + " for expiring record";
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_INTERNAL, errorMsg ) );
+        }
+    }
+
+    private static String recordKey( final LocalDB.DB db, final String key )
+    {
+        return RECORD_PREFIX + db.name() + SEPARATOR + key;
+    }
+
+    private static String expirationKey( final String timestamp, final LocalDB.DB db, final String key )
+    {
+        return EXPIRATION_PREFIX + timestamp + SEPARATOR + db.name() + SEPARATOR + key;
+    }
+
+    private static ExpirationEntry parseExpirationKey( final String expirationKey )
+    {
+        final int timestampEnd = EXPIRATION_PREFIX.length() + TIMESTAMP_LENGTH;
+        final int dbEnd = expirationKey.indexOf( SEPARATOR, timestampEnd + 1 );
+        if ( dbEnd < 0 )
+        {
+            return null;
+        }
+
+        final LocalDB.DB db = JavaHelper.readEnumFromString( LocalDB.DB.class, null, expirationKey.substring( timestampEnd + 1, dbEnd ) );
+        if ( db == null )
+        {
+            return null;
+        }
+
+        return new ExpirationEntry( expirationKey.substring( EXPIRATION_PREFIX.length(), timestampEnd ), db, expirationKey.substring( dbEnd + 1 ) );
+    }
+
+    private static String formatTimestamp( final long timestamp )
+    {
+        return String.format( "%0" + TIMESTAMP_LENGTH + "d", timestamp );
+    }
+
+    private static int maxDbNameLength( )
+    {
+        int maxLength = 0;
+        for ( final LocalDB.DB db : LocalDB.DB.values() )
+        {
+            maxLength = Math.max( maxLength, db.name().length() );
+        }
+        return maxLength;
+    }
+
+    interface IndexStateWrite<T>
+    {
+        T execute( ) throws LocalDBException;
+    }
+
+    @Value
+    static class PurgeResult
+    {
+        private final int indexEntries;
+        private final int purgedRecords;
+    }
+
+    @Value
+    private static class ExpirationEntry
+    {
+        private final String timestamp;
+        private final LocalDB.DB db;
+        private final String key;
+    }
+}
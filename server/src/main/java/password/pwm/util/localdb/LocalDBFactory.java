@@ -78,9 +78,10 @@ public class LocalDBFactory
         final LocalDBProvider dbProvider = createInstance( className );
         LOGGER.debug( () -> "initializing " + className + " localDBProvider instance" );
 
-        final LocalDB localDB = new LocalDBAdaptor( dbProvider, pwmApplication );
+        final LocalDBAdaptor localDB = new LocalDBAdaptor( dbProvider, pwmApplication );
 
         initInstance( dbProvider, dbDirectory, initParameters, className, parameters );
+        localDB.initExpiryIndex();
         final TimeDuration openTime = TimeDuration.of( System.currentTimeMillis() - startTime, TimeDuration.Unit.MILLISECONDS );
 
         if ( !readonly )
@@ -94,6 +95,12 @@ public class LocalDBFactory
                 LOGGER.error( "previous database import process did not complete successfully, clearing all data" );
                 localDBUtility.cancelImportProcess();
             }
+
+            final TimeDuration purgeInterval = TimeDuration.of(
+                    Long.parseLong( readAppProperty( config, AppProperty.LOCALDB_EXPIRY_PURGE_INTERVAL_SECONDS ) ),
+                    TimeDuration.Unit.SECONDS );
+            final int purgeBatchSize = Integer.parseInt( readAppProperty( config, AppProperty.LOCALDB_EXPIRY_PURGE_BATCH_SIZE ) );
+            localDB.startExpiryPurge( purgeInterval, purgeBatchSize );
         }
 
         final StringBuilder debugText = new StringBuilder();
@@ -113,6 +120,13 @@ public class LocalDBFactory
         return localDB;
     }
 
+    private static String readAppProperty( final Configuration config, final AppProperty appProperty )
+    {
+        return config == null
+                ? appProperty.getDefaultValue()
+                : config.readAppProperty( appProperty );
+    }
+
     private static LocalDBProvider createInstance( final String className )
             throws Exception
     {
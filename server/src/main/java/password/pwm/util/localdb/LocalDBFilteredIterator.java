@@ -0,0 +1,81 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Wraps an iterator and returns only keys accepted by the filter.  Used to emulate range iteration for providers
+ * that can not seek to a key.
+ */
+class LocalDBFilteredIterator implements LocalDB.LocalDBIterator<String>
+{
+    private final LocalDB.LocalDBIterator<String> innerIterator;
+    private final Predicate<String> filter;
+
+    private String nextKey;
+
+    LocalDBFilteredIterator( final LocalDB.LocalDBIterator<String> innerIterator, final Predicate<String> filter )
+    {
+        this.innerIterator = innerIterator;
+        this.filter = filter;
+        advance();
+    }
+
+    private void advance( )
+    {
+        nextKey = null;
+        while ( innerIterator.hasNext() )
+        {
+            final String key = innerIterator.next();
+            if ( key != null && filter.test( key ) )
+            {
+                nextKey = key;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext( )
+    {
+        return nextKey != null;
+    }
+
+    @Override
+    public String next( )
+    {
+        if ( nextKey == null )
+        {
+            throw new NoSuchElementException();
+        }
+        final String key = nextKey;
+        advance();
+        return key;
+    }
+
+    @Override
+    public void close( )
+    {
+        innerIterator.close();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import java.util.function.Function;
+
+/**
+ * Wraps a key iterator and converts each key, used to present string keys of providers without native byte array
+ * support through {@link LocalDB#bytesIterator(LocalDB.DB)}.
+ */
+class LocalDBMappedIterator<K> implements LocalDB.LocalDBIterator<K>
+{
+    private final LocalDB.LocalDBIterator<String> innerIterator;
+    private final Function<String, K> mapper;
+
+    LocalDBMappedIterator( final LocalDB.LocalDBIterator<String> innerIterator, final Function<String, K> mapper )
+    {
+        this.innerIterator = innerIterator;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public boolean hasNext( )
+    {
+        return innerIterator.hasNext();
+    }
+
+    @Override
+    public K next( )
+    {
+        return mapper.apply( innerIterator.next() );
+    }
+
+    @Override
+    public void close( )
+    {
+        innerIterator.close();
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import lombok.Value;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per {@link LocalDB.DB} operation latency and write volume of a {@link LocalDB}, maintained by {@link LocalDBAdaptor}.
+ * Latencies are recorded in power of two microsecond buckets, so percentiles are reported as the upper bound of the
+ * bucket they fall in.  All recording is lock free.
+ */
+public class LocalDBMetrics
+{
+    // bucket n holds latencies of less than 2^n microseconds, the last bucket holds everything longer
+    private static final int BUCKET_COUNT = 32;
+
+    public enum Operation
+    {
+        GET( false ),
+        CONTAINS( false ),
+        ITERATOR( false ),
+        PUT( true ),
+        PUT_ALL( true ),
+        REMOVE( true ),
+        BATCH( true ),;
+
+        private final boolean write;
+
+        Operation( final boolean write )
+        {
+            this.write = write;
+        }
+
+        public boolean isWrite( )
+        {
+            return write;
+        }
+    }
+
+    private final Map<LocalDB.DB, Map<Operation, Histogram>> histograms = new EnumMap<>( LocalDB.DB.class );
+    private final Map<LocalDB.DB, WriteVolume> writeVolumes = new EnumMap<>( LocalDB.DB.class );
+
+    LocalDBMetrics( )
+    {
+        for ( final LocalDB.DB db : LocalDB.DB.values() )
+        {
+            final Map<Operation, Histogram> dbHistograms = new EnumMap<>( Operation.class );
+            for ( final Operation operation : Operation.values() )
+            {
+                dbHistograms.put( operation, new Histogram() );
+            }
+            histograms.put( db, dbHistograms );
+            writeVolumes.put( db, new WriteVolume() );
+        }
+    }
+
+    /**
+     * Record an operation which began at {@code startNanos} (a {@link System#nanoTime()} value) and has just completed.
+     */
+    void record( final LocalDB.DB db, final Operation operation, final long startNanos )
+    {
+        histograms.get( db ).get( operation ).record( System.nanoTime() - startNanos );
+    }
+
+    /**
+     * Record a write transaction of {@code records} records totalling {@code bytes} key and value bytes.
+     */
+    void recordWrite( final LocalDB.DB db, final int records, final long bytes )
+    {
+        final WriteVolume writeVolume = writeVolumes.get( db );
+        writeVolume.transactions.increment();
+        writeVolume.records.add( records );
+        writeVolume.bytes.add( bytes );
+        writeVolume.maxRecords.accumulateAndGet( records, Math::max );
+    }
+
+    /**
+     * Summaries of every db and operation that has been performed at least once, ordered by descending total time.
+     */
+    public List<OperationSummary> summaries( )
+    {
+        final List<OperationSummary> summaries = new ArrayList<>();
+        for ( final Map.Entry<LocalDB.DB, Map<Operation, Histogram>> dbEntry : histograms.entrySet() )
+        {
+            for ( final Map.Entry<Operation, Histogram> entry : dbEntry.getValue().entrySet() )
+            {
+                final OperationSummary summary = entry.getValue().summarize( dbEntry.getKey(), entry.getKey() );
+                if ( summary.getCount() > 0 )
+                {
+                    summaries.add( summary );
+                }
+            }
+        }
+        summaries.sort( Comparator.comparingLong( OperationSummary::getTotalMicros ).reversed() );
+        return Collections.unmodifiableList( summaries );
+    }
+
+    /**
+     * Total count and time of all read or write operations across all dbs.
+     */
+    Totals totals( final boolean writeOperations )
+    {
+        long count = 0;
+        long nanos = 0;
+        for ( final Map<Operation, Histogram> dbHistograms : histograms.values() )
+        {
+            for ( final Map.Entry<Operation, Histogram> entry : dbHistograms.entrySet() )
+            {
+                if ( entry.getKey().isWrite() == writeOperations )
+                {
+                    count += entry.getValue().count.sum();
+                    nanos += entry.getValue().totalNanos.sum();
+                }
+            }
+        }
+        return new Totals( count, nanos );
+    }
+
+    Map<String, Serializable> debugInfo( )
+    {
+        final Map<String, Serializable> outputStats = new LinkedHashMap<>();
+        for ( final OperationSummary summary : summaries() )
+        {
+            outputStats.put( "latency." + summary.getDb().name() + "." + summary.getOperation().name(), summary.toDebugString() );
+        }
+        for ( final Map.Entry<LocalDB.DB, WriteVolume> entry : writeVolumes.entrySet() )
+        {
+            final WriteVolume writeVolume = entry.getValue();
+            final long transactions = writeVolume.transactions.sum();
+            if ( transactions > 0 )
+            {
+                outputStats.put( "writes." + entry.getKey().name(), "transactions=" + transactions
+                        + ", records=" + writeVolume.records.sum()
+                        + ", avgRecords=" + writeVolume.records.sum() / transactions
+                        + ", maxRecords=" + writeVolume.maxRecords.get()
+                        + ", bytes=" + writeVolume.bytes.sum() );
+            }
+        }
+        return outputStats;
+    }
+
+    @Value
+    public static class OperationSummary
+    {
+        private final LocalDB.DB db;
+        private final Operation operation;
+        private final long count;
+        private final long totalMicros;
+        private final long p50Micros;
+        private final long p99Micros;
+        private final long maxMicros;
+
+        public long getAvgMicros( )
+        {
+            return count == 0 ? 0 : totalMicros / count;
+        }
+
+        public String toDebugString( )
+        {
+            return "count=" + count + ", avg=" + getAvgMicros() + "µs, p50<" + p50Micros + "µs, p99<" + p99Micros + "µs, max<" + maxMicros + "µs";
+        }
+    }
+
+    @Value
+    static class Totals
+    {
+        private final long count;
+        private final long nanos;
+    }
+
+    private static class Histogram
+    {
+        private final AtomicLongArray buckets = new AtomicLongArray( BUCKET_COUNT );
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        void record( final long nanos )
+        {
+            final long micros = Math.max( 0, nanos / 1000 );
+            buckets.incrementAndGet( Math.min( BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros( micros ) ) );
+            count.increment();
+            totalNanos.add( nanos );
+        }
+
+        OperationSummary summarize( final LocalDB.DB db, final Operation operation )
+        {
+            final long[] snapshot = new long[ BUCKET_COUNT ];
+            long total = 0;
+            int highestBucket = 0;
+            for ( int i = 0; i < BUCKET_COUNT; i++ )
+            {
+                snapshot[ i ] = buckets.get( i );
+                total += snapshot[ i ];
+                if ( snapshot[ i ] > 0 )
+                {
+                    highestBucket = i;
+                }
+            }
+
+            return new OperationSummary(
+                    db,
+                    operation,
+                    count.sum(),
+                    totalNanos.sum() / 1000,
+                    percentile( snapshot, total, 0.50 ),
+                    percentile( snapshot, total, 0.99 ),
+                    bucketUpperBound( highestBucket ) );
+        }
+
+        private static long percentile( final long[] snapshot, final long total, final double percentile )
+        {
+            final long target = ( long ) Math.ceil( total * percentile );
+            long cumulative = 0;
+            for ( int i = 0; i < snapshot.length; i++ )
+            {
+                cumulative += snapshot[ i ];
+                if ( cumulative >= target && cumulative > 0 )
+                {
+                    return bucketUpperBound( i );
+                }
+            }
+            return 0;
+        }
+
+        private static long bucketUpperBound( final int bucket )
+        {
+            return 1L << bucket;
+        }
+    }
+
+    private static class WriteVolume
+    {
+        private final LongAdder transactions = new LongAdder();
+        private final LongAdder records = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final AtomicInteger maxRecords = new AtomicInteger();
+    }
+}
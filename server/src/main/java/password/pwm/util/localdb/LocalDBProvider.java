@@ -20,9 +20,17 @@
 
 package password.pwm.util.localdb;
 
+import password.pwm.error.ErrorInformation;
+import password.pwm.error.PwmError;
+import password.pwm.util.java.JavaHelper;
+
 import java.io.File;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -32,6 +40,7 @@ public interface LocalDBProvider
     enum Flag
     {
         SlowSizeOperations,
+        OrderedRangeIteration,
     }
 
     enum Parameter
@@ -48,6 +57,24 @@ public interface LocalDBProvider
     boolean contains( LocalDB.DB db, String key )
             throws LocalDBException;
 
+    /**
+     * Test if any of the keys are present.  The default implementation checks each key with a separate read operation,
+     * providers that support read transactions should override to check all keys in one transaction.
+     */
+    @LocalDB.ReadOperation
+    default boolean containsAny( final LocalDB.DB db, final Collection<String> keys )
+            throws LocalDBException
+    {
+        for ( final String key : keys )
+        {
+            if ( contains( db, key ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @LocalDB.ReadOperation
     String get( LocalDB.DB db, String key )
             throws LocalDBException;
@@ -59,6 +86,19 @@ public interface LocalDBProvider
     LocalDB.LocalDBIterator<String> iterator( LocalDB.DB db )
             throws LocalDBException;
 
+    /**
+     * Iterate keys from {@code fromKey} (inclusive) to {@code toKey} (exclusive), either bound may be null.  The default
+     * implementation filters a full iteration and does not guarantee key order.  Providers that override this to return
+     * keys in ascending order must report {@link Flag#OrderedRangeIteration}, resumable iteration depends on it.
+     */
+    default LocalDB.LocalDBIterator<String> iterator( final LocalDB.DB db, final String fromKey, final String toKey )
+            throws LocalDBException
+    {
+        return new LocalDBFilteredIterator( iterator( db ), key ->
+                ( fromKey == null || key.compareTo( fromKey ) >= 0 )
+                        && ( toKey == null || key.compareTo( toKey ) < 0 ) );
+    }
+
     @LocalDB.WriteOperation
     void putAll( LocalDB.DB db, Map<String, String> keyValueMap )
             throws LocalDBException;
@@ -79,6 +119,85 @@ public interface LocalDBProvider
     void removeAll( LocalDB.DB db, Collection<String> key )
             throws LocalDBException;
 
+    /**
+     * Apply all operations of the batch.  The default implementation applies each operation in order using separate
+     * write operations, providers that support multi-store transactions should override to apply the batch atomically.
+     */
+    @LocalDB.WriteOperation
+    default void executeBatch( final LocalDBBatch batch )
+            throws LocalDBException
+    {
+        for ( final LocalDBBatch.Operation operation : batch.getOperations() )
+        {
+            switch ( operation.getType() )
+            {
+                case PUT:
+                    put( operation.getDb(), operation.getKey(), operation.getValue() );
+                    break;
+
+                case REMOVE:
+                    remove( operation.getDb(), operation.getKey() );
+                    break;
+
+                default:
+                    JavaHelper.unhandledSwitchStatement( operation.getType() );
+            }
+        }
+    }
+
+    /**
+     * Byte array methods, see {@link LocalDB#containsBytes(LocalDB.DB, byte[])}.  The default implementations store the
+     * base64 encoding of keys and values using the string methods, providers able to store bytes directly should override
+     * all of the byte array methods.
+     */
+    @LocalDB.ReadOperation
+    default boolean containsBytes( final LocalDB.DB db, final byte[] key )
+            throws LocalDBException
+    {
+        return contains( db, Base64.getEncoder().encodeToString( key ) );
+    }
+
+    @LocalDB.ReadOperation
+    default byte[] getBytes( final LocalDB.DB db, final byte[] key )
+            throws LocalDBException
+    {
+        final String value = get( db, Base64.getEncoder().encodeToString( key ) );
+        return value == null ? null : Base64.getDecoder().decode( value );
+    }
+
+    @LocalDB.WriteOperation
+    default boolean putBytes( final LocalDB.DB db, final byte[] key, final byte[] value )
+            throws LocalDBException
+    {
+        return put( db, Base64.getEncoder().encodeToString( key ), Base64.getEncoder().encodeToString( value ) );
+    }
+
+    @LocalDB.WriteOperation
+    default void putAllBytes( final LocalDB.DB db, final Map<ByteBuffer, byte[]> keyValueMap )
+            throws LocalDBException
+    {
+        final Map<String, String> encodedMap = new LinkedHashMap<>();
+        for ( final Map.Entry<ByteBuffer, byte[]> entry : keyValueMap.entrySet() )
+        {
+            final ByteBuffer encodedKey = Base64.getEncoder().encode( entry.getKey().duplicate() );
+            encodedMap.put( StandardCharsets.US_ASCII.decode( encodedKey ).toString(), Base64.getEncoder().encodeToString( entry.getValue() ) );
+        }
+        putAll( db, encodedMap );
+    }
+
+    @LocalDB.WriteOperation
+    default boolean removeBytes( final LocalDB.DB db, final byte[] key )
+            throws LocalDBException
+    {
+        return remove( db, Base64.getEncoder().encodeToString( key ) );
+    }
+
+    default LocalDB.LocalDBIterator<byte[]> bytesIterator( final LocalDB.DB db )
+            throws LocalDBException
+    {
+        return new LocalDBMappedIterator<>( iterator( db ), key -> Base64.getDecoder().decode( key ) );
+    }
+
     @LocalDB.ReadOperation
     long size( LocalDB.DB db )
             throws LocalDBException;
@@ -89,6 +208,17 @@ public interface LocalDBProvider
 
     File getFileLocation( );
 
+    /**
+     * Write a consistent copy of the database files, see {@link LocalDB#snapshot(File, boolean)}.  The default implementation
+     * is for non-persistent providers and always fails.
+     */
+    default LocalDB.SnapshotResult snapshot( final File targetDirectory, final boolean incremental )
+            throws LocalDBException
+    {
+        final String errorMsg = "snapshots are not supported by " + this.getClass().getSimpleName();
+        throw new LocalDBException( new ErrorInformation( PwmError.ERROR_INTERNAL, errorMsg ) );
+    }
+
     LocalDB.Status getStatus( );
 
     Map<String, Serializable> debugInfo( );
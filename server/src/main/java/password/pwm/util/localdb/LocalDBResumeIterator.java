@@ -0,0 +1,95 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import password.pwm.util.java.StringUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Resumable iterator over a key range.  The resume token is the last returned key, encoded so it can be passed through
+ * a URL.  Resuming seeks to the last key with a range iterator and skips it, so each page costs the page size
+ * rather than the number of keys before it.
+ */
+class LocalDBResumeIterator implements LocalDB.LocalDBResumableIterator
+{
+    private final LocalDB.LocalDBIterator<String> innerIterator;
+    private String lastKey;
+
+    LocalDBResumeIterator( final LocalDB.LocalDBIterator<String> innerIterator, final String lastKey )
+    {
+        this.lastKey = lastKey;
+        this.innerIterator = lastKey == null
+                ? innerIterator
+                : new LocalDBFilteredIterator( innerIterator, key -> !key.equals( lastKey ) );
+    }
+
+    static String decodeResumeToken( final String resumeToken )
+    {
+        if ( StringUtil.isEmpty( resumeToken ) )
+        {
+            return null;
+        }
+
+        try
+        {
+            return new String( Base64.getUrlDecoder().decode( resumeToken ), StandardCharsets.UTF_8 );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new IllegalArgumentException( "invalid resume token: " + e.getMessage() );
+        }
+    }
+
+    static String encodeResumeToken( final String key )
+    {
+        return key == null
+                ? null
+                : Base64.getUrlEncoder().withoutPadding().encodeToString( key.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    @Override
+    public boolean hasNext( )
+    {
+        return innerIterator.hasNext();
+    }
+
+    @Override
+    public String next( )
+    {
+        final String key = innerIterator.next();
+        lastKey = key;
+        return key;
+    }
+
+    @Override
+    public String resumeToken( )
+    {
+        return encodeResumeToken( lastKey );
+    }
+
+    @Override
+    public void close( )
+    {
+        innerIterator.close();
+    }
+}
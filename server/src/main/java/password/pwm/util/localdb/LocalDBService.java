@@ -20,21 +20,38 @@
 
 package password.pwm.util.localdb;
 
+import password.pwm.AppProperty;
 import password.pwm.PwmApplication;
 import password.pwm.config.option.DataStorageMethod;
+import password.pwm.error.ErrorInformation;
+import password.pwm.error.PwmError;
 import password.pwm.error.PwmException;
 import password.pwm.health.HealthRecord;
 import password.pwm.svc.PwmService;
+import password.pwm.util.PwmScheduler;
+import password.pwm.util.java.FileSystemUtility;
+import password.pwm.util.java.JavaHelper;
+import password.pwm.util.java.JsonUtil;
+import password.pwm.util.java.TimeDuration;
+import password.pwm.util.logging.PwmLogger;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 public class LocalDBService implements PwmService
 {
+    private static final PwmLogger LOGGER = PwmLogger.forClass( LocalDBService.class );
+
+    private static final String SNAPSHOT_DIRECTORY_NAME = "LocalDB-snapshot";
+
     private PwmApplication pwmApplication;
+    private ExecutorService executorService;
+    private volatile LocalDB.SnapshotResult lastSnapshotResult;
 
     @Override
     public STATUS status( )
@@ -53,12 +70,62 @@ public class LocalDBService implements PwmService
     public void init( final PwmApplication pwmApplication ) throws PwmException
     {
         this.pwmApplication = pwmApplication;
+
+        if ( status() == STATUS.OPEN && Boolean.parseBoolean( pwmApplication.getConfig().readAppProperty( AppProperty.BACKUP_LOCALDB_SNAPSHOT_ENABLE ) ) )
+        {
+            final TimeDuration snapshotInterval = TimeDuration.of(
+                    Long.parseLong( pwmApplication.getConfig().readAppProperty( AppProperty.BACKUP_LOCALDB_SNAPSHOT_INTERVAL_SECONDS ) ),
+                    TimeDuration.Unit.SECONDS );
+            executorService = PwmScheduler.makeBackgroundExecutor( pwmApplication, this.getClass() );
+            pwmApplication.getPwmScheduler().scheduleFixedRateJob( this::scheduledSnapshot, executorService, snapshotInterval, snapshotInterval );
+        }
     }
 
     @Override
     public void close( )
     {
-        //no-op
+        JavaHelper.closeAndWaitExecutor( executorService, TimeDuration.SECONDS_10 );
+        executorService = null;
+    }
+
+    /**
+     * Write an incremental snapshot of the open LocalDB to the {@code LocalDB-snapshot} directory of the backup path, see
+     * {@link LocalDB#snapshot(File, boolean)}.  Unlike the {@code SnapshotLocalDB} command, the application continues to run.
+     */
+    public LocalDB.SnapshotResult snapshot( ) throws LocalDBException
+    {
+        if ( status() != STATUS.OPEN )
+        {
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, "LocalDB is not open" ) );
+        }
+
+        final LocalDB.SnapshotResult snapshotResult = pwmApplication.getLocalDB().snapshot( snapshotDirectory(), true );
+        lastSnapshotResult = snapshotResult;
+        return snapshotResult;
+    }
+
+    private void scheduledSnapshot( )
+    {
+        try
+        {
+            final LocalDB.SnapshotResult snapshotResult = snapshot();
+            LOGGER.debug( () -> "completed scheduled LocalDB snapshot " + JsonUtil.serialize( snapshotResult ) );
+        }
+        catch ( LocalDBException e )
+        {
+            LOGGER.error( "error writing scheduled LocalDB snapshot: " + e.getMessage() );
+        }
+    }
+
+    private File snapshotDirectory( ) throws LocalDBException
+    {
+        final String backupPathSetting = pwmApplication.getConfig().readAppProperty( AppProperty.BACKUP_LOCATION );
+        final File applicationPath = pwmApplication.getPwmEnvironment().getApplicationPath();
+        if ( backupPathSetting == null || backupPathSetting.isEmpty() || applicationPath == null )
+        {
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, "no backup path is configured for LocalDB snapshots" ) );
+        }
+        return new File( FileSystemUtility.figureFilepath( backupPathSetting, applicationPath ), SNAPSHOT_DIRECTORY_NAME );
     }
 
     @Override
@@ -79,6 +146,10 @@ public class LocalDBService implements PwmService
                 returnInfo.put( entry.getKey(), String.valueOf( entry.getValue() ) );
             }
         }
+        if ( lastSnapshotResult != null )
+        {
+            returnInfo.put( "lastSnapshot", JsonUtil.serialize( lastSnapshotResult ) );
+        }
         return new ServiceInfoBean( Collections.singleton( DataStorageMethod.LOCALDB ), Collections.unmodifiableMap( returnInfo ) );
     }
 }
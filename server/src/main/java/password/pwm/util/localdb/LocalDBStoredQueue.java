@@ -25,7 +25,6 @@ import password.pwm.util.java.ConditionalTaskExecutor;
 import password.pwm.util.java.TimeDuration;
 import password.pwm.util.logging.PwmLogger;
 
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -39,6 +38,7 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -59,6 +59,9 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
     private static final String KEY_VERSION = "_KEY_VERSION";
     private static final String VALUE_VERSION = "7a";
 
+    // maximum number of pending values committed together in a single LocalDB transaction, a single larger append is committed alone
+    private static final int MAX_GROUP_COMMIT_SIZE = 1000;
+
     private final InternalQueue internalQueue;
 
     private LocalDBStoredQueue(
@@ -177,7 +180,7 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
                     stringCollection.add( loopObj.toString() );
                 }
             }
-            internalQueue.addFirst( stringCollection );
+            internalQueue.appendFirst( stringCollection );
             return true;
         }
         catch ( LocalDBException e )
@@ -195,7 +198,7 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
     {
         try
         {
-            internalQueue.addFirst( Collections.singletonList( s ) );
+            internalQueue.appendFirst( Collections.singletonList( s ) );
             return true;
         }
         catch ( LocalDBException e )
@@ -247,7 +250,7 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
     {
         try
         {
-            internalQueue.addFirst( Collections.singletonList( s ) );
+            internalQueue.appendFirst( Collections.singletonList( s ) );
         }
         catch ( LocalDBException e )
         {
@@ -271,7 +274,7 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
     {
         try
         {
-            internalQueue.addFirst( Collections.singletonList( s ) );
+            internalQueue.appendFirst( Collections.singletonList( s ) );
             return true;
         }
         catch ( LocalDBException e )
@@ -490,49 +493,36 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
 
     private static class InnerIterator implements Iterator<String>
     {
-        private Position position;
         private final InternalQueue internalQueue;
         private final boolean first;
-        private int queueSizeAtCreate;
-        private int steps;
-
+        private long position;
+        private int remaining;
 
         private InnerIterator( final InternalQueue internalQueue, final boolean first )
                 throws LocalDBException
         {
             this.internalQueue = internalQueue;
             this.first = first;
-            position = internalQueue.size() == 0 ? null : first ? internalQueue.headPosition : internalQueue.tailPosition;
-            queueSizeAtCreate = internalQueue.size();
+            position = first ? internalQueue.headPosition : internalQueue.tailPosition;
+            remaining = internalQueue.size();
         }
 
         public boolean hasNext( )
         {
-            return position != null;
+            return remaining > 0;
         }
 
         public String next( )
         {
-            if ( position == null )
+            if ( remaining <= 0 )
             {
                 throw new NoSuchElementException();
             }
-            steps++;
             try
             {
-                final String nextValue = internalQueue.localDB.get( internalQueue.db, position.toString() );
-                if ( first )
-                {
-                    position = position.equals( internalQueue.tailPosition ) ? null : position.previous();
-                }
-                else
-                {
-                    position = position.equals( internalQueue.headPosition ) ? null : position.next();
-                }
-                if ( steps > queueSizeAtCreate )
-                {
-                    position = null;
-                }
+                final String nextValue = internalQueue.localDB.get( internalQueue.db, Position.encode( position ) );
+                position = first ? Position.previous( position ) : Position.next( position );
+                remaining--;
                 return nextValue;
             }
             catch ( LocalDBException e )
@@ -547,93 +537,97 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
         }
     }
 
-    private static class Position
+    /**
+     * Queue positions are primitive longs, stored as fixed width, zero padded, upper case radix 36 keys so that existing
+     * queues remain readable.  Positions wrap from {@link #MAXIMUM_POSITION} back to zero.
+     */
+    static final class Position
     {
         private static final int RADIX = 36;
-        private static final BigInteger MAXIMUM_POSITION = new BigInteger( "zzzzzz", RADIX );
-        private static final BigInteger MINIMUM_POSITION = BigInteger.ZERO;
+        private static final int WIDTH = 6;
+        private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+        private static final long MAXIMUM_POSITION = Long.parseLong( "zzzzzz", RADIX );
+        private static final long MINIMUM_POSITION = 0;
 
-        private final BigInteger bigInt;
-
-        private Position( final BigInteger bigInt )
+        private Position( )
         {
-            this.bigInt = bigInt;
         }
 
-        Position( final String bigInt )
+        static long next( final long position )
         {
-            this.bigInt = new BigInteger( bigInt, RADIX );
+            return position >= MAXIMUM_POSITION ? MINIMUM_POSITION : position + 1;
         }
 
-        public Position next( )
+        static long previous( final long position )
         {
-            BigInteger next = bigInt.add( BigInteger.ONE );
-            if ( next.compareTo( MAXIMUM_POSITION ) > 0 )
-            {
-                next = MINIMUM_POSITION;
-            }
-            return new Position( next );
+            return position <= MINIMUM_POSITION ? MAXIMUM_POSITION : position - 1;
         }
 
-        public Position previous( )
+        static long distanceToHead( final long tail, final long head )
         {
-            BigInteger previous = bigInt.subtract( BigInteger.ONE );
-            if ( previous.compareTo( MINIMUM_POSITION ) < 0 )
+            if ( head >= tail )
             {
-                previous = MAXIMUM_POSITION;
+                return head - tail;
             }
-            return new Position( previous );
+
+            return ( MAXIMUM_POSITION - tail ) + ( head - MINIMUM_POSITION ) + 1;
         }
 
-        public BigInteger distanceToHead( final Position head )
+        static String encode( final long position )
         {
-            final int compareToValue = head.bigInt.compareTo( this.bigInt );
-            if ( compareToValue == 0 )
+            final char[] chars = new char[ WIDTH ];
+            long remainder = position;
+            for ( int i = WIDTH - 1; i >= 0; i-- )
             {
-                return BigInteger.ZERO;
-            }
-            else if ( compareToValue == 1 )
-            {
-                return head.bigInt.subtract( this.bigInt );
+                chars[ i ] = DIGITS[ ( int ) ( remainder % RADIX ) ];
+                remainder /= RADIX;
             }
+            return new String( chars );
+        }
 
-            final BigInteger tailToMax = MAXIMUM_POSITION.subtract( this.bigInt );
-            final BigInteger minToHead = head.bigInt.subtract( MINIMUM_POSITION );
-            return minToHead.add( tailToMax ).add( BigInteger.ONE );
+        static long decode( final String position )
+        {
+            return Long.parseLong( position, RADIX );
         }
+    }
+
+    private static class PendingAppend
+    {
+        private final Collection<String> values;
+        private boolean committed;
+        private Exception failure;
 
-        public String toString( )
+        PendingAppend( final Collection<String> values )
         {
-            final StringBuilder sb = new StringBuilder();
-            sb.append( bigInt.toString( RADIX ).toUpperCase() );
-            while ( sb.length() < 6 )
-            {
-                sb.insert( 0, "0" );
-            }
-            return sb.toString();
+            this.values = values;
         }
 
-        @Override
-        public boolean equals( final Object o )
+        Collection<String> getValues( )
         {
-            if ( this == o )
-            {
-                return true;
-            }
-            if ( o == null || getClass() != o.getClass() )
-            {
-                return false;
-            }
+            return values;
+        }
 
-            final Position position = ( Position ) o;
+        boolean isCommitted( )
+        {
+            return committed;
+        }
 
-            return bigInt.equals( position.bigInt );
+        void markCommitted( final Exception failure )
+        {
+            this.failure = failure;
+            this.committed = true;
         }
 
-        @Override
-        public int hashCode( )
+        void throwIfFailed( ) throws LocalDBException
         {
-            return bigInt.hashCode();
+            if ( failure instanceof LocalDBException )
+            {
+                throw ( LocalDBException ) failure;
+            }
+            if ( failure instanceof RuntimeException )
+            {
+                throw ( RuntimeException ) failure;
+            }
         }
     }
 
@@ -641,8 +635,11 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
     {
         private final LocalDB localDB;
         private final LocalDB.DB db;
-        private volatile Position headPosition;
-        private volatile Position tailPosition;
+        private volatile long headPosition;
+        private volatile long tailPosition;
+
+        // maintained by each operation so the size is known without reading the db
+        private volatile int size;
         private boolean developerDebug = false;
         private static final int DEBUG_MAX_ROWS = 50;
         private static final int DEBUG_MAX_WIDTH = 120;
@@ -652,6 +649,9 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
 
         private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
+        // appends waiting to be committed by whichever producer next acquires the write lock
+        private final Queue<PendingAppend> pendingAppends = new ConcurrentLinkedQueue<>();
+
         private InternalQueue( final LocalDB localDB, final LocalDB.DB db, final boolean developerDebug )
                 throws LocalDBException
         {
@@ -695,8 +695,9 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
             final String headPositionStr = localDB.get( db, KEY_HEAD_POSITION );
             final String tailPositionStr = localDB.get( db, KEY_TAIL_POSITION );
 
-            headPosition = headPositionStr != null && headPositionStr.length() > 0 ? new Position( headPositionStr ) : new Position( "0" );
-            tailPosition = tailPositionStr != null && tailPositionStr.length() > 0 ? new Position( tailPositionStr ) : new Position( "0" );
+            headPosition = headPositionStr != null && headPositionStr.length() > 0 ? Position.decode( headPositionStr ) : 0;
+            tailPosition = tailPositionStr != null && tailPositionStr.length() > 0 ? Position.decode( tailPositionStr ) : 0;
+            size = readSize();
 
             {
                 final int finalSize = this.size();
@@ -727,11 +728,12 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
                 lock.writeLock().lock();
                 localDB.truncate( db );
 
-                headPosition = new Position( "0" );
-                tailPosition = new Position( "0" );
+                headPosition = 0;
+                tailPosition = 0;
+                size = 0;
                 final Map<String, String> keyValueMap = new HashMap<>();
-                keyValueMap.put( KEY_HEAD_POSITION, headPosition.toString() );
-                keyValueMap.put( KEY_TAIL_POSITION, tailPosition.toString() );
+                keyValueMap.put( KEY_HEAD_POSITION, Position.encode( headPosition ) );
+                keyValueMap.put( KEY_TAIL_POSITION, Position.encode( tailPosition ) );
                 keyValueMap.put( KEY_VERSION, VALUE_VERSION );
 
                 localDB.putAll( db, keyValueMap );
@@ -758,13 +760,21 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
         }
 
         private int internalSize( )
+        {
+            return size;
+        }
+
+        /**
+         * Calculate the size from the stored positions, a single db read is needed to tell an empty queue from a queue with one item.
+         */
+        private int readSize( )
                 throws LocalDBException
         {
-            if ( headPosition.equals( tailPosition ) && localDB.get( db, headPosition.toString() ) == null )
+            if ( headPosition == tailPosition && localDB.get( db, Position.encode( headPosition ) ) == null )
             {
                 return 0;
             }
-            return tailPosition.distanceToHead( headPosition ).intValue() + 1;
+            return ( int ) Position.distanceToHead( tailPosition, headPosition ) + 1;
         }
 
         List<String> removeFirst( final int removalCount, final boolean returnValues ) throws LocalDBException
@@ -775,32 +785,36 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
 
                 debugOutput( "pre removeFirst()" );
 
-                if ( removalCount < 1 )
+                final int removeCount = Math.min( removalCount, internalSize() );
+                if ( removeCount < 1 )
                 {
                     return Collections.emptyList();
                 }
 
                 final List<String> removalKeys = new ArrayList<>();
                 final List<String> removedValues = new ArrayList<>();
-                Position previousHead = headPosition;
+                long previousHead = headPosition;
                 int removedPositions = 0;
-                while ( removedPositions < removalCount )
+                while ( removedPositions < removeCount )
                 {
-                    removalKeys.add( previousHead.toString() );
+                    final String loopKey = Position.encode( previousHead );
+                    removalKeys.add( loopKey );
                     if ( returnValues )
                     {
-                        final String loopValue = localDB.get( db, previousHead.toString() );
+                        final String loopValue = localDB.get( db, loopKey );
                         if ( loopValue != null )
                         {
                             removedValues.add( loopValue );
                         }
                     }
-                    previousHead = previousHead.equals( tailPosition ) ? previousHead : previousHead.previous();
+                    previousHead = previousHead == tailPosition ? previousHead : Position.previous( previousHead );
                     removedPositions++;
                 }
-                localDB.removeAll( db, removalKeys );
-                localDB.put( db, KEY_HEAD_POSITION, previousHead.toString() );
+                localDB.executeBatch( new LocalDBBatch()
+                        .removeAll( db, removalKeys )
+                        .put( db, KEY_HEAD_POSITION, Position.encode( previousHead ) ) );
                 headPosition = previousHead;
+                size -= removeCount;
 
                 debugOutput( "post removeFirst()" );
                 return Collections.unmodifiableList( removedValues );
@@ -819,32 +833,36 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
 
                 debugOutput( "pre removeLast()" );
 
-                if ( removalCount < 1 )
+                final int removeCount = Math.min( removalCount, internalSize() );
+                if ( removeCount < 1 )
                 {
                     return Collections.emptyList();
                 }
 
                 final List<String> removalKeys = new ArrayList<>();
                 final List<String> removedValues = new ArrayList<>();
-                Position nextTail = tailPosition;
+                long nextTail = tailPosition;
                 int removedPositions = 0;
-                while ( removedPositions < removalCount )
+                while ( removedPositions < removeCount )
                 {
-                    removalKeys.add( nextTail.toString() );
+                    final String loopKey = Position.encode( nextTail );
+                    removalKeys.add( loopKey );
                     if ( returnValues )
                     {
-                        final String loopValue = localDB.get( db, nextTail.toString() );
+                        final String loopValue = localDB.get( db, loopKey );
                         if ( loopValue != null )
                         {
                             removedValues.add( loopValue );
                         }
                     }
-                    nextTail = nextTail.equals( headPosition ) ? nextTail : nextTail.next();
+                    nextTail = nextTail == headPosition ? nextTail : Position.next( nextTail );
                     removedPositions++;
                 }
-                localDB.removeAll( db, removalKeys );
-                localDB.put( db, KEY_TAIL_POSITION, nextTail.toString() );
+                localDB.executeBatch( new LocalDBBatch()
+                        .removeAll( db, removalKeys )
+                        .put( db, KEY_TAIL_POSITION, Position.encode( nextTail ) ) );
                 tailPosition = nextTail;
+                size -= removeCount;
 
                 debugOutput( "post removeLast()" );
                 return Collections.unmodifiableList( removedValues );
@@ -876,22 +894,23 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
                 final Iterator<String> valueIterator = values.iterator();
 
                 final Map<String, String> keyValueMap = new HashMap<>();
-                Position nextHead = headPosition;
+                long nextHead = headPosition;
 
                 if ( internalSize() == 0 )
                 {
-                    keyValueMap.put( nextHead.toString(), valueIterator.next() );
+                    keyValueMap.put( Position.encode( nextHead ), valueIterator.next() );
                 }
 
                 while ( valueIterator.hasNext() )
                 {
-                    nextHead = nextHead.next();
-                    keyValueMap.put( nextHead.toString(), valueIterator.next() );
+                    nextHead = Position.next( nextHead );
+                    keyValueMap.put( Position.encode( nextHead ), valueIterator.next() );
                 }
 
-                keyValueMap.put( KEY_HEAD_POSITION, String.valueOf( nextHead ) );
+                keyValueMap.put( KEY_HEAD_POSITION, Position.encode( nextHead ) );
                 localDB.putAll( db, keyValueMap );
                 headPosition = nextHead;
+                size += values.size();
 
                 debugOutput( "post addFirst()" );
             }
@@ -901,6 +920,67 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
             }
         }
 
+        /**
+         * Add values to the head of the queue using group commit.  The values are queued in memory and the first producer
+         * to acquire the write lock commits the queued values of all waiting producers with a single LocalDB transaction
+         * and head position update.  Returns once the values have been committed, by this or another producer.
+         */
+        void appendFirst( final Collection<String> values ) throws LocalDBException
+        {
+            if ( values == null || values.isEmpty() )
+            {
+                return;
+            }
+
+            final PendingAppend pendingAppend = new PendingAppend( values );
+            pendingAppends.add( pendingAppend );
+
+            try
+            {
+                lock.writeLock().lock();
+                while ( !pendingAppend.isCommitted() )
+                {
+                    commitPendingAppends();
+                }
+            }
+            finally
+            {
+                lock.writeLock().unlock();
+            }
+
+            pendingAppend.throwIfFailed();
+        }
+
+        private void commitPendingAppends( )
+        {
+            final List<PendingAppend> commitGroup = new ArrayList<>();
+            final List<String> values = new ArrayList<>();
+            // only the write lock holder removes pending appends, so the peeked append is the one polled
+            PendingAppend next = pendingAppends.peek();
+            while ( next != null && ( values.isEmpty() || values.size() + next.getValues().size() <= MAX_GROUP_COMMIT_SIZE ) )
+            {
+                pendingAppends.poll();
+                commitGroup.add( next );
+                values.addAll( next.getValues() );
+                next = pendingAppends.peek();
+            }
+
+            Exception failure = null;
+            try
+            {
+                addFirst( values );
+            }
+            catch ( LocalDBException | RuntimeException e )
+            {
+                failure = e;
+            }
+
+            for ( final PendingAppend committedAppend : commitGroup )
+            {
+                committedAppend.markCommitted( failure );
+            }
+        }
+
         void addLast( final Collection<String> values ) throws LocalDBException
         {
             try
@@ -920,21 +1000,22 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
                 final Iterator<String> valueIterator = values.iterator();
 
                 final Map<String, String> keyValueMap = new HashMap<>();
-                Position nextTail = tailPosition;
+                long nextTail = tailPosition;
 
                 if ( internalSize() == 0 )
                 {
-                    keyValueMap.put( nextTail.toString(), valueIterator.next() );
+                    keyValueMap.put( Position.encode( nextTail ), valueIterator.next() );
                 }
 
                 while ( valueIterator.hasNext() )
                 {
-                    nextTail = nextTail.previous();
-                    keyValueMap.put( nextTail.toString(), valueIterator.next() );
+                    nextTail = Position.previous( nextTail );
+                    keyValueMap.put( Position.encode( nextTail ), valueIterator.next() );
                 }
-                keyValueMap.put( KEY_TAIL_POSITION, String.valueOf( nextTail ) );
+                keyValueMap.put( KEY_TAIL_POSITION, Position.encode( nextTail ) );
                 localDB.putAll( db, keyValueMap );
                 tailPosition = nextTail;
+                size += values.size();
 
                 debugOutput( "post addLast()" );
             }
@@ -965,11 +1046,11 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
 
                 final List<String> returnList = new ArrayList<>();
 
-                Position nextHead = headPosition;
+                long nextHead = headPosition;
                 while ( returnList.size() < getCount )
                 {
-                    returnList.add( localDB.get( db, nextHead.toString() ) );
-                    nextHead = nextHead.previous();
+                    returnList.add( localDB.get( db, Position.encode( nextHead ) ) );
+                    nextHead = Position.previous( nextHead );
                 }
 
                 debugOutput( "post getFirst()" );
@@ -1004,11 +1085,11 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
 
                 final List<String> returnList = new ArrayList<>();
 
-                Position nextTail = tailPosition;
+                long nextTail = tailPosition;
                 while ( returnList.size() < getCount )
                 {
-                    returnList.add( localDB.get( db, nextTail.toString() ) );
-                    nextTail = nextTail.next();
+                    returnList.add( localDB.get( db, Position.encode( nextTail ) ) );
+                    nextTail = Position.next( nextTail );
                 }
 
                 debugOutput( "post getLast()" );
@@ -1034,7 +1115,8 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
                 try
                 {
                     sb.append( input );
-                    sb.append( "  tailPosition=" ).append( tailPosition ).append( ", headPosition=" ).append( headPosition ).append( ", db=" ).append( db );
+                    sb.append( "  tailPosition=" ).append( Position.encode( tailPosition ) );
+                    sb.append( ", headPosition=" ).append( Position.encode( headPosition ) ).append( ", db=" ).append( db );
                     sb.append( ", size=" ).append( internalSize() ).append( "\n" );
 
                     try ( LocalDB.LocalDBIterator<String> keyIter = localDB.iterator( db ) )
@@ -1080,12 +1162,13 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
                         {
                             try
                             {
-                                localDB.put( db, KEY_HEAD_POSITION, headPosition.toString() );
-                                localDB.put( db, KEY_TAIL_POSITION, tailPosition.toString() );
+                                localDB.executeBatch( new LocalDBBatch()
+                                        .put( db, KEY_HEAD_POSITION, Position.encode( headPosition ) )
+                                        .put( db, KEY_TAIL_POSITION, Position.encode( tailPosition ) ) );
                                 final int dbSize = size();
                                 LOGGER.debug( () -> "repairing db " + db + ", " + examinedRecords.get() + " records examined"
                                         + ", size=" + dbSize
-                                        + ", head=" + headPosition.toString() + ", tail=" + tailPosition.toString() );
+                                        + ", head=" + Position.encode( headPosition ) + ", tail=" + Position.encode( tailPosition ) );
                             }
                             catch ( Exception e )
                             {
@@ -1097,24 +1180,25 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
             );
 
             // trim the top.
-            while ( !headPosition.equals( tailPosition ) && localDB.get( db, headPosition.toString() ) == null )
+            while ( headPosition != tailPosition && localDB.get( db, Position.encode( headPosition ) ) == null )
             {
                 examinedRecords.incrementAndGet();
                 conditionalTaskExecutor.conditionallyExecuteTask();
-                headPosition = headPosition.previous();
+                headPosition = Position.previous( headPosition );
                 headTrim++;
             }
-            localDB.put( db, KEY_HEAD_POSITION, headPosition.toString() );
+            localDB.put( db, KEY_HEAD_POSITION, Position.encode( headPosition ) );
 
             // trim the bottom.
-            while ( !headPosition.equals( tailPosition ) && localDB.get( db, tailPosition.toString() ) == null )
+            while ( headPosition != tailPosition && localDB.get( db, Position.encode( tailPosition ) ) == null )
             {
                 examinedRecords.incrementAndGet();
                 conditionalTaskExecutor.conditionallyExecuteTask();
-                tailPosition = tailPosition.next();
+                tailPosition = Position.next( tailPosition );
                 tailTrim++;
             }
-            localDB.put( db, KEY_TAIL_POSITION, tailPosition.toString() );
+            localDB.put( db, KEY_TAIL_POSITION, Position.encode( tailPosition ) );
+            size = readSize();
 
             if ( tailTrim == 0 && headTrim == 0 )
             {
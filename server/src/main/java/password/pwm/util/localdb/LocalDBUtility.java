@@ -20,6 +20,9 @@
 
 package password.pwm.util.localdb;
 
+import lombok.Value;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.io.input.CountingInputStream;
@@ -30,9 +33,9 @@ import password.pwm.error.PwmOperationalException;
 import password.pwm.util.EventRateMeter;
 import password.pwm.util.ProgressInfo;
 import password.pwm.util.TransactionSizeCalculator;
+import password.pwm.util.WorkerPipeline;
 import password.pwm.util.java.ConditionalTaskExecutor;
 import password.pwm.util.java.JavaHelper;
-import password.pwm.util.java.Percent;
 import password.pwm.util.java.PwmNumberFormat;
 import password.pwm.util.java.StringUtil;
 import password.pwm.util.java.TimeDuration;
@@ -44,16 +47,28 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
 import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
@@ -66,14 +81,22 @@ public class LocalDBUtility
     private static final String IN_PROGRESS_STATUS_VALUE = "in-progress";
 
     private final LocalDB localDB;
+    private final int workerThreads;
     private int exportLineCounter;
 
     private static final int GZIP_BUFFER_SIZE = 1024 * 1024;
+    private static final int CHUNK_SIZE = 1000;
 
 
     public LocalDBUtility( final LocalDB localDB )
+    {
+        this( localDB, WorkerPipeline.defaultWorkerThreads() );
+    }
+
+    public LocalDBUtility( final LocalDB localDB, final int workerThreads )
     {
         this.localDB = localDB;
+        this.workerThreads = Math.max( 1, workerThreads );
     }
 
     private long countBackupableRecords( final Appendable debugOutput )
@@ -92,6 +115,11 @@ public class LocalDBUtility
         return counter;
     }
 
+    /**
+     * Export all backup-able databases as GZIP compressed CSV.  Keys are read on a producer thread, values are read and
+     * formatted as CSV in parallel by worker threads, and the calling thread compresses and writes the formatted chunks in
+     * key order.
+     */
     public void exportLocalDB( final OutputStream outputStream, final Appendable debugOutput )
             throws PwmOperationalException
     {
@@ -109,37 +137,270 @@ public class LocalDBUtility
                         outputExportDebugStats( totalLines, eventRateMeter, startTime, debugOutput ),
                 TimeDuration.MINUTE );
 
-        try ( CSVPrinter csvPrinter = JavaHelper.makeCsvPrinter( new GZIPOutputStream( outputStream, GZIP_BUFFER_SIZE ) ) )
+        try (
+                Writer writer = new OutputStreamWriter( new GZIPOutputStream( outputStream, GZIP_BUFFER_SIZE ), PwmConstants.DEFAULT_CHARSET );
+                CSVPrinter csvPrinter = new CSVPrinter( writer, PwmConstants.DEFAULT_CSV_FORMAT )
+        )
         {
             csvPrinter.printComment( PwmConstants.PWM_APP_NAME + " " + PwmConstants.SERVLET_VERSION + " LocalDB export on " + JavaHelper.toIsoDate( Instant.now() ) );
-            for ( final LocalDB.DB loopDB : LocalDB.DB.values() )
+
+            final WorkerPipeline<ExportChunk> pipeline = new WorkerPipeline<>( LocalDBUtility.class, workerThreads );
+            executePipeline( pipeline, this::produceExportChunks, exportChunk ->
             {
-                if ( loopDB.isBackup() )
+                if ( exportChunk.getComment() != null )
+                {
+                    csvPrinter.printComment( exportChunk.getComment() );
+                }
+                else
                 {
-                    csvPrinter.printComment( "Export of " + loopDB.toString() );
-                    try ( LocalDB.LocalDBIterator<String> localDBIterator = localDB.iterator( loopDB ) )
+                    writer.write( exportChunk.getCsvText() );
+                    exportLineCounter += exportChunk.getRecordCount();
+                    eventRateMeter.markEvents( exportChunk.getRecordCount() );
+                    debugOutputter.conditionallyExecuteTask();
+                }
+            } );
+
+            csvPrinter.printComment( "export completed at " + JavaHelper.toIsoDate( new Date() ) );
+        }
+        catch ( IOException e )
+        {
+            writeStringToOut( debugOutput, "IO error during localDB export: " + e.getMessage() );
+        }
+
+        writeStringToOut( debugOutput, "export complete, exported " + exportLineCounter + " records in " + TimeDuration.fromCurrent( startTime ).asLongString() );
+    }
+
+    /**
+     * Run a pipeline, rethrowing the first error from any stage as the checked exceptions of this class.
+     */
+    private static <T> void executePipeline(
+            final WorkerPipeline<T> pipeline,
+            final WorkerPipeline.Producer<T> producer,
+            final WorkerPipeline.Consumer<T> consumer
+    )
+            throws PwmOperationalException, IOException
+    {
+        try
+        {
+            pipeline.execute( producer, consumer );
+        }
+        catch ( ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof PwmOperationalException )
+            {
+                throw ( PwmOperationalException ) cause;
+            }
+            if ( cause instanceof IOException )
+            {
+                throw ( IOException ) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw ( RuntimeException ) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw ( Error ) cause;
+            }
+            throw new PwmOperationalException( PwmError.ERROR_INTERNAL, "error during LocalDB pipeline: " + cause.getMessage() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new PwmOperationalException( PwmError.ERROR_INTERNAL, "interrupted during LocalDB pipeline" );
+        }
+    }
+
+    private void produceExportChunks( final WorkerPipeline<ExportChunk> pipeline )
+            throws LocalDBException, InterruptedException
+    {
+        for ( final LocalDB.DB loopDB : LocalDB.DB.values() )
+        {
+            if ( loopDB.isBackup() )
+            {
+                pipeline.submitResult( new ExportChunk( "Export of " + loopDB.toString(), null, 0 ) );
+                try ( LocalDB.LocalDBIterator<String> localDBIterator = localDB.iterator( loopDB ) )
+                {
+                    List<String> keys = new ArrayList<>( CHUNK_SIZE );
+                    while ( localDBIterator.hasNext() )
                     {
-                        while ( localDBIterator.hasNext() )
+                        keys.add( localDBIterator.next() );
+                        if ( keys.size() >= CHUNK_SIZE )
                         {
-                            final String key = localDBIterator.next();
-                            final String value = localDB.get( loopDB, key );
-                            csvPrinter.printRecord( loopDB.toString(), key, value );
-                            exportLineCounter++;
-                            eventRateMeter.markEvents( 1 );
-                            debugOutputter.conditionallyExecuteTask();
+                            submitExportChunk( pipeline, loopDB, keys );
+                            keys = new ArrayList<>( CHUNK_SIZE );
                         }
                     }
-                    csvPrinter.flush();
+                    submitExportChunk( pipeline, loopDB, keys );
                 }
             }
-            csvPrinter.printComment( "export completed at " + JavaHelper.toIsoDate( new Date() ) );
         }
-        catch ( IOException e )
+    }
+
+    private void submitExportChunk( final WorkerPipeline<ExportChunk> pipeline, final LocalDB.DB db, final List<String> keys )
+            throws InterruptedException
+    {
+        if ( keys.isEmpty() )
         {
-            writeStringToOut( debugOutput, "IO error during localDB export: " + e.getMessage() );
+            return;
         }
 
-        writeStringToOut( debugOutput, "export complete, exported " + exportLineCounter + " records in " + TimeDuration.fromCurrent( startTime ).asLongString() );
+        pipeline.submit( () ->
+        {
+            final StringBuilder csvText = new StringBuilder();
+            int recordCount = 0;
+            try ( CSVPrinter csvPrinter = new CSVPrinter( csvText, PwmConstants.DEFAULT_CSV_FORMAT ) )
+            {
+                for ( final String key : keys )
+                {
+                    final String value = localDB.get( db, key );
+
+                    // records removed since the key was read are skipped
+                    if ( value != null )
+                    {
+                        csvPrinter.printRecord( db.toString(), key, value );
+                        recordCount++;
+                    }
+                }
+            }
+            return new ExportChunk( null, csvText.toString(), recordCount );
+        } );
+    }
+
+    /**
+     * Reads CSV text in chunks of whole records without parsing it, so the records can be parsed in parallel.  A line
+     * break ends a record unless it is within a quoted value or ends a comment line.  A doubled quote within a quoted
+     * value toggles the quote state twice, so escaped quotes need no special handling.
+     */
+    static class CsvChunkReader
+    {
+        private final Reader reader;
+        private final int maxChunkRecords;
+        private final char quoteChar;
+        private final Character commentMarker;
+
+        private final char[] buffer = new char[ 64 * 1024 ];
+        private int bufferPosition;
+        private int bufferLength;
+        private boolean endOfInput;
+
+        private boolean inQuotes;
+        private boolean inComment;
+        private boolean lineStart = true;
+        private boolean lineHasContent;
+        private int chunkRecordCount;
+
+        CsvChunkReader( final Reader reader, final CSVFormat csvFormat, final int maxChunkRecords )
+        {
+            this.reader = reader;
+            this.maxChunkRecords = maxChunkRecords;
+            this.quoteChar = csvFormat.getQuoteCharacter() == null ? 0 : csvFormat.getQuoteCharacter();
+            this.commentMarker = csvFormat.getCommentMarker();
+        }
+
+        /**
+         * Read the text of up to {@code maxChunkRecords} records, or null at the end of the input.
+         */
+        String readChunk( ) throws IOException
+        {
+            final StringBuilder chunkText = new StringBuilder();
+            chunkRecordCount = 0;
+            while ( !endOfInput )
+            {
+                if ( bufferPosition >= bufferLength )
+                {
+                    fillBuffer();
+                    continue;
+                }
+
+                final int segmentStart = bufferPosition;
+                while ( bufferPosition < bufferLength )
+                {
+                    final char c = buffer[ bufferPosition ];
+                    bufferPosition++;
+                    if ( endsRecord( c ) && chunkRecordCount >= maxChunkRecords )
+                    {
+                        chunkText.append( buffer, segmentStart, bufferPosition - segmentStart );
+                        return chunkText.toString();
+                    }
+                }
+                chunkText.append( buffer, segmentStart, bufferPosition - segmentStart );
+            }
+
+            if ( lineHasContent && !inComment )
+            {
+                // final record without a trailing line break
+                chunkRecordCount++;
+                lineHasContent = false;
+            }
+            return chunkText.length() == 0 ? null : chunkText.toString();
+        }
+
+        int getChunkRecordCount( )
+        {
+            return chunkRecordCount;
+        }
+
+        private void fillBuffer( ) throws IOException
+        {
+            bufferLength = reader.read( buffer );
+            bufferPosition = 0;
+            if ( bufferLength < 0 )
+            {
+                bufferLength = 0;
+                endOfInput = true;
+            }
+        }
+
+        private boolean endsRecord( final char c )
+        {
+            if ( lineStart && commentMarker != null && c == commentMarker )
+            {
+                inComment = true;
+            }
+            lineStart = false;
+
+            if ( c == '\n' && !inQuotes )
+            {
+                final boolean endsRecord = lineHasContent && !inComment;
+                if ( endsRecord )
+                {
+                    chunkRecordCount++;
+                }
+                lineStart = true;
+                lineHasContent = false;
+                inComment = false;
+                return endsRecord;
+            }
+
+            if ( c != '\r' )
+            {
+                lineHasContent = true;
+            }
+            if ( c == quoteChar && !inComment )
+            {
+                inQuotes = !inQuotes;
+            }
+            return false;
+        }
+    }
+
+    @Value
+    private static class ImportChunk
+    {
+        private final Map<LocalDB.DB, Map<String, String>> records;
+        private final List<String> errors;
+        private final int lineCount;
+        private final int recordCount;
+    }
+
+    @Value
+    private static class ExportChunk
+    {
+        private final String comment;
+        private final String csvText;
+        private final int recordCount;
     }
 
     public void exportWordlist( final OutputStream outputStream, final Appendable debugOutput )
@@ -191,15 +452,14 @@ public class LocalDBUtility
             final Appendable debugOutput
     )
     {
-        final Percent percentComplete = new Percent( exportLineCounter, totalLines );
-        final String percentStr = percentComplete.pretty( 2 );
-        final long secondsRemaining = totalLines / eventRateMeter.readEventRate().longValue();
+        final ProgressInfo progressInfo = new ProgressInfo( startTime, totalLines, exportLineCounter );
 
         final String msg = "export stats: recordsOut=" + PwmNumberFormat.forDefaultLocale().format( exportLineCounter )
-                + ", duration=" + percentStr
-                + ", percentComplete=" + TimeDuration.fromCurrent( startTime ).asCompactString()
+                + ", percentComplete=" + progressInfo.percentComplete().pretty( 2 )
+                + ", duration=" + TimeDuration.fromCurrent( startTime ).asCompactString()
                 + ", recordsPerSecond=" + PwmNumberFormat.forDefaultLocale().format( eventRateMeter.readEventRate().longValue() )
-                + ", remainingTime=" + TimeDuration.of( secondsRemaining, TimeDuration.Unit.SECONDS ).asCompactString();
+                + ", remainingTime=" + progressInfo.remainingDuration().asCompactString()
+                + ", estimatedCompletion=" + JavaHelper.toIsoDate( progressInfo.estimatedCompletion() );
         writeStringToOut( debugOutput, msg );
     }
 
@@ -258,15 +518,23 @@ public class LocalDBUtility
             throws PwmOperationalException, IOException
     {
 
-        final ImportLocalDBMachine importLocalDBMachine = new ImportLocalDBMachine( localDB, totalBytes, out );
+        final ImportLocalDBMachine importLocalDBMachine = new ImportLocalDBMachine( localDB, totalBytes, out, workerThreads );
         importLocalDBMachine.doImport( inputStream );
     }
 
+    /**
+     * Import pipeline: the producer thread decompresses the input and splits the raw CSV text into chunks of whole records,
+     * worker threads parse, validate and group each chunk by DB, and the calling thread writes the grouped records with
+     * {@link LocalDB#putAll(LocalDB.DB, Map)} in transactions sized by a {@link TransactionSizeCalculator}.  A GZIP
+     * stream can only be decoded sequentially, so decompression stays on the producer thread.
+     */
     private static class ImportLocalDBMachine
     {
-        private int lineReaderCounter;
-        private long byteReaderCounter;
+        private volatile int lineReaderCounter;
+        private volatile long byteReaderCounter;
         private int recordImportCounter;
+        private int recordSkipCounter;
+        private int cachedTransactions;
         private final Instant startTime = Instant.now();
         final Map<LocalDB.DB, Map<String, String>> transactionMap = new HashMap<>();
         private final EventRateMeter eventRateMeter = new EventRateMeter( TimeDuration.MINUTE );
@@ -281,14 +549,16 @@ public class LocalDBUtility
         private final long totalBytes;
         private final Appendable debugOutput;
         private final LocalDB localDB;
+        private final int workerThreads;
 
         private final ConditionalTaskExecutor debugOutputWriter;
 
-        ImportLocalDBMachine( final LocalDB localDB, final long totalBytes, final Appendable debugOutput )
+        ImportLocalDBMachine( final LocalDB localDB, final long totalBytes, final Appendable debugOutput, final int workerThreads )
         {
             this.localDB = localDB;
             this.totalBytes = totalBytes;
             this.debugOutput = debugOutput;
+            this.workerThreads = workerThreads;
 
             for ( final LocalDB.DB loopDB : LocalDB.DB.values() )
             {
@@ -302,7 +572,7 @@ public class LocalDBUtility
         }
 
         void doImport( final InputStream inputStream )
-                throws IOException, LocalDBException
+                throws IOException, PwmOperationalException
         {
             this.prepareForImport();
 
@@ -311,47 +581,110 @@ public class LocalDBUtility
                 writeStringToOut( debugOutput, "total bytes in localdb import source: " + totalBytes );
             }
 
-            writeStringToOut( debugOutput, "beginning localdb import..." );
+            writeStringToOut( debugOutput, "beginning localdb import using " + workerThreads + " worker threads..." );
 
+            final WorkerPipeline<ImportChunk> pipeline = new WorkerPipeline<>( LocalDBUtility.class, workerThreads );
+            executePipeline( pipeline, pipelineRef -> produceImportChunks( inputStream, pipelineRef ), this::writeImportChunk );
+
+            flushCachedTransactions();
+            this.markImportComplete();
+
+            final String completeMsg = "import process completed: " + debugStatsString();
+            LOGGER.info( () -> completeMsg );
+            writeStringToOut( debugOutput, completeMsg );
+        }
+
+        private void produceImportChunks( final InputStream inputStream, final WorkerPipeline<ImportChunk> pipeline )
+                throws IOException, InterruptedException
+        {
             try ( CountingInputStream countingInputStream = new CountingInputStream( inputStream ) )
             {
                 try ( Reader csvReader = new InputStreamReader( new GZIPInputStream( countingInputStream, GZIP_BUFFER_SIZE ), PwmConstants.DEFAULT_CHARSET ) )
                 {
-                    int cachedTransactions = 0;
-                    for ( final CSVRecord record : PwmConstants.DEFAULT_CSV_FORMAT.parse( csvReader ) )
+                    final CsvChunkReader chunkReader = new CsvChunkReader( csvReader, PwmConstants.DEFAULT_CSV_FORMAT, CHUNK_SIZE );
+                    String csvText = chunkReader.readChunk();
+                    while ( csvText != null )
                     {
-                        lineReaderCounter++;
-                        eventRateMeter.markEvents( 1 );
+                        final String chunkText = csvText;
+                        final long firstRecordNumber = lineReaderCounter + 1;
+                        lineReaderCounter += chunkReader.getChunkRecordCount();
                         byteReaderCounter = countingInputStream.getByteCount();
-                        final String dbNameRecordStr = record.get( 0 );
-                        final LocalDB.DB db = JavaHelper.readEnumFromString( LocalDB.DB.class, null, dbNameRecordStr );
-                        final String key = record.get( 1 );
-                        final String value = record.get( 2 );
-                        if ( db == null )
-                        {
-                            writeStringToOut( debugOutput, "ignoring localdb import record #" + lineReaderCounter + ", invalid DB name '" + dbNameRecordStr + "'" );
-                        }
-                        else
-                        {
-                            transactionMap.get( db ).put( key, value );
-                            cachedTransactions++;
-                            if ( cachedTransactions >= transactionCalculator.getTransactionSize() )
-                            {
-                                flushCachedTransactions();
-                                cachedTransactions = 0;
-                            }
-                        }
-                        debugOutputWriter.conditionallyExecuteTask();
+                        pipeline.submit( () -> parseImportChunk( chunkText, firstRecordNumber ) );
+                        csvText = chunkReader.readChunk();
                     }
                 }
             }
+        }
 
-            flushCachedTransactions();
-            this.markImportComplete();
+        private static ImportChunk parseImportChunk( final String csvText, final long firstRecordNumber )
+                throws IOException
+        {
+            final Map<LocalDB.DB, Map<String, String>> recordMap = new EnumMap<>( LocalDB.DB.class );
+            final List<String> errors = new ArrayList<>();
+            int lineCount = 0;
+            int recordCount = 0;
+            for ( final CSVRecord record : CSVParser.parse( new StringReader( csvText ), PwmConstants.DEFAULT_CSV_FORMAT ) )
+            {
+                lineCount++;
+                final String errorMsg = validateImportRecord( record );
+                if ( errorMsg != null )
+                {
+                    errors.add( "ignoring localdb import record #" + ( firstRecordNumber + record.getRecordNumber() - 1 ) + ", " + errorMsg );
+                }
+                else
+                {
+                    final LocalDB.DB db = JavaHelper.readEnumFromString( LocalDB.DB.class, null, record.get( 0 ) );
+                    recordMap.computeIfAbsent( db, k -> new HashMap<>() ).put( record.get( 1 ), record.get( 2 ) );
+                    recordCount++;
+                }
+            }
+            return new ImportChunk( recordMap, errors, lineCount, recordCount );
+        }
 
-            final String completeMsg = "import process completed: " + debugStatsString();
-            LOGGER.info( () -> completeMsg );
-            writeStringToOut( debugOutput, completeMsg );
+        private static String validateImportRecord( final CSVRecord record )
+        {
+            if ( record.size() < 3 )
+            {
+                return "expected 3 columns but found " + record.size();
+            }
+            final String dbNameRecordStr = record.get( 0 );
+            if ( JavaHelper.readEnumFromString( LocalDB.DB.class, null, dbNameRecordStr ) == null )
+            {
+                return "invalid DB name '" + dbNameRecordStr + "'";
+            }
+            final String key = record.get( 1 );
+            if ( StringUtil.isEmpty( key ) || key.length() > LocalDB.MAX_KEY_LENGTH )
+            {
+                return "key must be between 1 and " + LocalDB.MAX_KEY_LENGTH + " characters";
+            }
+            if ( record.get( 2 ).length() > LocalDB.MAX_VALUE_LENGTH )
+            {
+                return "value exceeds " + LocalDB.MAX_VALUE_LENGTH + " characters";
+            }
+            return null;
+        }
+
+        private void writeImportChunk( final ImportChunk importChunk )
+                throws LocalDBException
+        {
+            for ( final String error : importChunk.getErrors() )
+            {
+                writeStringToOut( debugOutput, error );
+            }
+            recordSkipCounter += importChunk.getErrors().size();
+
+            for ( final Map.Entry<LocalDB.DB, Map<String, String>> entry : importChunk.getRecords().entrySet() )
+            {
+                transactionMap.get( entry.getKey() ).putAll( entry.getValue() );
+            }
+            cachedTransactions += importChunk.getRecordCount();
+            if ( cachedTransactions >= transactionCalculator.getTransactionSize() )
+            {
+                flushCachedTransactions();
+            }
+
+            eventRateMeter.markEvents( importChunk.getLineCount() );
+            debugOutputWriter.conditionallyExecuteTask();
         }
 
         private void flushCachedTransactions( )
@@ -364,6 +697,7 @@ public class LocalDBUtility
                 recordImportCounter += transactionMap.get( loopDB ).size();
                 transactionMap.get( loopDB ).clear();
             }
+            cachedTransactions = 0;
             transactionCalculator.recordLastTransactionDuration( TimeDuration.fromCurrent( startTxnTime ) );
         }
 
@@ -399,13 +733,15 @@ public class LocalDBUtility
             {
                 final ProgressInfo progressInfo = new ProgressInfo( startTime, totalBytes, byteReaderCounter );
                 stats.put( "progress", progressInfo.debugOutput() );
+                stats.put( "estimatedCompletion", JavaHelper.toIsoDate( progressInfo.estimatedCompletion() ) );
             }
 
             stats.put( "linesRead", Integer.toString( lineReaderCounter ) );
             stats.put( "bytesRead", Long.toString( byteReaderCounter ) );
             stats.put( "recordsImported", Integer.toString( recordImportCounter ) );
+            stats.put( "recordsSkipped", Integer.toString( recordSkipCounter ) );
             stats.put( "avgTransactionSize", Integer.toString( transactionCalculator.getTransactionSize() ) );
-            stats.put( "recordsPerMinute", eventRateMeter.readEventRate().setScale( 2, RoundingMode.DOWN ).toString() );
+            stats.put( "recordsPerSecond", eventRateMeter.readEventRate().setScale( 2, RoundingMode.DOWN ).toString() );
             stats.put( "duration", TimeDuration.compactFromCurrent( startTime ) );
             return StringUtil.mapToString( stats );
         }
@@ -474,10 +810,73 @@ public class LocalDBUtility
         return parameters != null && parameters.containsKey( parameter ) && Boolean.parseBoolean( parameters.get( parameter ) );
     }
 
+    /**
+     * Replace a failed or partial snapshot with the previous snapshot that was moved aside before it was written, if
+     * there is one.
+     */
+    static void restorePreviousSnapshot( final Path backupPath, final Path previousPath )
+    {
+        if ( !Files.exists( previousPath ) )
+        {
+            return;
+        }
+
+        try
+        {
+            deleteSnapshotDirectory( backupPath );
+            Files.move( previousPath, backupPath );
+        }
+        catch ( IOException e )
+        {
+            LOGGER.error( "error restoring previous snapshot '" + previousPath + "', error: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Count the files of the previous snapshot which are not part of the new snapshot.
+     */
+    static int countStaleFiles( final Path backupPath, final Path previousPath )
+    {
+        if ( !Files.exists( previousPath ) )
+        {
+            return 0;
+        }
+
+        try ( Stream<Path> previousFiles = Files.walk( previousPath ) )
+        {
+            return ( int ) previousFiles
+                    .filter( Files::isRegularFile )
+                    .filter( path -> !Files.exists( backupPath.resolve( previousPath.relativize( path ) ) ) )
+                    .count();
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( "error reading previous snapshot '" + previousPath + "', error: " + e.getMessage() );
+            return 0;
+        }
+    }
+
+    static void deleteSnapshotDirectory( final Path path ) throws IOException
+    {
+        if ( !Files.exists( path ) )
+        {
+            return;
+        }
+
+        try ( Stream<Path> paths = Files.walk( path ) )
+        {
+            final List<Path> deletePaths = paths.sorted( Comparator.reverseOrder() ).collect( Collectors.toList() );
+            for ( final Path deletePath : deletePaths )
+            {
+                Files.delete( deletePath );
+            }
+        }
+    }
+
     public void cancelImportProcess()
             throws LocalDBException
     {
-        final ImportLocalDBMachine importLocalDBMachine = new ImportLocalDBMachine( localDB, 0, new StringBuilder() );
+        final ImportLocalDBMachine importLocalDBMachine = new ImportLocalDBMachine( localDB, 0, new StringBuilder(), workerThreads );
         importLocalDBMachine.prepareForImport();
         importLocalDBMachine.markImportComplete();
     }
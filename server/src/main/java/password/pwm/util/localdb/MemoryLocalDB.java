@@ -26,7 +26,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 
@@ -112,6 +114,24 @@ public class MemoryLocalDB implements LocalDBProvider
         return new DbIterator( db );
     }
 
+    /**
+     * Keys are copied and sorted, so the range is returned in ascending key order.
+     */
+    @Override
+    public LocalDB.LocalDBIterator<String> iterator( final LocalDB.DB db, final String fromKey, final String toKey ) throws LocalDBException
+    {
+        opertationPreCheck();
+
+        final NavigableSet<String> sortedKeys = new TreeSet<>( maps.get( db ).keySet() );
+        if ( fromKey != null && toKey != null && fromKey.compareTo( toKey ) >= 0 )
+        {
+            return new DbIterator( Collections.emptyIterator() );
+        }
+        final NavigableSet<String> headSet = toKey == null ? sortedKeys : sortedKeys.headSet( toKey, false );
+        final NavigableSet<String> rangeSet = fromKey == null ? headSet : headSet.tailSet( fromKey, true );
+        return new DbIterator( rangeSet.iterator() );
+    }
+
     @LocalDB.WriteOperation
     public void putAll( final LocalDB.DB db, final Map<String, String> keyValueMap )
             throws LocalDBException
@@ -182,6 +202,29 @@ public class MemoryLocalDB implements LocalDBProvider
         maps.get( db ).keySet().removeAll( keys );
     }
 
+    /**
+     * Operations are applied in order directly to the backing maps, concurrent readers may observe a partially
+     * applied batch.
+     */
+    @LocalDB.WriteOperation
+    public void executeBatch( final LocalDBBatch batch ) throws LocalDBException
+    {
+        opertationPreCheck();
+
+        for ( final LocalDBBatch.Operation operation : batch.getOperations() )
+        {
+            final Map<String, String> map = maps.get( operation.getDb() );
+            if ( operation.getType() == LocalDBBatch.OperationType.PUT )
+            {
+                map.put( operation.getKey(), operation.getValue() );
+            }
+            else
+            {
+                map.remove( operation.getKey() );
+            }
+        }
+    }
+
     public LocalDB.Status getStatus( )
     {
         return state;
@@ -203,6 +246,11 @@ public class MemoryLocalDB implements LocalDBProvider
             iterator = maps.get( db ).keySet().iterator();
         }
 
+        private DbIterator( final Iterator<String> iterator )
+        {
+            this.iterator = iterator;
+        }
+
         public boolean hasNext( )
         {
             return iterator.hasNext();
@@ -231,6 +279,6 @@ public class MemoryLocalDB implements LocalDBProvider
     @Override
     public Set<Flag> flags( )
     {
-        return Collections.emptySet();
+        return Collections.singleton( Flag.OrderedRangeIteration );
     }
 }
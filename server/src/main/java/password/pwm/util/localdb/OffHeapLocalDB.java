@@ -0,0 +1,464 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import password.pwm.error.ErrorInformation;
+import password.pwm.error.PwmError;
+import password.pwm.util.java.FileSystemUtility;
+import password.pwm.util.java.StringUtil;
+import password.pwm.util.logging.PwmLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Non-persistent {@link LocalDBProvider} that stores keys and values outside of the java heap, suitable for large
+ * wordlists and for test or stateless nodes where {@link MemoryLocalDB} would put excessive pressure on the garbage
+ * collector.  Records are held in direct byte buffers, or when {@code offheap.mapped=true} in memory mapped files
+ * beneath the LocalDB directory so the data set may exceed physical memory.  Either way the contents are discarded
+ * when the db is closed.
+ *
+ * <p>Select with the {@code localdb.implementation} app property.  Direct buffers are limited by the JVM
+ * {@code -XX:MaxDirectMemorySize} setting.</p>
+ */
+public class OffHeapLocalDB implements LocalDBProvider
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( OffHeapLocalDB.class );
+
+    private static final String FILE_SUB_PATH = "offheap";
+    private static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    // large enough for a record with maximum length key and value
+    private static final int MINIMUM_SEGMENT_SIZE = 1024 * 1024;
+
+    private enum Property
+    {
+        SegmentSize( "offheap.segmentSize" ),
+        Mapped( "offheap.mapped" ),;
+
+        private final String keyName;
+
+        Property( final String keyName )
+        {
+            this.keyName = keyName;
+        }
+
+        public String getKeyName( )
+        {
+            return keyName;
+        }
+    }
+
+    private final Map<LocalDB.DB, OffHeapStore> stores = new EnumMap<>( LocalDB.DB.class );
+
+    private volatile LocalDB.Status status = LocalDB.Status.NEW;
+    private boolean readOnly;
+    private File segmentDirectory;
+
+    @Override
+    public void init(
+            final File dbDirectory,
+            final Map<String, String> initParameters,
+            final Map<Parameter, String> parameters
+    )
+            throws LocalDBException
+    {
+        if ( status != LocalDB.Status.NEW )
+        {
+            throw new IllegalStateException( "cannot init db more than one time" );
+        }
+
+        final int segmentSize = initParameters.containsKey( Property.SegmentSize.getKeyName() )
+                ? Math.max( MINIMUM_SEGMENT_SIZE, Integer.parseInt( initParameters.get( Property.SegmentSize.getKeyName() ) ) )
+                : DEFAULT_SEGMENT_SIZE;
+
+        final boolean mapped = initParameters.containsKey( Property.Mapped.getKeyName() )
+                && Boolean.parseBoolean( initParameters.get( Property.Mapped.getKeyName() ) );
+
+        readOnly = LocalDBUtility.hasBooleanParameter( Parameter.readOnly, parameters );
+
+        final OffHeapStore.SegmentAllocator segmentAllocator;
+        if ( mapped )
+        {
+            segmentDirectory = new File( dbDirectory, FILE_SUB_PATH );
+            clearSegmentDirectory();
+            segmentAllocator = new MappedSegmentAllocator( segmentDirectory );
+        }
+        else
+        {
+            segmentAllocator = new DirectSegmentAllocator();
+        }
+
+        for ( final LocalDB.DB db : LocalDB.DB.values() )
+        {
+            stores.put( db, new OffHeapStore( segmentAllocator, segmentSize ) );
+        }
+
+        status = LocalDB.Status.OPEN;
+        LOGGER.debug( () -> "opened with " + ( mapped ? "memory mapped" : "direct" ) + " segments of " + StringUtil.formatDiskSize( segmentSize ) );
+    }
+
+    @Override
+    public void close( ) throws LocalDBException
+    {
+        status = LocalDB.Status.CLOSED;
+        for ( final OffHeapStore store : stores.values() )
+        {
+            store.clear();
+        }
+        if ( segmentDirectory != null )
+        {
+            clearSegmentDirectory();
+        }
+    }
+
+    @Override
+    public boolean contains( final LocalDB.DB db, final String key ) throws LocalDBException
+    {
+        checkStatus( false );
+        return stores.get( db ).contains( key );
+    }
+
+    @Override
+    public String get( final LocalDB.DB db, final String key ) throws LocalDBException
+    {
+        checkStatus( false );
+        return stores.get( db ).get( key );
+    }
+
+    @Override
+    public LocalDB.LocalDBIterator<String> iterator( final LocalDB.DB db ) throws LocalDBException
+    {
+        checkStatus( false );
+        return stores.get( db ).iterator();
+    }
+
+    /**
+     * The store is hash ordered, so the keys of the range are collected and sorted, and the range is returned in
+     * ascending key order.
+     */
+    @Override
+    public LocalDB.LocalDBIterator<String> iterator( final LocalDB.DB db, final String fromKey, final String toKey ) throws LocalDBException
+    {
+        checkStatus( false );
+        final TreeSet<String> sortedKeys = new TreeSet<>();
+        try ( LocalDB.LocalDBIterator<String> storeIterator = stores.get( db ).iterator() )
+        {
+            while ( storeIterator.hasNext() )
+            {
+                final String key = storeIterator.next();
+                if ( ( fromKey == null || key.compareTo( fromKey ) >= 0 ) && ( toKey == null || key.compareTo( toKey ) < 0 ) )
+                {
+                    sortedKeys.add( key );
+                }
+            }
+        }
+        return new SortedKeyIterator( sortedKeys.iterator() );
+    }
+
+    @Override
+    public void putAll( final LocalDB.DB db, final Map<String, String> keyValueMap ) throws LocalDBException
+    {
+        checkStatus( true );
+        final OffHeapStore store = stores.get( db );
+        for ( final Map.Entry<String, String> entry : keyValueMap.entrySet() )
+        {
+            store.put( entry.getKey(), entry.getValue(), false );
+        }
+    }
+
+    @Override
+    public boolean put( final LocalDB.DB db, final String key, final String value ) throws LocalDBException
+    {
+        checkStatus( true );
+        return stores.get( db ).put( key, value, false );
+    }
+
+    @Override
+    public boolean putIfAbsent( final LocalDB.DB db, final String key, final String value ) throws LocalDBException
+    {
+        checkStatus( true );
+        return !stores.get( db ).put( key, value, true );
+    }
+
+    @Override
+    public boolean remove( final LocalDB.DB db, final String key ) throws LocalDBException
+    {
+        checkStatus( true );
+        return stores.get( db ).remove( key );
+    }
+
+    @Override
+    public void removeAll( final LocalDB.DB db, final Collection<String> keys ) throws LocalDBException
+    {
+        checkStatus( true );
+        final OffHeapStore store = stores.get( db );
+        for ( final String key : keys )
+        {
+            store.remove( key );
+        }
+    }
+
+    @Override
+    public boolean containsBytes( final LocalDB.DB db, final byte[] key ) throws LocalDBException
+    {
+        checkStatus( false );
+        return stores.get( db ).containsBytes( key );
+    }
+
+    @Override
+    public byte[] getBytes( final LocalDB.DB db, final byte[] key ) throws LocalDBException
+    {
+        checkStatus( false );
+        return stores.get( db ).getBytes( key );
+    }
+
+    @Override
+    public boolean putBytes( final LocalDB.DB db, final byte[] key, final byte[] value ) throws LocalDBException
+    {
+        checkStatus( true );
+        return stores.get( db ).putBytes( key, value, false );
+    }
+
+    @Override
+    public void putAllBytes( final LocalDB.DB db, final Map<ByteBuffer, byte[]> keyValueMap ) throws LocalDBException
+    {
+        checkStatus( true );
+        final OffHeapStore store = stores.get( db );
+        for ( final Map.Entry<ByteBuffer, byte[]> entry : keyValueMap.entrySet() )
+        {
+            final byte[] keyBytes = new byte[ entry.getKey().remaining() ];
+            entry.getKey().duplicate().get( keyBytes );
+            store.putBytes( keyBytes, entry.getValue(), false );
+        }
+    }
+
+    @Override
+    public boolean removeBytes( final LocalDB.DB db, final byte[] key ) throws LocalDBException
+    {
+        checkStatus( true );
+        return stores.get( db ).removeBytes( key );
+    }
+
+    @Override
+    public LocalDB.LocalDBIterator<byte[]> bytesIterator( final LocalDB.DB db ) throws LocalDBException
+    {
+        checkStatus( false );
+        return stores.get( db ).iterator( Function.identity() );
+    }
+
+    @Override
+    public long size( final LocalDB.DB db ) throws LocalDBException
+    {
+        checkStatus( false );
+        return stores.get( db ).size();
+    }
+
+    @Override
+    public void truncate( final LocalDB.DB db ) throws LocalDBException
+    {
+        checkStatus( true );
+        stores.get( db ).clear();
+    }
+
+    @Override
+    public File getFileLocation( )
+    {
+        return segmentDirectory;
+    }
+
+    @Override
+    public LocalDB.Status getStatus( )
+    {
+        return status;
+    }
+
+    @Override
+    public Map<String, Serializable> debugInfo( )
+    {
+        final Map<String, Serializable> outputStats = new LinkedHashMap<>();
+        long liveBytes = 0;
+        long garbageBytes = 0;
+        int segmentCount = 0;
+        for ( final Map.Entry<LocalDB.DB, OffHeapStore> entry : stores.entrySet() )
+        {
+            final OffHeapStore store = entry.getValue();
+            outputStats.put( "size." + entry.getKey().name(), store.size() );
+            liveBytes += store.liveBytes();
+            garbageBytes += store.garbageBytes();
+            segmentCount += store.segmentCount();
+        }
+        outputStats.put( "segmentCount", segmentCount );
+        outputStats.put( "liveBytes", liveBytes );
+        outputStats.put( "garbageBytes", garbageBytes );
+        return Collections.unmodifiableMap( outputStats );
+    }
+
+    @Override
+    public Set<Flag> flags( )
+    {
+        return Collections.singleton( Flag.OrderedRangeIteration );
+    }
+
+    private void checkStatus( final boolean writeOperation ) throws LocalDBException
+    {
+        if ( status != LocalDB.Status.OPEN )
+        {
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, "cannot perform operation, localdb instance is not open" ) );
+        }
+
+        if ( writeOperation && readOnly )
+        {
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, "cannot perform operation, localdb is in read-only mode" ) );
+        }
+    }
+
+    private void clearSegmentDirectory( ) throws LocalDBException
+    {
+        try
+        {
+            if ( segmentDirectory.exists() )
+            {
+                FileSystemUtility.deleteDirectoryContents( segmentDirectory );
+            }
+            else if ( !segmentDirectory.mkdirs() )
+            {
+                throw new IOException( "unable to create directory " + segmentDirectory.getAbsolutePath() );
+            }
+        }
+        catch ( IOException e )
+        {
+            final String errorMsg = "error preparing off-heap segment directory: " + e.getMessage();
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, errorMsg ) );
+        }
+    }
+
+    private static class DirectSegmentAllocator implements OffHeapStore.SegmentAllocator
+    {
+        @Override
+        public ByteBuffer allocate( final int size ) throws LocalDBException
+        {
+            try
+            {
+                return ByteBuffer.allocateDirect( size );
+            }
+            catch ( OutOfMemoryError e )
+            {
+                final String errorMsg = "unable to allocate off-heap segment: " + e.getMessage();
+                throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, errorMsg ) );
+            }
+        }
+
+        @Override
+        public void release( final ByteBuffer segment )
+        {
+            // direct buffer memory is released when the buffer is garbage collected
+        }
+    }
+
+    /**
+     * Allocates each segment as a memory mapped file.  The file is deleted when the segment is released, the mapping
+     * itself remains valid until the buffer is garbage collected.
+     */
+    private static class MappedSegmentAllocator implements OffHeapStore.SegmentAllocator
+    {
+        private final File directory;
+        private final AtomicInteger fileCounter = new AtomicInteger();
+        // identity map, buffer equality is based on content
+        private final Map<ByteBuffer, File> segmentFiles = Collections.synchronizedMap( new IdentityHashMap<>() );
+
+        MappedSegmentAllocator( final File directory )
+        {
+            this.directory = directory;
+        }
+
+        @Override
+        public ByteBuffer allocate( final int size ) throws LocalDBException
+        {
+            final File segmentFile = new File( directory, "segment-" + fileCounter.incrementAndGet() + ".dat" );
+            try ( RandomAccessFile randomAccessFile = new RandomAccessFile( segmentFile, "rw" ) )
+            {
+                randomAccessFile.setLength( size );
+                final MappedByteBuffer segment = randomAccessFile.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, size );
+                segmentFiles.put( segment, segmentFile );
+                return segment;
+            }
+            catch ( IOException e )
+            {
+                final String errorMsg = "unable to allocate memory mapped off-heap segment " + segmentFile.getAbsolutePath() + ": " + e.getMessage();
+                throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, errorMsg ) );
+            }
+        }
+
+        @Override
+        public void release( final ByteBuffer segment )
+        {
+            final File segmentFile = segmentFiles.remove( segment );
+            if ( segmentFile != null && !segmentFile.delete() )
+            {
+                LOGGER.debug( () -> "unable to delete off-heap segment file " + segmentFile.getAbsolutePath() );
+            }
+        }
+    }
+
+    private static class SortedKeyIterator implements LocalDB.LocalDBIterator<String>
+    {
+        private final Iterator<String> iterator;
+
+        SortedKeyIterator( final Iterator<String> iterator )
+        {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext( )
+        {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public String next( )
+        {
+            return iterator.next();
+        }
+
+        @Override
+        public void close( )
+        {
+        }
+    }
+}
@@ -0,0 +1,606 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import password.pwm.error.ErrorInformation;
+import password.pwm.error.PwmError;
+import password.pwm.util.logging.PwmLogger;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Hash table of byte array keys and values stored outside of the java heap, used by {@link OffHeapLocalDB} for each
+ * {@link LocalDB.DB}.  Records are appended to fixed size segments supplied by a {@link SegmentAllocator} and located
+ * using an open addressing (linear probing) index of primitive arrays.  Replaced and removed records are left in
+ * place until the garbage exceeds the live data, at which point the live records are copied to new segments.
+ *
+ * <p>Record layout: key byte length (int), value byte length (int), key bytes, value bytes.  String keys and values
+ * are stored as UTF-8.</p>
+ */
+class OffHeapStore
+{
+    interface SegmentAllocator
+    {
+        ByteBuffer allocate( int size ) throws LocalDBException;
+
+        void release( ByteBuffer segment );
+    }
+
+    private static final PwmLogger LOGGER = PwmLogger.forClass( OffHeapStore.class );
+
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final float MAX_LOAD_FACTOR = 0.7f;
+
+    // slot address values, record addresses are always positive
+    private static final long EMPTY_SLOT = 0;
+    private static final long REMOVED_SLOT = -1;
+
+    private final SegmentAllocator segmentAllocator;
+    private final int segmentSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger openIterators = new AtomicInteger();
+
+    private List<ByteBuffer> segments = new ArrayList<>();
+    private long[] slotAddresses = new long[ INITIAL_CAPACITY ];
+    private int[] slotHashes = new int[ INITIAL_CAPACITY ];
+    private int size;
+    private int usedSlots;
+    private long liveBytes;
+    private long garbageBytes;
+    private boolean compactionFailed;
+
+    OffHeapStore( final SegmentAllocator segmentAllocator, final int segmentSize )
+    {
+        this.segmentAllocator = segmentAllocator;
+        this.segmentSize = segmentSize;
+    }
+
+    String get( final String key )
+    {
+        final byte[] valueBytes = getBytes( key.getBytes( StandardCharsets.UTF_8 ) );
+        return valueBytes == null ? null : new String( valueBytes, StandardCharsets.UTF_8 );
+    }
+
+    byte[] getBytes( final byte[] keyBytes )
+    {
+        lock.readLock().lock();
+        try
+        {
+            final int slot = findSlot( keyBytes, hash( keyBytes ) );
+            return slot < 0 ? null : readValue( slotAddresses[ slot ] );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean contains( final String key )
+    {
+        return containsBytes( key.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    boolean containsBytes( final byte[] keyBytes )
+    {
+        lock.readLock().lock();
+        try
+        {
+            return findSlot( keyBytes, hash( keyBytes ) ) >= 0;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if the key previously existed
+     */
+    boolean put( final String key, final String value, final boolean onlyIfAbsent )
+            throws LocalDBException
+    {
+        return putBytes( key.getBytes( StandardCharsets.UTF_8 ), value.getBytes( StandardCharsets.UTF_8 ), onlyIfAbsent );
+    }
+
+    /**
+     * @return true if the key previously existed
+     */
+    boolean putBytes( final byte[] keyBytes, final byte[] valueBytes, final boolean onlyIfAbsent )
+            throws LocalDBException
+    {
+        final int hash = hash( keyBytes );
+
+        lock.writeLock().lock();
+        try
+        {
+            final int existingSlot = findSlot( keyBytes, hash );
+            if ( existingSlot >= 0 && onlyIfAbsent )
+            {
+                return true;
+            }
+
+            final long address = appendRecord( keyBytes, valueBytes );
+            final long recordLength = RECORD_HEADER_LENGTH + keyBytes.length + valueBytes.length;
+            liveBytes += recordLength;
+
+            if ( existingSlot >= 0 )
+            {
+                final long previousLength = recordLength( slotAddresses[ existingSlot ] );
+                liveBytes -= previousLength;
+                garbageBytes += previousLength;
+                slotAddresses[ existingSlot ] = address;
+                compactIfNeeded();
+                return true;
+            }
+
+            ensureCapacity();
+            insertSlot( address, hash );
+            size++;
+            return false;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean remove( final String key )
+    {
+        return removeBytes( key.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    boolean removeBytes( final byte[] keyBytes )
+    {
+        lock.writeLock().lock();
+        try
+        {
+            final int slot = findSlot( keyBytes, hash( keyBytes ) );
+            if ( slot < 0 )
+            {
+                return false;
+            }
+
+            final long previousLength = recordLength( slotAddresses[ slot ] );
+            liveBytes -= previousLength;
+            garbageBytes += previousLength;
+            slotAddresses[ slot ] = REMOVED_SLOT;
+            size--;
+            compactIfNeeded();
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size( )
+    {
+        lock.readLock().lock();
+        try
+        {
+            return size;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    long liveBytes( )
+    {
+        return liveBytes;
+    }
+
+    long garbageBytes( )
+    {
+        return garbageBytes;
+    }
+
+    int segmentCount( )
+    {
+        return segments.size();
+    }
+
+    /**
+     * Remove all records and release all segments.
+     */
+    void clear( )
+    {
+        lock.writeLock().lock();
+        try
+        {
+            for ( final ByteBuffer segment : segments )
+            {
+                segmentAllocator.release( segment );
+            }
+            segments = new ArrayList<>();
+            slotAddresses = new long[ INITIAL_CAPACITY ];
+            slotHashes = new int[ INITIAL_CAPACITY ];
+            size = 0;
+            usedSlots = 0;
+            liveBytes = 0;
+            garbageBytes = 0;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Iterate the keys of the store.  The iterator is weakly consistent: it reads the index as of its creation and may
+     * or may not reflect later modifications.  Compaction is deferred while any iterator is open.
+     */
+    LocalDB.LocalDBIterator<String> iterator( )
+    {
+        return iterator( keyBytes -> new String( keyBytes, StandardCharsets.UTF_8 ) );
+    }
+
+    <K> LocalDB.LocalDBIterator<K> iterator( final Function<byte[], K> keyDecoder )
+    {
+        lock.readLock().lock();
+        try
+        {
+            return new OffHeapIterator<>( slotAddresses, segments, keyDecoder );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int findSlot( final byte[] keyBytes, final int hash )
+    {
+        final int mask = slotAddresses.length - 1;
+        int slot = hash & mask;
+        while ( true )
+        {
+            final long address = slotAddresses[ slot ];
+            if ( address == EMPTY_SLOT )
+            {
+                return -1;
+            }
+            if ( address != REMOVED_SLOT && slotHashes[ slot ] == hash && keyEquals( address, keyBytes ) )
+            {
+                return slot;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+    }
+
+    private void insertSlot( final long address, final int hash )
+    {
+        final int mask = slotAddresses.length - 1;
+        int slot = hash & mask;
+        while ( slotAddresses[ slot ] != EMPTY_SLOT && slotAddresses[ slot ] != REMOVED_SLOT )
+        {
+            slot = ( slot + 1 ) & mask;
+        }
+        if ( slotAddresses[ slot ] == EMPTY_SLOT )
+        {
+            usedSlots++;
+        }
+        slotAddresses[ slot ] = address;
+        slotHashes[ slot ] = hash;
+    }
+
+    private void ensureCapacity( )
+    {
+        if ( usedSlots + 1 <= slotAddresses.length * MAX_LOAD_FACTOR )
+        {
+            return;
+        }
+
+        // rehash to at most half the maximum load, which also discards all removed slots
+        int newCapacity = INITIAL_CAPACITY;
+        while ( newCapacity * MAX_LOAD_FACTOR < ( size + 1 ) * 2L )
+        {
+            newCapacity <<= 1;
+        }
+
+        final long[] oldAddresses = slotAddresses;
+        final int[] oldHashes = slotHashes;
+        slotAddresses = new long[ newCapacity ];
+        slotHashes = new int[ newCapacity ];
+        usedSlots = 0;
+        for ( int i = 0; i < oldAddresses.length; i++ )
+        {
+            if ( oldAddresses[ i ] != EMPTY_SLOT && oldAddresses[ i ] != REMOVED_SLOT )
+            {
+                insertSlot( oldAddresses[ i ], oldHashes[ i ] );
+            }
+        }
+    }
+
+    private void compactIfNeeded( )
+    {
+        if ( garbageBytes > liveBytes && garbageBytes > segmentSize && openIterators.get() == 0 )
+        {
+            try
+            {
+                compact();
+                compactionFailed = false;
+            }
+            catch ( LocalDBException e )
+            {
+                // compact() leaves the segments and index unchanged on failure, compaction is retried by later writes so
+                // only the first failure is logged
+                if ( !compactionFailed )
+                {
+                    LOGGER.warn( "unable to compact off-heap store, " + garbageBytes + " bytes of garbage retained: " + e.getMessage() );
+                    compactionFailed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy all live records to new segments and release the existing segments.  The new addresses are collected in a
+     * separate index which only replaces the current one once every record has been copied, so a failure leaves the
+     * store unchanged.
+     */
+    private void compact( ) throws LocalDBException
+    {
+        final List<ByteBuffer> oldSegments = segments;
+        final long[] newAddresses = slotAddresses.clone();
+        segments = new ArrayList<>();
+        try
+        {
+            for ( int i = 0; i < newAddresses.length; i++ )
+            {
+                final long address = newAddresses[ i ];
+                if ( address != EMPTY_SLOT && address != REMOVED_SLOT )
+                {
+                    final ByteBuffer record = recordBuffer( oldSegments, address );
+                    record.limit( record.position() + ( int ) recordLength( oldSegments, address ) );
+                    newAddresses[ i ] = appendRecord( record );
+                }
+            }
+        }
+        catch ( LocalDBException e )
+        {
+            for ( final ByteBuffer segment : segments )
+            {
+                segmentAllocator.release( segment );
+            }
+            segments = oldSegments;
+            throw e;
+        }
+
+        slotAddresses = newAddresses;
+        for ( final ByteBuffer segment : oldSegments )
+        {
+            segmentAllocator.release( segment );
+        }
+        garbageBytes = 0;
+    }
+
+    /**
+     * Write the record directly to the current segment, without an intermediate buffer.
+     */
+    private long appendRecord( final byte[] keyBytes, final byte[] valueBytes ) throws LocalDBException
+    {
+        final ByteBuffer segment = segmentForRecord( RECORD_HEADER_LENGTH + keyBytes.length + valueBytes.length );
+        final int offset = segment.position();
+        segment.putInt( keyBytes.length ).putInt( valueBytes.length ).put( keyBytes ).put( valueBytes );
+        return makeAddress( segments.size() - 1, offset );
+    }
+
+    private long appendRecord( final ByteBuffer record ) throws LocalDBException
+    {
+        final ByteBuffer segment = segmentForRecord( record.remaining() );
+        final int offset = segment.position();
+        segment.put( record );
+        return makeAddress( segments.size() - 1, offset );
+    }
+
+    /**
+     * Return the last segment, or a newly allocated segment if the last segment can not hold the record.
+     */
+    private ByteBuffer segmentForRecord( final int recordLength ) throws LocalDBException
+    {
+        if ( recordLength > segmentSize )
+        {
+            final String errorMsg = "record length " + recordLength + " exceeds off-heap segment size " + segmentSize;
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_INTERNAL, errorMsg ) );
+        }
+
+        final ByteBuffer segment = segments.isEmpty() ? null : segments.get( segments.size() - 1 );
+        if ( segment != null && segment.remaining() >= recordLength )
+        {
+            return segment;
+        }
+
+        final ByteBuffer newSegment = segmentAllocator.allocate( segmentSize );
+        segments.add( newSegment );
+        return newSegment;
+    }
+
+    private boolean keyEquals( final long address, final byte[] keyBytes )
+    {
+        final ByteBuffer segment = segments.get( segmentIndex( address ) );
+        final int offset = segmentOffset( address );
+        if ( segment.getInt( offset ) != keyBytes.length )
+        {
+            return false;
+        }
+        final int keyOffset = offset + RECORD_HEADER_LENGTH;
+        for ( int i = 0; i < keyBytes.length; i++ )
+        {
+            if ( segment.get( keyOffset + i ) != keyBytes[ i ] )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] readValue( final long address )
+    {
+        final ByteBuffer record = recordBuffer( segments, address );
+        final int keyLength = record.getInt();
+        final int valueLength = record.getInt();
+        record.position( record.position() + keyLength );
+        final byte[] valueBytes = new byte[ valueLength ];
+        record.get( valueBytes );
+        return valueBytes;
+    }
+
+    private static byte[] readKey( final List<ByteBuffer> segments, final long address )
+    {
+        final ByteBuffer record = recordBuffer( segments, address );
+        final int keyLength = record.getInt();
+        record.getInt();
+        final byte[] keyBytes = new byte[ keyLength ];
+        record.get( keyBytes );
+        return keyBytes;
+    }
+
+    private long recordLength( final long address )
+    {
+        return recordLength( segments, address );
+    }
+
+    private static long recordLength( final List<ByteBuffer> segments, final long address )
+    {
+        final ByteBuffer segment = segments.get( segmentIndex( address ) );
+        final int offset = segmentOffset( address );
+        return RECORD_HEADER_LENGTH + segment.getInt( offset ) + segment.getInt( offset + 4 );
+    }
+
+    private static ByteBuffer recordBuffer( final List<ByteBuffer> segments, final long address )
+    {
+        final ByteBuffer record = segments.get( segmentIndex( address ) ).duplicate();
+        record.limit( record.capacity() );
+        record.position( segmentOffset( address ) );
+        return record;
+    }
+
+    private static long makeAddress( final int segmentIndex, final int offset )
+    {
+        // segment index is stored plus one so that a valid address is never EMPTY_SLOT or REMOVED_SLOT
+        return ( ( long ) ( segmentIndex + 1 ) << 32 ) | offset;
+    }
+
+    private static int segmentIndex( final long address )
+    {
+        return ( int ) ( address >>> 32 ) - 1;
+    }
+
+    private static int segmentOffset( final long address )
+    {
+        return ( int ) address;
+    }
+
+    private static int hash( final byte[] keyBytes )
+    {
+        final int hash = Arrays.hashCode( keyBytes );
+        return hash ^ ( hash >>> 16 );
+    }
+
+    private class OffHeapIterator<K> implements LocalDB.LocalDBIterator<K>
+    {
+        private final long[] addresses;
+        private final List<ByteBuffer> iteratorSegments;
+        private final Function<byte[], K> keyDecoder;
+        private int nextSlot;
+        private K nextKey;
+        private boolean closed;
+
+        OffHeapIterator( final long[] addresses, final List<ByteBuffer> iteratorSegments, final Function<byte[], K> keyDecoder )
+        {
+            this.addresses = addresses;
+            this.iteratorSegments = iteratorSegments;
+            this.keyDecoder = keyDecoder;
+            openIterators.incrementAndGet();
+            advance();
+        }
+
+        private void advance( )
+        {
+            nextKey = null;
+            if ( closed )
+            {
+                return;
+            }
+
+            lock.readLock().lock();
+            try
+            {
+                while ( nextSlot < addresses.length )
+                {
+                    final long address = addresses[ nextSlot++ ];
+                    if ( address != EMPTY_SLOT && address != REMOVED_SLOT )
+                    {
+                        nextKey = keyDecoder.apply( readKey( iteratorSegments, address ) );
+                        return;
+                    }
+                }
+            }
+            finally
+            {
+                lock.readLock().unlock();
+            }
+
+            close();
+        }
+
+        @Override
+        public boolean hasNext( )
+        {
+            return nextKey != null;
+        }
+
+        @Override
+        public K next( )
+        {
+            if ( nextKey == null )
+            {
+                throw new NoSuchElementException();
+            }
+            final K key = nextKey;
+            advance();
+            return key;
+        }
+
+        @Override
+        public void close( )
+        {
+            if ( !closed )
+            {
+                closed = true;
+                openIterators.decrementAndGet();
+            }
+        }
+    }
+}
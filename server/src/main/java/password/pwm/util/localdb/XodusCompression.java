@@ -0,0 +1,407 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import lombok.Builder;
+import lombok.Value;
+import password.pwm.util.java.JavaHelper;
+import password.pwm.util.java.Percent;
+import password.pwm.util.java.TimeDuration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Value compression for {@link XodusLocalDB}, configured per {@link LocalDB.DB} with a codec, level, minimum value length and
+ * optionally a preset dictionary.  Dictionaries are trained from a sample of the existing values of a db and are never
+ * discarded, so each dictionary compressed value records the id of the dictionary used.
+ *
+ * <p>Stored value layout: a one byte prefix followed by the value bytes, where the prefix is {@link #UNCOMPRESSED_PREFIX},
+ * {@link #COMPRESSED_PREFIX} (zlib stream) or {@link #DICTIONARY_COMPRESSED_PREFIX} (dictionary id (int) followed by a
+ * zlib stream).</p>
+ *
+ * <p>Values are stored uncompressed unless enabled.  Dictionary compressed values can not be read by versions without
+ * dictionary support, so dictionaries must be enabled per db.  Policy init parameters, where {@code DB} is the
+ * {@link LocalDB.DB} name:</p>
+ * <ul>
+ *     <li>{@code xodus.compression.enabled} - enable or disable compression for all dbs without a codec setting, disabled by default</li>
+ *     <li>{@code xodus.compression.minLength} - default minimum value length to compress</li>
+ *     <li>{@code xodus.compression.DB.codec} - {@link Codec} for the db</li>
+ *     <li>{@code xodus.compression.DB.level} - deflate level (0-9) for the db</li>
+ *     <li>{@code xodus.compression.DB.minLength} - minimum value length to compress for the db</li>
+ *     <li>{@code xodus.compression.DB.dictionary} - train and use a dictionary for the db, disabled by default</li>
+ * </ul>
+ */
+class XodusCompression
+{
+    static final byte DICTIONARY_COMPRESSED_PREFIX = 97;
+    static final byte COMPRESSED_PREFIX = 98;
+    static final byte UNCOMPRESSED_PREFIX = 99;
+
+    static final String PROPERTY_PREFIX = "xodus.compression.";
+
+    private static final int DEFAULT_MIN_LENGTH = 16;
+
+    // deflate only references the last 32k of input, larger dictionaries are of no use
+    static final int MAX_DICTIONARY_LENGTH = 32 * 1024;
+
+    enum Codec
+    {
+        NONE,
+        DEFLATE,
+    }
+
+    private enum Property
+    {
+        Enabled( "enabled" ),
+        MinLength( "minLength" ),
+        Codec( "codec" ),
+        Level( "level" ),
+        Dictionary( "dictionary" ),;
+
+        private final String suffix;
+
+        Property( final String suffix )
+        {
+            this.suffix = suffix;
+        }
+
+        String keyName( )
+        {
+            return PROPERTY_PREFIX + suffix;
+        }
+
+        String keyName( final LocalDB.DB db )
+        {
+            return PROPERTY_PREFIX + db.name() + "." + suffix;
+        }
+    }
+
+    @Value
+    @Builder
+    static class Policy
+    {
+        private final Codec codec;
+        private final int level;
+        private final int minLength;
+        private final boolean dictionary;
+    }
+
+    private final Map<LocalDB.DB, DBCompressor> compressors = new EnumMap<>( LocalDB.DB.class );
+
+    XodusCompression( final Map<LocalDB.DB, Policy> policies )
+    {
+        for ( final LocalDB.DB db : LocalDB.DB.values() )
+        {
+            compressors.put( db, new DBCompressor( policies.get( db ) ) );
+        }
+    }
+
+    static Map<LocalDB.DB, Policy> readPolicies( final Map<String, String> initParameters )
+    {
+        final String enabledValue = initParameters.get( Property.Enabled.keyName() );
+        final int defaultMinLength = initParameters.containsKey( Property.MinLength.keyName() )
+                ? Integer.parseInt( initParameters.get( Property.MinLength.keyName() ) )
+                : DEFAULT_MIN_LENGTH;
+
+        final Map<LocalDB.DB, Policy> policies = new EnumMap<>( LocalDB.DB.class );
+        for ( final LocalDB.DB db : LocalDB.DB.values() )
+        {
+            final Codec defaultCodec = Boolean.parseBoolean( enabledValue ) ? Codec.DEFLATE : Codec.NONE;
+
+            final String codecValue = initParameters.get( Property.Codec.keyName( db ) );
+            final String levelValue = initParameters.get( Property.Level.keyName( db ) );
+            final String minLengthValue = initParameters.get( Property.MinLength.keyName( db ) );
+            final String dictionaryValue = initParameters.get( Property.Dictionary.keyName( db ) );
+
+            policies.put( db, Policy.builder()
+                    .codec( JavaHelper.readEnumFromString( Codec.class, defaultCodec, codecValue ) )
+                    .level( levelValue == null ? Deflater.DEFAULT_COMPRESSION : Integer.parseInt( levelValue ) )
+                    .minLength( minLengthValue == null ? defaultMinLength : Integer.parseInt( minLengthValue ) )
+                    .dictionary( Boolean.parseBoolean( dictionaryValue ) )
+                    .build() );
+        }
+        return Collections.unmodifiableMap( policies );
+    }
+
+    static boolean isCompressionProperty( final String key )
+    {
+        return key != null && key.startsWith( PROPERTY_PREFIX );
+    }
+
+    /**
+     * Dbs configured to use a dictionary for which no dictionary has been trained yet.
+     */
+    Set<LocalDB.DB> dictionaryCandidates( )
+    {
+        final Set<LocalDB.DB> candidates = EnumSet.noneOf( LocalDB.DB.class );
+        for ( final Map.Entry<LocalDB.DB, DBCompressor> entry : compressors.entrySet() )
+        {
+            final Policy policy = entry.getValue().policy;
+            if ( policy.getCodec() == Codec.DEFLATE && policy.isDictionary() && entry.getValue().currentDictionaryId == 0 )
+            {
+                candidates.add( entry.getKey() );
+            }
+        }
+        return candidates;
+    }
+
+    int nextDictionaryId( final LocalDB.DB db )
+    {
+        return compressors.get( db ).dictionaries.keySet().stream().mapToInt( Integer::intValue ).max().orElse( 0 ) + 1;
+    }
+
+    /**
+     * Register a stored dictionary.  The dictionary with the highest id becomes the dictionary used for new values.
+     */
+    void addDictionary( final LocalDB.DB db, final int id, final byte[] dictionary )
+    {
+        final DBCompressor compressor = compressors.get( db );
+        compressor.dictionaries.put( id, dictionary );
+        if ( id > compressor.currentDictionaryId )
+        {
+            compressor.currentDictionaryId = id;
+        }
+    }
+
+    byte[] encode( final LocalDB.DB db, final byte[] value, final int length )
+    {
+        final DBCompressor compressor = compressors.get( db );
+        final Policy policy = compressor.policy;
+        if ( policy.getCodec() == Codec.NONE || length < policy.getMinLength() )
+        {
+            return withPrefix( UNCOMPRESSED_PREFIX, value, length );
+        }
+
+        final long startTime = System.nanoTime();
+        final int dictionaryId = compressor.currentDictionaryId;
+        final byte[] dictionary = dictionaryId == 0 ? null : compressor.dictionaries.get( dictionaryId );
+        final byte[] compressed = deflate( value, length, policy.getLevel(), dictionary );
+
+        final byte[] encoded;
+        if ( compressed.length + ( dictionary == null ? 0 : 4 ) >= length )
+        {
+            encoded = withPrefix( UNCOMPRESSED_PREFIX, value, length );
+        }
+        else if ( dictionary == null )
+        {
+            encoded = withPrefix( COMPRESSED_PREFIX, compressed, compressed.length );
+        }
+        else
+        {
+            encoded = ByteBuffer.allocate( 5 + compressed.length )
+                    .put( DICTIONARY_COMPRESSED_PREFIX )
+                    .putInt( dictionaryId )
+                    .put( compressed )
+                    .array();
+        }
+
+        compressor.compressNanos.add( System.nanoTime() - startTime );
+        compressor.rawBytes.add( length );
+        compressor.storedBytes.add( encoded.length - 1 );
+        return encoded;
+    }
+
+    byte[] decode( final LocalDB.DB db, final byte[] value, final int length )
+    {
+        switch ( value[ 0 ] )
+        {
+            case UNCOMPRESSED_PREFIX:
+                return Arrays.copyOfRange( value, 1, length );
+
+            case COMPRESSED_PREFIX:
+            {
+                final long startTime = System.nanoTime();
+                final byte[] decompressed = inflate( value, 1, length - 1, null );
+                compressors.get( db ).decompressNanos.add( System.nanoTime() - startTime );
+                return decompressed;
+            }
+
+            case DICTIONARY_COMPRESSED_PREFIX:
+            {
+                final long startTime = System.nanoTime();
+                final DBCompressor compressor = compressors.get( db );
+                final int dictionaryId = ByteBuffer.wrap( value, 1, 4 ).getInt();
+                final byte[] dictionary = compressor.dictionaries.get( dictionaryId );
+                if ( dictionary == null )
+                {
+                    throw new IllegalStateException( "missing compression dictionary " + dictionaryId + " for " + db );
+                }
+                final byte[] decompressed = inflate( value, 5, length - 5, dictionary );
+                compressor.decompressNanos.add( System.nanoTime() - startTime );
+                return decompressed;
+            }
+
+            default:
+                throw new IllegalStateException( "unknown value prefix " + Byte.toString( value[ 0 ] ) );
+        }
+    }
+
+    Map<String, Serializable> debugInfo( )
+    {
+        final Map<String, Serializable> outputStats = new LinkedHashMap<>();
+        for ( final Map.Entry<LocalDB.DB, DBCompressor> entry : compressors.entrySet() )
+        {
+            final DBCompressor compressor = entry.getValue();
+            if ( compressor.policy.getCodec() == Codec.NONE )
+            {
+                continue;
+            }
+
+            final String prefix = "compression." + entry.getKey().name() + ".";
+            final long rawBytes = compressor.rawBytes.sum();
+            final byte[] dictionary = compressor.dictionaries.get( compressor.currentDictionaryId );
+            outputStats.put( prefix + "codec", compressor.policy.getCodec() + ( compressor.policy.isDictionary() ? "+dictionary" : "" ) );
+            outputStats.put( prefix + "dictionaryBytes", dictionary == null ? 0 : dictionary.length );
+            outputStats.put( prefix + "ratio", rawBytes == 0 ? "n/a" : new Percent( compressor.storedBytes.sum(), rawBytes ).pretty( 1 ) );
+            outputStats.put( prefix + "compressTime", TimeDuration.of( compressor.compressNanos.sum() / 1_000_000, TimeDuration.Unit.MILLISECONDS ).asCompactString() );
+            outputStats.put( prefix + "decompressTime", TimeDuration.of( compressor.decompressNanos.sum() / 1_000_000, TimeDuration.Unit.MILLISECONDS ).asCompactString() );
+        }
+        return outputStats;
+    }
+
+    /**
+     * Build a preset dictionary from sample values.  Deflate finds matches anywhere in the dictionary, so the samples are
+     * simply concatenated, skipping duplicates and values too large to leave room for others.  Samples closer to the end of
+     * the dictionary produce shorter match distances, so the dictionary is filled from the end.
+     */
+    static byte[] trainDictionary( final List<byte[]> samples, final int maxLength )
+    {
+        final int maxSampleLength = Math.max( 1, maxLength / 8 );
+        final Set<ByteBuffer> seen = new HashSet<>();
+        final byte[] dictionary = new byte[ maxLength ];
+        int position = maxLength;
+        for ( final byte[] sample : samples )
+        {
+            if ( sample.length == 0 || sample.length > maxSampleLength || sample.length > position || !seen.add( ByteBuffer.wrap( sample ) ) )
+            {
+                continue;
+            }
+            position -= sample.length;
+            System.arraycopy( sample, 0, dictionary, position, sample.length );
+        }
+        return Arrays.copyOfRange( dictionary, position, maxLength );
+    }
+
+    private static byte[] withPrefix( final byte prefix, final byte[] value, final int length )
+    {
+        final byte[] output = new byte[ length + 1 ];
+        output[ 0 ] = prefix;
+        System.arraycopy( value, 0, output, 1, length );
+        return output;
+    }
+
+    private static byte[] deflate( final byte[] value, final int length, final int level, final byte[] dictionary )
+    {
+        final Deflater deflater = new Deflater( level );
+        try
+        {
+            if ( dictionary != null )
+            {
+                deflater.setDictionary( dictionary );
+            }
+            deflater.setInput( value, 0, length );
+            deflater.finish();
+
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream( Math.max( 64, length / 2 ) );
+            final byte[] buffer = new byte[ 1024 ];
+            while ( !deflater.finished() )
+            {
+                final int count = deflater.deflate( buffer );
+                byteArrayOutputStream.write( buffer, 0, count );
+            }
+            return byteArrayOutputStream.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate( final byte[] value, final int offset, final int length, final byte[] dictionary )
+    {
+        final Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput( value, offset, length );
+
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream( length * 4 );
+            final byte[] buffer = new byte[ 1024 ];
+            while ( !inflater.finished() )
+            {
+                final int count = inflater.inflate( buffer );
+                if ( count == 0 )
+                {
+                    if ( inflater.needsDictionary() && dictionary != null )
+                    {
+                        inflater.setDictionary( dictionary );
+                    }
+                    else if ( inflater.needsInput() || inflater.needsDictionary() )
+                    {
+                        throw new IllegalStateException( "truncated or unreadable compressed value" );
+                    }
+                }
+                byteArrayOutputStream.write( buffer, 0, count );
+            }
+            return byteArrayOutputStream.toByteArray();
+        }
+        catch ( DataFormatException e )
+        {
+            throw new IllegalStateException( "unexpected exception decompressing value: " + e.getMessage(), e );
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    private static class DBCompressor
+    {
+        private final Policy policy;
+        private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+        private volatile int currentDictionaryId;
+
+        private final LongAdder rawBytes = new LongAdder();
+        private final LongAdder storedBytes = new LongAdder();
+        private final LongAdder compressNanos = new LongAdder();
+        private final LongAdder decompressNanos = new LongAdder();
+
+        DBCompressor( final Policy policy )
+        {
+            this.policy = policy;
+        }
+    }
+}
@@ -23,6 +23,8 @@ package password.pwm.util.localdb;
 import jetbrains.exodus.ArrayByteIterable;
 import jetbrains.exodus.ByteIterable;
 import jetbrains.exodus.InvalidSettingException;
+import jetbrains.exodus.backup.BackupStrategy;
+import jetbrains.exodus.backup.VirtualFileDescriptor;
 import jetbrains.exodus.bindings.StringBinding;
 import jetbrains.exodus.env.Cursor;
 import jetbrains.exodus.env.Environment;
@@ -37,30 +39,37 @@ import jetbrains.exodus.management.StatisticsItem;
 import password.pwm.PwmConstants;
 import password.pwm.error.ErrorInformation;
 import password.pwm.error.PwmError;
+import password.pwm.util.PwmScheduler;
 import password.pwm.util.java.ConditionalTaskExecutor;
+import password.pwm.util.java.JavaHelper;
 import password.pwm.util.java.JsonUtil;
 import password.pwm.util.java.StringUtil;
 import password.pwm.util.java.TimeDuration;
 import password.pwm.util.logging.PwmLogger;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
-import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.Inflater;
-import java.util.zip.InflaterOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 
 public class XodusLocalDB implements LocalDBProvider
@@ -69,31 +78,20 @@ public class XodusLocalDB implements LocalDBProvider
     private static final TimeDuration STATS_OUTPUT_INTERVAL = TimeDuration.DAY;
 
     private static final String FILE_SUB_PATH = "xodus";
+    private static final String PENDING_SNAPSHOT_SUFFIX = ".pending";
+    private static final String PREVIOUS_SNAPSHOT_SUFFIX = ".previous";
     private static final String README_FILENAME = "README.TXT";
 
     private Environment environment;
     private File fileLocation;
     private boolean readOnly;
 
-    private enum Property
-    {
-        Compression_Enabled( "xodus.compression.enabled" ),
-        Compression_MinLength( "xodus.compression.minLength" ),;
-
-        private final String keyName;
-
-        Property( final String keyName )
-        {
-            this.keyName = keyName;
-        }
+    // store of compression dictionaries, kept outside of the LocalDB.DB stores so it is never truncated
+    private static final String DICTIONARY_STORE_NAME = "_COMPRESSION_DICTIONARIES";
+    private static final int DICTIONARY_SAMPLE_COUNT = 500;
+    private static final TimeDuration DICTIONARY_TRAIN_INTERVAL = TimeDuration.HOUR;
 
-        public String getKeyName( )
-        {
-            return keyName;
-        }
-    }
-
-    private LocalDB.Status status = LocalDB.Status.NEW;
+    private volatile LocalDB.Status status = LocalDB.Status.NEW;
 
     private final Map<LocalDB.DB, Store> cachedStoreObjects = new HashMap<>();
 
@@ -101,7 +99,17 @@ public class XodusLocalDB implements LocalDBProvider
             ( ) -> outputStats(), new ConditionalTaskExecutor.TimeDurationPredicate( STATS_OUTPUT_INTERVAL ).setNextTimeFromNow( TimeDuration.MINUTE )
     );
 
-    private BindMachine bindMachine = new BindMachine( BindMachine.DEFAULT_ENABLE_COMPRESSION, BindMachine.DEFAULT_MIN_COMPRESSION_LENGTH );
+    private final ConditionalTaskExecutor dictionaryTrainExecutor = ConditionalTaskExecutor.forPeriodicTask(
+            ( ) -> scheduleDictionaryTraining(), DICTIONARY_TRAIN_INTERVAL
+    );
+
+    // dictionaries are trained off the writer threads, only created when a db is configured to use a dictionary
+    private ExecutorService dictionaryTrainService;
+    private final AtomicBoolean dictionaryTrainPending = new AtomicBoolean();
+
+    private XodusCompression compression;
+    private BindMachine bindMachine;
+    private Store dictionaryStore;
 
 
     @Override
@@ -119,17 +127,8 @@ public class XodusLocalDB implements LocalDBProvider
 
         final EnvironmentConfig environmentConfig = makeEnvironmentConfig( initParameters );
 
-        {
-            final boolean compressionEnabled = initParameters.containsKey( Property.Compression_Enabled.getKeyName() )
-                    ? Boolean.parseBoolean( initParameters.get( Property.Compression_Enabled.getKeyName() ) )
-                    : BindMachine.DEFAULT_ENABLE_COMPRESSION;
-
-            final int compressionMinLength = initParameters.containsKey( Property.Compression_MinLength.getKeyName() )
-                    ? Integer.parseInt( initParameters.get( Property.Compression_MinLength.getKeyName() ) )
-                    : BindMachine.DEFAULT_MIN_COMPRESSION_LENGTH;
-
-            bindMachine = new BindMachine( compressionEnabled, compressionMinLength );
-        }
+        compression = new XodusCompression( XodusCompression.readPolicies( initParameters ) );
+        bindMachine = new BindMachine( compression );
 
         readOnly = parameters.containsKey( Parameter.readOnly ) && Boolean.parseBoolean( parameters.get( Parameter.readOnly ) );
 
@@ -145,10 +144,18 @@ public class XodusLocalDB implements LocalDBProvider
                 final Store store = initStore( db, txn );
                 cachedStoreObjects.put( db, store );
             }
+            dictionaryStore = environment.openStore( DICTIONARY_STORE_NAME, StoreConfig.WITHOUT_DUPLICATES, txn );
+            loadCompressionDictionaries( txn );
         } );
 
         status = LocalDB.Status.OPEN;
 
+        if ( !readOnly && !compression.dictionaryCandidates().isEmpty() )
+        {
+            dictionaryTrainService = PwmScheduler.makeBackgroundExecutor( null, XodusLocalDB.class );
+            scheduleDictionaryTraining();
+        }
+
         for ( final LocalDB.DB db : LocalDB.DB.values() )
         {
             final long finalSize = this.size( db );
@@ -162,6 +169,7 @@ public class XodusLocalDB implements LocalDBProvider
     public void close( ) throws LocalDBException
     {
         final Instant startTime = Instant.now();
+        JavaHelper.closeAndWaitExecutor( dictionaryTrainService, TimeDuration.SECONDS_10 );
         if ( environment != null && environment.isOpen() )
         {
             environment.close();
@@ -182,6 +190,10 @@ public class XodusLocalDB implements LocalDBProvider
         {
             final String key = entry.getKey();
             final String value = entry.getValue();
+            if ( XodusCompression.isCompressionProperty( key ) )
+            {
+                continue;
+            }
             final Map<String, String> singleMap = Collections.singletonMap( key, value );
             try
             {
@@ -215,6 +227,53 @@ public class XodusLocalDB implements LocalDBProvider
         return get( db, key ) != null;
     }
 
+    /**
+     * The keys are sorted and checked with a single cursor in one read-only transaction.  Each seek positions the
+     * cursor at the first stored key at or after the checked key, so checked keys that sort before the cursor
+     * position are known to be absent without another seek.
+     */
+    @Override
+    public boolean containsAny( final LocalDB.DB db, final Collection<String> keys ) throws LocalDBException
+    {
+        checkStatus( false );
+
+        final List<ByteIterable> sortedEntries = new ArrayList<>( keys.size() );
+        for ( final String key : keys )
+        {
+            sortedEntries.add( bindMachine.keyToEntry( key ) );
+        }
+        Collections.sort( sortedEntries );
+
+        return environment.computeInReadonlyTransaction( transaction ->
+        {
+            try ( Cursor cursor = getStore( db ).openCursor( transaction ) )
+            {
+                ByteIterable cursorKey = null;
+                for ( final ByteIterable entry : sortedEntries )
+                {
+                    final int comparison = cursorKey == null ? 1 : entry.compareTo( cursorKey );
+                    if ( comparison == 0 )
+                    {
+                        return true;
+                    }
+                    if ( comparison > 0 )
+                    {
+                        if ( cursor.getSearchKeyRange( entry ) == null )
+                        {
+                            return false;
+                        }
+                        cursorKey = cursor.getKey();
+                        if ( entry.compareTo( cursorKey ) == 0 )
+                        {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+        } );
+    }
+
     @Override
     public String get( final LocalDB.DB db, final String key ) throws LocalDBException
     {
@@ -225,7 +284,7 @@ public class XodusLocalDB implements LocalDBProvider
             final ByteIterable returnValue = store.get( transaction, bindMachine.keyToEntry( key ) );
             if ( returnValue != null )
             {
-                return bindMachine.entryToValue( returnValue );
+                return bindMachine.entryToValue( db, returnValue );
             }
             return null;
         } );
@@ -234,22 +293,53 @@ public class XodusLocalDB implements LocalDBProvider
     @Override
     public LocalDB.LocalDBIterator<String> iterator( final LocalDB.DB db )  throws LocalDBException
     {
-        return new InnerIterator( db );
+        return new InnerIterator<>( db, null, null, bindMachine::entryToKey );
     }
 
-    private class InnerIterator implements LocalDB.LocalDBIterator<String>
+    /**
+     * Keys are stored in sorted order, so the cursor is positioned directly at {@code fromKey} using
+     * {@link Cursor#getSearchKeyRange(ByteIterable)} and iteration stops at the first key at or beyond {@code toKey}.
+     */
+    @Override
+    public LocalDB.LocalDBIterator<String> iterator( final LocalDB.DB db, final String fromKey, final String toKey ) throws LocalDBException
+    {
+        checkStatus( false );
+        return new InnerIterator<>(
+                db,
+                fromKey == null ? null : bindMachine.keyToEntry( fromKey ),
+                toKey == null ? null : bindMachine.keyToEntry( toKey ),
+                bindMachine::entryToKey );
+    }
+
+    private class InnerIterator<K> implements LocalDB.LocalDBIterator<K>
     {
         private final Transaction transaction;
         private final Cursor cursor;
+        private final ByteIterable toEntry;
+        private final Function<ByteIterable, K> keyDecoder;
 
         private boolean closed;
-        private String nextValue = "";
+        private K nextValue;
 
-        InnerIterator( final LocalDB.DB db )
+        InnerIterator( final LocalDB.DB db, final ByteIterable fromEntry, final ByteIterable toEntry, final Function<ByteIterable, K> keyDecoder )
         {
             this.transaction = environment.beginReadonlyTransaction();
             this.cursor = getStore( db ).openCursor( transaction );
-            doNext();
+            this.toEntry = toEntry;
+            this.keyDecoder = keyDecoder;
+
+            if ( fromEntry == null )
+            {
+                doNext();
+            }
+            else if ( cursor.getSearchKeyRange( fromEntry ) == null )
+            {
+                close();
+            }
+            else
+            {
+                readCurrent();
+            }
         }
 
         private void doNext( )
@@ -262,25 +352,37 @@ public class XodusLocalDB implements LocalDBProvider
             {
                 throw new IllegalStateException( e );
             }
-            try
+
+            if ( closed )
             {
-                if ( closed )
-                {
-                    return;
-                }
+                return;
+            }
+
+            if ( !cursor.getNext() )
+            {
+                close();
+                return;
+            }
+
+            readCurrent();
+        }
 
-                if ( !cursor.getNext() )
+        private void readCurrent( )
+        {
+            try
+            {
+                final ByteIterable nextKey = cursor.getKey();
+                if ( nextKey == null || nextKey.getLength() == 0 )
                 {
                     close();
                     return;
                 }
-                final ByteIterable nextKey = cursor.getKey();
-                if ( nextKey == null || nextKey.getLength() == 0 )
+                if ( toEntry != null && nextKey.compareTo( toEntry ) >= 0 )
                 {
                     close();
                     return;
                 }
-                final String decodedValue = bindMachine.entryToKey( nextKey );
+                final K decodedValue = keyDecoder.apply( nextKey );
                 if ( decodedValue == null )
                 {
                     close();
@@ -315,13 +417,13 @@ public class XodusLocalDB implements LocalDBProvider
         }
 
         @Override
-        public String next( )
+        public K next( )
         {
             if ( closed )
             {
                 return null;
             }
-            final String value = nextValue;
+            final K value = nextValue;
             doNext();
             return value;
         }
@@ -343,7 +445,7 @@ public class XodusLocalDB implements LocalDBProvider
             for ( final Map.Entry<String, String> entry : keyValueMap.entrySet() )
             {
                 final ByteIterable k = bindMachine.keyToEntry( entry.getKey() );
-                final ByteIterable v = bindMachine.valueToEntry( entry.getValue() );
+                final ByteIterable v = bindMachine.valueToEntry( db, entry.getValue() );
                 store.put( transaction, k, v );
             }
         } );
@@ -358,7 +460,7 @@ public class XodusLocalDB implements LocalDBProvider
         return environment.computeInTransaction( transaction ->
         {
             final ByteIterable k = bindMachine.keyToEntry( key );
-            final ByteIterable v = bindMachine.valueToEntry( value );
+            final ByteIterable v = bindMachine.valueToEntry( db, value );
             final Store store = getStore( db );
             return store.put( transaction, k, v );
         } );
@@ -371,7 +473,7 @@ public class XodusLocalDB implements LocalDBProvider
         return environment.computeInTransaction( transaction ->
         {
             final ByteIterable k = bindMachine.keyToEntry( key );
-            final ByteIterable v = bindMachine.valueToEntry( value );
+            final ByteIterable v = bindMachine.valueToEntry( db, value );
             final Store store = getStore( db );
             final ByteIterable existingValue = store.get( transaction, k );
             if ( existingValue != null )
@@ -407,6 +509,105 @@ public class XodusLocalDB implements LocalDBProvider
         } );
     }
 
+    @Override
+    public void executeBatch( final LocalDBBatch batch ) throws LocalDBException
+    {
+        checkStatus( true );
+        environment.executeInTransaction( transaction ->
+        {
+            for ( final LocalDBBatch.Operation operation : batch.getOperations() )
+            {
+                final Store store = getStore( operation.getDb() );
+                final ByteIterable k = bindMachine.keyToEntry( operation.getKey() );
+                switch ( operation.getType() )
+                {
+                    case PUT:
+                        store.put( transaction, k, bindMachine.valueToEntry( operation.getDb(), operation.getValue() ) );
+                        break;
+
+                    case REMOVE:
+                        store.delete( transaction, k );
+                        break;
+
+                    default:
+                        JavaHelper.unhandledSwitchStatement( operation.getType() );
+                }
+            }
+        } );
+        outputLogExecutor.conditionallyExecuteTask();
+    }
+
+    /**
+     * Byte array keys and values are stored as is, without the string encoding and compression of {@link BindMachine}.
+     */
+    @Override
+    public boolean containsBytes( final LocalDB.DB db, final byte[] key ) throws LocalDBException
+    {
+        checkStatus( false );
+        return environment.computeInReadonlyTransaction( transaction -> getStore( db ).get( transaction, new ArrayByteIterable( key ) ) != null );
+    }
+
+    @Override
+    public byte[] getBytes( final LocalDB.DB db, final byte[] key ) throws LocalDBException
+    {
+        checkStatus( false );
+        return environment.computeInReadonlyTransaction( transaction ->
+        {
+            final ByteIterable returnValue = getStore( db ).get( transaction, new ArrayByteIterable( key ) );
+            return returnValue == null ? null : entryToBytes( returnValue );
+        } );
+    }
+
+    @Override
+    public boolean putBytes( final LocalDB.DB db, final byte[] key, final byte[] value ) throws LocalDBException
+    {
+        checkStatus( true );
+        return environment.computeInTransaction( transaction ->
+        {
+            final Store store = getStore( db );
+            final ByteIterable k = new ArrayByteIterable( key );
+            final boolean preExisting = store.get( transaction, k ) != null;
+            store.put( transaction, k, new ArrayByteIterable( value ) );
+            return preExisting;
+        } );
+    }
+
+    @Override
+    public void putAllBytes( final LocalDB.DB db, final Map<ByteBuffer, byte[]> keyValueMap ) throws LocalDBException
+    {
+        checkStatus( true );
+        environment.executeInTransaction( transaction ->
+        {
+            final Store store = getStore( db );
+            for ( final Map.Entry<ByteBuffer, byte[]> entry : keyValueMap.entrySet() )
+            {
+                final byte[] keyBytes = new byte[ entry.getKey().remaining() ];
+                entry.getKey().duplicate().get( keyBytes );
+                store.put( transaction, new ArrayByteIterable( keyBytes ), new ArrayByteIterable( entry.getValue() ) );
+            }
+        } );
+        outputLogExecutor.conditionallyExecuteTask();
+    }
+
+    @Override
+    public boolean removeBytes( final LocalDB.DB db, final byte[] key ) throws LocalDBException
+    {
+        checkStatus( true );
+        return environment.computeInTransaction( transaction -> getStore( db ).delete( transaction, new ArrayByteIterable( key ) ) );
+    }
+
+    @Override
+    public LocalDB.LocalDBIterator<byte[]> bytesIterator( final LocalDB.DB db ) throws LocalDBException
+    {
+        checkStatus( false );
+        return new InnerIterator<>( db, null, null, XodusLocalDB::entryToBytes );
+    }
+
+    private static byte[] entryToBytes( final ByteIterable entry )
+    {
+        return Arrays.copyOf( entry.getBytesUnsafe(), entry.getLength() );
+    }
+
     @Override
     public void truncate( final LocalDB.DB db ) throws LocalDBException
     {
@@ -439,6 +640,210 @@ public class XodusLocalDB implements LocalDBProvider
         return fileLocation;
     }
 
+    /**
+     * Uses the environment backup strategy, which holds off log cleaning so the set of log files and the accepted length
+     * of each file describe a consistent state while writes continue.  Log files are append only and file names are never
+     * reused, so an incremental snapshot links or copies any file already present in the current snapshot with the
+     * accepted length instead of reading it from the environment.
+     *
+     * <p>The snapshot is written to a pending sibling directory.  Once it is complete the current snapshot is moved aside,
+     * the pending directory is moved into its place, and the previous snapshot is removed.  If writing or replacing
+     * fails the previous snapshot is restored, so the target always holds a complete snapshot.</p>
+     */
+    @Override
+    public LocalDB.SnapshotResult snapshot( final File targetDirectory, final boolean incremental )
+            throws LocalDBException
+    {
+        return snapshot( targetDirectory, incremental, XodusLocalDB::copyFile );
+    }
+
+    LocalDB.SnapshotResult snapshot( final File targetDirectory, final boolean incremental, final SnapshotFileWriter snapshotFileWriter )
+            throws LocalDBException
+    {
+        checkStatus( false );
+
+        final Instant startTime = Instant.now();
+        final Path targetPath = targetDirectory.toPath().resolve( FILE_SUB_PATH ).toAbsolutePath().normalize();
+        final Path pendingPath = targetPath.resolveSibling( FILE_SUB_PATH + PENDING_SNAPSHOT_SUFFIX );
+        final Path previousPath = targetPath.resolveSibling( FILE_SUB_PATH + PREVIOUS_SNAPSHOT_SUFFIX );
+        final BackupStrategy backupStrategy = environment.getBackupStrategy();
+        int fileCount = 0;
+        int copiedFileCount = 0;
+        long totalBytes = 0;
+        long copiedBytes = 0;
+
+        try
+        {
+            // a snapshot interrupted while being replaced leaves only the previous snapshot
+            if ( !Files.exists( targetPath ) )
+            {
+                LocalDBUtility.restorePreviousSnapshot( targetPath, previousPath );
+            }
+            LocalDBUtility.deleteSnapshotDirectory( pendingPath );
+            Files.createDirectories( pendingPath );
+            backupStrategy.beforeBackup();
+
+            for ( final VirtualFileDescriptor fileDescriptor : backupStrategy.getContents() )
+            {
+                final long acceptedLength = Math.min( fileDescriptor.getFileSize(), backupStrategy.acceptFile( fileDescriptor ) );
+                if ( !fileDescriptor.hasContent() || acceptedLength <= 0 )
+                {
+                    continue;
+                }
+
+                final String relativePath = fileDescriptor.getPath() + fileDescriptor.getName();
+                final Path pendingFile = pendingPath.resolve( relativePath ).normalize();
+                if ( !pendingFile.startsWith( pendingPath ) )
+                {
+                    throw new IOException( "backup file '" + pendingFile + "' is outside of the snapshot directory" );
+                }
+
+                fileCount++;
+                totalBytes += acceptedLength;
+
+                final Path currentFile = targetPath.resolve( relativePath ).normalize();
+                if ( incremental && Files.isRegularFile( currentFile ) && Files.size( currentFile ) == acceptedLength )
+                {
+                    linkOrCopyFile( currentFile, pendingFile );
+                    continue;
+                }
+
+                snapshotFileWriter.write( fileDescriptor, pendingFile, acceptedLength );
+                copiedFileCount++;
+                copiedBytes += acceptedLength;
+            }
+        }
+        catch ( Exception e )
+        {
+            deletePendingSnapshot( pendingPath );
+            final String errorMsg = "error writing snapshot to '" + targetDirectory.getAbsolutePath() + "', error: " + e.getMessage();
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, errorMsg ) );
+        }
+        finally
+        {
+            try
+            {
+                backupStrategy.afterBackup();
+            }
+            catch ( Exception e )
+            {
+                LOGGER.error( "error completing environment backup: " + e.getMessage() );
+            }
+        }
+
+        final int removedFileCount = LocalDBUtility.countStaleFiles( pendingPath, targetPath );
+        replaceSnapshot( targetDirectory, targetPath, pendingPath, previousPath );
+
+        final LocalDB.SnapshotResult snapshotResult = LocalDB.SnapshotResult.builder()
+                .fileCount( fileCount )
+                .copiedFileCount( copiedFileCount )
+                .removedFileCount( removedFileCount )
+                .totalBytes( totalBytes )
+                .copiedBytes( copiedBytes )
+                .duration( TimeDuration.fromCurrent( startTime ) )
+                .build();
+        LOGGER.debug( () -> "completed " + ( incremental ? "incremental " : "" ) + "snapshot to '" + targetDirectory.getAbsolutePath()
+                + "' " + JsonUtil.serialize( snapshotResult ) );
+        return snapshotResult;
+    }
+
+    /**
+     * Writes a file of the environment backup to the pending snapshot directory.
+     */
+    interface SnapshotFileWriter
+    {
+        void write( VirtualFileDescriptor fileDescriptor, Path targetFile, long length ) throws IOException;
+    }
+
+    private static void replaceSnapshot( final File targetDirectory, final Path targetPath, final Path pendingPath, final Path previousPath )
+            throws LocalDBException
+    {
+        try
+        {
+            LocalDBUtility.deleteSnapshotDirectory( previousPath );
+            if ( Files.exists( targetPath ) )
+            {
+                Files.move( targetPath, previousPath );
+            }
+            Files.move( pendingPath, targetPath );
+        }
+        catch ( IOException e )
+        {
+            LocalDBUtility.restorePreviousSnapshot( targetPath, previousPath );
+            deletePendingSnapshot( pendingPath );
+            final String errorMsg = "error replacing snapshot in '" + targetDirectory.getAbsolutePath() + "', error: " + e.getMessage();
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, errorMsg ) );
+        }
+
+        try
+        {
+            LocalDBUtility.deleteSnapshotDirectory( previousPath );
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( "error removing previous snapshot '" + previousPath + "', error: " + e.getMessage() );
+        }
+    }
+
+    private static void deletePendingSnapshot( final Path pendingPath )
+    {
+        try
+        {
+            LocalDBUtility.deleteSnapshotDirectory( pendingPath );
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( "error removing incomplete snapshot '" + pendingPath + "', error: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Log files of the current snapshot are never modified, so an unchanged file is hard linked into the pending
+     * snapshot where the file system supports it.
+     */
+    private static void linkOrCopyFile( final Path sourceFile, final Path targetFile )
+            throws IOException
+    {
+        Files.createDirectories( targetFile.getParent() );
+        try
+        {
+            Files.createLink( targetFile, sourceFile );
+        }
+        catch ( UnsupportedOperationException | IOException e )
+        {
+            Files.copy( sourceFile, targetFile );
+        }
+    }
+
+    private static void copyFile( final VirtualFileDescriptor fileDescriptor, final Path targetFile, final long length )
+            throws IOException
+    {
+        Files.createDirectories( targetFile.getParent() );
+        final InputStream inputStream = fileDescriptor.getInputStream();
+        try ( OutputStream outputStream = Files.newOutputStream( targetFile ) )
+        {
+            final byte[] buffer = new byte[ 64 * 1024 ];
+            long remaining = length;
+            while ( remaining > 0 )
+            {
+                final int read = inputStream.read( buffer, 0, (int) Math.min( buffer.length, remaining ) );
+                if ( read < 0 )
+                {
+                    throw new IOException( "unexpected end of file reading '" + fileDescriptor.getName() + "'" );
+                }
+                outputStream.write( buffer, 0, read );
+                remaining -= read;
+            }
+        }
+        finally
+        {
+            if ( fileDescriptor.shouldCloseStream() )
+            {
+                inputStream.close();
+            }
+        }
+    }
+
     @Override
     public LocalDB.Status getStatus( )
     {
@@ -469,6 +874,101 @@ public class XodusLocalDB implements LocalDBProvider
         }
 
         outputLogExecutor.conditionallyExecuteTask();
+
+        if ( writeOperation )
+        {
+            dictionaryTrainExecutor.conditionallyExecuteTask();
+        }
+    }
+
+    private void loadCompressionDictionaries( final Transaction transaction )
+    {
+        try ( Cursor cursor = dictionaryStore.openCursor( transaction ) )
+        {
+            while ( cursor.getNext() )
+            {
+                final String dictionaryKey = StringBinding.entryToString( cursor.getKey() );
+                final int separatorIndex = dictionaryKey.lastIndexOf( '.' );
+                final LocalDB.DB db = JavaHelper.readEnumFromString( LocalDB.DB.class, null, dictionaryKey.substring( 0, separatorIndex ) );
+                if ( db != null )
+                {
+                    final int id = Integer.parseInt( dictionaryKey.substring( separatorIndex + 1 ) );
+                    final ByteIterable value = cursor.getValue();
+                    compression.addDictionary( db, id, Arrays.copyOf( value.getBytesUnsafe(), value.getLength() ) );
+                }
+            }
+        }
+    }
+
+    private void scheduleDictionaryTraining( )
+    {
+        final ExecutorService executorService = dictionaryTrainService;
+        if ( executorService == null || compression.dictionaryCandidates().isEmpty() || !dictionaryTrainPending.compareAndSet( false, true ) )
+        {
+            return;
+        }
+
+        executorService.execute( ( ) ->
+        {
+            try
+            {
+                trainCompressionDictionaries();
+            }
+            finally
+            {
+                dictionaryTrainPending.set( false );
+            }
+        } );
+    }
+
+    /**
+     * Train a compression dictionary for each db configured to use one that does not have one yet, once the db has enough
+     * records to sample.  Dictionaries are stored before use so every value compressed with a dictionary remains readable.
+     */
+    private void trainCompressionDictionaries( )
+    {
+        for ( final LocalDB.DB db : compression.dictionaryCandidates() )
+        {
+            if ( status != LocalDB.Status.OPEN )
+            {
+                return;
+            }
+
+            try
+            {
+                if ( size( db ) < DICTIONARY_SAMPLE_COUNT )
+                {
+                    continue;
+                }
+
+                final Instant startTime = Instant.now();
+                final List<byte[]> samples = environment.computeInReadonlyTransaction( transaction ->
+                {
+                    final List<byte[]> values = new ArrayList<>();
+                    try ( Cursor cursor = getStore( db ).openCursor( transaction ) )
+                    {
+                        while ( values.size() < DICTIONARY_SAMPLE_COUNT && cursor.getNext() )
+                        {
+                            final ByteIterable value = cursor.getValue();
+                            values.add( compression.decode( db, value.getBytesUnsafe(), value.getLength() ) );
+                        }
+                    }
+                    return values;
+                } );
+
+                final byte[] dictionary = XodusCompression.trainDictionary( samples, XodusCompression.MAX_DICTIONARY_LENGTH );
+                final int id = compression.nextDictionaryId( db );
+                environment.executeInTransaction( transaction ->
+                        dictionaryStore.put( transaction, StringBinding.stringToEntry( db.name() + "." + id ), new ArrayByteIterable( dictionary ) ) );
+                compression.addDictionary( db, id, dictionary );
+                LOGGER.debug( () -> "trained " + dictionary.length + " byte compression dictionary for " + db + " from "
+                        + samples.size() + " values (" + TimeDuration.compactFromCurrent( startTime ) + ")" );
+            }
+            catch ( Exception e )
+            {
+                LOGGER.warn( "error training compression dictionary for " + db + ": " + e.getMessage() );
+            }
+        }
     }
 
     private void outputStats( )
@@ -505,24 +1005,18 @@ public class XodusLocalDB implements LocalDBProvider
             LOGGER.debug( () -> "error while calculating sizes for localDB debug output: "  + e.getMessage() );
         }
 
+        outputStats.putAll( compression.debugInfo() );
+
         return outputStats;
     }
 
     private static class BindMachine
     {
-        private static final byte COMPRESSED_PREFIX = 98;
-        private static final byte UNCOMPRESSED_PREFIX = 99;
-
-        private static final int DEFAULT_MIN_COMPRESSION_LENGTH = 16;
-        private static final boolean DEFAULT_ENABLE_COMPRESSION = false;
+        private final XodusCompression compression;
 
-        private final int minCompressionLength;
-        private final boolean enableCompression;
-
-        BindMachine( final boolean enableCompression, final int minCompressionLength )
+        BindMachine( final XodusCompression compression )
         {
-            this.enableCompression = enableCompression;
-            this.minCompressionLength = minCompressionLength;
+            this.compression = compression;
         }
 
         ByteIterable keyToEntry( final String key )
@@ -535,82 +1029,23 @@ public class XodusLocalDB implements LocalDBProvider
             return StringBinding.entryToString( entry );
         }
 
-        ByteIterable valueToEntry( final String value )
+        ByteIterable valueToEntry( final LocalDB.DB db, final String value )
         {
-            if ( !enableCompression || value.length() < minCompressionLength )
-            {
-                final ByteIterable byteIterable = StringBinding.stringToEntry( value );
-                return new ArrayByteIterable( UNCOMPRESSED_PREFIX, byteIterable );
-            }
-
             final ByteIterable byteIterable = StringBinding.stringToEntry( value );
-            final byte[] rawArray = byteIterable.getBytesUnsafe();
-            final byte[] compressedArray = compressData( rawArray );
-
-            if ( compressedArray.length < rawArray.length )
-            {
-                return new ArrayByteIterable( COMPRESSED_PREFIX, new ArrayByteIterable( compressedArray ) );
-            }
-            else
-            {
-                return new ArrayByteIterable( UNCOMPRESSED_PREFIX, byteIterable );
-            }
-        }
-
-        String entryToValue( final ByteIterable value )
-        {
-            final byte[] rawValue = value.getBytesUnsafe();
-            final byte[] strippedArray = new byte[ rawValue.length - 1 ];
-            System.arraycopy( rawValue, 1, strippedArray, 0, rawValue.length - 1 );
-            if ( rawValue[ 0 ] == UNCOMPRESSED_PREFIX )
-            {
-                return StringBinding.entryToString( new ArrayByteIterable( strippedArray ) );
-            }
-            else if ( rawValue[ 0 ] == COMPRESSED_PREFIX )
-            {
-                final byte[] decompressedValue = decompressData( strippedArray );
-                return StringBinding.entryToString( new ArrayByteIterable( decompressedValue ) );
-            }
-            throw new IllegalStateException( "unknown value prefix " + Byte.toString( rawValue[ 0 ] ) );
+            return new ArrayByteIterable( compression.encode( db, byteIterable.getBytesUnsafe(), byteIterable.getLength() ) );
         }
 
-        static byte[] compressData( final byte[] data )
+        String entryToValue( final LocalDB.DB db, final ByteIterable value )
         {
-            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            final DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream( byteArrayOutputStream, new Deflater() );
-            try
-            {
-                deflaterOutputStream.write( data );
-                deflaterOutputStream.close();
-            }
-            catch ( IOException e )
-            {
-                throw new IllegalStateException( "unexpected exception compressing data stream: " + e.getMessage(), e );
-            }
-            return byteArrayOutputStream.toByteArray();
-        }
-
-        static byte[] decompressData( final byte[] data )
-        {
-            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            final InflaterOutputStream inflaterOutputStream = new InflaterOutputStream( byteArrayOutputStream, new Inflater() );
-            try
-            {
-                inflaterOutputStream.write( data );
-                inflaterOutputStream.close();
-            }
-            catch ( IOException e )
-            {
-                throw new IllegalStateException( "unexpected exception decompressing data stream: " + e.getMessage(), e );
-            }
-            return byteArrayOutputStream.toByteArray();
+            final byte[] decodedValue = compression.decode( db, value.getBytesUnsafe(), value.getLength() );
+            return StringBinding.entryToString( new ArrayByteIterable( decodedValue ) );
         }
     }
 
     @Override
     public Set<Flag> flags( )
     {
-        return Collections.emptySet();
+        return Collections.singleton( Flag.OrderedRangeIteration );
     }
 
     private static void outputReadme( final File xodusPath )
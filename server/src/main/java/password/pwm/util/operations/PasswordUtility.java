@@ -1038,7 +1038,8 @@ public class PasswordUtility
         final CachePolicy cachePolicy;
         {
             final long cacheLifetimeMS = Long.parseLong( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_PWRULECHECK_LIFETIME_MS ) );
-            cachePolicy = CachePolicy.makePolicyWithExpirationMS( cacheLifetimeMS );
+            // the cache key contains a hash of the password, so it is never written to the persistent cache
+            cachePolicy = CachePolicy.makePolicyWithExpirationMS( cacheLifetimeMS ).withMemoryOnly();
         }
 
         if ( password == null )
@@ -61,8 +61,11 @@ import java.lang.reflect.Method;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 public abstract class RestServlet extends HttpServlet
 {
@@ -70,6 +73,16 @@ public abstract class RestServlet extends HttpServlet
 
     private static final PwmLogger LOGGER = PwmLogger.forClass( RestServlet.class );
 
+    // errors caused by invalid request input, reported to plain text clients as a bad request instead of a server error
+    private static final Set<PwmError> BAD_REQUEST_ERRORS = Collections.unmodifiableSet( EnumSet.of(
+            PwmError.ERROR_MISSING_PARAMETER,
+            PwmError.ERROR_FIELD_REQUIRED,
+            PwmError.ERROR_FIELD_NOT_A_NUMBER,
+            PwmError.ERROR_FIELD_TOO_SHORT,
+            PwmError.ERROR_FIELD_TOO_LONG,
+            PwmError.ERROR_FIELD_REGEX_NOMATCH
+    ) );
+
     protected void service( final HttpServletRequest req, final HttpServletResponse resp )
             throws ServletException, IOException
     {
@@ -385,7 +398,10 @@ public abstract class RestServlet extends HttpServlet
                     resp.setHeader( HttpHeader.ContentType.getHttpName(), HttpContentType.plain.getHeaderValueWithEncoding() );
                     if ( restResultBean.isError() )
                     {
-                        resp.sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, restResultBean.getErrorMessage() );
+                        final int statusCode = BAD_REQUEST_ERRORS.contains( PwmError.forErrorNumber( restResultBean.getErrorCode() ) )
+                                ? HttpServletResponse.SC_BAD_REQUEST
+                                : HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+                        resp.sendError( statusCode, restResultBean.getErrorMessage() );
                     }
                     else
                     {
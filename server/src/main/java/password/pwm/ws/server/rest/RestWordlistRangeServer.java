@@ -0,0 +1,92 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.ws.server.rest;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import password.pwm.PwmConstants;
+import password.pwm.config.option.WebServiceUsage;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.http.HttpContentType;
+import password.pwm.http.HttpMethod;
+import password.pwm.svc.stats.Statistic;
+import password.pwm.svc.stats.StatisticsManager;
+import password.pwm.ws.server.RestMethodHandler;
+import password.pwm.ws.server.RestRequest;
+import password.pwm.ws.server.RestResultBean;
+import password.pwm.ws.server.RestServlet;
+import password.pwm.ws.server.RestWebServer;
+
+import javax.servlet.annotation.WebServlet;
+import java.io.Serializable;
+import java.util.List;
+
+@WebServlet(
+        urlPatterns = {
+                PwmConstants.URL_PREFIX_PUBLIC + PwmConstants.URL_PREFIX_REST + "/wordlist/range",
+        }
+)
+@RestWebServer( webService = WebServiceUsage.WordlistRange )
+public class RestWordlistRangeServer extends RestServlet
+{
+    private static final String PARAM_PREFIX = "prefix";
+
+    @Getter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class JsonOutput implements Serializable
+    {
+        public String prefix;
+        public List<String> suffixes;
+    }
+
+    @Override
+    public void preCheckRequest( final RestRequest restRequest ) throws PwmUnrecoverableException
+    {
+    }
+
+    @RestMethodHandler( method = HttpMethod.GET, produces = HttpContentType.plain )
+    private RestResultBean doWordlistRangePlainGet( final RestRequest restRequest )
+            throws PwmUnrecoverableException
+    {
+        final String prefix = restRequest.readParameterAsString( PARAM_PREFIX );
+        final List<String> suffixes = restRequest.getPwmApplication().getWordlistService().readHashPrefixRange( prefix );
+        StatisticsManager.incrementStat( restRequest.getPwmApplication(), Statistic.REST_WORDLIST_RANGE );
+
+        final StringBuilder resultString = new StringBuilder();
+        for ( final String suffix : suffixes )
+        {
+            resultString.append( suffix ).append( "\n" );
+        }
+        return RestResultBean.withData( resultString.toString() );
+    }
+
+    @RestMethodHandler( method = HttpMethod.GET, consumes = HttpContentType.json, produces = HttpContentType.json )
+    private RestResultBean doWordlistRangeJsonGet( final RestRequest restRequest )
+            throws PwmUnrecoverableException
+    {
+        final String prefix = restRequest.readParameterAsString( PARAM_PREFIX );
+        final List<String> suffixes = restRequest.getPwmApplication().getWordlistService().readHashPrefixRange( prefix );
+        StatisticsManager.incrementStat( restRequest.getPwmApplication(), Statistic.REST_WORDLIST_RANGE );
+        return RestResultBean.withData( new JsonOutput( prefix.toUpperCase(), suffixes ) );
+    }
+}
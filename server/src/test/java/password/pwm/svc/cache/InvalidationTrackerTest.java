@@ -0,0 +1,69 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.svc.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InvalidationTrackerTest
+{
+    private static final CacheKey CACHE_KEY = CacheKey.newKey( InvalidationTrackerTest.class, null, "key" );
+
+    @Test
+    public void testMatchingInvalidationDuringLoad()
+    {
+        final InvalidationTracker invalidationTracker = new InvalidationTracker();
+        invalidationTracker.record( CacheInvalidation.forClass( InvalidationTrackerTest.class ) );
+
+        try ( InvalidationTracker.Load load = invalidationTracker.beginLoad() )
+        {
+            Assert.assertFalse( load.isInvalidated( CACHE_KEY ) );
+            invalidationTracker.record( CacheInvalidation.forClass( CacheKey.class ) );
+            Assert.assertFalse( load.isInvalidated( CACHE_KEY ) );
+            invalidationTracker.record( CacheInvalidation.forClassAndValue( InvalidationTrackerTest.class, "key" ) );
+            Assert.assertTrue( load.isInvalidated( CACHE_KEY ) );
+        }
+    }
+
+    @Test
+    public void testInvalidationsRetainedOnlyForInFlightLoads()
+    {
+        final InvalidationTracker invalidationTracker = new InvalidationTracker();
+        invalidationTracker.record( CacheInvalidation.forClass( InvalidationTrackerTest.class ) );
+        Assert.assertEquals( 0, invalidationTracker.retainedCount() );
+
+        final InvalidationTracker.Load firstLoad = invalidationTracker.beginLoad();
+        invalidationTracker.record( CacheInvalidation.forClass( InvalidationTrackerTest.class ) );
+        final InvalidationTracker.Load secondLoad = invalidationTracker.beginLoad();
+        invalidationTracker.record( CacheInvalidation.forClass( CacheKey.class ) );
+        Assert.assertEquals( 2, invalidationTracker.retainedCount() );
+
+        Assert.assertTrue( firstLoad.isInvalidated( CACHE_KEY ) );
+        Assert.assertFalse( secondLoad.isInvalidated( CACHE_KEY ) );
+
+        firstLoad.close();
+        Assert.assertEquals( 1, invalidationTracker.retainedCount() );
+        Assert.assertFalse( secondLoad.isInvalidated( CACHE_KEY ) );
+
+        secondLoad.close();
+        Assert.assertEquals( 0, invalidationTracker.retainedCount() );
+    }
+}
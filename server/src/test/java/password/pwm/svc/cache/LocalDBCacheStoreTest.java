@@ -0,0 +1,191 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.svc.cache;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import password.pwm.bean.UserIdentity;
+import password.pwm.util.java.TimeDuration;
+import password.pwm.util.localdb.LocalDB;
+import password.pwm.util.localdb.LocalDBFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class LocalDBCacheStoreTest
+{
+    private static final Set<String> PERSISTED_CLASSES = Collections.singleton( LocalDBCacheStoreTest.class.getName() );
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LocalDB localDB;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        localDB = LocalDBFactory.getInstance( temporaryFolder.newFolder( "localdb-test" ), false, null, null );
+        localDB.truncate( LocalDB.DB.CACHE );
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if ( localDB != null )
+        {
+            localDB.close();
+        }
+    }
+
+    @Test
+    public void testWriteBehindSurvivesNewInstance()
+            throws Exception
+    {
+        final CacheKey cacheKey = CacheKey.newKey( LocalDBCacheStoreTest.class, null, "persisted" );
+
+        final LocalDBCacheStore firstStore = new LocalDBCacheStore( localDB, 100, PERSISTED_CLASSES, null );
+        firstStore.store( cacheKey, CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE ), "persisted-value" );
+        Assert.assertEquals( "persisted-value", firstStore.read( cacheKey, String.class ) );
+        Assert.assertEquals( 0, localDB.size( LocalDB.DB.CACHE ) );
+
+        firstStore.flush();
+        Assert.assertEquals( 1, localDB.size( LocalDB.DB.CACHE ) );
+
+        final LocalDBCacheStore secondStore = new LocalDBCacheStore( localDB, 100, PERSISTED_CLASSES, null );
+        final LocalDBCacheStore.StoredValue<String> storedValue = secondStore.readStoredValue( cacheKey, String.class );
+        Assert.assertNotNull( storedValue );
+        Assert.assertEquals( "persisted-value", storedValue.getValue() );
+        Assert.assertEquals( 1, secondStore.getCacheStoreInfo().getHitCount() );
+    }
+
+    @Test
+    public void testCleanupRemovesExcessRecords()
+            throws Exception
+    {
+        final LocalDBCacheStore store = new LocalDBCacheStore( localDB, 2, PERSISTED_CLASSES, null );
+        store.store( CacheKey.newKey( LocalDBCacheStoreTest.class, null, "expired" ), CachePolicy.makePolicyWithExpirationMS( -1000 ), "expired-value" );
+        for ( int i = 0; i < 3; i++ )
+        {
+            store.store( CacheKey.newKey( LocalDBCacheStoreTest.class, null, "live" + i ), CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE ), "live-value" );
+        }
+
+        store.cleanup();
+
+        int liveRecords = 0;
+        try ( LocalDB.LocalDBIterator<String> iterator = localDB.iterator( LocalDB.DB.CACHE ) )
+        {
+            while ( iterator.hasNext() )
+            {
+                iterator.next();
+                liveRecords++;
+            }
+        }
+
+        Assert.assertEquals( 2, liveRecords );
+        Assert.assertEquals( 1, store.getCacheStoreInfo().getEvictedCount() );
+        Assert.assertNull( store.read( CacheKey.newKey( LocalDBCacheStoreTest.class, null, "expired" ), String.class ) );
+    }
+
+    @Test
+    public void testInvalidation()
+            throws Exception
+    {
+        final UserIdentity userIdentity = new UserIdentity( "cn=test", "default" );
+        final CacheKey userKey = CacheKey.newKey( LocalDBCacheStoreTest.class, userIdentity, "user" );
+        final CacheKey otherKey = CacheKey.newKey( LocalDBCacheStoreTest.class, null, "other" );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+
+        final LocalDBCacheStore store = new LocalDBCacheStore( localDB, 100, PERSISTED_CLASSES, null );
+        store.store( userKey, cachePolicy, "user-value" );
+        store.store( otherKey, cachePolicy, "other-value" );
+        store.flush();
+
+        store.invalidate( CacheInvalidation.forUser( userIdentity ) );
+        Assert.assertNull( store.read( userKey, String.class ) );
+        Assert.assertEquals( "other-value", store.read( otherKey, String.class ) );
+
+        store.purgeInvalidated();
+        Assert.assertEquals( 1, localDB.size( LocalDB.DB.CACHE ) );
+
+        store.store( userKey, cachePolicy, "new-user-value" );
+        Assert.assertEquals( "new-user-value", store.read( userKey, String.class ) );
+    }
+
+    @Test
+    public void testBatchedInvalidationPurge()
+            throws Exception
+    {
+        final Set<String> persistedClasses = new HashSet<>( Arrays.asList( LocalDBCacheStoreTest.class.getName(), CacheKey.class.getName() ) );
+        final UserIdentity firstUser = new UserIdentity( "cn=first", "default" );
+        final UserIdentity secondUser = new UserIdentity( "cn=second", "default" );
+        final CacheKey firstUserKey = CacheKey.newKey( LocalDBCacheStoreTest.class, firstUser, "detail" );
+        final CacheKey secondUserKey = CacheKey.newKey( LocalDBCacheStoreTest.class, secondUser, "detail" );
+        final CacheKey otherValueKey = CacheKey.newKey( LocalDBCacheStoreTest.class, null, "other" );
+        final CacheKey otherClassKey = CacheKey.newKey( CacheKey.class, firstUser, "detail" );
+        final CacheKey otherClassSecondUserKey = CacheKey.newKey( CacheKey.class, secondUser, "detail" );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+
+        final LocalDBCacheStore store = new LocalDBCacheStore( localDB, 100, persistedClasses, null );
+        for ( final CacheKey cacheKey : Arrays.asList( firstUserKey, secondUserKey, otherValueKey, otherClassKey, otherClassSecondUserKey ) )
+        {
+            store.store( cacheKey, cachePolicy, "value" );
+        }
+        store.flush();
+
+        store.invalidate( CacheInvalidation.forClassAndValue( LocalDBCacheStoreTest.class, "detail" ) );
+        store.invalidate( CacheInvalidation.forClassAndUser( CacheKey.class, firstUser ) );
+        store.purgeInvalidated();
+
+        Assert.assertEquals( 2, localDB.size( LocalDB.DB.CACHE ) );
+        Assert.assertEquals( 3, store.getCacheStoreInfo().getInvalidatedCount() );
+        Assert.assertEquals( "value", store.read( otherValueKey, String.class ) );
+        Assert.assertEquals( "value", store.read( otherClassSecondUserKey, String.class ) );
+        Assert.assertNull( store.read( firstUserKey, String.class ) );
+        Assert.assertNull( store.read( otherClassKey, String.class ) );
+    }
+
+    @Test
+    public void testOnlyAllowedValuesArePersisted()
+            throws Exception
+    {
+        final CacheKey otherClassKey = CacheKey.newKey( LocalDBCacheStore.class, null, "other-class" );
+        final CacheKey memoryOnlyKey = CacheKey.newKey( LocalDBCacheStoreTest.class, null, "memory-only" );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+
+        final LocalDBCacheStore store = new LocalDBCacheStore( localDB, 100, PERSISTED_CLASSES, null );
+        Assert.assertFalse( store.accepts( otherClassKey, cachePolicy ) );
+        Assert.assertFalse( store.accepts( memoryOnlyKey, cachePolicy.withMemoryOnly() ) );
+
+        store.store( otherClassKey, cachePolicy, "other-class-value" );
+        store.store( memoryOnlyKey, cachePolicy.withMemoryOnly(), "memory-only-value" );
+        store.flush();
+
+        Assert.assertEquals( 0, localDB.size( LocalDB.DB.CACHE ) );
+        Assert.assertNull( store.read( otherClassKey, String.class ) );
+        Assert.assertNull( store.read( memoryOnlyKey, String.class ) );
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.svc.cache;
+
+import com.github.benmanes.caffeine.cache.Scheduler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import password.pwm.bean.UserIdentity;
+import password.pwm.util.java.TimeDuration;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MemoryCacheStoreTest
+{
+    private static final int THREAD_COUNT = 8;
+
+    @Test
+    public void testConcurrentLoadsAreCoalesced()
+            throws Exception
+    {
+        final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 100 );
+        final CacheKey cacheKey = CacheKey.newKey( MemoryCacheStoreTest.class, null, "coalesce" );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+
+        final AtomicInteger loaderCalls = new AtomicInteger();
+        final CountDownLatch releaseLoader = new CountDownLatch( 1 );
+        final CacheLoader<String> cacheLoader = () ->
+        {
+            loaderCalls.incrementAndGet();
+            try
+            {
+                releaseLoader.await( 10, TimeUnit.SECONDS );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            return "loaded-value";
+        };
+
+        final ExecutorService executorService = Executors.newFixedThreadPool( THREAD_COUNT );
+        try
+        {
+            final List<Future<String>> results = new ArrayList<>();
+            for ( int i = 0; i < THREAD_COUNT; i++ )
+            {
+                results.add( executorService.submit( () -> memoryCacheStore.readAndStore( cacheKey, cachePolicy, String.class, cacheLoader ) ) );
+            }
+
+            final Instant waitUntil = Instant.now().plusSeconds( 10 );
+            while ( memoryCacheStore.getCacheStoreInfo().getWaitingCount() < THREAD_COUNT - 1 && Instant.now().isBefore( waitUntil ) )
+            {
+                Thread.sleep( 10 );
+            }
+            releaseLoader.countDown();
+
+            for ( final Future<String> result : results )
+            {
+                Assert.assertEquals( "loaded-value", result.get( 10, TimeUnit.SECONDS ) );
+            }
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+
+        Assert.assertEquals( 1, loaderCalls.get() );
+        Assert.assertEquals( THREAD_COUNT - 1, memoryCacheStore.getCacheStoreInfo().getCoalescedCount() );
+        Assert.assertEquals( 0, memoryCacheStore.getCacheStoreInfo().getWaitingCount() );
+        Assert.assertEquals( "loaded-value", memoryCacheStore.read( cacheKey, String.class ) );
+    }
+
+    @Test
+    public void testLoaderFailureIsSharedWithWaiters()
+            throws Exception
+    {
+        final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 100 );
+        final CacheKey cacheKey = CacheKey.newKey( MemoryCacheStoreTest.class, null, "failure" );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+
+        final CacheLoader<String> cacheLoader = () ->
+        {
+            throw new IllegalStateException( "loader failure" );
+        };
+
+        try
+        {
+            memoryCacheStore.readAndStore( cacheKey, cachePolicy, String.class, cacheLoader );
+            Assert.fail( "expected loader exception" );
+        }
+        catch ( IllegalStateException e )
+        {
+            Assert.assertEquals( "loader failure", e.getMessage() );
+        }
+
+        Assert.assertNull( memoryCacheStore.read( cacheKey, String.class ) );
+        Assert.assertEquals( "second-value", memoryCacheStore.readAndStore( cacheKey, cachePolicy, String.class, () -> "second-value" ) );
+    }
+
+    @Test
+    public void testNullLoaderValueIsNotCached()
+            throws Exception
+    {
+        final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 100 );
+        final CacheKey cacheKey = CacheKey.newKey( MemoryCacheStoreTest.class, null, "null-value" );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+
+        final AtomicInteger loaderCalls = new AtomicInteger();
+        final CacheLoader<String> nullLoader = () ->
+        {
+            loaderCalls.incrementAndGet();
+            return null;
+        };
+
+        Assert.assertNull( memoryCacheStore.readAndStore( cacheKey, cachePolicy, String.class, nullLoader ) );
+        Assert.assertNull( memoryCacheStore.readAndStore( cacheKey, cachePolicy, String.class, nullLoader ) );
+        Assert.assertEquals( 2, loaderCalls.get() );
+        Assert.assertEquals( 0, memoryCacheStore.itemCount() );
+
+        Assert.assertEquals( "value", memoryCacheStore.readAndStore( cacheKey, cachePolicy, String.class, () -> "value" ) );
+        Assert.assertEquals( "value", memoryCacheStore.read( cacheKey, String.class ) );
+    }
+
+    @Test
+    public void testValueTypes()
+            throws Exception
+    {
+        final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 100 );
+
+        final CacheKey jsonKey = CacheKey.newKey( MemoryCacheStoreTest.class, null, "json" );
+        final TestValue jsonValue = new TestValue( "json" );
+        memoryCacheStore.store( jsonKey, CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE ), jsonValue );
+        final TestValue jsonRead = memoryCacheStore.read( jsonKey, TestValue.class );
+        Assert.assertEquals( "json", jsonRead.value );
+        Assert.assertNotSame( jsonValue, jsonRead );
+
+        final CacheKey immutableKey = CacheKey.newKey( MemoryCacheStoreTest.class, null, "immutable" );
+        final TestValue immutableValue = new TestValue( "immutable" );
+        memoryCacheStore.store( immutableKey, CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE, CacheValueType.IMMUTABLE ), immutableValue );
+        Assert.assertSame( immutableValue, memoryCacheStore.read( immutableKey, TestValue.class ) );
+
+        Assert.assertTrue( memoryCacheStore.byteCount() > 0 );
+        for ( final CacheDebugItem cacheDebugItem : memoryCacheStore.getCacheDebugItems() )
+        {
+            Assert.assertTrue( cacheDebugItem.getBytes() > 0 );
+        }
+    }
+
+    @Test
+    public void testExpiredEntriesArePurged()
+            throws Exception
+    {
+        final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 100 );
+        final CacheKey cacheKey = CacheKey.newKey( MemoryCacheStoreTest.class, null, "expire" );
+        memoryCacheStore.store( cacheKey, CachePolicy.makePolicyWithExpirationMS( 10 ), "expiring-value" );
+        Assert.assertEquals( 1, memoryCacheStore.itemCount() );
+        Thread.sleep( 50 );
+
+        Assert.assertNull( memoryCacheStore.read( cacheKey, String.class ) );
+
+        // expiration is processed in timer wheel buckets so removal may lag the expiration date slightly
+        final Instant waitUntil = Instant.now().plusSeconds( 10 );
+        while ( memoryCacheStore.getCacheStoreInfo().getExpiredCount() < 1 && Instant.now().isBefore( waitUntil ) )
+        {
+            Thread.sleep( 50 );
+            memoryCacheStore.cleanUp();
+        }
+
+        Assert.assertEquals( 0, memoryCacheStore.itemCount() );
+        Assert.assertEquals( 1, memoryCacheStore.getCacheStoreInfo().getExpiredCount() );
+        Assert.assertEquals( 0, memoryCacheStore.getCacheStoreInfo().getEvictedCount() );
+    }
+
+    @Test
+    public void testClassByteBudget()
+            throws Exception
+    {
+        final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 0, 1024 * 1024, 10 * 1024, Scheduler.disabledScheduler(), null );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+        final CacheKey otherKey = CacheKey.newKey( TestValue.class, null, "other" );
+        memoryCacheStore.store( otherKey, cachePolicy, "other-value" );
+
+        final StringBuilder largeValue = new StringBuilder();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            largeValue.append( 'x' );
+        }
+
+        for ( int i = 0; i < 20; i++ )
+        {
+            memoryCacheStore.store( CacheKey.newKey( MemoryCacheStoreTest.class, null, "large" + i ), cachePolicy, largeValue.toString() );
+        }
+        memoryCacheStore.cleanUp();
+
+        final long classBytes = memoryCacheStore.storedClassByteHistogram( "" ).get( MemoryCacheStoreTest.class.getSimpleName() );
+        Assert.assertTrue( classBytes <= 10 * 1024 );
+        Assert.assertTrue( memoryCacheStore.getCacheStoreInfo().getEvictedCount() > 0 );
+        Assert.assertEquals( "other-value", memoryCacheStore.read( otherKey, String.class ) );
+    }
+
+    @Test
+    public void testItemLimitWithByteLimit()
+            throws Exception
+    {
+        final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 10, 1024 * 1024, 0, Scheduler.disabledScheduler(), null );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+        for ( int i = 0; i < 50; i++ )
+        {
+            memoryCacheStore.store( CacheKey.newKey( MemoryCacheStoreTest.class, null, "item" + i ), cachePolicy, "value" );
+        }
+        memoryCacheStore.cleanUp();
+
+        Assert.assertTrue( memoryCacheStore.itemCount() <= 10 );
+        Assert.assertEquals( 40, memoryCacheStore.getCacheStoreInfo().getEvictedCount() );
+    }
+
+    @Test
+    public void testInvalidation()
+            throws Exception
+    {
+        final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 100 );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+        final UserIdentity userIdentity = new UserIdentity( "cn=test", "default" );
+        final CacheKey userKey = CacheKey.newKey( MemoryCacheStoreTest.class, userIdentity, "user" );
+        final CacheKey otherClassKey = CacheKey.newKey( TestValue.class, userIdentity, "other" );
+        final CacheKey noUserKey = CacheKey.newKey( MemoryCacheStoreTest.class, null, "none" );
+
+        memoryCacheStore.store( userKey, cachePolicy, "value" );
+        memoryCacheStore.store( otherClassKey, cachePolicy, "value" );
+        memoryCacheStore.store( noUserKey, cachePolicy, "value" );
+
+        Assert.assertEquals( 1, memoryCacheStore.invalidate( CacheInvalidation.forClassAndUser( MemoryCacheStoreTest.class, userIdentity ) ) );
+        Assert.assertNull( memoryCacheStore.read( userKey, String.class ) );
+
+        Assert.assertEquals( 1, memoryCacheStore.invalidate( CacheInvalidation.forUser( userIdentity ) ) );
+        Assert.assertEquals( 1, memoryCacheStore.invalidate( CacheInvalidation.forClass( MemoryCacheStoreTest.class ) ) );
+        Assert.assertEquals( 0, memoryCacheStore.itemCount() );
+        Assert.assertEquals( 3, memoryCacheStore.getCacheStoreInfo().getInvalidatedCount() );
+    }
+
+    @Test
+    public void testValueInvalidation()
+            throws Exception
+    {
+        final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 100 );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+        final CacheKey firstUserKey = CacheKey.newKey( MemoryCacheStoreTest.class, new UserIdentity( "cn=first", "default" ), "detail" );
+        final CacheKey secondUserKey = CacheKey.newKey( MemoryCacheStoreTest.class, new UserIdentity( "cn=second", "default" ), "detail" );
+        final CacheKey otherValueKey = CacheKey.newKey( MemoryCacheStoreTest.class, null, "other" );
+
+        memoryCacheStore.store( firstUserKey, cachePolicy, "value" );
+        memoryCacheStore.store( secondUserKey, cachePolicy, "value" );
+        memoryCacheStore.store( otherValueKey, cachePolicy, "value" );
+
+        Assert.assertEquals( 2, memoryCacheStore.invalidate( CacheInvalidation.forClassAndValue( MemoryCacheStoreTest.class, "detail" ) ) );
+        Assert.assertEquals( "value", memoryCacheStore.read( otherValueKey, String.class ) );
+    }
+
+    @Test
+    public void testLoadAcrossInvalidationIsNotStored()
+            throws Exception
+    {
+        final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 100 );
+        final CacheKey cacheKey = CacheKey.newKey( MemoryCacheStoreTest.class, null, "in-flight" );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+
+        final CacheLoader<String> cacheLoader = () ->
+        {
+            memoryCacheStore.invalidate( CacheInvalidation.forClass( MemoryCacheStoreTest.class ) );
+            return "stale-value";
+        };
+
+        Assert.assertEquals( "stale-value", memoryCacheStore.readAndStore( cacheKey, cachePolicy, String.class, cacheLoader ) );
+        Assert.assertNull( memoryCacheStore.read( cacheKey, String.class ) );
+        Assert.assertEquals( "fresh-value", memoryCacheStore.readAndStore( cacheKey, cachePolicy, String.class, () -> "fresh-value" ) );
+        Assert.assertEquals( "fresh-value", memoryCacheStore.read( cacheKey, String.class ) );
+    }
+
+    @Test
+    public void testLoadAcrossUnrelatedInvalidationIsStored()
+            throws Exception
+    {
+        final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 100 );
+        final CacheKey cacheKey = CacheKey.newKey( MemoryCacheStoreTest.class, null, "in-flight" );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+        final UserIdentity userIdentity = new UserIdentity( "cn=test", "default" );
+
+        final CacheLoader<String> cacheLoader = () ->
+        {
+            memoryCacheStore.invalidate( CacheInvalidation.forClass( TestValue.class ) );
+            memoryCacheStore.invalidate( CacheInvalidation.forUser( userIdentity ) );
+            memoryCacheStore.invalidate( CacheInvalidation.forClassAndValue( MemoryCacheStoreTest.class, "other" ) );
+            return "value";
+        };
+
+        Assert.assertEquals( "value", memoryCacheStore.readAndStore( cacheKey, cachePolicy, String.class, cacheLoader ) );
+        Assert.assertEquals( "value", memoryCacheStore.read( cacheKey, String.class ) );
+    }
+
+    @Test
+    public void testIndexedInvalidationAfterReplace()
+            throws Exception
+    {
+        final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 100 );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+        final UserIdentity userIdentity = new UserIdentity( "cn=test", "default" );
+        final CacheKey cacheKey = CacheKey.newKey( MemoryCacheStoreTest.class, userIdentity, "replaced" );
+
+        memoryCacheStore.store( cacheKey, cachePolicy, "first" );
+        memoryCacheStore.store( cacheKey, cachePolicy, "second" );
+        Assert.assertEquals( 1, memoryCacheStore.invalidate( CacheInvalidation.forUser( userIdentity ) ) );
+        Assert.assertNull( memoryCacheStore.read( cacheKey, String.class ) );
+
+        memoryCacheStore.store( cacheKey, cachePolicy, "third" );
+        Assert.assertEquals( 1, memoryCacheStore.invalidate( CacheInvalidation.forClass( MemoryCacheStoreTest.class ) ) );
+        Assert.assertEquals( 0, memoryCacheStore.invalidate( CacheInvalidation.forUser( userIdentity ) ) );
+        Assert.assertEquals( 0, memoryCacheStore.itemCount() );
+    }
+
+    @Test
+    public void testRefreshAhead()
+            throws Exception
+    {
+        final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+        try
+        {
+            final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 100, 0, 0, Scheduler.disabledScheduler(), refreshExecutor );
+            final CacheKey cacheKey = CacheKey.newKey( MemoryCacheStoreTest.class, null, "refresh" );
+            final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE ).withRefreshAhead( 1 );
+
+            final AtomicInteger loaderCalls = new AtomicInteger();
+            final CacheLoader<String> cacheLoader = () -> "value" + loaderCalls.incrementAndGet();
+
+            Assert.assertEquals( "value1", memoryCacheStore.readAndStore( cacheKey, cachePolicy, String.class, cacheLoader ) );
+
+            // refresh point is 600ms into the one minute lifetime
+            Thread.sleep( 1000 );
+
+            // the stale value is returned while the refresh runs in the background
+            Assert.assertEquals( "value1", memoryCacheStore.readAndStore( cacheKey, cachePolicy, String.class, cacheLoader ) );
+
+            final Instant waitUntil = Instant.now().plusSeconds( 10 );
+            while ( memoryCacheStore.getCacheStoreInfo().getRefreshSuccessCount() < 1 && Instant.now().isBefore( waitUntil ) )
+            {
+                Thread.sleep( 10 );
+            }
+
+            Assert.assertEquals( 1, memoryCacheStore.getCacheStoreInfo().getRefreshSuccessCount() );
+            Assert.assertEquals( 2, loaderCalls.get() );
+            Assert.assertEquals( "value2", memoryCacheStore.read( cacheKey, String.class ) );
+        }
+        finally
+        {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCloseDetachesRefreshExecutor()
+            throws Exception
+    {
+        final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+        final MemoryCacheStore memoryCacheStore = new MemoryCacheStore( 100, 0, 0, Scheduler.disabledScheduler(), refreshExecutor );
+        final CacheKey cacheKey = CacheKey.newKey( MemoryCacheStoreTest.class, null, "close" );
+        final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE ).withRefreshAhead( 1 );
+
+        memoryCacheStore.store( cacheKey, cachePolicy, "value" );
+        memoryCacheStore.close();
+        refreshExecutor.shutdownNow();
+        Assert.assertEquals( 0, memoryCacheStore.itemCount() );
+
+        final AtomicInteger loaderCalls = new AtomicInteger();
+        final CacheLoader<String> cacheLoader = () -> "value" + loaderCalls.incrementAndGet();
+        Assert.assertEquals( "value1", memoryCacheStore.readAndStore( cacheKey, cachePolicy, String.class, cacheLoader ) );
+        Thread.sleep( 1000 );
+
+        // past the refresh point, but no refresh is submitted to the terminated executor
+        Assert.assertEquals( "value1", memoryCacheStore.readAndStore( cacheKey, cachePolicy, String.class, cacheLoader ) );
+        Assert.assertEquals( 1, loaderCalls.get() );
+        Assert.assertEquals( 0, memoryCacheStore.getCacheStoreInfo().getRefreshRejectedCount() );
+    }
+
+    private static class TestValue implements Serializable
+    {
+        private final String value;
+
+        TestValue( final String value )
+        {
+            this.value = value;
+        }
+    }
+}
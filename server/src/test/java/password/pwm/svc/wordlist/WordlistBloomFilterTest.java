@@ -0,0 +1,99 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.svc.wordlist;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class WordlistBloomFilterTest
+{
+    private static final int INSERTIONS = 20_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @Test
+    public void testNoFalseNegatives()
+    {
+        final WordlistBloomFilter bloomFilter = makeFilter();
+        for ( int i = 0; i < INSERTIONS; i++ )
+        {
+            Assert.assertTrue( bloomFilter.mightContain( "word" + i ) );
+        }
+        Assert.assertEquals( INSERTIONS, bloomFilter.getInsertions() );
+    }
+
+    @Test
+    public void testFalsePositiveRate()
+    {
+        final WordlistBloomFilter bloomFilter = makeFilter();
+        final int probes = 100_000;
+        int falsePositives = 0;
+        for ( int i = 0; i < probes; i++ )
+        {
+            if ( bloomFilter.mightContain( "other" + i ) )
+            {
+                falsePositives++;
+            }
+        }
+        final double measuredRate = ( double ) falsePositives / probes;
+        Assert.assertTrue( "measured rate " + measuredRate, measuredRate < FALSE_POSITIVE_RATE * 2 );
+        Assert.assertEquals( FALSE_POSITIVE_RATE, bloomFilter.expectedFalsePositiveRate(), FALSE_POSITIVE_RATE / 2 );
+    }
+
+    @Test
+    public void testSerialization() throws Exception
+    {
+        final WordlistBloomFilter bloomFilter = makeFilter();
+        final WordlistBloomFilter restored = WordlistBloomFilter.fromBytes( bloomFilter.toBytes() );
+        Assert.assertEquals( bloomFilter.getInsertions(), restored.getInsertions() );
+        Assert.assertEquals( bloomFilter.getSizeBytes(), restored.getSizeBytes() );
+        for ( int i = 0; i < INSERTIONS; i++ )
+        {
+            Assert.assertTrue( restored.mightContain( "word" + i ) );
+        }
+    }
+
+    @Test
+    public void testEstimateSizeBytes()
+    {
+        Assert.assertEquals( makeFilter().getSizeBytes(), WordlistBloomFilter.estimateSizeBytes( INSERTIONS, FALSE_POSITIVE_RATE ) );
+        Assert.assertTrue( WordlistBloomFilter.estimateSizeBytes( 1_000_000_000L, FALSE_POSITIVE_RATE ) > 1_000_000_000L );
+    }
+
+    @Test( expected = IOException.class )
+    public void testTruncatedSerialization() throws Exception
+    {
+        final byte[] bytes = makeFilter().toBytes();
+        WordlistBloomFilter.fromBytes( Arrays.copyOf( bytes, bytes.length - 1 ) );
+    }
+
+    private static WordlistBloomFilter makeFilter()
+    {
+        final WordlistBloomFilter bloomFilter = WordlistBloomFilter.create( INSERTIONS, FALSE_POSITIVE_RATE );
+        for ( int i = 0; i < INSERTIONS; i++ )
+        {
+            bloomFilter.put( "word" + i );
+        }
+        return bloomFilter;
+    }
+}
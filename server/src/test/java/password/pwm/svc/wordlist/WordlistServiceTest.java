@@ -30,9 +30,14 @@ import password.pwm.PwmApplication;
 import password.pwm.config.Configuration;
 import password.pwm.config.PwmSetting;
 import password.pwm.config.stored.StoredConfigurationImpl;
+import password.pwm.error.PwmError;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.java.JavaHelper;
 import password.pwm.util.localdb.TestHelper;
 
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 public class WordlistServiceTest
 {
@@ -144,6 +149,94 @@ public class WordlistServiceTest
         Assert.assertTrue( wordlistService.containsWord( "ABCde" ) );
     }
 
+    @Test
+    public void testMappedFileWordlist()
+            throws Exception
+    {
+        final Configuration configuration = Mockito.spy( new Configuration( StoredConfigurationImpl.newStoredConfiguration() ) );
+        Mockito.when( configuration.readAppProperty( AppProperty.WORDLIST_STORAGE_TYPE ) ).thenReturn( WordlistStorageType.MappedFile.name() );
+        Mockito.when( configuration.readAppProperty( AppProperty.WORDLIST_STORAGE_MAPPED_FILE_SORT_RECORDS ) ).thenReturn( "1" );
+        final WordlistService wordlistService = makeWordlistService( configuration );
+
+        Assert.assertTrue( wordlistService.containsWord( "password-test" ) );
+        Assert.assertFalse( wordlistService.containsWord( "password-false-test" ) );
+        Assert.assertTrue( wordlistService.containsWord( "AbcdefghijklmnopqrstuvwxyZ" ) );
+        Assert.assertFalse( wordlistService.containsWord( "012345" ) );
+        Assert.assertTrue( wordlistService.containsWord( "0123456" ) );
+
+        Assert.assertTrue( wordlistService.containsWord( "md5-Password-Test" ) );
+        Assert.assertFalse( wordlistService.containsWord( "md5-Password-Test-false" ) );
+        Assert.assertTrue( wordlistService.containsWord( "sha1-Password-Test" ) );
+        Assert.assertTrue( wordlistService.containsWord( "sha1-Password-Test-Reverse" ) );
+        Assert.assertFalse( wordlistService.containsWord( "sha1-Password-Test-false" ) );
+        Assert.assertTrue( wordlistService.containsWord( "sha512-Password-Test" ) );
+        Assert.assertFalse( wordlistService.containsWord( "sha1:4B0ABDCB3430D57D0581A9D617B8ABCD3202D992" ) );
+
+        Assert.assertTrue( wordlistService.readHashPrefixRange( "4B0AB" ).contains( "DCB3430D57D0581A9D617B8ABCD3202D992" ) );
+        Assert.assertTrue( wordlistService.readHashPrefixRange( "056da" ).contains( "0B59D7C1622B8F60726DE8E25BC771D5E89" ) );
+        assertPlainWordNotInRange( wordlistService, "password-test" );
+    }
+
+    @Test
+    public void testConfigHashStorageType()
+    {
+        final WordlistConfiguration defaultConfiguration = WordlistConfiguration.builder().minWordSize( 2 ).build();
+        final WordlistConfiguration localDBConfiguration = defaultConfiguration.toBuilder()
+                .storageType( WordlistStorageType.LocalDB )
+                .mappedFilePath( "wordlist" )
+                .build();
+        final WordlistConfiguration mappedFileConfiguration = localDBConfiguration.toBuilder()
+                .storageType( WordlistStorageType.MappedFile )
+                .build();
+
+        Assert.assertEquals( defaultConfiguration.configHash(), localDBConfiguration.configHash() );
+        Assert.assertNotEquals( localDBConfiguration.configHash(), mappedFileConfiguration.configHash() );
+    }
+
+    @Test
+    public void testHashPrefixRange()
+            throws Exception
+    {
+        final WordlistService wordlistService = makeWordlistService( null );
+
+        Assert.assertTrue( wordlistService.readHashPrefixRange( "4B0AB" ).contains( "DCB3430D57D0581A9D617B8ABCD3202D992" ) );
+        Assert.assertTrue( wordlistService.readHashPrefixRange( "056da" ).contains( "0B59D7C1622B8F60726DE8E25BC771D5E89" ) );
+        Assert.assertTrue( wordlistService.readHashPrefixRange( "FFFFF" ).isEmpty() );
+        assertPlainWordNotInRange( wordlistService, "password-test" );
+
+        try
+        {
+            wordlistService.readHashPrefixRange( "4B0A" );
+            Assert.fail( "short hash prefix should be rejected" );
+        }
+        catch ( PwmUnrecoverableException e )
+        {
+            Assert.assertEquals( PwmError.ERROR_FIELD_REGEX_NOMATCH, e.getError() );
+        }
+
+        try
+        {
+            wordlistService.readHashPrefixRange( "" );
+            Assert.fail( "missing hash prefix should be rejected" );
+        }
+        catch ( PwmUnrecoverableException e )
+        {
+            Assert.assertEquals( PwmError.ERROR_FIELD_REQUIRED, e.getError() );
+        }
+    }
+
+    /**
+     * Plain words are matched by lookups but are not part of the hash range, whatever the storage type.
+     */
+    private static void assertPlainWordNotInRange( final WordlistService wordlistService, final String word )
+            throws Exception
+    {
+        Assert.assertTrue( wordlistService.containsWord( word ) );
+        final MessageDigest messageDigest = MessageDigest.getInstance( "SHA-1" );
+        final String hash = JavaHelper.byteArrayToHexString( messageDigest.digest( word.getBytes( StandardCharsets.UTF_8 ) ) ).toUpperCase();
+        Assert.assertFalse( wordlistService.readHashPrefixRange( hash.substring( 0, 5 ) ).contains( hash.substring( 5 ) ) );
+    }
+
     private WordlistService makeWordlistService( final Configuration inputConfiguration )
             throws Exception
     {
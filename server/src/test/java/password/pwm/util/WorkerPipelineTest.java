@@ -0,0 +1,95 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WorkerPipelineTest
+{
+    @Test
+    public void testResultsConsumedInOrder() throws Exception
+    {
+        final List<Integer> results = new ArrayList<>();
+        new WorkerPipeline<Integer>( WorkerPipelineTest.class, 4 ).execute( pipeline ->
+        {
+            for ( int i = 0; i < 500; i++ )
+            {
+                final int value = i;
+                pipeline.submit( () ->
+                {
+                    Thread.sleep( value % 3 );
+                    return value;
+                } );
+            }
+        }, results::add );
+
+        Assert.assertEquals( 500, results.size() );
+        for ( int i = 0; i < results.size(); i++ )
+        {
+            Assert.assertEquals( i, ( int ) results.get( i ) );
+        }
+    }
+
+    @Test
+    public void testWorkerErrorIsRethrown() throws Exception
+    {
+        try
+        {
+            new WorkerPipeline<Integer>( WorkerPipelineTest.class, 2 ).execute( pipeline ->
+            {
+                pipeline.submit( () -> 1 );
+                pipeline.submit( () ->
+                {
+                    throw new IllegalStateException( "worker failure" );
+                } );
+            }, result ->
+            {
+            } );
+            Assert.fail( "worker error should be rethrown" );
+        }
+        catch ( ExecutionException e )
+        {
+            Assert.assertTrue( e.getCause() instanceof IllegalStateException );
+            Assert.assertEquals( "worker failure", e.getCause().getMessage() );
+        }
+    }
+
+    @Test
+    public void testCancelStopsConsumer() throws Exception
+    {
+        final AtomicInteger consumed = new AtomicInteger();
+        new WorkerPipeline<Integer>( WorkerPipelineTest.class, 2 ).execute( pipeline ->
+        {
+            for ( int i = 0; i < 1000; i++ )
+            {
+                pipeline.submitResult( i );
+            }
+        }, result -> consumed.incrementAndGet(), () -> consumed.get() >= 10 );
+
+        Assert.assertEquals( 10, consumed.get() );
+    }
+}
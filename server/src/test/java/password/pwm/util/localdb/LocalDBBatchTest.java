@@ -0,0 +1,90 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocalDBBatchTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LocalDB localDB;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        localDB = LocalDBFactory.getInstance( temporaryFolder.newFolder( "localdb-test" ), false, null, null );
+        localDB.truncate( LocalDB.DB.TEMP );
+        localDB.truncate( LocalDB.DB.CACHE );
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if ( localDB != null )
+        {
+            localDB.close();
+        }
+    }
+
+    @Test
+    public void testBatchAcrossDatabases() throws Exception
+    {
+        localDB.put( LocalDB.DB.TEMP, "removed", "value" );
+
+        localDB.executeBatch( new LocalDBBatch()
+                .put( LocalDB.DB.TEMP, "key1", "value1" )
+                .put( LocalDB.DB.CACHE, "key2", "value2" )
+                .remove( LocalDB.DB.TEMP, "removed" )
+                .put( LocalDB.DB.TEMP, "key1", "value3" ) );
+
+        Assert.assertEquals( "value3", localDB.get( LocalDB.DB.TEMP, "key1" ) );
+        Assert.assertEquals( "value2", localDB.get( LocalDB.DB.CACHE, "key2" ) );
+        Assert.assertNull( localDB.get( LocalDB.DB.TEMP, "removed" ) );
+        Assert.assertEquals( 1, localDB.size( LocalDB.DB.TEMP ) );
+    }
+
+    @Test
+    public void testInvalidBatchIsNotApplied() throws Exception
+    {
+        final LocalDBBatch batch = new LocalDBBatch()
+                .put( LocalDB.DB.TEMP, "key1", "value1" )
+                .put( LocalDB.DB.TEMP, "", "value2" );
+
+        try
+        {
+            localDB.executeBatch( batch );
+            Assert.fail( "expected batch with invalid key to be rejected" );
+        }
+        catch ( LocalDBException e )
+        {
+            // expected
+        }
+
+        Assert.assertEquals( 0, localDB.size( LocalDB.DB.TEMP ) );
+    }
+}
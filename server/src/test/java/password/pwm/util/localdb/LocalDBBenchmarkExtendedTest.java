@@ -0,0 +1,274 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the LocalDB storage hot path.  Each thread count is run separately and written as a JMH JSON result file
+ * to {@code target/jmh/}, so results can be compared between builds.
+ */
+public class LocalDBBenchmarkExtendedTest
+{
+    private static final int[] THREAD_COUNTS = {1, 4};
+    private static final int PUT_ALL_SIZE = 100;
+    private static final int QUEUE_BATCH_SIZE = 100;
+    private static final LocalDB.DB BENCHMARK_DB = LocalDB.DB.TEMP;
+
+    @Test
+    public void
+    launchBenchmark()
+            throws Exception
+    {
+        final File resultDirectory = new File( "target", "jmh" );
+        Files.createDirectories( resultDirectory.toPath() );
+
+        for ( final int threads : THREAD_COUNTS )
+        {
+            final File resultFile = new File( resultDirectory, "localdb-benchmark-threads-" + threads + ".json" );
+            final Options opt = new OptionsBuilder()
+                    .include( this.getClass().getName() + ".*" )
+                    .mode( Mode.Throughput )
+                    .timeUnit( TimeUnit.SECONDS )
+                    .warmupIterations( 3 )
+                    .warmupTime( TimeValue.seconds( 5 ) )
+                    .measurementIterations( 5 )
+                    .measurementTime( TimeValue.seconds( 5 ) )
+                    .threads( threads )
+                    .forks( 1 )
+                    .shouldFailOnError( true )
+                    .shouldDoGC( true )
+                    .resultFormat( ResultFormatType.JSON )
+                    .result( resultFile.getAbsolutePath() )
+                    .build();
+
+            new Runner( opt ).run();
+        }
+    }
+
+    public enum Provider
+    {
+        XODUS,
+        MEMORY,;
+
+        LocalDB open( final File directory )
+                throws Exception
+        {
+            switch ( this )
+            {
+                case XODUS:
+                    return LocalDBFactory.getInstance( directory, false, null, null );
+
+                case MEMORY:
+                    final MemoryLocalDB memoryLocalDB = new MemoryLocalDB();
+                    memoryLocalDB.init( null, Collections.emptyMap(), Collections.emptyMap() );
+                    return new LocalDBAdaptor( memoryLocalDB, null );
+
+                default:
+                    throw new IllegalStateException( "unknown provider " + this );
+            }
+        }
+    }
+
+    @State( Scope.Benchmark )
+    public static class LocalDBState
+    {
+        @Param( { "XODUS", "MEMORY" } )
+        public Provider provider;
+
+        @Param( { "64", "2048" } )
+        public int valueSize;
+
+        @Param( { "1000", "50000" } )
+        public int dbSize;
+
+        File directory;
+        LocalDB localDB;
+        String value;
+
+        @Setup( Level.Trial )
+        public void setup( )
+                throws Exception
+        {
+            directory = Files.createTempDirectory( "localdb-benchmark" ).toFile();
+            localDB = provider.open( directory );
+            value = makeValue( valueSize );
+
+            final Map<String, String> records = new HashMap<>();
+            for ( int i = 0; i < dbSize; i++ )
+            {
+                records.put( key( i ), value );
+                if ( records.size() >= 1000 )
+                {
+                    localDB.putAll( BENCHMARK_DB, records );
+                    records.clear();
+                }
+            }
+            localDB.putAll( BENCHMARK_DB, records );
+        }
+
+        @TearDown( Level.Trial )
+        public void tearDown( )
+                throws Exception
+        {
+            localDB.close();
+            FileUtils.deleteDirectory( directory );
+        }
+
+        String randomKey( )
+        {
+            return key( ThreadLocalRandom.current().nextInt( dbSize ) );
+        }
+    }
+
+    @State( Scope.Benchmark )
+    public static class QueueState
+    {
+        @Param( { "XODUS", "MEMORY" } )
+        public Provider provider;
+
+        @Param( { "64", "2048" } )
+        public int valueSize;
+
+        File directory;
+        LocalDB localDB;
+        LocalDBStoredQueue queue;
+        String value;
+
+        @Setup( Level.Trial )
+        public void setup( )
+                throws Exception
+        {
+            directory = Files.createTempDirectory( "localdb-queue-benchmark" ).toFile();
+            localDB = provider.open( directory );
+            queue = LocalDBStoredQueue.createLocalDBStoredQueue( localDB, BENCHMARK_DB, false );
+            value = makeValue( valueSize );
+        }
+
+        @TearDown( Level.Trial )
+        public void tearDown( )
+                throws Exception
+        {
+            localDB.close();
+            FileUtils.deleteDirectory( directory );
+        }
+    }
+
+    @Benchmark
+    public String get( final LocalDBState state )
+            throws Exception
+    {
+        return state.localDB.get( BENCHMARK_DB, state.randomKey() );
+    }
+
+    @Benchmark
+    public boolean contains( final LocalDBState state )
+            throws Exception
+    {
+        return state.localDB.contains( BENCHMARK_DB, state.randomKey() );
+    }
+
+    @Benchmark
+    public boolean put( final LocalDBState state )
+            throws Exception
+    {
+        return state.localDB.put( BENCHMARK_DB, state.randomKey(), state.value );
+    }
+
+    @Benchmark
+    public void putAll( final LocalDBState state )
+            throws Exception
+    {
+        final Map<String, String> records = new HashMap<>();
+        for ( int i = 0; i < PUT_ALL_SIZE; i++ )
+        {
+            records.put( state.randomKey(), state.value );
+        }
+        state.localDB.putAll( BENCHMARK_DB, records );
+    }
+
+    @Benchmark
+    public int iterate( final LocalDBState state )
+            throws Exception
+    {
+        int count = 0;
+        try ( LocalDB.LocalDBIterator<String> iterator = state.localDB.iterator( BENCHMARK_DB ) )
+        {
+            while ( iterator.hasNext() )
+            {
+                iterator.next();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public String queueOfferPoll( final QueueState state )
+    {
+        state.queue.offer( state.value );
+        return state.queue.poll();
+    }
+
+    @Benchmark
+    public void queueBatchAddRemove( final QueueState state )
+    {
+        state.queue.addAll( Collections.nCopies( QUEUE_BATCH_SIZE, state.value ) );
+        state.queue.removeFirst( QUEUE_BATCH_SIZE );
+    }
+
+    private static String key( final int index )
+    {
+        return "benchmark-key-" + index;
+    }
+
+    private static String makeValue( final int length )
+    {
+        final StringBuilder value = new StringBuilder( length );
+        while ( value.length() < length )
+        {
+            value.append( ThreadLocalRandom.current().nextInt( 10 ) );
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LocalDBBytesTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LocalDB localDB;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        localDB = LocalDBFactory.getInstance( temporaryFolder.newFolder( "localdb-test" ), false, null, null );
+        localDB.truncate( LocalDB.DB.TEMP );
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if ( localDB != null )
+        {
+            localDB.close();
+        }
+    }
+
+    @Test
+    public void testNativeProvider() throws Exception
+    {
+        exerciseBytes( localDB );
+    }
+
+    @Test
+    public void testEncodedProvider() throws Exception
+    {
+        final MemoryLocalDB memoryLocalDB = new MemoryLocalDB();
+        memoryLocalDB.init( null, Collections.emptyMap(), Collections.emptyMap() );
+        final LocalDB memoryAdaptor = new LocalDBAdaptor( memoryLocalDB, null );
+        try
+        {
+            exerciseBytes( memoryAdaptor );
+        }
+        finally
+        {
+            memoryAdaptor.close();
+        }
+    }
+
+    @Test( expected = LocalDBException.class )
+    public void testKeyTooLong() throws Exception
+    {
+        localDB.putBytes( LocalDB.DB.TEMP, new byte[ LocalDB.MAX_KEY_BYTES_LENGTH + 1 ], new byte[ 0 ] );
+    }
+
+    private static void exerciseBytes( final LocalDB localDB ) throws Exception
+    {
+        final byte[] key = sha1( "password" );
+        final byte[] value = new byte[] {0, 1, ( byte ) 0xff};
+
+        Assert.assertFalse( localDB.containsBytes( LocalDB.DB.TEMP, key ) );
+        Assert.assertNull( localDB.getBytes( LocalDB.DB.TEMP, key ) );
+        Assert.assertFalse( localDB.putBytes( LocalDB.DB.TEMP, key, value ) );
+        Assert.assertTrue( localDB.containsBytes( LocalDB.DB.TEMP, key ) );
+        Assert.assertArrayEquals( value, localDB.getBytes( LocalDB.DB.TEMP, key ) );
+
+        final Map<ByteBuffer, byte[]> batch = new HashMap<>();
+        for ( int i = 0; i < 100; i++ )
+        {
+            batch.put( ByteBuffer.wrap( sha1( "word" + i ) ), new byte[ 0 ] );
+        }
+        localDB.putAllBytes( LocalDB.DB.TEMP, batch );
+        Assert.assertEquals( 101, localDB.size( LocalDB.DB.TEMP ) );
+        Assert.assertArrayEquals( new byte[ 0 ], localDB.getBytes( LocalDB.DB.TEMP, sha1( "word7" ) ) );
+
+        final List<ByteBuffer> iteratedKeys = new ArrayList<>();
+        try ( LocalDB.LocalDBIterator<byte[]> iterator = localDB.bytesIterator( LocalDB.DB.TEMP ) )
+        {
+            while ( iterator.hasNext() )
+            {
+                iteratedKeys.add( ByteBuffer.wrap( iterator.next() ) );
+            }
+        }
+        Assert.assertEquals( 101, iteratedKeys.size() );
+        Assert.assertTrue( iteratedKeys.containsAll( batch.keySet() ) );
+        Assert.assertTrue( iteratedKeys.contains( ByteBuffer.wrap( key ) ) );
+
+        Assert.assertTrue( localDB.removeBytes( LocalDB.DB.TEMP, key ) );
+        Assert.assertFalse( localDB.containsBytes( LocalDB.DB.TEMP, key ) );
+        Assert.assertFalse( localDB.removeBytes( LocalDB.DB.TEMP, key ) );
+    }
+
+    private static byte[] sha1( final String input ) throws Exception
+    {
+        return MessageDigest.getInstance( "SHA1" ).digest( input.getBytes( StandardCharsets.UTF_8 ) );
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.time.Instant;
+
+public class LocalDBExpiryTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LocalDBAdaptor localDB;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        localDB = ( LocalDBAdaptor ) LocalDBFactory.getInstance( temporaryFolder.newFolder( "localdb-test" ), false, null, null );
+        localDB.truncate( LocalDB.DB.TEMP );
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if ( localDB != null )
+        {
+            localDB.close();
+        }
+    }
+
+    @Test
+    public void testExpiredRecordsAreHidden() throws Exception
+    {
+        localDB.put( LocalDB.DB.TEMP, "expired", "value", Instant.now().minusSeconds( 1 ) );
+        localDB.put( LocalDB.DB.TEMP, "live", "value", Instant.now().plusSeconds( 60 ) );
+        localDB.put( LocalDB.DB.TEMP, "permanent", "value" );
+
+        Assert.assertNull( localDB.get( LocalDB.DB.TEMP, "expired" ) );
+        Assert.assertFalse( localDB.contains( LocalDB.DB.TEMP, "expired" ) );
+        Assert.assertEquals( "value", localDB.get( LocalDB.DB.TEMP, "live" ) );
+        Assert.assertEquals( "value", localDB.get( LocalDB.DB.TEMP, "permanent" ) );
+
+        try ( LocalDB.LocalDBIterator<String> iterator = localDB.iterator( LocalDB.DB.TEMP ) )
+        {
+            while ( iterator.hasNext() )
+            {
+                Assert.assertNotEquals( "expired", iterator.next() );
+            }
+        }
+    }
+
+    @Test
+    public void testPurge() throws Exception
+    {
+        localDB.put( LocalDB.DB.TEMP, "expired1", "value", Instant.now().minusSeconds( 2 ) );
+        localDB.put( LocalDB.DB.TEMP, "expired2", "value", Instant.now().minusSeconds( 1 ) );
+        localDB.put( LocalDB.DB.TEMP, "live", "value", Instant.now().plusSeconds( 60 ) );
+        Assert.assertEquals( 3, localDB.size( LocalDB.DB.TEMP ) );
+
+        final LocalDBExpiryIndex.PurgeResult firstResult = localDB.purgeExpired( 1 );
+        Assert.assertEquals( 1, firstResult.getPurgedRecords() );
+        Assert.assertEquals( 2, localDB.size( LocalDB.DB.TEMP ) );
+
+        final LocalDBExpiryIndex.PurgeResult secondResult = localDB.purgeExpired( 100 );
+        Assert.assertEquals( 1, secondResult.getPurgedRecords() );
+        Assert.assertEquals( 1, localDB.size( LocalDB.DB.TEMP ) );
+        Assert.assertEquals( 0, localDB.purgeExpired( 100 ).getIndexEntries() );
+    }
+
+    @Test
+    public void testOverwriteRemovesExpiration() throws Exception
+    {
+        localDB.put( LocalDB.DB.TEMP, "key", "expiring", Instant.now().minusSeconds( 1 ) );
+        localDB.put( LocalDB.DB.TEMP, "key", "permanent" );
+        Assert.assertEquals( "permanent", localDB.get( LocalDB.DB.TEMP, "key" ) );
+
+        final LocalDBExpiryIndex.PurgeResult purgeResult = localDB.purgeExpired( 100 );
+        Assert.assertEquals( 1, purgeResult.getIndexEntries() );
+        Assert.assertEquals( 0, purgeResult.getPurgedRecords() );
+        Assert.assertEquals( "permanent", localDB.get( LocalDB.DB.TEMP, "key" ) );
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LocalDBMetricsTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testOperationSummaries() throws Exception
+    {
+        final LocalDB localDB = LocalDBFactory.getInstance( temporaryFolder.newFolder( "localdb-test" ), false, null, null );
+        try
+        {
+            final Map<String, String> records = new HashMap<>();
+            for ( int i = 0; i < 10; i++ )
+            {
+                records.put( "key" + i, "value" + i );
+            }
+            localDB.putAll( LocalDB.DB.TEMP, records );
+            for ( int i = 0; i < 10; i++ )
+            {
+                localDB.get( LocalDB.DB.TEMP, "key" + i );
+            }
+
+            final List<LocalDBMetrics.OperationSummary> summaries = localDB.metrics().summaries();
+            final LocalDBMetrics.OperationSummary getSummary = summaries.stream()
+                    .filter( summary -> summary.getDb() == LocalDB.DB.TEMP && summary.getOperation() == LocalDBMetrics.Operation.GET )
+                    .findFirst()
+                    .orElseThrow( IllegalStateException::new );
+            Assert.assertEquals( 10, getSummary.getCount() );
+            Assert.assertTrue( getSummary.getP50Micros() <= getSummary.getP99Micros() );
+            Assert.assertTrue( getSummary.getP99Micros() <= getSummary.getMaxMicros() );
+            Assert.assertTrue( getSummary.getAvgMicros() <= getSummary.getMaxMicros() );
+
+            Assert.assertTrue( localDB.debugInfo().containsKey( "latency.TEMP.PUT_ALL" ) );
+            Assert.assertTrue( String.valueOf( localDB.debugInfo().get( "writes.TEMP" ) ).contains( "records=10" ) );
+        }
+        finally
+        {
+            localDB.close();
+        }
+    }
+
+    @Test
+    public void testWriteBytesAreUtf8() throws Exception
+    {
+        for ( final String value : new String[] {"", "ascii", "café", "€100", "😀 smile", "bad" + ( char ) 0xD800 + "surrogate"} )
+        {
+            Assert.assertEquals( value, value.getBytes( StandardCharsets.UTF_8 ).length, LocalDBAdaptor.utf8Length( value ) );
+        }
+
+        final LocalDB localDB = LocalDBFactory.getInstance( temporaryFolder.newFolder( "localdb-test" ), false, null, null );
+        try
+        {
+            localDB.put( LocalDB.DB.TEMP, "kéy", "€" );
+            Assert.assertTrue( String.valueOf( localDB.debugInfo().get( "writes.TEMP" ) ).contains( "bytes=7" ) );
+        }
+        finally
+        {
+            localDB.close();
+        }
+    }
+
+    @Test
+    public void testPercentileBuckets()
+    {
+        final LocalDBMetrics metrics = new LocalDBMetrics();
+        final long now = System.nanoTime();
+        for ( int i = 0; i < 99; i++ )
+        {
+            // recorded latency is at least the elapsed time since the given start
+            metrics.record( LocalDB.DB.TEMP, LocalDBMetrics.Operation.PUT, now );
+        }
+        metrics.record( LocalDB.DB.TEMP, LocalDBMetrics.Operation.PUT, now - 5_000_000_000L );
+
+        final LocalDBMetrics.OperationSummary summary = metrics.summaries().get( 0 );
+        Assert.assertEquals( 100, summary.getCount() );
+        Assert.assertTrue( summary.getP99Micros() < 5_000_000 );
+        Assert.assertTrue( summary.getMaxMicros() > 5_000_000 );
+        Assert.assertEquals( 100, metrics.totals( true ).getCount() );
+        Assert.assertEquals( 0, metrics.totals( false ).getCount() );
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class LocalDBRangeIteratorTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LocalDB localDB;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        localDB = LocalDBFactory.getInstance( temporaryFolder.newFolder( "localdb-test" ), false, null, null );
+        localDB.truncate( LocalDB.DB.TEMP );
+        for ( final String key : Arrays.asList( "a|1", "a|2", "b|1", "b|2", "b|3", "c|1" ) )
+        {
+            localDB.put( LocalDB.DB.TEMP, key, "value" );
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if ( localDB != null )
+        {
+            localDB.close();
+        }
+    }
+
+    @Test
+    public void testRange() throws Exception
+    {
+        Assert.assertEquals( Arrays.asList( "a|2", "b|1", "b|2" ), readKeys( localDB.iterator( LocalDB.DB.TEMP, "a|2", "b|3" ) ) );
+        Assert.assertEquals( Arrays.asList( "a|1", "a|2" ), readKeys( localDB.iterator( LocalDB.DB.TEMP, null, "b" ) ) );
+        Assert.assertEquals( Arrays.asList( "b|3", "c|1" ), readKeys( localDB.iterator( LocalDB.DB.TEMP, "b|25", null ) ) );
+        Assert.assertTrue( readKeys( localDB.iterator( LocalDB.DB.TEMP, "d", null ) ).isEmpty() );
+    }
+
+    @Test
+    public void testPrefix() throws Exception
+    {
+        Assert.assertEquals( Arrays.asList( "b|1", "b|2", "b|3" ), readKeys( localDB.prefixIterator( LocalDB.DB.TEMP, "b|" ) ) );
+        Assert.assertEquals( Arrays.asList( "c|1" ), readKeys( localDB.prefixIterator( LocalDB.DB.TEMP, "c" ) ) );
+        Assert.assertTrue( readKeys( localDB.prefixIterator( LocalDB.DB.TEMP, "x" ) ).isEmpty() );
+    }
+
+    @Test
+    public void testResumableIterator() throws Exception
+    {
+        final List<String> pagedKeys = new ArrayList<>();
+        String resumeToken = null;
+        do
+        {
+            try ( LocalDB.LocalDBResumableIterator iterator = localDB.resumableIterator( LocalDB.DB.TEMP, resumeToken ) )
+            {
+                for ( int i = 0; i < 4 && iterator.hasNext(); i++ )
+                {
+                    pagedKeys.add( iterator.next() );
+                }
+                resumeToken = iterator.hasNext() ? iterator.resumeToken() : null;
+            }
+        }
+        while ( resumeToken != null );
+
+        Assert.assertEquals( Arrays.asList( "a|1", "a|2", "b|1", "b|2", "b|3", "c|1" ), pagedKeys );
+
+        // resuming after a removed key continues with the next key
+        final String tokenAfterB2;
+        try ( LocalDB.LocalDBResumableIterator iterator = localDB.resumableIterator( LocalDB.DB.TEMP, null ) )
+        {
+            while ( !"b|2".equals( iterator.next() ) )
+            {
+                Assert.assertTrue( iterator.hasNext() );
+            }
+            tokenAfterB2 = iterator.resumeToken();
+        }
+        localDB.remove( LocalDB.DB.TEMP, "b|2" );
+        Assert.assertEquals( Arrays.asList( "b|3", "c|1" ), readKeys( localDB.resumableIterator( LocalDB.DB.TEMP, tokenAfterB2 ) ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testInvalidResumeToken() throws Exception
+    {
+        localDB.resumableIterator( LocalDB.DB.TEMP, "not a token!" );
+    }
+
+    @Test
+    public void testContainsAny() throws Exception
+    {
+        Assert.assertTrue( localDB.containsAny( LocalDB.DB.TEMP, Arrays.asList( "z", "b|3", "a" ) ) );
+        Assert.assertTrue( localDB.containsAny( LocalDB.DB.TEMP, Arrays.asList( "a|0", "a|1" ) ) );
+        Assert.assertFalse( localDB.containsAny( LocalDB.DB.TEMP, Arrays.asList( "a", "b|0", "b|4", "d" ) ) );
+        Assert.assertFalse( localDB.containsAny( LocalDB.DB.TEMP, Collections.emptyList() ) );
+    }
+
+    @Test
+    public void testPrefixUpperBound()
+    {
+        Assert.assertEquals( "ac", LocalDBAdaptor.prefixUpperBound( "ab" ) );
+        Assert.assertEquals( "b", LocalDBAdaptor.prefixUpperBound( "a" + Character.MAX_VALUE ) );
+        Assert.assertNull( LocalDBAdaptor.prefixUpperBound( String.valueOf( Character.MAX_VALUE ) ) );
+    }
+
+    private static List<String> readKeys( final LocalDB.LocalDBIterator<String> iterator )
+    {
+        final List<String> keys = new ArrayList<>();
+        try
+        {
+            while ( iterator.hasNext() )
+            {
+                keys.add( iterator.next() );
+            }
+        }
+        finally
+        {
+            iterator.close();
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LocalDBSnapshotTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testIncrementalSnapshot() throws Exception
+    {
+        final File snapshotDirectory = temporaryFolder.newFolder( "localdb-snapshot" );
+        final LocalDB localDB = LocalDBFactory.getInstance( temporaryFolder.newFolder( "localdb-test" ), false, null, null );
+        try
+        {
+            localDB.putAll( LocalDB.DB.TEMP, makeRecords( 0, 100 ) );
+            final LocalDB.SnapshotResult fullResult = localDB.snapshot( snapshotDirectory, false );
+            Assert.assertTrue( fullResult.getFileCount() > 0 );
+            Assert.assertEquals( fullResult.getFileCount(), fullResult.getCopiedFileCount() );
+            Assert.assertEquals( fullResult.getTotalBytes(), fullResult.getCopiedBytes() );
+
+            final LocalDB.SnapshotResult unchangedResult = localDB.snapshot( snapshotDirectory, true );
+            Assert.assertEquals( 0, unchangedResult.getCopiedFileCount() );
+            Assert.assertEquals( 0, unchangedResult.getRemovedFileCount() );
+
+            localDB.putAll( LocalDB.DB.TEMP, makeRecords( 100, 200 ) );
+            final LocalDB.SnapshotResult incrementalResult = localDB.snapshot( snapshotDirectory, true );
+            Assert.assertTrue( incrementalResult.getCopiedFileCount() > 0 );
+            Assert.assertTrue( incrementalResult.getCopiedBytes() <= incrementalResult.getTotalBytes() );
+
+            // records written after the snapshot are not part of it
+            localDB.put( LocalDB.DB.TEMP, "after-snapshot", "value" );
+        }
+        finally
+        {
+            localDB.close();
+        }
+
+        final LocalDB snapshotDB = LocalDBFactory.getInstance( snapshotDirectory, true, null, null );
+        try
+        {
+            Assert.assertEquals( 200, snapshotDB.size( LocalDB.DB.TEMP ) );
+            Assert.assertEquals( "value150", snapshotDB.get( LocalDB.DB.TEMP, "key150" ) );
+            Assert.assertFalse( snapshotDB.contains( LocalDB.DB.TEMP, "after-snapshot" ) );
+        }
+        finally
+        {
+            snapshotDB.close();
+        }
+    }
+
+    @Test
+    public void testFailedSnapshotKeepsPreviousSnapshot() throws Exception
+    {
+        final File snapshotDirectory = temporaryFolder.newFolder( "localdb-snapshot" );
+        final XodusLocalDB localDB = new XodusLocalDB();
+        localDB.init( temporaryFolder.newFolder( "localdb-test" ), Collections.emptyMap(), Collections.emptyMap() );
+        try
+        {
+            localDB.putAll( LocalDB.DB.TEMP, makeRecords( 0, 100 ) );
+            localDB.snapshot( snapshotDirectory, false );
+
+            localDB.putAll( LocalDB.DB.TEMP, makeRecords( 100, 200 ) );
+            final AtomicInteger writtenFiles = new AtomicInteger();
+            try
+            {
+                // leaves a partially written file behind, as a failed copy would
+                localDB.snapshot( snapshotDirectory, false, ( fileDescriptor, targetFile, length ) ->
+                {
+                    writtenFiles.incrementAndGet();
+                    Files.createDirectories( targetFile.getParent() );
+                    Files.write( targetFile, new byte[ ( int ) length / 2 ] );
+                    throw new IOException( "injected snapshot failure" );
+                } );
+                Assert.fail( "expected snapshot failure" );
+            }
+            catch ( LocalDBException e )
+            {
+                Assert.assertTrue( e.getMessage().contains( "injected snapshot failure" ) );
+            }
+
+            Assert.assertEquals( 1, writtenFiles.get() );
+            Assert.assertFalse( new File( snapshotDirectory, "xodus.pending" ).exists() );
+        }
+        finally
+        {
+            localDB.close();
+        }
+
+        final LocalDB snapshotDB = LocalDBFactory.getInstance( snapshotDirectory, true, null, null );
+        try
+        {
+            Assert.assertEquals( 100, snapshotDB.size( LocalDB.DB.TEMP ) );
+            Assert.assertEquals( "value50", snapshotDB.get( LocalDB.DB.TEMP, "key50" ) );
+        }
+        finally
+        {
+            snapshotDB.close();
+        }
+    }
+
+    private static Map<String, String> makeRecords( final int start, final int end )
+    {
+        final Map<String, String> records = new HashMap<>();
+        for ( int i = start; i < end; i++ )
+        {
+            records.put( "key" + i, "value" + i );
+        }
+        return records;
+    }
+}
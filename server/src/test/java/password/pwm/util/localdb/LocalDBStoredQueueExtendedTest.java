@@ -29,8 +29,15 @@ import org.junit.rules.TemporaryFolder;
 import password.pwm.util.java.TimeDuration;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class LocalDBStoredQueueExtendedTest
 {
@@ -249,6 +256,42 @@ public class LocalDBStoredQueueExtendedTest
         Assert.assertEquals( initialSize, storedQueue.size() );
     }
 
+    @Test
+    public void testConcurrentAppend() throws Exception
+    {
+        storedQueue.clear();
+
+        final int threadCount = 8;
+        final int valuesPerThread = 200;
+        final ExecutorService executorService = Executors.newFixedThreadPool( threadCount );
+        final List<Future<?>> futures = new ArrayList<>();
+        for ( int t = 0; t < threadCount; t++ )
+        {
+            final int threadNumber = t;
+            futures.add( executorService.submit( () ->
+            {
+                for ( int i = 0; i < valuesPerThread; i++ )
+                {
+                    storedQueue.add( threadNumber + "-" + i );
+                }
+            } ) );
+        }
+        for ( final Future<?> future : futures )
+        {
+            future.get();
+        }
+        executorService.shutdown();
+
+        Assert.assertEquals( threadCount * valuesPerThread, storedQueue.size() );
+
+        final Set<String> values = new HashSet<>();
+        for ( final String value : storedQueue )
+        {
+            values.add( value );
+        }
+        Assert.assertEquals( threadCount * valuesPerThread, values.size() );
+    }
+
     @AfterClass
     public static void tearDown() throws Exception
     {
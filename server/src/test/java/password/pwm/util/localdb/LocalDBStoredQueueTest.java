@@ -0,0 +1,229 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class LocalDBStoredQueueTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File fileLocation;
+    private LocalDB localDB;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        fileLocation = temporaryFolder.newFolder( "localdb-storedqueue-test" );
+        localDB = LocalDBFactory.getInstance( fileLocation, false, null, null );
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if ( localDB != null )
+        {
+            localDB.close();
+        }
+    }
+
+    @Test
+    public void testPositionEncoding()
+    {
+        Assert.assertEquals( "000000", LocalDBStoredQueue.Position.encode( 0 ) );
+        Assert.assertEquals( "00000Z", LocalDBStoredQueue.Position.encode( 35 ) );
+        Assert.assertEquals( "000010", LocalDBStoredQueue.Position.encode( 36 ) );
+        Assert.assertEquals( "ZZZZZZ", LocalDBStoredQueue.Position.encode( Long.parseLong( "zzzzzz", 36 ) ) );
+
+        // keys written by the previous BigInteger based positions are zero padded upper case radix 36
+        for ( final long position : new long[] {0, 1, 35, 36, 1295, 46655, 1000000, Long.parseLong( "zzzzzz", 36 )} )
+        {
+            final String encoded = LocalDBStoredQueue.Position.encode( position );
+            final String legacy = String.format( "%6s", BigInteger.valueOf( position ).toString( 36 ).toUpperCase() ).replace( ' ', '0' );
+            Assert.assertEquals( legacy, encoded );
+            Assert.assertEquals( position, LocalDBStoredQueue.Position.decode( encoded ) );
+        }
+    }
+
+    @Test
+    public void testPositionWrap()
+    {
+        final long maxPosition = Long.parseLong( "zzzzzz", 36 );
+
+        Assert.assertEquals( 0, LocalDBStoredQueue.Position.next( maxPosition ) );
+        Assert.assertEquals( maxPosition, LocalDBStoredQueue.Position.previous( 0 ) );
+        Assert.assertEquals( 6, LocalDBStoredQueue.Position.next( 5 ) );
+        Assert.assertEquals( 4, LocalDBStoredQueue.Position.previous( 5 ) );
+
+        Assert.assertEquals( 0, LocalDBStoredQueue.Position.distanceToHead( 7, 7 ) );
+        Assert.assertEquals( 3, LocalDBStoredQueue.Position.distanceToHead( 7, 10 ) );
+        Assert.assertEquals( 1, LocalDBStoredQueue.Position.distanceToHead( maxPosition, 0 ) );
+        Assert.assertEquals( 4, LocalDBStoredQueue.Position.distanceToHead( maxPosition - 1, 2 ) );
+    }
+
+    @Test
+    public void testQueueWrapsAroundMaximumPosition() throws Exception
+    {
+        final String nearMax = LocalDBStoredQueue.Position.encode( Long.parseLong( "zzzzzz", 36 ) - 1 );
+        localDB.truncate( LocalDB.DB.TEMP );
+        localDB.put( LocalDB.DB.TEMP, "_KEY_VERSION", "7a" );
+        localDB.put( LocalDB.DB.TEMP, "_HEAD_POSITION", nearMax );
+        localDB.put( LocalDB.DB.TEMP, "_TAIL_POSITION", nearMax );
+
+        final LocalDBStoredQueue storedQueue = LocalDBStoredQueue.createLocalDBStoredQueue( localDB, LocalDB.DB.TEMP, false );
+        Assert.assertTrue( storedQueue.isEmpty() );
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            storedQueue.addFirst( "value" + i );
+        }
+        Assert.assertEquals( 5, storedQueue.size() );
+        Assert.assertEquals( "000002", localDB.get( LocalDB.DB.TEMP, "_HEAD_POSITION" ) );
+        Assert.assertEquals( "value4", localDB.get( LocalDB.DB.TEMP, "000002" ) );
+
+        final Iterator<String> iterator = storedQueue.descendingIterator();
+        for ( int i = 0; i < 5; i++ )
+        {
+            Assert.assertEquals( "value" + i, iterator.next() );
+        }
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            Assert.assertEquals( "value" + i, storedQueue.pollLast() );
+        }
+        Assert.assertTrue( storedQueue.isEmpty() );
+        Assert.assertNull( storedQueue.pollLast() );
+    }
+
+    @Test
+    public void testSizeSurvivesReopen() throws Exception
+    {
+        // TEMP is cleared when the LocalDB is opened, so use a queue db
+        {
+            final LocalDBStoredQueue storedQueue = LocalDBStoredQueue.createLocalDBStoredQueue( localDB, LocalDB.DB.REPORT_QUEUE, false );
+            storedQueue.clear();
+            storedQueue.addFirst( "only" );
+            Assert.assertEquals( 1, storedQueue.size() );
+        }
+
+        localDB.close();
+        localDB = LocalDBFactory.getInstance( fileLocation, false, null, null );
+
+        {
+            final LocalDBStoredQueue storedQueue = LocalDBStoredQueue.createLocalDBStoredQueue( localDB, LocalDB.DB.REPORT_QUEUE, false );
+            Assert.assertEquals( 1, storedQueue.size() );
+            Assert.assertEquals( "only", storedQueue.pollFirst() );
+            Assert.assertEquals( 0, storedQueue.size() );
+        }
+
+        localDB.close();
+        localDB = LocalDBFactory.getInstance( fileLocation, false, null, null );
+
+        {
+            final LocalDBStoredQueue storedQueue = LocalDBStoredQueue.createLocalDBStoredQueue( localDB, LocalDB.DB.REPORT_QUEUE, false );
+            Assert.assertTrue( storedQueue.isEmpty() );
+        }
+    }
+
+    @Test
+    public void testOrderPreservedAcrossAppendAndRemove() throws Exception
+    {
+        final LocalDBStoredQueue storedQueue = LocalDBStoredQueue.createLocalDBStoredQueue( localDB, LocalDB.DB.TEMP, false );
+        storedQueue.clear();
+
+        final List<String> values = new ArrayList<>();
+        for ( int i = 0; i < 100; i++ )
+        {
+            values.add( "value" + i );
+        }
+        storedQueue.addAll( values );
+        Assert.assertEquals( 100, storedQueue.size() );
+
+        storedQueue.removeLast( 10 );
+        storedQueue.removeFirst( 10 );
+        Assert.assertEquals( 80, storedQueue.size() );
+
+        final List<String> remaining = new ArrayList<>();
+        final Iterator<String> iterator = storedQueue.descendingIterator();
+        while ( iterator.hasNext() )
+        {
+            remaining.add( iterator.next() );
+        }
+        Assert.assertEquals( values.subList( 10, 90 ), remaining );
+    }
+
+    @Test
+    public void testConcurrentBulkAppends() throws Exception
+    {
+        final LocalDBStoredQueue storedQueue = LocalDBStoredQueue.createLocalDBStoredQueue( localDB, LocalDB.DB.TEMP, false );
+        storedQueue.clear();
+
+        // appends larger than the group commit limit must still be committed whole and in order
+        final int threadCount = 4;
+        final int valuesPerAppend = 1500;
+        final ExecutorService executorService = Executors.newFixedThreadPool( threadCount );
+        final List<Future<?>> futures = new ArrayList<>();
+        for ( int t = 0; t < threadCount; t++ )
+        {
+            final List<String> values = new ArrayList<>();
+            for ( int i = 0; i < valuesPerAppend; i++ )
+            {
+                values.add( t + "-" + i );
+            }
+            futures.add( executorService.submit( () -> storedQueue.addAll( values ) ) );
+        }
+        for ( final Future<?> future : futures )
+        {
+            future.get();
+        }
+        executorService.shutdown();
+
+        Assert.assertEquals( threadCount * valuesPerAppend, storedQueue.size() );
+
+        final Iterator<String> iterator = storedQueue.descendingIterator();
+        for ( int t = 0; t < threadCount; t++ )
+        {
+            final String first = iterator.next();
+            final String thread = first.substring( 0, first.indexOf( '-' ) );
+            Assert.assertEquals( thread + "-0", first );
+            for ( int i = 1; i < valuesPerAppend; i++ )
+            {
+                Assert.assertEquals( thread + "-" + i, iterator.next() );
+            }
+        }
+        Assert.assertFalse( iterator.hasNext() );
+    }
+}
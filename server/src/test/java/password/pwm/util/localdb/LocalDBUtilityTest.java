@@ -0,0 +1,170 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import password.pwm.PwmConstants;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+public class LocalDBUtilityTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testExportImportRoundTrip() throws Exception
+    {
+        final ByteArrayOutputStream exportOutput = new ByteArrayOutputStream();
+        final LocalDB sourceDB = LocalDBFactory.getInstance( temporaryFolder.newFolder( "localdb-source" ), false, null, null );
+        try
+        {
+            sourceDB.putAll( LocalDB.DB.RESPONSE_STORAGE, makeRecords( "response", 2500 ) );
+            sourceDB.putAll( LocalDB.DB.OTP_SECRET, makeRecords( "otp", 10 ) );
+            sourceDB.putAll( LocalDB.DB.TEMP, makeRecords( "temp", 10 ) );
+            new LocalDBUtility( sourceDB, 3 ).exportLocalDB( exportOutput, null );
+        }
+        finally
+        {
+            sourceDB.close();
+        }
+
+        final LocalDB targetDB = LocalDBFactory.getInstance( temporaryFolder.newFolder( "localdb-target" ), false, null, null );
+        try
+        {
+            final StringBuilder debugOutput = new StringBuilder();
+            final LocalDBUtility localDBUtility = new LocalDBUtility( targetDB, 3 );
+            localDBUtility.importLocalDB( new ByteArrayInputStream( exportOutput.toByteArray() ), debugOutput );
+
+            Assert.assertEquals( 2500, targetDB.size( LocalDB.DB.RESPONSE_STORAGE ) );
+            Assert.assertEquals( "value2499", targetDB.get( LocalDB.DB.RESPONSE_STORAGE, "response2499" ) );
+            Assert.assertEquals( 10, targetDB.size( LocalDB.DB.OTP_SECRET ) );
+            Assert.assertEquals( 0, targetDB.size( LocalDB.DB.TEMP ) );
+            Assert.assertFalse( localDBUtility.readImportInprogressFlag() );
+            Assert.assertTrue( debugOutput.toString().contains( "recordsImported=2510" ) );
+        }
+        finally
+        {
+            targetDB.close();
+        }
+    }
+
+    @Test
+    public void testImportSkipsInvalidRecords() throws Exception
+    {
+        final ByteArrayOutputStream importData = new ByteArrayOutputStream();
+        try ( Writer writer = new OutputStreamWriter( new GZIPOutputStream( importData ), PwmConstants.DEFAULT_CHARSET ) )
+        {
+            writer.write( "\"OTP_SECRET\",\"key1\",\"value1\"\n" );
+            writer.write( "\"NOT_A_DB\",\"key2\",\"value2\"\n" );
+            writer.write( "\"OTP_SECRET\",\"key3\"\n" );
+            writer.write( "\"OTP_SECRET\",\"key4\",\"value4\"\n" );
+        }
+
+        final LocalDB localDB = LocalDBFactory.getInstance( temporaryFolder.newFolder( "localdb-test" ), false, null, null );
+        try
+        {
+            final StringBuilder debugOutput = new StringBuilder();
+            new LocalDBUtility( localDB, 2 ).importLocalDB( new ByteArrayInputStream( importData.toByteArray() ), debugOutput );
+
+            Assert.assertEquals( 2, localDB.size( LocalDB.DB.OTP_SECRET ) );
+            Assert.assertEquals( "value4", localDB.get( LocalDB.DB.OTP_SECRET, "key4" ) );
+            Assert.assertTrue( debugOutput.toString().contains( "record #2, invalid DB name 'NOT_A_DB'" ) );
+            Assert.assertTrue( debugOutput.toString().contains( "recordsSkipped=2" ) );
+        }
+        finally
+        {
+            localDB.close();
+        }
+    }
+
+    @Test
+    public void testImportMultiLineValues() throws Exception
+    {
+        final Map<String, String> records = new HashMap<>();
+        for ( int i = 0; i < 2500; i++ )
+        {
+            records.put( "key" + i, i % 3 == 0 ? "line1\r\n\"quoted, " + i + "\"\nline3" : "value" + i );
+        }
+
+        final ByteArrayOutputStream exportOutput = new ByteArrayOutputStream();
+        final LocalDB sourceDB = LocalDBFactory.getInstance( temporaryFolder.newFolder( "localdb-source" ), false, null, null );
+        try
+        {
+            sourceDB.putAll( LocalDB.DB.RESPONSE_STORAGE, records );
+            new LocalDBUtility( sourceDB, 3 ).exportLocalDB( exportOutput, null );
+        }
+        finally
+        {
+            sourceDB.close();
+        }
+
+        final LocalDB targetDB = LocalDBFactory.getInstance( temporaryFolder.newFolder( "localdb-target" ), false, null, null );
+        try
+        {
+            final StringBuilder debugOutput = new StringBuilder();
+            new LocalDBUtility( targetDB, 3 ).importLocalDB( new ByteArrayInputStream( exportOutput.toByteArray() ), debugOutput );
+
+            Assert.assertEquals( 2500, targetDB.size( LocalDB.DB.RESPONSE_STORAGE ) );
+            Assert.assertEquals( records.get( "key2499" ), targetDB.get( LocalDB.DB.RESPONSE_STORAGE, "key2499" ) );
+            Assert.assertEquals( records.get( "key999" ), targetDB.get( LocalDB.DB.RESPONSE_STORAGE, "key999" ) );
+            Assert.assertTrue( debugOutput.toString().contains( "recordsImported=2500" ) );
+        }
+        finally
+        {
+            targetDB.close();
+        }
+    }
+
+    @Test
+    public void testCsvChunkReaderSplitsOnRecordBoundaries() throws Exception
+    {
+        final String csvText = "\"a\",\"1\"\r\n\"b\",\"x\ny\"\"z\"\r\n\r\n\"c\",\"3\"";
+        final LocalDBUtility.CsvChunkReader chunkReader = new LocalDBUtility.CsvChunkReader(
+                new StringReader( csvText ), PwmConstants.DEFAULT_CSV_FORMAT, 2 );
+
+        Assert.assertEquals( "\"a\",\"1\"\r\n\"b\",\"x\ny\"\"z\"\r\n", chunkReader.readChunk() );
+        Assert.assertEquals( 2, chunkReader.getChunkRecordCount() );
+        Assert.assertEquals( "\r\n\"c\",\"3\"", chunkReader.readChunk() );
+        Assert.assertEquals( 1, chunkReader.getChunkRecordCount() );
+        Assert.assertNull( chunkReader.readChunk() );
+    }
+
+    private static Map<String, String> makeRecords( final String keyPrefix, final int count )
+    {
+        final Map<String, String> records = new HashMap<>();
+        for ( int i = 0; i < count; i++ )
+        {
+            records.put( keyPrefix + i, "value" + i );
+        }
+        return records;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class OffHeapLocalDBTest
+{
+    private static final String SEGMENT_SIZE = String.valueOf( 1024 * 1024 );
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private OffHeapLocalDB localDB;
+
+    private void open( final boolean mapped ) throws Exception
+    {
+        final Map<String, String> initParameters = new HashMap<>();
+        initParameters.put( "offheap.segmentSize", SEGMENT_SIZE );
+        initParameters.put( "offheap.mapped", String.valueOf( mapped ) );
+        localDB = new OffHeapLocalDB();
+        localDB.init( temporaryFolder.newFolder( "localdb-test" ), initParameters, Collections.emptyMap() );
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if ( localDB != null )
+        {
+            localDB.close();
+        }
+    }
+
+    @Test
+    public void testPutGetRemove() throws Exception
+    {
+        open( false );
+
+        Assert.assertFalse( localDB.put( LocalDB.DB.TEMP, "key1", "value1" ) );
+        Assert.assertTrue( localDB.put( LocalDB.DB.TEMP, "key1", "value2" ) );
+        Assert.assertFalse( localDB.putIfAbsent( LocalDB.DB.TEMP, "key1", "value3" ) );
+        Assert.assertTrue( localDB.putIfAbsent( LocalDB.DB.TEMP, "keyé", "value中" ) );
+
+        Assert.assertEquals( "value2", localDB.get( LocalDB.DB.TEMP, "key1" ) );
+        Assert.assertEquals( "value中", localDB.get( LocalDB.DB.TEMP, "keyé" ) );
+        Assert.assertNull( localDB.get( LocalDB.DB.CACHE, "key1" ) );
+        Assert.assertEquals( 2, localDB.size( LocalDB.DB.TEMP ) );
+
+        Assert.assertTrue( localDB.remove( LocalDB.DB.TEMP, "key1" ) );
+        Assert.assertFalse( localDB.remove( LocalDB.DB.TEMP, "key1" ) );
+        Assert.assertFalse( localDB.contains( LocalDB.DB.TEMP, "key1" ) );
+        Assert.assertEquals( 1, localDB.size( LocalDB.DB.TEMP ) );
+    }
+
+    @Test
+    public void testManyRecords() throws Exception
+    {
+        open( false );
+
+        final int recordCount = 50_000;
+        for ( int i = 0; i < recordCount; i++ )
+        {
+            localDB.put( LocalDB.DB.TEMP, "key" + i, "value-" + i + "-abcdefghijklmnopqrstuvwxyz" );
+        }
+        Assert.assertEquals( recordCount, localDB.size( LocalDB.DB.TEMP ) );
+
+        for ( int i = 0; i < recordCount; i += 2 )
+        {
+            localDB.remove( LocalDB.DB.TEMP, "key" + i );
+        }
+
+        final Set<String> keys = new HashSet<>();
+        try ( LocalDB.LocalDBIterator<String> iterator = localDB.iterator( LocalDB.DB.TEMP ) )
+        {
+            while ( iterator.hasNext() )
+            {
+                keys.add( iterator.next() );
+            }
+        }
+
+        Assert.assertEquals( recordCount / 2, keys.size() );
+        Assert.assertEquals( recordCount / 2, localDB.size( LocalDB.DB.TEMP ) );
+        Assert.assertTrue( keys.contains( "key1" ) );
+        Assert.assertFalse( keys.contains( "key2" ) );
+        Assert.assertEquals( "value-12345-abcdefghijklmnopqrstuvwxyz", localDB.get( LocalDB.DB.TEMP, "key12345" ) );
+    }
+
+    @Test
+    public void testRangeIteratorOrdered() throws Exception
+    {
+        open( false );
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            localDB.put( LocalDB.DB.TEMP, String.format( "key%04d", i ), "value" + i );
+        }
+
+        final List<String> keys = new ArrayList<>();
+        try ( LocalDB.LocalDBIterator<String> iterator = localDB.iterator( LocalDB.DB.TEMP, "key0100", "key0900" ) )
+        {
+            while ( iterator.hasNext() )
+            {
+                keys.add( iterator.next() );
+            }
+        }
+
+        Assert.assertEquals( 800, keys.size() );
+        Assert.assertEquals( "key0100", keys.get( 0 ) );
+        Assert.assertEquals( "key0899", keys.get( keys.size() - 1 ) );
+        final List<String> sortedKeys = new ArrayList<>( keys );
+        Collections.sort( sortedKeys );
+        Assert.assertEquals( sortedKeys, keys );
+        Assert.assertTrue( localDB.flags().contains( LocalDBProvider.Flag.OrderedRangeIteration ) );
+    }
+
+    @Test
+    public void testCompaction() throws Exception
+    {
+        open( false );
+
+        final String largeValue = String.join( "", Collections.nCopies( 10_000, "x" ) );
+        localDB.put( LocalDB.DB.TEMP, "other", "value" );
+        for ( int i = 0; i < 300; i++ )
+        {
+            localDB.put( LocalDB.DB.TEMP, "key", largeValue + i );
+        }
+
+        Assert.assertEquals( largeValue + 299, localDB.get( LocalDB.DB.TEMP, "key" ) );
+        Assert.assertEquals( "value", localDB.get( LocalDB.DB.TEMP, "other" ) );
+        Assert.assertTrue( ( Long ) localDB.debugInfo().get( "garbageBytes" ) < 2 * 1024 * 1024 );
+    }
+
+    @Test
+    public void testMappedTruncate() throws Exception
+    {
+        open( true );
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            localDB.put( LocalDB.DB.TEMP, "key" + i, "value" + i );
+        }
+        Assert.assertNotNull( localDB.getFileLocation() );
+        Assert.assertEquals( "value999", localDB.get( LocalDB.DB.TEMP, "key999" ) );
+
+        localDB.truncate( LocalDB.DB.TEMP );
+        Assert.assertEquals( 0, localDB.size( LocalDB.DB.TEMP ) );
+        Assert.assertNull( localDB.get( LocalDB.DB.TEMP, "key999" ) );
+
+        localDB.put( LocalDB.DB.TEMP, "key", "value" );
+        Assert.assertEquals( "value", localDB.get( LocalDB.DB.TEMP, "key" ) );
+    }
+}
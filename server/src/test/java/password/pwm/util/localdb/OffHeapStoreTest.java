@@ -0,0 +1,95 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import password.pwm.error.ErrorInformation;
+import password.pwm.error.PwmError;
+
+import java.nio.ByteBuffer;
+
+public class OffHeapStoreTest
+{
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int RECORDS = 400;
+
+    @Test
+    public void testFailedCompactionKeepsIndex() throws Exception
+    {
+        final LimitedAllocator allocator = new LimitedAllocator();
+        final OffHeapStore store = new OffHeapStore( allocator, SEGMENT_SIZE );
+
+        for ( int i = 0; i < RECORDS; i++ )
+        {
+            store.put( "key" + i, makeValue( "first", i ), false );
+        }
+        for ( int i = 0; i < RECORDS; i++ )
+        {
+            store.put( "key" + i, makeValue( "second", i ), false );
+        }
+
+        // the next write triggers compaction, which runs out of segments after relocating some records
+        allocator.allocationLimit = allocator.allocations + 3;
+        store.put( "key0", makeValue( "third", 0 ), false );
+        Assert.assertTrue( allocator.failures > 0 );
+
+        Assert.assertEquals( makeValue( "third", 0 ), store.get( "key0" ) );
+        for ( int i = 1; i < RECORDS; i++ )
+        {
+            Assert.assertEquals( makeValue( "second", i ), store.get( "key" + i ) );
+        }
+    }
+
+    private static String makeValue( final String prefix, final int index )
+    {
+        final StringBuilder value = new StringBuilder( prefix ).append( index );
+        while ( value.length() < 80 )
+        {
+            value.append( 'x' );
+        }
+        return value.toString();
+    }
+
+    private static class LimitedAllocator implements OffHeapStore.SegmentAllocator
+    {
+        private int allocations;
+        private int allocationLimit = Integer.MAX_VALUE;
+        private int failures;
+
+        @Override
+        public ByteBuffer allocate( final int size ) throws LocalDBException
+        {
+            if ( allocations >= allocationLimit )
+            {
+                failures++;
+                throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, "segment allocation limit reached" ) );
+            }
+            allocations++;
+            return ByteBuffer.allocate( size );
+        }
+
+        @Override
+        public void release( final ByteBuffer segment )
+        {
+        }
+    }
+}
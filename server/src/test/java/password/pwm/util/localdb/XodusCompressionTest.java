@@ -0,0 +1,156 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2019 The PWM Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package password.pwm.util.localdb;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import password.pwm.util.java.TimeDuration;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class XodusCompressionTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testPolicies()
+    {
+        // compression and dictionaries change the stored format, so both are off unless configured
+        final Map<LocalDB.DB, XodusCompression.Policy> defaultPolicies = XodusCompression.readPolicies( Collections.emptyMap() );
+        for ( final LocalDB.DB db : LocalDB.DB.values() )
+        {
+            Assert.assertEquals( XodusCompression.Codec.NONE, defaultPolicies.get( db ).getCodec() );
+            Assert.assertFalse( defaultPolicies.get( db ).isDictionary() );
+        }
+
+        final Map<LocalDB.DB, XodusCompression.Policy> enabledPolicies = XodusCompression.readPolicies( Collections.singletonMap( "xodus.compression.enabled", "true" ) );
+        Assert.assertEquals( XodusCompression.Codec.DEFLATE, enabledPolicies.get( LocalDB.DB.USER_CACHE ).getCodec() );
+        Assert.assertFalse( enabledPolicies.get( LocalDB.DB.USER_CACHE ).isDictionary() );
+
+        final Map<String, String> initParameters = new HashMap<>();
+        initParameters.put( "xodus.compression.enabled", "false" );
+        initParameters.put( "xodus.compression.TEMP.codec", "DEFLATE" );
+        initParameters.put( "xodus.compression.TEMP.level", "9" );
+        final Map<LocalDB.DB, XodusCompression.Policy> policies = XodusCompression.readPolicies( initParameters );
+        Assert.assertEquals( XodusCompression.Codec.NONE, policies.get( LocalDB.DB.USER_CACHE ).getCodec() );
+        Assert.assertEquals( XodusCompression.Codec.DEFLATE, policies.get( LocalDB.DB.TEMP ).getCodec() );
+        Assert.assertEquals( 9, policies.get( LocalDB.DB.TEMP ).getLevel() );
+        Assert.assertFalse( policies.get( LocalDB.DB.TEMP ).isDictionary() );
+    }
+
+    @Test
+    public void testDictionaryCompression()
+    {
+        final Map<String, String> initParameters = new HashMap<>();
+        for ( final LocalDB.DB db : new LocalDB.DB[] {LocalDB.DB.USER_CACHE, LocalDB.DB.AUDIT_EVENTS} )
+        {
+            initParameters.put( "xodus.compression." + db.name() + ".codec", "DEFLATE" );
+            initParameters.put( "xodus.compression." + db.name() + ".dictionary", "true" );
+        }
+        final XodusCompression compression = new XodusCompression( XodusCompression.readPolicies( initParameters ) );
+        final byte[] value = makeRecord( 1000 ).getBytes( StandardCharsets.UTF_8 );
+
+        final byte[] plainEncoded = compression.encode( LocalDB.DB.USER_CACHE, value, value.length );
+        Assert.assertEquals( XodusCompression.COMPRESSED_PREFIX, plainEncoded[ 0 ] );
+
+        final List<byte[]> samples = new ArrayList<>();
+        for ( int i = 0; i < 100; i++ )
+        {
+            samples.add( makeRecord( i ).getBytes( StandardCharsets.UTF_8 ) );
+        }
+        compression.addDictionary( LocalDB.DB.USER_CACHE, 1, XodusCompression.trainDictionary( samples, XodusCompression.MAX_DICTIONARY_LENGTH ) );
+        Assert.assertTrue( compression.dictionaryCandidates().contains( LocalDB.DB.AUDIT_EVENTS ) );
+        Assert.assertFalse( compression.dictionaryCandidates().contains( LocalDB.DB.USER_CACHE ) );
+
+        final byte[] dictionaryEncoded = compression.encode( LocalDB.DB.USER_CACHE, value, value.length );
+        Assert.assertEquals( XodusCompression.DICTIONARY_COMPRESSED_PREFIX, dictionaryEncoded[ 0 ] );
+        Assert.assertTrue( dictionaryEncoded.length < plainEncoded.length );
+
+        Assert.assertArrayEquals( value, compression.decode( LocalDB.DB.USER_CACHE, plainEncoded, plainEncoded.length ) );
+        Assert.assertArrayEquals( value, compression.decode( LocalDB.DB.USER_CACHE, dictionaryEncoded, dictionaryEncoded.length ) );
+
+        final byte[] shortValue = "short".getBytes( StandardCharsets.UTF_8 );
+        final byte[] shortEncoded = compression.encode( LocalDB.DB.USER_CACHE, shortValue, shortValue.length );
+        Assert.assertEquals( XodusCompression.UNCOMPRESSED_PREFIX, shortEncoded[ 0 ] );
+        Assert.assertArrayEquals( shortValue, compression.decode( LocalDB.DB.USER_CACHE, shortEncoded, shortEncoded.length ) );
+    }
+
+    @Test
+    public void testDictionaryPersistence() throws Exception
+    {
+        final File dbDirectory = temporaryFolder.newFolder( "localdb-test" );
+        final Map<String, String> initParameters = new HashMap<>();
+        initParameters.put( "xodus.compression.TEMP.codec", "DEFLATE" );
+        initParameters.put( "xodus.compression.TEMP.dictionary", "true" );
+
+        {
+            final XodusLocalDB localDB = new XodusLocalDB();
+            localDB.init( dbDirectory, initParameters, Collections.emptyMap() );
+            final Map<String, String> records = new HashMap<>();
+            for ( int i = 0; i < 600; i++ )
+            {
+                records.put( "key" + i, makeRecord( i ) );
+            }
+            localDB.putAll( LocalDB.DB.TEMP, records );
+            localDB.close();
+        }
+
+        {
+            // dictionary is trained in the background when the db is opened with enough records
+            final XodusLocalDB localDB = new XodusLocalDB();
+            localDB.init( dbDirectory, initParameters, Collections.emptyMap() );
+            final Instant timeout = Instant.now().plusSeconds( 30 );
+            while ( Integer.valueOf( 0 ).equals( localDB.debugInfo().get( "compression.TEMP.dictionaryBytes" ) ) && Instant.now().isBefore( timeout ) )
+            {
+                TimeDuration.of( 50, TimeDuration.Unit.MILLISECONDS ).pause();
+            }
+            Assert.assertNotEquals( 0, localDB.debugInfo().get( "compression.TEMP.dictionaryBytes" ) );
+            localDB.put( LocalDB.DB.TEMP, "new", makeRecord( 9999 ) );
+            Assert.assertEquals( makeRecord( 9999 ), localDB.get( LocalDB.DB.TEMP, "new" ) );
+            localDB.close();
+        }
+
+        {
+            final XodusLocalDB localDB = new XodusLocalDB();
+            localDB.init( dbDirectory, initParameters, Collections.emptyMap() );
+            Assert.assertEquals( makeRecord( 9999 ), localDB.get( LocalDB.DB.TEMP, "new" ) );
+            Assert.assertEquals( makeRecord( 5 ), localDB.get( LocalDB.DB.TEMP, "key5" ) );
+            localDB.close();
+        }
+    }
+
+    private static String makeRecord( final int index )
+    {
+        return "{\"userIdentity\":{\"userDN\":\"cn=user" + index + ",ou=people,o=example\",\"ldapProfile\":\"default\"},"
+                + "\"cacheTimestamp\":\"2019-01-01T00:00:" + ( index % 60 ) + "Z\",\"userGUID\":\"" + Integer.toHexString( index * 7919 ) + "\","
+                + "\"passwordExpirationTime\":null,\"email\":\"user" + index + "@example.com\",\"status\":\"active\"}";
+    }
+}